@@ -0,0 +1,109 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.benchmarks;
+
+import java.io.File;
+
+import org.xwiki.cache.Cache;
+import org.xwiki.cache.CacheException;
+import org.xwiki.cache.CacheFactory;
+import org.xwiki.cache.CacheManager;
+import org.xwiki.cache.config.CacheConfiguration;
+import org.xwiki.component.embed.EmbeddableComponentManager;
+import org.xwiki.context.Execution;
+import org.xwiki.context.ExecutionContext;
+import org.xwiki.environment.Environment;
+import org.xwiki.environment.internal.StandardEnvironment;
+
+/**
+ * Component manager used by the benchmarks. All the components found in the classpath are registered, like in the
+ * component tests, except the {@link Environment} which is a standard environment using a temporary directory, and
+ * the {@link CacheManager} which always creates caches with the cache provider being benchmarked.
+ *
+ * @version $Id$
+ * @since 4.4M1
+ */
+public class BenchmarkComponentManager extends EmbeddableComponentManager
+{
+    /**
+     * {@link CacheManager} creating all the caches with the same factory.
+     */
+    private static class FixedCacheManager implements CacheManager
+    {
+        /**
+         * The factory used to create all the caches.
+         */
+        private final CacheFactory factory;
+
+        /**
+         * @param factory the factory used to create all the caches
+         */
+        FixedCacheManager(CacheFactory factory)
+        {
+            this.factory = factory;
+        }
+
+        @Override
+        public CacheFactory getCacheFactory()
+        {
+            return this.factory;
+        }
+
+        @Override
+        public CacheFactory getLocalCacheFactory()
+        {
+            return this.factory;
+        }
+
+        @Override
+        public <T> Cache<T> createNewCache(CacheConfiguration config) throws CacheException
+        {
+            return this.factory.newCache(config);
+        }
+
+        @Override
+        public <T> Cache<T> createNewLocalCache(CacheConfiguration config) throws CacheException
+        {
+            return this.factory.newCache(config);
+        }
+    }
+
+    /**
+     * Register the components of the classpath and create the execution context of the benchmark.
+     *
+     * @param cacheProvider the hint of the {@link CacheFactory} used to create all the caches
+     * @throws Exception if the components can't be initialized
+     */
+    public BenchmarkComponentManager(String cacheProvider) throws Exception
+    {
+        initialize(getClass().getClassLoader());
+
+        File directory = new File(System.getProperty("java.io.tmpdir"), "xwiki-benchmarks");
+        StandardEnvironment environment = new StandardEnvironment();
+        environment.setPermanentDirectory(directory);
+        environment.setTemporaryDirectory(directory);
+        registerComponent(Environment.class, environment);
+
+        registerComponent(CacheManager.class,
+            new FixedCacheManager(this.<CacheFactory> getInstance(CacheFactory.class, cacheProvider)));
+
+        getInstance(Execution.class).setContext(new ExecutionContext());
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.benchmarks;
+
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Per thread pseudo random generator used to pick the keys accessed by the benchmarks. It is a xorshift generator so
+ * that picking a key costs a few instructions and doesn't introduce contention between the benchmark threads.
+ *
+ * @version $Id$
+ * @since 4.4M1
+ */
+@State(Scope.Thread)
+public class ThreadRandom
+{
+    /**
+     * The state of the generator, never 0.
+     */
+    private int seed = System.identityHashCode(this) | 1;
+
+    /**
+     * @param bound the upper bound (exclusive), must be positive
+     * @return a uniformly distributed index between 0 and {@code bound}
+     */
+    public int nextInt(int bound)
+    {
+        this.seed ^= this.seed << 13;
+        this.seed ^= this.seed >>> 17;
+        this.seed ^= this.seed << 5;
+
+        return (this.seed & Integer.MAX_VALUE) % bound;
+    }
+
+    /**
+     * Pick an index with a skewed distribution where low indexes are much more frequent than high ones, like the
+     * popular pages of a wiki compared to the rest of the pages.
+     *
+     * @param bound the upper bound (exclusive), must be positive
+     * @return an index between 0 and {@code bound}
+     */
+    public int nextSkewed(int bound)
+    {
+        long index = nextInt(bound);
+
+        return (int) (index * index / bound);
+    }
+}
@@ -0,0 +1,226 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.benchmarks.cache;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.xwiki.benchmarks.BenchmarkComponentManager;
+import org.xwiki.benchmarks.ThreadRandom;
+import org.xwiki.cache.Cache;
+import org.xwiki.cache.CacheManager;
+import org.xwiki.cache.config.CacheConfiguration;
+import org.xwiki.cache.event.CacheEntryEvent;
+import org.xwiki.cache.event.CacheEntryListener;
+import org.xwiki.cache.eviction.LRUEvictionConfiguration;
+
+/**
+ * Compare the cache providers: lookups of cached entries under contention, eviction churn when the working set is
+ * bigger than the cache, mixed reads and writes, with and without an entry listener.
+ *
+ * @version $Id$
+ * @since 4.4M1
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CacheProviderBenchmark
+{
+    /**
+     * Listener doing as little as possible, in order to measure the cost of the notifications themselves.
+     */
+    private static class CountingListener implements CacheEntryListener<String>
+    {
+        /**
+         * The number of received events.
+         */
+        private final AtomicLong count = new AtomicLong();
+
+        @Override
+        public void cacheEntryAdded(CacheEntryEvent<String> event)
+        {
+            this.count.incrementAndGet();
+        }
+
+        @Override
+        public void cacheEntryRemoved(CacheEntryEvent<String> event)
+        {
+            this.count.incrementAndGet();
+        }
+
+        @Override
+        public void cacheEntryModified(CacheEntryEvent<String> event)
+        {
+            this.count.incrementAndGet();
+        }
+    }
+
+    /**
+     * Number of keys in the working set used by the eviction and write benchmarks, compared to the cache capacity.
+     */
+    private static final int WORKING_SET_FACTOR = 10;
+
+    /**
+     * The hint of the benchmarked cache provider.
+     */
+    @Param({"infinispan/local", "oscache/local", "tinylfu/local"})
+    String provider;
+
+    /**
+     * The maximum number of entries of the cache.
+     */
+    @Param({"10000"})
+    int capacity;
+
+    /**
+     * Indicate if an entry listener is registered.
+     */
+    @Param({"false", "true"})
+    boolean listener;
+
+    /**
+     * The benchmarked cache.
+     */
+    private Cache<String> cache;
+
+    /**
+     * The keys of the working set, the first {@link #capacity} ones are cached.
+     */
+    private String[] keys;
+
+    /**
+     * Create the cache and fill it.
+     *
+     * @throws Exception if the cache can't be created
+     */
+    @Setup
+    public void setUp() throws Exception
+    {
+        BenchmarkComponentManager componentManager = new BenchmarkComponentManager(this.provider);
+
+        CacheConfiguration configuration = new CacheConfiguration();
+        configuration.setConfigurationId("benchmark." + this.provider);
+        LRUEvictionConfiguration lru = new LRUEvictionConfiguration();
+        lru.setMaxEntries(this.capacity);
+        configuration.put(LRUEvictionConfiguration.CONFIGURATIONID, lru);
+
+        this.cache = componentManager.<CacheManager> getInstance(CacheManager.class).createNewCache(configuration);
+        if (this.listener) {
+            this.cache.addCacheEntryListener(new CountingListener());
+        }
+
+        this.keys = new String[this.capacity * WORKING_SET_FACTOR];
+        for (int i = 0; i < this.keys.length; ++i) {
+            this.keys[i] = "xwiki:Space" + (i % 100) + ".Page" + i;
+        }
+        for (int i = 0; i < this.capacity; ++i) {
+            this.cache.set(this.keys[i], this.keys[i]);
+        }
+    }
+
+    /**
+     * Release the cache.
+     */
+    @TearDown
+    public void tearDown()
+    {
+        this.cache.dispose();
+    }
+
+    /**
+     * Lookup of entries which are in the cache, by all the available threads.
+     *
+     * @param random the random generator of the current thread
+     * @return the cached value
+     */
+    @Benchmark
+    @Threads(Threads.MAX)
+    public String getHit(ThreadRandom random)
+    {
+        return this.cache.get(this.keys[random.nextInt(this.capacity)]);
+    }
+
+    /**
+     * Lookup of a skewed working set bigger than the cache, the missing entries being added to the cache. Measures
+     * the cost of the eviction and the hit rate of the eviction policy.
+     *
+     * @param random the random generator of the current thread
+     * @return the value
+     */
+    @Benchmark
+    @Threads(4)
+    public String evictionChurn(ThreadRandom random)
+    {
+        String key = this.keys[random.nextSkewed(this.keys.length)];
+        String value = this.cache.get(key);
+        if (value == null) {
+            value = key;
+            this.cache.set(key, value);
+        }
+
+        return value;
+    }
+
+    /**
+     * Reader threads of the mixed benchmark.
+     *
+     * @param random the random generator of the current thread
+     * @return the value, if cached
+     */
+    @Benchmark
+    @Group("readWrite")
+    @GroupThreads(3)
+    public String readWriteGet(ThreadRandom random)
+    {
+        return this.cache.get(this.keys[random.nextSkewed(this.keys.length)]);
+    }
+
+    /**
+     * Writer thread of the mixed benchmark.
+     *
+     * @param random the random generator of the current thread
+     */
+    @Benchmark
+    @Group("readWrite")
+    @GroupThreads(1)
+    public void readWriteSet(ThreadRandom random)
+    {
+        String key = this.keys[random.nextSkewed(this.keys.length)];
+        this.cache.set(key, key);
+    }
+}
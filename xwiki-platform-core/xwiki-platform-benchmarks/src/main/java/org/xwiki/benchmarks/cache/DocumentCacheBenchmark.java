@@ -0,0 +1,148 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.benchmarks.cache;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.xwiki.benchmarks.BenchmarkComponentManager;
+import org.xwiki.benchmarks.ThreadRandom;
+import org.xwiki.cache.config.CacheConfiguration;
+import org.xwiki.cache.eviction.LRUEvictionConfiguration;
+import org.xwiki.model.reference.DocumentReference;
+
+import com.xpn.xwiki.internal.cache.DocumentCache;
+
+/**
+ * Lookups of the document cache, used for example by the rendering cache. Most of the cost of a hit is building the
+ * key from the document reference and the extensions.
+ *
+ * @version $Id$
+ * @since 4.4M1
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DocumentCacheBenchmark
+{
+    /**
+     * The action used as extension of the key.
+     */
+    private static final String ACTION = "view";
+
+    /**
+     * The number of cached documents.
+     */
+    @Param({"1000"})
+    int documents;
+
+    /**
+     * The hint of the cache provider used by the document cache.
+     */
+    @Param({"infinispan/local", "tinylfu/local"})
+    String provider;
+
+    /**
+     * The benchmarked cache.
+     */
+    private DocumentCache<String> cache;
+
+    /**
+     * The cached documents.
+     */
+    private DocumentReference[] references;
+
+    /**
+     * Create the document cache and fill it, each document having an entry with and without extensions.
+     *
+     * @throws Exception if the cache can't be created
+     */
+    @Setup
+    @SuppressWarnings("unchecked")
+    public void setUp() throws Exception
+    {
+        BenchmarkComponentManager componentManager = new BenchmarkComponentManager(this.provider);
+
+        this.cache = componentManager.getInstance(DocumentCache.class);
+        CacheConfiguration configuration = new CacheConfiguration();
+        configuration.setConfigurationId("benchmark.documentcache");
+        LRUEvictionConfiguration lru = new LRUEvictionConfiguration();
+        lru.setMaxEntries(this.documents * 2);
+        configuration.put(LRUEvictionConfiguration.CONFIGURATIONID, lru);
+        this.cache.create(configuration);
+
+        this.references = new DocumentReference[this.documents];
+        for (int i = 0; i < this.references.length; ++i) {
+            this.references[i] = new DocumentReference("xwiki", "Space" + (i % 100), "Page" + i);
+            this.cache.set("content" + i, this.references[i]);
+            this.cache.set("rendered" + i, this.references[i], ACTION, "xwiki/2.1", null);
+        }
+    }
+
+    /**
+     * Release the cache.
+     */
+    @TearDown
+    public void tearDown()
+    {
+        this.cache.dispose();
+    }
+
+    /**
+     * Lookup by document reference only.
+     *
+     * @param random the random generator of the current thread
+     * @return the cached value
+     */
+    @Benchmark
+    @Threads(Threads.MAX)
+    public String get(ThreadRandom random)
+    {
+        return this.cache.get(this.references[random.nextInt(this.references.length)]);
+    }
+
+    /**
+     * Lookup by document reference and extensions, which need to be escaped in the key.
+     *
+     * @param random the random generator of the current thread
+     * @return the cached value
+     */
+    @Benchmark
+    @Threads(Threads.MAX)
+    public String getWithExtensions(ThreadRandom random)
+    {
+        return this.cache.get(this.references[random.nextInt(this.references.length)], ACTION, "xwiki/2.1", null);
+    }
+}
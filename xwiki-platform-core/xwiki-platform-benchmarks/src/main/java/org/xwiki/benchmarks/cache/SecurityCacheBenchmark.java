@@ -0,0 +1,277 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.benchmarks.cache;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.xwiki.benchmarks.BenchmarkComponentManager;
+import org.xwiki.benchmarks.ThreadRandom;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.model.reference.SpaceReference;
+import org.xwiki.model.reference.WikiReference;
+import org.xwiki.security.GroupSecurityReference;
+import org.xwiki.security.SecurityReference;
+import org.xwiki.security.SecurityReferenceFactory;
+import org.xwiki.security.UserSecurityReference;
+import org.xwiki.security.authorization.SecurityAccess;
+import org.xwiki.security.authorization.SecurityAccessEntry;
+import org.xwiki.security.authorization.SecurityRule;
+import org.xwiki.security.authorization.SecurityRuleEntry;
+import org.xwiki.security.authorization.cache.SecurityCache;
+import org.xwiki.security.authorization.internal.AbstractSecurityAccessEntry;
+import org.xwiki.security.authorization.internal.AbstractSecurityRuleEntry;
+import org.xwiki.security.authorization.internal.XWikiSecurityAccess;
+import org.xwiki.security.internal.XWikiBridge;
+
+/**
+ * Lookups of the rules and access entries of the security cache, as done by the authorization manager for each right
+ * check.
+ *
+ * @version $Id$
+ * @since 4.4M1
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SecurityCacheBenchmark
+{
+    /**
+     * The main wiki of the benchmark.
+     */
+    private static final WikiReference WIKI = new WikiReference("xwiki");
+
+    /**
+     * Number of spaces holding the documents.
+     */
+    private static final int SPACE_COUNT = 5;
+
+    /**
+     * Number of users having access entries in the cache.
+     */
+    private static final int USER_COUNT = 2;
+
+    /**
+     * Bridge giving the main wiki without needing a running XWiki instance.
+     */
+    private static class BenchmarkBridge implements XWikiBridge
+    {
+        @Override
+        public WikiReference getMainWikiReference()
+        {
+            return WIKI;
+        }
+
+        @Override
+        public boolean isWikiReadOnly()
+        {
+            return false;
+        }
+
+        @Override
+        public boolean isWikiOwner(UserSecurityReference user, WikiReference wikiReference)
+        {
+            return false;
+        }
+    }
+
+    /**
+     * Rule entry without any rule.
+     */
+    private static class EmptyRuleEntry extends AbstractSecurityRuleEntry
+    {
+        /**
+         * The entity of the rules.
+         */
+        private final SecurityReference reference;
+
+        /**
+         * @param reference the entity of the rules
+         */
+        EmptyRuleEntry(SecurityReference reference)
+        {
+            this.reference = reference;
+        }
+
+        @Override
+        public SecurityReference getReference()
+        {
+            return this.reference;
+        }
+
+        @Override
+        public Collection<SecurityRule> getRules()
+        {
+            return Collections.emptyList();
+        }
+    }
+
+    /**
+     * Access entry granting the default access.
+     */
+    private static class DefaultAccessEntry extends AbstractSecurityAccessEntry
+    {
+        /**
+         * The user.
+         */
+        private final UserSecurityReference user;
+
+        /**
+         * The entity.
+         */
+        private final SecurityReference reference;
+
+        /**
+         * @param user the user
+         * @param reference the entity
+         */
+        DefaultAccessEntry(UserSecurityReference user, SecurityReference reference)
+        {
+            this.user = user;
+            this.reference = reference;
+        }
+
+        @Override
+        public UserSecurityReference getUserReference()
+        {
+            return this.user;
+        }
+
+        @Override
+        public SecurityReference getReference()
+        {
+            return this.reference;
+        }
+
+        @Override
+        public SecurityAccess getAccess()
+        {
+            return XWikiSecurityAccess.getDefaultAccess();
+        }
+    }
+
+    /**
+     * The number of cached documents, the total number of entries must stay below the capacity of the cache.
+     */
+    @Param({"100"})
+    int documents;
+
+    /**
+     * The hint of the cache provider used by the security cache.
+     */
+    @Param({"infinispan/local", "tinylfu/local"})
+    String provider;
+
+    /**
+     * The benchmarked cache.
+     */
+    private SecurityCache cache;
+
+    /**
+     * The cached documents.
+     */
+    private SecurityReference[] entities;
+
+    /**
+     * The users having an access entry for each cached document.
+     */
+    private UserSecurityReference[] users;
+
+    /**
+     * Create the security cache and fill it with the rules of a wiki, its spaces, some users and documents, and the
+     * access of the users to the documents.
+     *
+     * @throws Exception if the cache can't be created or filled
+     */
+    @Setup
+    public void setUp() throws Exception
+    {
+        BenchmarkComponentManager componentManager = new BenchmarkComponentManager(this.provider);
+        componentManager.registerComponent(XWikiBridge.class, new BenchmarkBridge());
+
+        SecurityReferenceFactory factory = componentManager.getInstance(SecurityReferenceFactory.class);
+        this.cache = componentManager.getInstance(SecurityCache.class);
+
+        this.cache.add(new EmptyRuleEntry(factory.newEntityReference(WIKI)));
+        this.cache.add(new EmptyRuleEntry(factory.newEntityReference(new SpaceReference("XWiki", WIKI))));
+        for (int i = 0; i < SPACE_COUNT; ++i) {
+            this.cache.add(new EmptyRuleEntry(factory.newEntityReference(new SpaceReference("Space" + i, WIKI))));
+        }
+
+        this.users = new UserSecurityReference[USER_COUNT];
+        for (int i = 0; i < this.users.length; ++i) {
+            this.users[i] = factory.newUserReference(new DocumentReference("xwiki", "XWiki", "User" + i));
+            this.cache.add(new EmptyRuleEntry(this.users[i]), Collections.<GroupSecurityReference> emptyList());
+        }
+
+        this.entities = new SecurityReference[this.documents];
+        for (int i = 0; i < this.entities.length; ++i) {
+            this.entities[i] = factory.newEntityReference(new DocumentReference("xwiki", "Space" + (i % SPACE_COUNT),
+                "Page" + i));
+            this.cache.add(new EmptyRuleEntry(this.entities[i]));
+            for (UserSecurityReference user : this.users) {
+                this.cache.add(new DefaultAccessEntry(user, this.entities[i]));
+            }
+        }
+    }
+
+    /**
+     * Lookup of the rules of a document.
+     *
+     * @param random the random generator of the current thread
+     * @return the rules
+     */
+    @Benchmark
+    @Threads(Threads.MAX)
+    public SecurityRuleEntry getRuleEntry(ThreadRandom random)
+    {
+        return this.cache.get(this.entities[random.nextInt(this.entities.length)]);
+    }
+
+    /**
+     * Lookup of the access of a user to a document, the first thing done when checking a right.
+     *
+     * @param random the random generator of the current thread
+     * @return the access
+     */
+    @Benchmark
+    @Threads(Threads.MAX)
+    public SecurityAccessEntry getAccessEntry(ThreadRandom random)
+    {
+        return this.cache.get(this.users[random.nextInt(this.users.length)],
+            this.entities[random.nextInt(this.entities.length)]);
+    }
+}
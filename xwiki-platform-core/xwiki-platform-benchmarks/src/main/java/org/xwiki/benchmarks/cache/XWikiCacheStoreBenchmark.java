@@ -0,0 +1,147 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.benchmarks.cache;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.xwiki.benchmarks.BenchmarkComponentManager;
+import org.xwiki.benchmarks.ThreadRandom;
+import org.xwiki.context.Execution;
+import org.xwiki.model.reference.DocumentReference;
+
+import com.xpn.xwiki.XWikiContext;
+import com.xpn.xwiki.XWikiException;
+import com.xpn.xwiki.doc.XWikiDocument;
+import com.xpn.xwiki.store.XWikiCacheStore;
+import com.xpn.xwiki.web.Utils;
+
+/**
+ * Loading documents which are in the document cache of the store, which is what most of the
+ * {@code XWiki#getDocument()} calls end up doing.
+ *
+ * @version $Id$
+ * @since 4.4M1
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class XWikiCacheStoreBenchmark
+{
+    /**
+     * The number of cached documents, which is also the capacity of the document cache.
+     */
+    @Param({"100"})
+    int documents;
+
+    /**
+     * The hint of the cache provider used by the store.
+     */
+    @Param({"infinispan/local", "tinylfu/local"})
+    String provider;
+
+    /**
+     * The benchmarked store, without any persistent store behind it: all the documents have to be in the cache.
+     */
+    private XWikiCacheStore store;
+
+    /**
+     * The context passed to the store.
+     */
+    private XWikiContext context;
+
+    /**
+     * The documents to load, as created by {@code XWiki#getDocument()} before calling the store.
+     */
+    private XWikiDocument[] documentsToLoad;
+
+    /**
+     * Create the store and put the documents in its cache.
+     *
+     * @throws Exception if the store can't be created
+     */
+    @Setup
+    public void setUp() throws Exception
+    {
+        BenchmarkComponentManager componentManager = new BenchmarkComponentManager(this.provider);
+        Utils.setComponentManager(componentManager);
+
+        this.context = new XWikiContext();
+        this.context.setDatabase("xwiki");
+        this.context.setMainXWiki("xwiki");
+        componentManager.<Execution> getInstance(Execution.class).getContext()
+            .setProperty("xwikicontext", this.context);
+
+        this.store = new XWikiCacheStore(null, this.context);
+        this.store.initCache(this.documents, this.documents * 10, this.context);
+
+        this.documentsToLoad = new XWikiDocument[this.documents];
+        for (int i = 0; i < this.documentsToLoad.length; ++i) {
+            DocumentReference reference = new DocumentReference("xwiki", "Space" + (i % 10), "Page" + i);
+            XWikiDocument document = new XWikiDocument(reference);
+            document.setContent("Content of page " + i);
+            document.setNew(false);
+            this.store.getCache().set(document.getKey(), document);
+
+            this.documentsToLoad[i] = new XWikiDocument(reference);
+        }
+    }
+
+    /**
+     * Release the caches.
+     */
+    @TearDown
+    public void tearDown()
+    {
+        this.store.getCache().dispose();
+        this.store.getPageExistCache().dispose();
+        Utils.setComponentManager(null);
+    }
+
+    /**
+     * Load a document from the cache, including the computation of its key.
+     *
+     * @param random the random generator of the current thread
+     * @return the cached document
+     * @throws XWikiException if the document is not in the cache
+     */
+    @Benchmark
+    @Threads(Threads.MAX)
+    public XWikiDocument loadHit(ThreadRandom random) throws XWikiException
+    {
+        return this.store.loadXWikiDoc(this.documentsToLoad[random.nextInt(this.documentsToLoad.length)],
+            this.context);
+    }
+}
@@ -0,0 +1,181 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.benchmarks.document;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.xwiki.benchmarks.BenchmarkComponentManager;
+import org.xwiki.context.Execution;
+import org.xwiki.model.reference.DocumentReference;
+
+import com.xpn.xwiki.XWikiContext;
+import com.xpn.xwiki.api.Attachment;
+import com.xpn.xwiki.api.Document;
+import com.xpn.xwiki.api.Object;
+import com.xpn.xwiki.api.Property;
+import com.xpn.xwiki.doc.XWikiAttachment;
+import com.xpn.xwiki.doc.XWikiDocument;
+import com.xpn.xwiki.objects.BaseObject;
+import com.xpn.xwiki.web.Utils;
+
+/**
+ * Reading the objects and attachments of a cached document through the document API, like the view templates and
+ * the REST GET resources do. The document API copies the shared document only when it is modified, so reading it
+ * should allocate only the API wrappers; {@link #readClone()} reads the same document after cloning it, which is
+ * what every read used to cost. Run with {@code -prof gc} to compare the allocation rates.
+ *
+ * @version $Id$
+ * @since 4.4M1
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DocumentApiBenchmark
+{
+    /**
+     * The class of the objects of the document.
+     */
+    private static final String CLASS_NAME = "Space.BenchmarkClass";
+
+    /**
+     * The number of objects of the document.
+     */
+    @Param({"10", "100"})
+    int objects;
+
+    /**
+     * The number of attachments of the document.
+     */
+    @Param({"10"})
+    int attachments;
+
+    /**
+     * The context passed to the document API.
+     */
+    private XWikiContext context;
+
+    /**
+     * The document shared by the benchmark threads, as it would be in the document cache.
+     */
+    private XWikiDocument document;
+
+    /**
+     * Create the shared document.
+     *
+     * @throws Exception if the components can't be initialized
+     */
+    @Setup
+    public void setUp() throws Exception
+    {
+        BenchmarkComponentManager componentManager = new BenchmarkComponentManager("tinylfu/local");
+        Utils.setComponentManager(componentManager);
+
+        this.context = new XWikiContext();
+        this.context.setDatabase("xwiki");
+        this.context.setMainXWiki("xwiki");
+        componentManager.<Execution> getInstance(Execution.class).getContext()
+            .setProperty("xwikicontext", this.context);
+
+        this.document = new XWikiDocument(new DocumentReference("xwiki", "Space", "Page"));
+        this.document.setContent("Content of the page");
+        this.document.setNew(false);
+
+        DocumentReference classReference = new DocumentReference("xwiki", "Space", "BenchmarkClass");
+        for (int i = 0; i < this.objects; ++i) {
+            BaseObject object = new BaseObject();
+            object.setXClassReference(classReference);
+            object.setStringValue("title", "Title " + i);
+            object.setIntValue("index", i);
+            this.document.addXObject(object);
+        }
+
+        for (int i = 0; i < this.attachments; ++i) {
+            this.document.getAttachmentList().add(new XWikiAttachment(this.document, "file" + i + ".txt"));
+        }
+    }
+
+    /**
+     * Release the components.
+     */
+    @TearDown
+    public void tearDown()
+    {
+        Utils.setComponentManager(null);
+    }
+
+    /**
+     * Read the shared document through a new document API, which is what a read-only request does.
+     *
+     * @return a value computed from what has been read, so that the reads are not eliminated
+     */
+    @Benchmark
+    @Threads(Threads.MAX)
+    public int read()
+    {
+        return read(new Document(this.document, this.context));
+    }
+
+    /**
+     * Read a clone of the shared document, which is what a read-only request did before the document API copied the
+     * document on the first write only.
+     *
+     * @return a value computed from what has been read, so that the reads are not eliminated
+     */
+    @Benchmark
+    @Threads(Threads.MAX)
+    public int readClone()
+    {
+        return read(new Document(this.document.clone(), this.context));
+    }
+
+    /**
+     * @param document the document API to read
+     * @return a value computed from what has been read
+     */
+    private int read(Document document)
+    {
+        int result = 0;
+        for (Object object : document.getObjects(CLASS_NAME)) {
+            Property title = object.getProperty("title");
+            result += title.getValue().hashCode();
+        }
+        for (Attachment attachment : document.getAttachmentList()) {
+            result += attachment.getFilename().length();
+        }
+
+        return result;
+    }
+}
@@ -0,0 +1,166 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.bridge;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.Set;
+
+import org.xwiki.model.reference.DocumentReference;
+
+/**
+ * Records the documents (including the documents holding XClasses) read while rendering content, so that the caches
+ * holding rendering results (the core rendering cache, the cache macro) can invalidate them when any of these documents
+ * is modified. The recorder is stored in the XWiki context.
+ * <p>
+ * Renderings can be nested (a document including another one), so the recorder keeps a stack of renderings in
+ * progress: the documents read are associated to the innermost rendering and are added to the enclosing rendering once
+ * the innermost one is finished.
+ *
+ * @version $Id$
+ * @since 4.4M1
+ */
+public class RenderingDependencyRecorder
+{
+    /**
+     * The key of the recorder in the XWiki context.
+     */
+    private static final String CONTEXT_KEY = "renderingcache.dependencies";
+
+    /**
+     * A rendering in progress.
+     */
+    private static class Rendering
+    {
+        /**
+         * Identify the rendering.
+         */
+        private final String key;
+
+        /**
+         * The documents read during the rendering.
+         */
+        private final Set<DocumentReference> dependencies = new HashSet<DocumentReference>();
+
+        /**
+         * @param key identify the rendering
+         */
+        Rendering(String key)
+        {
+            this.key = key;
+        }
+    }
+
+    /**
+     * The renderings in progress, the innermost first.
+     */
+    private final LinkedList<Rendering> renderings = new LinkedList<Rendering>();
+
+    /**
+     * @param context the XWiki context
+     * @return the recorder associated to the context, a new one if none exists yet
+     */
+    public static RenderingDependencyRecorder getRecorder(Map<Object, Object> context)
+    {
+        RenderingDependencyRecorder recorder = (RenderingDependencyRecorder) context.get(CONTEXT_KEY);
+        if (recorder == null) {
+            recorder = new RenderingDependencyRecorder();
+            context.put(CONTEXT_KEY, recorder);
+        }
+
+        return recorder;
+    }
+
+    /**
+     * Indicate that a document has been read. Does nothing if no rendering is being recorded.
+     *
+     * @param documentReference the reference of the document read
+     * @param context the XWiki context
+     */
+    public static void record(DocumentReference documentReference, Map<Object, Object> context)
+    {
+        RenderingDependencyRecorder recorder = (RenderingDependencyRecorder) context.get(CONTEXT_KEY);
+        if (recorder != null && documentReference != null) {
+            recorder.add(documentReference);
+        }
+    }
+
+    /**
+     * Start recording the documents read during a rendering.
+     *
+     * @param key identify the rendering
+     */
+    public synchronized void start(String key)
+    {
+        this.renderings.addFirst(new Rendering(key));
+    }
+
+    /**
+     * @param documentReference the reference of a document read during the current rendering
+     */
+    public synchronized void add(DocumentReference documentReference)
+    {
+        if (!this.renderings.isEmpty()) {
+            this.renderings.getFirst().dependencies.add(documentReference);
+        }
+    }
+
+    /**
+     * @param documentReferences the references of documents read during the current rendering, for example by a
+     *            nested rendering whose result was taken from the cache
+     */
+    public synchronized void addAll(Collection<DocumentReference> documentReferences)
+    {
+        if (!this.renderings.isEmpty()) {
+            this.renderings.getFirst().dependencies.addAll(documentReferences);
+        }
+    }
+
+    /**
+     * Stop recording the documents read during a rendering. The renderings started after this one and not stopped
+     * (because they failed) are stopped too and their documents are associated to this rendering.
+     *
+     * @param key identify the rendering
+     * @return the documents read during the rendering, {@code null} if the rendering has not been started
+     */
+    public synchronized Set<DocumentReference> stop(String key)
+    {
+        int index = 0;
+        for (Iterator<Rendering> it = this.renderings.iterator(); it.hasNext() && !it.next().key.equals(key);) {
+            ++index;
+        }
+        if (index == this.renderings.size()) {
+            return null;
+        }
+
+        Set<DocumentReference> dependencies = new HashSet<DocumentReference>();
+        for (int i = 0; i <= index; ++i) {
+            dependencies.addAll(this.renderings.removeFirst().dependencies);
+        }
+
+        // The enclosing rendering depends on the same documents.
+        addAll(dependencies);
+
+        return dependencies;
+    }
+}
@@ -19,6 +19,9 @@
  */
 package org.xwiki.cache;
 
+import java.util.Collection;
+import java.util.Map;
+
 import org.xwiki.cache.event.CacheEntryListener;
 
 /**
@@ -51,6 +54,35 @@
      */
     T get(String key);
 
+    /**
+     * Get the value associated with the provided key, computing it with the provided loader and storing it in the cache
+     * if there is no value yet. When several threads ask for the same missing key at the same time, the value is only
+     * computed once and all the threads get it.
+     * 
+     * @param key the key used to access the value in the cache.
+     * @param loader used to compute the value if the cache does not contain it.
+     * @return the value associated with the provided key, or null if there is no value and the loader returned null.
+     * @throws CacheException when the loader failed to compute the value.
+     * @since 4.4M1
+     */
+    T computeIfAbsent(String key, CacheLoader<T> loader) throws CacheException;
+
+    /**
+     * @param keys the keys used to access the values in the cache.
+     * @return the values associated with the provided keys, the keys without value are not part of the returned map.
+     * @since 4.4M1
+     */
+    Map<String, T> getAll(Collection<String> keys);
+
+    /**
+     * Add new values or overwrite the existing ones associated with the provided keys.
+     * 
+     * @param entries the values to store in the cache, indexed by key.
+     * @see #set(String, Object)
+     * @since 4.4M1
+     */
+    void setAll(Map<String, ? extends T> entries);
+
     /**
      * Remove the entry associated with the provided key from the cache.
      * <p>
@@ -83,6 +115,12 @@
      */
     void removeCacheEntryListener(CacheEntryListener<T> listener);
 
+    /**
+     * @return statistics about the use of this cache
+     * @since 4.4M1
+     */
+    CacheStatistics getStatistics();
+
     /**
      * Release all the resources this cache use.
      */
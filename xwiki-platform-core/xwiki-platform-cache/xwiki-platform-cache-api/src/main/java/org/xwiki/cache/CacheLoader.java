@@ -0,0 +1,38 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.cache;
+
+/**
+ * Compute the value to store in a {@link Cache} when no value is associated with a key.
+ * 
+ * @param <T> the class of the data stored in the cache.
+ * @version $Id$
+ * @since 4.4M1
+ * @see Cache#computeIfAbsent(String, CacheLoader)
+ */
+public interface CacheLoader<T>
+{
+    /**
+     * @param key the key with which the value will be associated in the cache
+     * @return the value to store in the cache, null if no value should be stored
+     * @throws Exception when failing to compute the value
+     */
+    T load(String key) throws Exception;
+}
@@ -38,4 +38,12 @@
      * @return the role hint of configured default local cache component.
      */
     String getDefaultLocalCache();
+
+    /**
+     * @param configurationId the identifier of the configuration of the cache to create
+     * @return the role hint of the cache component to use for the caches created with the provided configuration
+     *         identifier, null to use the default cache component
+     * @since 4.4M1
+     */
+    String getCache(String configurationId);
 }
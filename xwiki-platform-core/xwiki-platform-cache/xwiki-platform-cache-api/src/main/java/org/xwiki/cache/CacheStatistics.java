@@ -0,0 +1,69 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.cache;
+
+/**
+ * Statistics about the use of a {@link Cache} since its creation.
+ * 
+ * @version $Id$
+ * @since 4.4M1
+ */
+public interface CacheStatistics
+{
+    /**
+     * @return the number of times a value was found in the cache
+     */
+    long getHitCount();
+
+    /**
+     * @return the number of times no value was found in the cache
+     */
+    long getMissCount();
+
+    /**
+     * @return the ratio of lookups which found a value in the cache, between 0 and 1 (0 if the cache was never used)
+     */
+    double getHitRatio();
+
+    /**
+     * @return the number of values successfully computed by a {@link CacheLoader}
+     */
+    long getLoadCount();
+
+    /**
+     * @return the number of times a {@link CacheLoader} failed to compute a value
+     */
+    long getLoadFailureCount();
+
+    /**
+     * @return the total time spent computing values with {@link CacheLoader}s, in nanoseconds
+     */
+    long getTotalLoadTime();
+
+    /**
+     * @return the number of entries removed by the cache itself to make room for new entries or because they expired
+     */
+    long getEvictionCount();
+
+    /**
+     * @return the current number of entries in the cache, -1 if the cache implementation can't tell
+     */
+    long getSize();
+}
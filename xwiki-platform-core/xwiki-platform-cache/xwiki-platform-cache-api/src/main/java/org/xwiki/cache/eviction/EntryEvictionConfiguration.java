@@ -47,6 +47,13 @@ public class EntryEvictionConfiguration extends HashMap<String, Object>
      */
     public static final String TIMETOLIVE_ID = "timetolive";
 
+    /**
+     * The key used to access maximum idle duration in the {@link EntryEvictionConfiguration}.
+     * 
+     * @since 4.4M1
+     */
+    public static final String MAXIDLE_ID = "maxidle";
+
     /**
      * The ordering/storing algorithm used by the cache.
      * 
@@ -106,4 +113,26 @@ public int getTimeToLive()
 
         return obj == null ? 0 : (Integer) get(TIMETOLIVE_ID);
     }
+
+    /**
+     * Not supported by all cache implementations.
+     * 
+     * @param maxIdle the maximum time in seconds a cache entry can stay in the cache without being accessed.
+     * @since 4.4M1
+     */
+    public void setMaxIdle(int maxIdle)
+    {
+        put(MAXIDLE_ID, maxIdle);
+    }
+
+    /**
+     * @return the maximum time in seconds a cache entry can stay in the cache without being accessed.
+     * @since 4.4M1
+     */
+    public int getMaxIdle()
+    {
+        Object obj = get(MAXIDLE_ID);
+
+        return obj == null ? 0 : (Integer) obj;
+    }
 }
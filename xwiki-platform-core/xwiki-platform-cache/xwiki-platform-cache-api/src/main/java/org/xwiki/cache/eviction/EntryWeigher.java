@@ -0,0 +1,40 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.cache.eviction;
+
+/**
+ * Compute the weight of a cache entry, used by caches bounded by the total weight of their entries.
+ * 
+ * @param <T> the class of the data stored in the cache.
+ * @version $Id$
+ * @since 4.4M1
+ * @see LRUEvictionConfiguration#setMaxWeight(long, EntryWeigher)
+ */
+public interface EntryWeigher<T>
+{
+    /**
+     * The weight of an entry is computed when it is stored in the cache and should not change after that.
+     * 
+     * @param key the key of the entry
+     * @param value the value of the entry
+     * @return the weight of the entry, must not be negative
+     */
+    int weigh(String key, T value);
+}
@@ -32,6 +32,20 @@ public class LRUEvictionConfiguration extends EntryEvictionConfiguration
      */
     public static final String MAXENTRIES_ID = "maxentries";
 
+    /**
+     * The key to access the maximum total weight of the entries the cache can contain.
+     * 
+     * @since 4.4M1
+     */
+    public static final String MAXWEIGHT_ID = "maxweight";
+
+    /**
+     * The key to access the {@link EntryWeigher} used to compute the weight of the entries.
+     * 
+     * @since 4.4M1
+     */
+    public static final String WEIGHER_ID = "weigher";
+
     /**
      * Create a new EntryEvictionConfiguration based on LRU algorithm.
      */
@@ -70,4 +84,39 @@ public int getMaxEntries()
 
         return obj == null ? 0 : (Integer) get(MAXENTRIES_ID);
     }
+
+    /**
+     * Bound the cache by the total weight of its entries instead of their number. Not supported by all cache
+     * implementations, the ones which don't support it only use the maximum number of entries.
+     * 
+     * @param maxWeight the maximum total weight of the entries the cache can contain.
+     * @param weigher used to compute the weight of the entries, for example their estimated size in bytes.
+     * @since 4.4M1
+     */
+    public void setMaxWeight(long maxWeight, EntryWeigher< ? > weigher)
+    {
+        put(MAXWEIGHT_ID, maxWeight);
+        put(WEIGHER_ID, weigher);
+    }
+
+    /**
+     * @return the maximum total weight of the entries the cache can contain, 0 if the cache is not bounded by weight.
+     * @since 4.4M1
+     */
+    public long getMaxWeight()
+    {
+        Object obj = get(MAXWEIGHT_ID);
+
+        return obj == null ? 0 : ((Number) obj).longValue();
+    }
+
+    /**
+     * @return the {@link EntryWeigher} used to compute the weight of the entries, null if the cache is not bounded by
+     *         weight.
+     * @since 4.4M1
+     */
+    public EntryWeigher< ? > getWeigher()
+    {
+        return (EntryWeigher< ? >) get(WEIGHER_ID);
+    }
 }
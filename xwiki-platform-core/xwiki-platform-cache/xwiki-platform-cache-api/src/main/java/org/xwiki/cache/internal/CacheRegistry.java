@@ -0,0 +1,58 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.cache.internal;
+
+import java.util.Map;
+
+import org.xwiki.cache.Cache;
+import org.xwiki.cache.CacheStatistics;
+import org.xwiki.component.annotation.Role;
+
+/**
+ * Keep track of the caches created through the {@link org.xwiki.cache.CacheManager} in order to expose their
+ * statistics.
+ * 
+ * @version $Id$
+ * @since 4.4M1
+ */
+@Role
+public interface CacheRegistry
+{
+    /**
+     * Register a new cache. The registry does not prevent the cache from being garbage collected.
+     * 
+     * @param id the identifier of the cache, usually the configuration identifier; a unique identifier is generated
+     *            when {@code null} or already used
+     * @param cache the cache
+     * @return the identifier under which the cache has been registered
+     */
+    String register(String id, Cache< ? > cache);
+
+    /**
+     * @return the statistics of the registered caches, indexed by cache identifier
+     */
+    Map<String, CacheStatistics> getStatistics();
+
+    /**
+     * @param id the identifier of the cache
+     * @return the statistics of the cache, {@code null} if there is no cache registered with this identifier
+     */
+    CacheStatistics getStatistics(String id);
+}
@@ -19,8 +19,16 @@
  */
 package org.xwiki.cache.internal;
 
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+
 import org.xwiki.cache.Cache;
+import org.xwiki.cache.CacheException;
+import org.xwiki.cache.CacheLoader;
+import org.xwiki.cache.CacheStatistics;
 import org.xwiki.cache.event.CacheEntryListener;
+import org.xwiki.cache.util.DefaultCacheStatistics;
 
 /**
  * Default implementation of {@link Cache}. Does not really store anything and always return null when trying to get a
@@ -31,6 +39,18 @@
  */
 public class DefaultCache<T> implements Cache<T>
 {
+    /**
+     * @see #getStatistics()
+     */
+    private final DefaultCacheStatistics statistics = new DefaultCacheStatistics()
+    {
+        @Override
+        public long getSize()
+        {
+            return 0;
+        }
+    };
+
     @Override
     public void remove(String key)
     {
@@ -46,9 +66,41 @@ public void set(String key, T obj)
     @Override
     public T get(String key)
     {
+        this.statistics.recordGet(false);
+
         return null;
     }
 
+    @Override
+    public T computeIfAbsent(String key, CacheLoader<T> loader) throws CacheException
+    {
+        this.statistics.recordGet(false);
+
+        long start = System.nanoTime();
+        try {
+            T value = loader.load(key);
+            this.statistics.recordLoad(true, System.nanoTime() - start);
+
+            return value;
+        } catch (Exception e) {
+            this.statistics.recordLoad(false, System.nanoTime() - start);
+
+            throw new CacheException("Failed to load the value of key [" + key + "]", e);
+        }
+    }
+
+    @Override
+    public Map<String, T> getAll(Collection<String> keys)
+    {
+        return Collections.emptyMap();
+    }
+
+    @Override
+    public void setAll(Map<String, ? extends T> entries)
+    {
+
+    }
+
     @Override
     public void removeAll()
     {
@@ -67,6 +119,12 @@ public void removeCacheEntryListener(CacheEntryListener<T> listener)
 
     }
 
+    @Override
+    public CacheStatistics getStatistics()
+    {
+        return this.statistics;
+    }
+
     @Override
     public void dispose()
     {
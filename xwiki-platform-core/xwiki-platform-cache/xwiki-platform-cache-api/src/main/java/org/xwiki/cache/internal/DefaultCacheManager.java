@@ -55,6 +55,12 @@ public class DefaultCacheManager implements CacheManager
     @Inject
     private CacheManagerConfiguration configuration;
 
+    /**
+     * Keep track of the created caches to expose their statistics.
+     */
+    @Inject
+    private CacheRegistry registry;
+
     @Override
     public CacheFactory getCacheFactory() throws ComponentLookupException
     {
@@ -82,13 +88,30 @@ public CacheFactory getCacheFactory(String cacheHint) throws ComponentLookupExce
     @Override
     public <T> Cache<T> createNewCache(CacheConfiguration config) throws CacheException
     {
-        return createNewCache(config, this.configuration.getDefaultCache());
+        return createNewCache(config, getCacheHint(config, this.configuration.getDefaultCache()));
     }
 
     @Override
     public <T> Cache<T> createNewLocalCache(CacheConfiguration config) throws CacheException
     {
-        return createNewCache(config, this.configuration.getDefaultLocalCache());
+        return createNewCache(config, getCacheHint(config, this.configuration.getDefaultLocalCache()));
+    }
+
+    /**
+     * @param config the cache configuration
+     * @param defaultHint the role hint to use when no specific cache component is configured for this configuration
+     * @return the role hint of the cache component to use to create the cache
+     */
+    private String getCacheHint(CacheConfiguration config, String defaultHint)
+    {
+        if (config.getConfigurationId() != null) {
+            String hint = this.configuration.getCache(config.getConfigurationId());
+            if (hint != null) {
+                return hint;
+            }
+        }
+
+        return defaultHint;
     }
 
     /**
@@ -109,6 +132,10 @@ public <T> Cache<T> createNewCache(CacheConfiguration config, String cacheHint)
             throw new CacheException("Failed to get cache factory for role hint [" + cacheHint + "]", e);
         }
 
-        return cacheFactory.newCache(config);
+        Cache<T> cache = cacheFactory.newCache(config);
+
+        this.registry.register(config.getConfigurationId(), cache);
+
+        return cache;
     }
 }
@@ -73,4 +73,10 @@ public String getDefaultLocalCache()
     {
         return this.configuration.getProperty(PREFIX + "defaultLocalCache", DEFAULT_LOCALCACHE_HINT);
     }
+
+    @Override
+    public String getCache(String configurationId)
+    {
+        return this.configuration.getProperty(PREFIX + "provider." + configurationId, String.class);
+    }
 }
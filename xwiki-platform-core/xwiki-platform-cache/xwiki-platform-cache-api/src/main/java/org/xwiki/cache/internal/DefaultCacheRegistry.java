@@ -0,0 +1,150 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.cache.internal;
+
+import java.lang.management.ManagementFactory;
+import java.lang.ref.WeakReference;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.slf4j.Logger;
+import org.xwiki.cache.Cache;
+import org.xwiki.cache.CacheStatistics;
+import org.xwiki.component.annotation.Component;
+
+/**
+ * Default implementation of {@link CacheRegistry}. Each registered cache is also registered against the platform JMX
+ * server with a name like {@code org.xwiki:type=Cache,name="<id>"}.
+ * 
+ * @version $Id$
+ * @since 4.4M1
+ */
+@Component
+@Singleton
+public class DefaultCacheRegistry implements CacheRegistry
+{
+    /**
+     * The prefix of the identifiers generated for the caches without configuration identifier.
+     */
+    private static final String ANONYMOUS_PREFIX = "anonymous-";
+
+    /**
+     * The logger.
+     */
+    @Inject
+    private Logger logger;
+
+    /**
+     * The registered caches.
+     */
+    private final ConcurrentMap<String, WeakReference<Cache< ? >>> caches =
+        new ConcurrentHashMap<String, WeakReference<Cache< ? >>>();
+
+    /**
+     * Used to generate unique identifiers.
+     */
+    private final AtomicInteger counter = new AtomicInteger();
+
+    @Override
+    public String register(String id, Cache< ? > cache)
+    {
+        purge();
+
+        WeakReference<Cache< ? >> reference = new WeakReference<Cache< ? >>(cache);
+
+        String cacheId = id != null ? id : ANONYMOUS_PREFIX + this.counter.incrementAndGet();
+        while (this.caches.putIfAbsent(cacheId, reference) != null) {
+            cacheId = (id != null ? id + '-' : ANONYMOUS_PREFIX) + this.counter.incrementAndGet();
+        }
+
+        try {
+            MBeanServer mbs = ManagementFactory.getPlatformMBeanServer();
+            mbs.registerMBean(new JMXCacheStatistics(cache), getObjectName(cacheId));
+        } catch (Exception e) {
+            this.logger.warn("Failed to register cache [{}] against the JMX Server", cacheId, e);
+        }
+
+        return cacheId;
+    }
+
+    @Override
+    public Map<String, CacheStatistics> getStatistics()
+    {
+        purge();
+
+        Map<String, CacheStatistics> statistics = new TreeMap<String, CacheStatistics>();
+        for (Map.Entry<String, WeakReference<Cache< ? >>> entry : this.caches.entrySet()) {
+            Cache< ? > cache = entry.getValue().get();
+            if (cache != null) {
+                statistics.put(entry.getKey(), cache.getStatistics());
+            }
+        }
+
+        return statistics;
+    }
+
+    @Override
+    public CacheStatistics getStatistics(String id)
+    {
+        WeakReference<Cache< ? >> reference = this.caches.get(id);
+        Cache< ? > cache = reference != null ? reference.get() : null;
+
+        return cache != null ? cache.getStatistics() : null;
+    }
+
+    /**
+     * Unregister the caches which have been garbage collected.
+     */
+    private void purge()
+    {
+        for (Iterator<Map.Entry<String, WeakReference<Cache< ? >>>> it = this.caches.entrySet().iterator(); it
+            .hasNext();) {
+            Map.Entry<String, WeakReference<Cache< ? >>> entry = it.next();
+            if (entry.getValue().get() == null) {
+                it.remove();
+
+                try {
+                    ManagementFactory.getPlatformMBeanServer().unregisterMBean(getObjectName(entry.getKey()));
+                } catch (Exception e) {
+                    this.logger.debug("Failed to unregister cache [{}] from the JMX Server", entry.getKey(), e);
+                }
+            }
+        }
+    }
+
+    /**
+     * @param id the identifier of the cache
+     * @return the JMX name of the cache
+     * @throws Exception when the name is invalid
+     */
+    private ObjectName getObjectName(String id) throws Exception
+    {
+        return new ObjectName("org.xwiki:type=Cache,name=" + ObjectName.quote(id));
+    }
+}
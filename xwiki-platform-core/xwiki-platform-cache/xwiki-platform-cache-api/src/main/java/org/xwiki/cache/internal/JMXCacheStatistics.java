@@ -0,0 +1,132 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.cache.internal;
+
+import java.lang.ref.WeakReference;
+
+import org.xwiki.cache.Cache;
+import org.xwiki.cache.CacheStatistics;
+
+/**
+ * Expose the statistics of a cache over JMX. Only keep a weak reference to the cache so that the MBean server does not
+ * prevent it from being garbage collected.
+ * 
+ * @version $Id$
+ * @since 4.4M1
+ */
+public class JMXCacheStatistics implements JMXCacheStatisticsMBean
+{
+    /**
+     * The number of nanoseconds in a millisecond.
+     */
+    private static final double NANOS_PER_MILLI = 1000000D;
+
+    /**
+     * The cache.
+     */
+    private final WeakReference<Cache< ? >> cache;
+
+    /**
+     * @param cache the cache
+     */
+    public JMXCacheStatistics(Cache< ? > cache)
+    {
+        this.cache = new WeakReference<Cache< ? >>(cache);
+    }
+
+    /**
+     * @return the statistics of the cache, {@code null} if it has been garbage collected
+     */
+    private CacheStatistics getStatistics()
+    {
+        Cache< ? > currentCache = this.cache.get();
+
+        return currentCache != null ? currentCache.getStatistics() : null;
+    }
+
+    @Override
+    public long getHitCount()
+    {
+        CacheStatistics statistics = getStatistics();
+
+        return statistics != null ? statistics.getHitCount() : 0;
+    }
+
+    @Override
+    public long getMissCount()
+    {
+        CacheStatistics statistics = getStatistics();
+
+        return statistics != null ? statistics.getMissCount() : 0;
+    }
+
+    @Override
+    public double getHitRatio()
+    {
+        CacheStatistics statistics = getStatistics();
+
+        return statistics != null ? statistics.getHitRatio() : 0;
+    }
+
+    @Override
+    public long getLoadCount()
+    {
+        CacheStatistics statistics = getStatistics();
+
+        return statistics != null ? statistics.getLoadCount() : 0;
+    }
+
+    @Override
+    public long getLoadFailureCount()
+    {
+        CacheStatistics statistics = getStatistics();
+
+        return statistics != null ? statistics.getLoadFailureCount() : 0;
+    }
+
+    @Override
+    public double getAverageLoadTime()
+    {
+        CacheStatistics statistics = getStatistics();
+        if (statistics == null) {
+            return 0;
+        }
+
+        long loads = statistics.getLoadCount() + statistics.getLoadFailureCount();
+
+        return loads > 0 ? statistics.getTotalLoadTime() / NANOS_PER_MILLI / loads : 0;
+    }
+
+    @Override
+    public long getEvictionCount()
+    {
+        CacheStatistics statistics = getStatistics();
+
+        return statistics != null ? statistics.getEvictionCount() : 0;
+    }
+
+    @Override
+    public long getSize()
+    {
+        CacheStatistics statistics = getStatistics();
+
+        return statistics != null ? statistics.getSize() : -1;
+    }
+}
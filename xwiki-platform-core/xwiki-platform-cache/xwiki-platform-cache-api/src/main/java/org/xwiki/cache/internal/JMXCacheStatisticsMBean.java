@@ -0,0 +1,69 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.cache.internal;
+
+/**
+ * Expose the statistics of a cache over JMX.
+ * 
+ * @version $Id$
+ * @since 4.4M1
+ */
+public interface JMXCacheStatisticsMBean
+{
+    /**
+     * @return the number of times a value was found in the cache
+     */
+    long getHitCount();
+
+    /**
+     * @return the number of times no value was found in the cache
+     */
+    long getMissCount();
+
+    /**
+     * @return the ratio of lookups which found a value in the cache
+     */
+    double getHitRatio();
+
+    /**
+     * @return the number of values computed by a loader
+     */
+    long getLoadCount();
+
+    /**
+     * @return the number of times a loader failed to compute a value
+     */
+    long getLoadFailureCount();
+
+    /**
+     * @return the average time spent computing a value, in milliseconds
+     */
+    double getAverageLoadTime();
+
+    /**
+     * @return the number of entries removed by the cache itself
+     */
+    long getEvictionCount();
+
+    /**
+     * @return the current number of entries in the cache, -1 if unknown
+     */
+    long getSize();
+}
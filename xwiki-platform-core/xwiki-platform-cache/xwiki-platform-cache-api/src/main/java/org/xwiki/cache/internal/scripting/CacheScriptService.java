@@ -0,0 +1,66 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.cache.internal.scripting;
+
+import java.util.Map;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import org.xwiki.cache.CacheStatistics;
+import org.xwiki.cache.internal.CacheRegistry;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.script.service.ScriptService;
+
+/**
+ * Provides Cache-specific Scripting APIs.
+ * 
+ * @version $Id$
+ * @since 4.4M1
+ */
+@Component
+@Named("cache")
+@Singleton
+public class CacheScriptService implements ScriptService
+{
+    /**
+     * Keep track of the existing caches.
+     */
+    @Inject
+    private CacheRegistry registry;
+
+    /**
+     * @return the statistics of the existing caches, indexed by cache identifier
+     */
+    public Map<String, CacheStatistics> getStatistics()
+    {
+        return this.registry.getStatistics();
+    }
+
+    /**
+     * @param id the identifier of the cache, usually its configuration identifier
+     * @return the statistics of the cache, {@code null} if there is no cache with this identifier
+     */
+    public CacheStatistics getStatistics(String id)
+    {
+        return this.registry.getStatistics(id);
+    }
+}
@@ -19,18 +19,31 @@
  */
 package org.xwiki.cache.util;
 
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
 import javax.swing.event.EventListenerList;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.xwiki.cache.Cache;
+import org.xwiki.cache.CacheException;
+import org.xwiki.cache.CacheLoader;
+import org.xwiki.cache.CacheStatistics;
 import org.xwiki.cache.DisposableCacheValue;
 import org.xwiki.cache.config.CacheConfiguration;
 import org.xwiki.cache.event.CacheEntryEvent;
 import org.xwiki.cache.event.CacheEntryListener;
 
 /**
- * Base class for {@link Cache} implementations. It provides events {@link DisposableCacheValue} management.
+ * Base class for {@link Cache} implementations. It provides events {@link DisposableCacheValue} management, values
+ * loading, bulk operations and statistics.
  * 
  * @param <T>
  * @version $Id$
@@ -52,6 +65,186 @@
      */
     protected final EventListenerList cacheEntryListeners = new EventListenerList();
 
+    /**
+     * The statistics about the use of this cache, to be updated by the implementations.
+     */
+    protected final DefaultCacheStatistics statistics = new DefaultCacheStatistics()
+    {
+        @Override
+        public long getSize()
+        {
+            return AbstractCache.this.getSize();
+        }
+    };
+
+    /**
+     * The values being computed by {@link #computeIfAbsent(String, CacheLoader)}, indexed by key.
+     */
+    private final ConcurrentMap<String, FutureTask<T>> loads = new ConcurrentHashMap<String, FutureTask<T>>();
+
+    /**
+     * Makes storing a loaded value and cancelling its load mutually exclusive, so that a value is never stored after
+     * its entry has been removed.
+     */
+    private final Object loadLock = new Object();
+
+    @Override
+    public T computeIfAbsent(final String key, final CacheLoader<T> loader) throws CacheException
+    {
+        T value = get(key);
+        if (value != null) {
+            return value;
+        }
+
+        FutureTask<T> load = this.loads.get(key);
+        boolean owner = false;
+        if (load == null) {
+            Load newLoad = new Load(key, loader);
+            load = this.loads.putIfAbsent(key, newLoad.task);
+            if (load == null) {
+                load = newLoad.task;
+                owner = true;
+            }
+        }
+
+        if (owner) {
+            // The value is computed in the calling thread, the other threads asking for the same key wait for it.
+            try {
+                load.run();
+            } finally {
+                this.loads.remove(key, load);
+            }
+        }
+
+        try {
+            return load.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CacheException("Interrupted while waiting for the value of key [" + key + "] to be loaded", e);
+        } catch (ExecutionException e) {
+            throw new CacheException("Failed to load the value of key [" + key + "]", e.getCause());
+        }
+    }
+
+    /**
+     * Compute a value and store it in the cache, unless the entry has been removed while it was computed.
+     */
+    private final class Load implements Callable<T>
+    {
+        /**
+         * The key of the value.
+         */
+        private final String key;
+
+        /**
+         * Used to compute the value.
+         */
+        private final CacheLoader<T> loader;
+
+        /**
+         * The task running this load.
+         */
+        private final FutureTask<T> task;
+
+        /**
+         * @param key the key of the value
+         * @param loader used to compute the value
+         */
+        Load(String key, CacheLoader<T> loader)
+        {
+            this.key = key;
+            this.loader = loader;
+            this.task = new FutureTask<T>(this);
+        }
+
+        @Override
+        public T call() throws Exception
+        {
+            long start = System.nanoTime();
+            T value;
+            try {
+                value = this.loader.load(this.key);
+            } catch (Exception e) {
+                statistics.recordLoad(false, System.nanoTime() - start);
+                throw e;
+            }
+            statistics.recordLoad(true, System.nanoTime() - start);
+
+            // Don't store a value computed from data which may have been invalidated in the meantime.
+            if (value != null) {
+                synchronized (loadLock) {
+                    if (loads.remove(this.key, this.task)) {
+                        set(this.key, value);
+                    }
+                }
+            }
+
+            return value;
+        }
+    }
+
+    /**
+     * Make sure the value currently being loaded for the provided key is not stored in the cache. To be called by
+     * implementations before removing an entry: if the value is being stored, this method waits for it to be stored so
+     * that the removal which follows removes it.
+     * 
+     * @param key the key of the removed entry
+     */
+    protected void cancelLoad(String key)
+    {
+        synchronized (this.loadLock) {
+            this.loads.remove(key);
+        }
+    }
+
+    /**
+     * Make sure none of the values currently being loaded are stored in the cache. To be called by implementations
+     * before removing all the entries.
+     */
+    protected void cancelLoads()
+    {
+        synchronized (this.loadLock) {
+            this.loads.clear();
+        }
+    }
+
+    @Override
+    public Map<String, T> getAll(Collection<String> keys)
+    {
+        Map<String, T> values = new HashMap<String, T>(keys.size());
+        for (String key : keys) {
+            T value = get(key);
+            if (value != null) {
+                values.put(key, value);
+            }
+        }
+
+        return values;
+    }
+
+    @Override
+    public void setAll(Map<String, ? extends T> entries)
+    {
+        for (Map.Entry<String, ? extends T> entry : entries.entrySet()) {
+            set(entry.getKey(), entry.getValue());
+        }
+    }
+
+    @Override
+    public CacheStatistics getStatistics()
+    {
+        return this.statistics;
+    }
+
+    /**
+     * @return the current number of entries in the cache, -1 if the implementation can't tell
+     * @since 4.4M1
+     */
+    protected long getSize()
+    {
+        return -1;
+    }
+
     @Override
     public void dispose()
     {
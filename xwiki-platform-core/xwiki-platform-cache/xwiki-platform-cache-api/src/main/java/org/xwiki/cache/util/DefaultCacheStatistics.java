@@ -0,0 +1,168 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.cache.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.xwiki.cache.CacheStatistics;
+
+/**
+ * Thread safe counters implementing {@link CacheStatistics}, to be updated by {@link org.xwiki.cache.Cache}
+ * implementations.
+ * 
+ * @version $Id$
+ * @since 4.4M1
+ */
+public class DefaultCacheStatistics implements CacheStatistics
+{
+    /**
+     * @see #getHitCount()
+     */
+    private final AtomicLong hitCount = new AtomicLong();
+
+    /**
+     * @see #getMissCount()
+     */
+    private final AtomicLong missCount = new AtomicLong();
+
+    /**
+     * @see #getLoadCount()
+     */
+    private final AtomicLong loadCount = new AtomicLong();
+
+    /**
+     * @see #getLoadFailureCount()
+     */
+    private final AtomicLong loadFailureCount = new AtomicLong();
+
+    /**
+     * @see #getTotalLoadTime()
+     */
+    private final AtomicLong totalLoadTime = new AtomicLong();
+
+    /**
+     * @see #getEvictionCount()
+     */
+    private final AtomicLong evictionCount = new AtomicLong();
+
+    /**
+     * Record a lookup.
+     * 
+     * @param hit true if a value was found
+     */
+    public void recordGet(boolean hit)
+    {
+        if (hit) {
+            this.hitCount.incrementAndGet();
+        } else {
+            this.missCount.incrementAndGet();
+        }
+    }
+
+    /**
+     * Record the computation of a value by a {@link org.xwiki.cache.CacheLoader}.
+     * 
+     * @param success true if the value was computed, false if the loader failed
+     * @param time the time spent computing the value, in nanoseconds
+     */
+    public void recordLoad(boolean success, long time)
+    {
+        if (success) {
+            this.loadCount.incrementAndGet();
+        } else {
+            this.loadFailureCount.incrementAndGet();
+        }
+        this.totalLoadTime.addAndGet(time);
+    }
+
+    /**
+     * Record the eviction of entries.
+     * 
+     * @param count the number of evicted entries
+     */
+    public void recordEviction(int count)
+    {
+        this.evictionCount.addAndGet(count);
+    }
+
+    @Override
+    public long getHitCount()
+    {
+        return this.hitCount.get();
+    }
+
+    @Override
+    public long getMissCount()
+    {
+        return this.missCount.get();
+    }
+
+    @Override
+    public double getHitRatio()
+    {
+        long hits = getHitCount();
+        long total = hits + getMissCount();
+
+        return total > 0 ? (double) hits / total : 0;
+    }
+
+    @Override
+    public long getLoadCount()
+    {
+        return this.loadCount.get();
+    }
+
+    @Override
+    public long getLoadFailureCount()
+    {
+        return this.loadFailureCount.get();
+    }
+
+    @Override
+    public long getTotalLoadTime()
+    {
+        return this.totalLoadTime.get();
+    }
+
+    @Override
+    public long getEvictionCount()
+    {
+        return this.evictionCount.get();
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Implementations able to tell the number of entries of the cache should override this method.
+     */
+    @Override
+    public long getSize()
+    {
+        return -1;
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("hits=%d, misses=%d, hitRatio=%.3f, loads=%d, loadFailures=%d, totalLoadTime=%dns, "
+            + "evictions=%d, size=%d", getHitCount(), getMissCount(), getHitRatio(), getLoadCount(),
+            getLoadFailureCount(), getTotalLoadTime(), getEvictionCount(), getSize());
+    }
+}
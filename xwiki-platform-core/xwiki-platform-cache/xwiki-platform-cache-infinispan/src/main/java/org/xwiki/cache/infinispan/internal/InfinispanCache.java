@@ -19,6 +19,7 @@
  */
 package org.xwiki.cache.infinispan.internal;
 
+import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
@@ -76,6 +77,8 @@
     @Override
     public void remove(String key)
     {
+        cancelLoad(key);
+
         this.cache.remove(key);
     }
 
@@ -92,15 +95,42 @@ public void set(String key, T obj)
     @Override
     public T get(String key)
     {
-        return this.cache.get(key);
+        T value = this.cache.get(key);
+
+        this.statistics.recordGet(value != null);
+
+        return value;
+    }
+
+    @Override
+    public void setAll(Map<String, ? extends T> entries)
+    {
+        Map<String, T> values = new HashMap<String, T>(entries.size());
+        for (Map.Entry<String, ? extends T> entry : entries.entrySet()) {
+            if (entry.getValue() != null) {
+                values.put(entry.getKey(), entry.getValue());
+            } else {
+                this.cache.remove(entry.getKey());
+            }
+        }
+
+        this.cache.putAll(values);
     }
 
     @Override
     public void removeAll()
     {
+        cancelLoads();
+
         this.cache.clear();
     }
 
+    @Override
+    protected long getSize()
+    {
+        return this.cache.size();
+    }
+
     @Override
     public void dispose()
     {
@@ -119,6 +149,8 @@ public void dispose()
     @CacheEntriesEvicted
     public void nodeEvicted(CacheEntriesEvictedEvent<String, T> event)
     {
+        this.statistics.recordEviction(event.getEntries().size());
+
         for (Map.Entry<String, T> entry : event.getEntries().entrySet()) {
             String key = entry.getKey();
             T value = entry.getValue();
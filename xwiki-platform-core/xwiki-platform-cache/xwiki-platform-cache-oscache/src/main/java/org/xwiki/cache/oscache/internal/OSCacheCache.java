@@ -104,6 +104,8 @@ public String apiKey(String cacheKey)
     @Override
     public void remove(String key)
     {
+        cancelLoad(key);
+
         this.cacheAdmin.flushEntry(cacheKey(key));
     }
 
@@ -129,15 +131,25 @@ public T get(String key)
             }
         }
 
+        this.statistics.recordGet(value != null);
+
         return value;
     }
 
     @Override
     public void removeAll()
     {
+        cancelLoads();
+
         this.cacheAdmin.flushAll();
     }
 
+    @Override
+    protected long getSize()
+    {
+        return this.cacheAdmin.getCache().getSize();
+    }
+
     @Override
     public void dispose()
     {
@@ -165,6 +177,9 @@ public void cacheEntryFlushed(CacheEntryEvent event)
     @Override
     public void cacheEntryRemoved(CacheEntryEvent event)
     {
+        // OSCache removes entries by itself only to respect the capacity of the cache
+        this.statistics.recordEviction(1);
+
         sendEntryRemovedEvent(new OSCacheCacheEntryEvent<T>(this, event));
     }
 
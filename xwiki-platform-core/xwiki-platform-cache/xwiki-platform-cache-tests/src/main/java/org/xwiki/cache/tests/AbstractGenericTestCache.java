@@ -19,10 +19,17 @@
  */
 package org.xwiki.cache.tests;
 
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import org.junit.Assert;
 import org.junit.Test;
 import org.xwiki.cache.Cache;
+import org.xwiki.cache.CacheException;
 import org.xwiki.cache.CacheFactory;
+import org.xwiki.cache.CacheLoader;
 import org.xwiki.cache.config.CacheConfiguration;
 
 /**
@@ -213,4 +220,101 @@ public void testRecreateCache() throws Exception
 
         Assert.assertEquals(VALUE, cache.get(KEY));
     }
+
+    /**
+     * Validate that values are loaded only when missing.
+     * 
+     * @throws Exception error
+     */
+    @Test
+    public void testComputeIfAbsent() throws Exception
+    {
+        CacheFactory factory = getCacheFactory();
+
+        Cache<Object> cache = factory.newCache(new CacheConfiguration());
+
+        final AtomicInteger loads = new AtomicInteger();
+        CacheLoader<Object> loader = new CacheLoader<Object>()
+        {
+            @Override
+            public Object load(String key) throws Exception
+            {
+                loads.incrementAndGet();
+
+                return VALUE;
+            }
+        };
+
+        Assert.assertEquals(VALUE, cache.computeIfAbsent(KEY, loader));
+        Assert.assertEquals(VALUE, cache.get(KEY));
+        Assert.assertEquals(VALUE, cache.computeIfAbsent(KEY, loader));
+        Assert.assertEquals(1, loads.get());
+
+        try {
+            cache.computeIfAbsent(KEY2, new CacheLoader<Object>()
+            {
+                @Override
+                public Object load(String key) throws Exception
+                {
+                    throw new Exception("failed");
+                }
+            });
+            Assert.fail("Should have thrown a CacheException");
+        } catch (CacheException expected) {
+            // expected
+        }
+        Assert.assertNull(cache.get(KEY2));
+
+        Assert.assertEquals(1, cache.getStatistics().getLoadCount());
+        Assert.assertEquals(1, cache.getStatistics().getLoadFailureCount());
+    }
+
+    /**
+     * Validate bulk operations.
+     * 
+     * @throws Exception error
+     */
+    @Test
+    public void testGetAllSetAll() throws Exception
+    {
+        CacheFactory factory = getCacheFactory();
+
+        Cache<Object> cache = factory.newCache(new CacheConfiguration());
+
+        Map<String, Object> entries = new HashMap<String, Object>();
+        entries.put(KEY, VALUE);
+        entries.put(KEY2, VALUE2);
+        cache.setAll(entries);
+
+        Assert.assertEquals(VALUE, cache.get(KEY));
+        Assert.assertEquals(VALUE2, cache.get(KEY2));
+
+        Map<String, Object> values = cache.getAll(Arrays.asList(KEY, KEY2, "missing"));
+
+        Assert.assertEquals(entries, values);
+    }
+
+    /**
+     * Validate hits and misses statistics.
+     * 
+     * @throws Exception error
+     */
+    @Test
+    public void testStatistics() throws Exception
+    {
+        CacheFactory factory = getCacheFactory();
+
+        Cache<Object> cache = factory.newCache(new CacheConfiguration());
+
+        cache.set(KEY, VALUE);
+
+        cache.get(KEY);
+        cache.get(KEY);
+        cache.get(KEY2);
+
+        Assert.assertEquals(2, cache.getStatistics().getHitCount());
+        Assert.assertEquals(1, cache.getStatistics().getMissCount());
+        Assert.assertEquals(2D / 3, cache.getStatistics().getHitRatio(), 0.001);
+        Assert.assertTrue(cache.getStatistics().getSize() == -1 || cache.getStatistics().getSize() == 1);
+    }
 }
@@ -0,0 +1,133 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.cache.tinylfu.internal;
+
+/**
+ * A doubly linked list of cache entries ordered from the least recently used to the most recently used, keeping track
+ * of the total weight of its entries. The links are stored in the entries themselves so that moving an entry is done
+ * in constant time without allocation.
+ * <p>
+ * This class is not thread safe.
+ * 
+ * @param <T> the class of the data stored in the cache.
+ * @version $Id$
+ * @since 4.4M1
+ */
+class AccessOrderQueue<T>
+{
+    /**
+     * The identifier of the queue, stored in the entries it holds.
+     */
+    private final int id;
+
+    /**
+     * The least recently used entry.
+     */
+    private TinyLFUCacheEntry<T> first;
+
+    /**
+     * The most recently used entry.
+     */
+    private TinyLFUCacheEntry<T> last;
+
+    /**
+     * The total weight of the entries.
+     */
+    private long weight;
+
+    /**
+     * @param id the identifier of the queue, stored in the entries it holds
+     */
+    AccessOrderQueue(int id)
+    {
+        this.id = id;
+    }
+
+    /**
+     * @return the least recently used entry, null if the queue is empty
+     */
+    TinyLFUCacheEntry<T> peekFirst()
+    {
+        return this.first;
+    }
+
+    /**
+     * @return the total weight of the entries
+     */
+    long getWeight()
+    {
+        return this.weight;
+    }
+
+    /**
+     * Add an entry as the most recently used.
+     * 
+     * @param entry the entry to add
+     */
+    void addLast(TinyLFUCacheEntry<T> entry)
+    {
+        entry.queue = this.id;
+        entry.previous = this.last;
+        entry.next = null;
+        if (this.last != null) {
+            this.last.next = entry;
+        } else {
+            this.first = entry;
+        }
+        this.last = entry;
+
+        this.weight += entry.getWeight();
+    }
+
+    /**
+     * @param entry the entry to remove
+     */
+    void remove(TinyLFUCacheEntry<T> entry)
+    {
+        if (entry.previous != null) {
+            entry.previous.next = entry.next;
+        } else {
+            this.first = entry.next;
+        }
+        if (entry.next != null) {
+            entry.next.previous = entry.previous;
+        } else {
+            this.last = entry.previous;
+        }
+        entry.previous = null;
+        entry.next = null;
+        entry.queue = TinyLFUCacheEntry.NONE;
+
+        this.weight -= entry.getWeight();
+    }
+
+    /**
+     * Mark an entry as the most recently used.
+     * 
+     * @param entry the entry
+     */
+    void moveToLast(TinyLFUCacheEntry<T> entry)
+    {
+        if (entry != this.last) {
+            remove(entry);
+            addLast(entry);
+        }
+    }
+}
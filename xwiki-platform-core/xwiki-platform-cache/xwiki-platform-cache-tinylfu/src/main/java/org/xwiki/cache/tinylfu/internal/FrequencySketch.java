@@ -0,0 +1,211 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.cache.tinylfu.internal;
+
+/**
+ * Estimate the popularity of the keys of a cache within a time window, as a count-min sketch of 4-bit counters. Four
+ * counters are kept per 64 bits word, each key being counted in four different words. When the number of recorded
+ * accesses reaches ten times the capacity, all the counters are halved so that the popularity of old entries decays.
+ * <p>
+ * This class is not thread safe.
+ * 
+ * @version $Id$
+ * @since 4.4M1
+ */
+public class FrequencySketch
+{
+    /**
+     * The seeds used to compute the index of the counters of a key in the table.
+     */
+    private static final long[] SEED = {0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL,
+        0xcbf29ce484222325L};
+
+    /**
+     * Used to halve the counters.
+     */
+    private static final long RESET_MASK = 0x7777777777777777L;
+
+    /**
+     * Used to count the odd counters when halving them.
+     */
+    private static final long ONE_MASK = 0x1111111111111111L;
+
+    /**
+     * The maximum value of a counter.
+     */
+    private static final int MAX_COUNT = 15;
+
+    /**
+     * The number of counters of a key.
+     */
+    private static final int DEPTH = 4;
+
+    /**
+     * The number of recorded accesses per table slot after which the counters are halved.
+     */
+    private static final int SAMPLE_FACTOR = 10;
+
+    /**
+     * The counters.
+     */
+    private long[] table;
+
+    /**
+     * Used to compute the index of a word in the table.
+     */
+    private int tableMask;
+
+    /**
+     * The number of recorded accesses after which the counters are halved.
+     */
+    private int sampleSize;
+
+    /**
+     * The number of recorded accesses since the counters have been halved.
+     */
+    private int size;
+
+    /**
+     * @param capacity the expected number of entries of the cache
+     */
+    public FrequencySketch(long capacity)
+    {
+        ensureCapacity(capacity);
+    }
+
+    /**
+     * Increase the size of the sketch if needed. The counters are reset when the sketch is resized.
+     * 
+     * @param capacity the expected number of entries of the cache
+     */
+    public void ensureCapacity(long capacity)
+    {
+        int maximum = (int) Math.min(Math.max(capacity, 1), Integer.MAX_VALUE >>> 1);
+        if (this.table != null && this.table.length >= maximum) {
+            return;
+        }
+
+        // The size of the table has to be a power of two.
+        this.table = new long[maximum > 1 ? Integer.highestOneBit(maximum - 1) << 1 : 1];
+        this.tableMask = this.table.length - 1;
+        this.sampleSize = SAMPLE_FACTOR * maximum;
+        if (this.sampleSize <= 0) {
+            this.sampleSize = Integer.MAX_VALUE;
+        }
+        this.size = 0;
+    }
+
+    /**
+     * @param key the key
+     * @return the estimated number of recent accesses to the key, up to 15
+     */
+    public int frequency(String key)
+    {
+        int hash = spread(key.hashCode());
+        int start = (hash & 3) << 2;
+
+        int frequency = MAX_COUNT;
+        for (int i = 0; i < DEPTH; ++i) {
+            int index = indexOf(hash, i);
+            int count = (int) ((this.table[index] >>> ((start + i) << 2)) & 0xfL);
+            frequency = Math.min(frequency, count);
+        }
+
+        return frequency;
+    }
+
+    /**
+     * Record an access to the key.
+     * 
+     * @param key the key
+     */
+    public void increment(String key)
+    {
+        int hash = spread(key.hashCode());
+        int start = (hash & 3) << 2;
+
+        boolean added = false;
+        for (int i = 0; i < DEPTH; ++i) {
+            added |= incrementAt(indexOf(hash, i), start + i);
+        }
+
+        if (added && ++this.size == this.sampleSize) {
+            reset();
+        }
+    }
+
+    /**
+     * @param index the index of the word in the table
+     * @param counter the index of the counter in the word
+     * @return true if the counter has been incremented, false if it was already at its maximum value
+     */
+    private boolean incrementAt(int index, int counter)
+    {
+        int offset = counter << 2;
+        long mask = 0xfL << offset;
+        if ((this.table[index] & mask) != mask) {
+            this.table[index] += 1L << offset;
+
+            return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * Halve all the counters.
+     */
+    private void reset()
+    {
+        int odd = 0;
+        for (int i = 0; i < this.table.length; ++i) {
+            odd += Long.bitCount(this.table[i] & ONE_MASK);
+            this.table[i] = (this.table[i] >>> 1) & RESET_MASK;
+        }
+        this.size = (this.size >>> 1) - (odd >>> 2);
+    }
+
+    /**
+     * @param hash the spread hash of the key
+     * @param i the index of the counter
+     * @return the index of the word holding the counter in the table
+     */
+    private int indexOf(int hash, int i)
+    {
+        long h = (hash + SEED[i]) * SEED[i];
+        h += h >>> 32;
+
+        return ((int) h) & this.tableMask;
+    }
+
+    /**
+     * Improve the distribution of a hash code.
+     * 
+     * @param hashCode the hash code
+     * @return the spread hash
+     */
+    private static int spread(int hashCode)
+    {
+        int x = ((hashCode >>> 16) ^ hashCode) * 0x45d9f3b;
+        x = ((x >>> 16) ^ x) * 0x45d9f3b;
+
+        return (x >>> 16) ^ x;
+    }
+}
@@ -0,0 +1,687 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.cache.tinylfu.internal;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.xwiki.cache.config.CacheConfiguration;
+import org.xwiki.cache.eviction.EntryEvictionConfiguration;
+import org.xwiki.cache.eviction.EntryWeigher;
+import org.xwiki.cache.eviction.LRUEvictionConfiguration;
+import org.xwiki.cache.tinylfu.internal.event.TinyLFUCacheEntryEvent;
+import org.xwiki.cache.util.AbstractCache;
+
+/**
+ * In-process {@link org.xwiki.cache.Cache} using a W-TinyLFU eviction policy.
+ * <p>
+ * New entries first go to a small LRU admission window (1% of the capacity). Entries leaving the window compete with
+ * the least recently used entry of the main space: the one which has been used the most often recently, as estimated
+ * by a {@link FrequencySketch}, stays in the cache. The main space is a segmented LRU where entries read again while
+ * in probation are promoted to the protected segment (80% of the main space). This way a scan of many entries read
+ * only once does not flush the popular entries out of the cache.
+ * <p>
+ * The cache can be bounded by number of entries or by total weight of the entries, and entries can expire a fixed time
+ * after they have been stored or when they have not been read for some time.
+ * <p>
+ * Reads don't take any lock: the accesses are recorded in a lossy ring buffer which is applied to the eviction policy
+ * in batch by whichever thread manages to acquire the eviction lock. Writes update the eviction policy synchronously.
+ * 
+ * @param <T> the class of the data stored in the cache.
+ * @version $Id$
+ * @since 4.4M1
+ */
+public class TinyLFUCache<T> extends AbstractCache<T>
+{
+    /**
+     * The part of the capacity used by the main space, the remaining being used by the admission window.
+     */
+    private static final double MAIN_PERCENT = 0.99;
+
+    /**
+     * The part of the main space used by the protected segment.
+     */
+    private static final double PROTECTED_PERCENT = 0.8;
+
+    /**
+     * The size of the read buffer, a power of two.
+     */
+    private static final int READ_BUFFER_SIZE = 128;
+
+    /**
+     * The number of reads after which the read buffer is drained, minus one.
+     */
+    private static final int READ_DRAIN_MASK = 63;
+
+    /**
+     * The frequency below which a candidate which is not more popular than the victim is never admitted.
+     */
+    private static final int ADMIT_HASHDOS_THRESHOLD = 5;
+
+    /**
+     * The minimum delay between two scans of the cache looking for expired entries.
+     */
+    private static final long MIN_EXPIRATION_SCAN_DELAY = TimeUnit.SECONDS.toNanos(1);
+
+    /**
+     * The entries.
+     */
+    private final ConcurrentMap<String, TinyLFUCacheEntry<T>> data =
+        new ConcurrentHashMap<String, TinyLFUCacheEntry<T>>();
+
+    /**
+     * Guard the eviction policy.
+     */
+    private final ReentrantLock evictionLock = new ReentrantLock();
+
+    /**
+     * The entries recently read, not yet applied to the eviction policy.
+     */
+    private final AtomicReferenceArray<TinyLFUCacheEntry<T>> readBuffer =
+        new AtomicReferenceArray<TinyLFUCacheEntry<T>>(READ_BUFFER_SIZE);
+
+    /**
+     * The number of recorded reads.
+     */
+    private final AtomicLong readCount = new AtomicLong();
+
+    /**
+     * The number of reads applied to the eviction policy, guarded by the eviction lock.
+     */
+    private long drainedCount;
+
+    /**
+     * The admission window.
+     */
+    private final AccessOrderQueue<T> window = new AccessOrderQueue<T>(TinyLFUCacheEntry.WINDOW);
+
+    /**
+     * The probation segment of the main space.
+     */
+    private final AccessOrderQueue<T> probation = new AccessOrderQueue<T>(TinyLFUCacheEntry.PROBATION);
+
+    /**
+     * The protected segment of the main space.
+     */
+    private final AccessOrderQueue<T> protectedSegment = new AccessOrderQueue<T>(TinyLFUCacheEntry.PROTECTED);
+
+    /**
+     * Estimate the popularity of the keys, guarded by the eviction lock.
+     */
+    private final FrequencySketch sketch;
+
+    /**
+     * Used to randomly admit popular candidates, guarded by the eviction lock.
+     */
+    private final Random random = new Random();
+
+    /**
+     * Compute the weight of the entries, null if all the entries weigh 1.
+     */
+    private final EntryWeigher<T> weigher;
+
+    /**
+     * The maximum total weight of the entries, {@link Long#MAX_VALUE} if the cache is not bounded.
+     */
+    private final long maximum;
+
+    /**
+     * The maximum total weight of the admission window.
+     */
+    private final long windowMaximum;
+
+    /**
+     * The maximum total weight of the protected segment.
+     */
+    private final long protectedMaximum;
+
+    /**
+     * How long an entry stays in the cache after being stored, in nanoseconds, 0 for ever.
+     */
+    private final long timeToLive;
+
+    /**
+     * How long an entry stays in the cache without being read, in nanoseconds, 0 for ever.
+     */
+    private final long maxIdle;
+
+    /**
+     * The minimum delay between two scans of the cache looking for expired entries, in nanoseconds.
+     */
+    private final long expirationScanDelay;
+
+    /**
+     * The last time the cache has been scanned for expired entries, guarded by the eviction lock.
+     */
+    private long lastExpirationScan;
+
+    /**
+     * The total weight of the entries, guarded by the eviction lock.
+     */
+    private long weightedSize;
+
+    /**
+     * @param configuration the configuration of the cache
+     */
+    @SuppressWarnings("unchecked")
+    public TinyLFUCache(CacheConfiguration configuration)
+    {
+        this.configuration = configuration;
+
+        EntryEvictionConfiguration eec =
+            (EntryEvictionConfiguration) configuration.get(EntryEvictionConfiguration.CONFIGURATIONID);
+
+        long maxEntries = 0;
+        long maxWeight = 0;
+        EntryWeigher<T> entryWeigher = null;
+        if (eec != null) {
+            Object value = eec.get(LRUEvictionConfiguration.MAXENTRIES_ID);
+            maxEntries = value != null ? ((Number) value).longValue() : 0;
+
+            value = eec.get(LRUEvictionConfiguration.MAXWEIGHT_ID);
+            entryWeigher = (EntryWeigher<T>) eec.get(LRUEvictionConfiguration.WEIGHER_ID);
+            if (value != null && entryWeigher != null) {
+                maxWeight = ((Number) value).longValue();
+            }
+
+            this.timeToLive = TimeUnit.SECONDS.toNanos(eec.getTimeToLive());
+            this.maxIdle = TimeUnit.SECONDS.toNanos(eec.getMaxIdle());
+        } else {
+            this.timeToLive = 0;
+            this.maxIdle = 0;
+        }
+
+        if (maxWeight > 0) {
+            this.maximum = maxWeight;
+            this.weigher = entryWeigher;
+            // The number of entries is not known, the sketch grows with the cache.
+            this.sketch = new FrequencySketch(16);
+        } else {
+            this.maximum = maxEntries > 0 ? maxEntries : Long.MAX_VALUE;
+            this.weigher = null;
+            this.sketch = new FrequencySketch(maxEntries > 0 ? maxEntries : 16);
+        }
+
+        this.windowMaximum = this.maximum - (long) (MAIN_PERCENT * this.maximum);
+        this.protectedMaximum = (long) (PROTECTED_PERCENT * (this.maximum - this.windowMaximum));
+
+        long shortestExpiration = Math.min(this.timeToLive > 0 ? this.timeToLive : Long.MAX_VALUE,
+            this.maxIdle > 0 ? this.maxIdle : Long.MAX_VALUE);
+        this.expirationScanDelay = Math.max(MIN_EXPIRATION_SCAN_DELAY, shortestExpiration / 2);
+        this.lastExpirationScan = currentTime();
+    }
+
+    /**
+     * @return the current time in nanoseconds, used to expire the entries
+     */
+    protected long currentTime()
+    {
+        return System.nanoTime();
+    }
+
+    /**
+     * @return true if the entries can expire
+     */
+    private boolean isExpiring()
+    {
+        return this.timeToLive > 0 || this.maxIdle > 0;
+    }
+
+    /**
+     * @param entry the entry
+     * @param now the current time, in nanoseconds
+     * @return true if the entry has expired
+     */
+    private boolean isExpired(TinyLFUCacheEntry<T> entry, long now)
+    {
+        return (this.timeToLive > 0 && now - entry.getWriteTime() >= this.timeToLive)
+            || (this.maxIdle > 0 && now - entry.getAccessTime() >= this.maxIdle);
+    }
+
+    @Override
+    public T get(String key)
+    {
+        TinyLFUCacheEntry<T> entry = this.data.get(key);
+
+        if (entry != null && isExpiring()) {
+            long now = currentTime();
+            if (isExpired(entry, now)) {
+                expire(entry);
+                entry = null;
+            } else if (this.maxIdle > 0) {
+                entry.setAccessTime(now);
+            }
+        }
+
+        this.statistics.recordGet(entry != null);
+
+        if (entry == null) {
+            return null;
+        }
+
+        afterRead(entry);
+
+        return entry.getValue();
+    }
+
+    @Override
+    public void set(String key, T value)
+    {
+        if (value == null) {
+            remove(key);
+
+            return;
+        }
+
+        int weight = this.weigher != null ? this.weigher.weigh(key, value) : 1;
+        if (weight < 0) {
+            throw new IllegalArgumentException("Negative weight [" + weight + "] for cache entry [" + key + "]");
+        }
+
+        TinyLFUCacheEntry<T> entry = new TinyLFUCacheEntry<T>(this, key, value, weight, currentTime());
+        TinyLFUCacheEntry<T> previous = this.data.put(key, entry);
+        if (previous != null) {
+            previous.retire();
+        }
+
+        List<TinyLFUCacheEntry<T>> evicted;
+        this.evictionLock.lock();
+        try {
+            // Apply the reads which happened before this write first
+            drainReadBuffer();
+
+            if (previous != null) {
+                unlink(previous);
+            }
+            onAdd(entry);
+
+            evicted = expireAndEvict();
+        } finally {
+            this.evictionLock.unlock();
+        }
+
+        if (previous != null) {
+            if (previous.getValue() != value) {
+                disposeCacheValue(previous.getValue());
+            }
+            sendEntryModifiedEvent(new TinyLFUCacheEntryEvent<T>(entry));
+        } else {
+            sendEntryAddedEvent(new TinyLFUCacheEntryEvent<T>(entry));
+        }
+
+        notifyEvicted(evicted);
+    }
+
+    @Override
+    public void remove(String key)
+    {
+        cancelLoad(key);
+
+        TinyLFUCacheEntry<T> entry = this.data.remove(key);
+        if (entry != null) {
+            entry.retire();
+
+            this.evictionLock.lock();
+            try {
+                unlink(entry);
+            } finally {
+                this.evictionLock.unlock();
+            }
+
+            sendEntryRemovedEvent(new TinyLFUCacheEntryEvent<T>(entry));
+        }
+    }
+
+    @Override
+    public void removeAll()
+    {
+        cancelLoads();
+
+        List<TinyLFUCacheEntry<T>> removed = new ArrayList<TinyLFUCacheEntry<T>>();
+        this.evictionLock.lock();
+        try {
+            for (TinyLFUCacheEntry<T> entry : this.data.values()) {
+                if (this.data.remove(entry.getKey(), entry)) {
+                    entry.retire();
+                    unlink(entry);
+                    removed.add(entry);
+                }
+            }
+        } finally {
+            this.evictionLock.unlock();
+        }
+
+        for (TinyLFUCacheEntry<T> entry : removed) {
+            sendEntryRemovedEvent(new TinyLFUCacheEntryEvent<T>(entry));
+        }
+    }
+
+    @Override
+    protected long getSize()
+    {
+        return this.data.size();
+    }
+
+    @Override
+    public void dispose()
+    {
+        super.dispose();
+
+        this.data.clear();
+    }
+
+    /**
+     * Apply the pending reads and evict the entries exceeding the capacity of the cache.
+     */
+    public void cleanUp()
+    {
+        List<TinyLFUCacheEntry<T>> evicted;
+        this.evictionLock.lock();
+        try {
+            evicted = maintenance();
+        } finally {
+            this.evictionLock.unlock();
+        }
+
+        notifyEvicted(evicted);
+    }
+
+    /**
+     * Record a read without blocking, draining the read buffer from time to time.
+     * 
+     * @param entry the entry which has been read
+     */
+    private void afterRead(TinyLFUCacheEntry<T> entry)
+    {
+        long count = this.readCount.getAndIncrement();
+        // Lossy: an entry may be overwritten before being applied, it's only a hint for the eviction policy
+        this.readBuffer.lazySet((int) count & (READ_BUFFER_SIZE - 1), entry);
+
+        if ((count & READ_DRAIN_MASK) == READ_DRAIN_MASK && this.evictionLock.tryLock()) {
+            List<TinyLFUCacheEntry<T>> evicted;
+            try {
+                evicted = maintenance();
+            } finally {
+                this.evictionLock.unlock();
+            }
+
+            notifyEvicted(evicted);
+        }
+    }
+
+    /**
+     * Remove an expired entry.
+     * 
+     * @param entry the entry
+     */
+    private void expire(TinyLFUCacheEntry<T> entry)
+    {
+        if (this.data.remove(entry.getKey(), entry)) {
+            entry.retire();
+
+            this.evictionLock.lock();
+            try {
+                unlink(entry);
+            } finally {
+                this.evictionLock.unlock();
+            }
+
+            notifyEvicted(Collections.singletonList(entry));
+        }
+    }
+
+    /**
+     * Must be called while holding the eviction lock.
+     * 
+     * @return the entries removed from the cache
+     */
+    private List<TinyLFUCacheEntry<T>> maintenance()
+    {
+        drainReadBuffer();
+
+        return expireAndEvict();
+    }
+
+    /**
+     * Remove the expired entries and the entries exceeding the capacity of the cache. Must be called while holding the
+     * eviction lock.
+     * 
+     * @return the entries removed from the cache
+     */
+    private List<TinyLFUCacheEntry<T>> expireAndEvict()
+    {
+        List<TinyLFUCacheEntry<T>> evicted = new ArrayList<TinyLFUCacheEntry<T>>();
+
+        if (isExpiring()) {
+            long now = currentTime();
+            if (now - this.lastExpirationScan >= this.expirationScanDelay) {
+                this.lastExpirationScan = now;
+                for (TinyLFUCacheEntry<T> entry : this.data.values()) {
+                    if (isExpired(entry, now)) {
+                        evict(entry, evicted);
+                    }
+                }
+            }
+        }
+
+        if (this.maximum != Long.MAX_VALUE) {
+            evictEntries(evicted);
+        }
+
+        return evicted;
+    }
+
+    /**
+     * Apply the recorded reads to the eviction policy. Must be called while holding the eviction lock.
+     */
+    private void drainReadBuffer()
+    {
+        long end = this.readCount.get();
+        for (long i = Math.max(this.drainedCount, end - READ_BUFFER_SIZE); i < end; ++i) {
+            TinyLFUCacheEntry<T> entry = this.readBuffer.getAndSet((int) i & (READ_BUFFER_SIZE - 1), null);
+            if (entry != null) {
+                onAccess(entry);
+            }
+        }
+        this.drainedCount = end;
+    }
+
+    /**
+     * Add a new entry to the eviction policy. Must be called while holding the eviction lock.
+     * 
+     * @param entry the new entry
+     */
+    private void onAdd(TinyLFUCacheEntry<T> entry)
+    {
+        // The entry may have already been replaced by another thread
+        if (entry.isRetired()) {
+            return;
+        }
+
+        if (this.weigher != null) {
+            this.sketch.ensureCapacity(this.data.size());
+        }
+        this.sketch.increment(entry.getKey());
+
+        this.window.addLast(entry);
+        this.weightedSize += entry.getWeight();
+    }
+
+    /**
+     * Update the eviction policy after a read. Must be called while holding the eviction lock.
+     * 
+     * @param entry the entry which has been read
+     */
+    private void onAccess(TinyLFUCacheEntry<T> entry)
+    {
+        if (entry.isRetired()) {
+            return;
+        }
+
+        this.sketch.increment(entry.getKey());
+
+        switch (entry.queue) {
+            case TinyLFUCacheEntry.WINDOW:
+                this.window.moveToLast(entry);
+                break;
+            case TinyLFUCacheEntry.PROBATION:
+                // Promote the entry to the protected segment and make room for it
+                this.probation.remove(entry);
+                this.protectedSegment.addLast(entry);
+                while (this.protectedSegment.getWeight() > this.protectedMaximum
+                    && this.protectedSegment.peekFirst() != entry) {
+                    TinyLFUCacheEntry<T> demoted = this.protectedSegment.peekFirst();
+                    this.protectedSegment.remove(demoted);
+                    this.probation.addLast(demoted);
+                }
+                break;
+            case TinyLFUCacheEntry.PROTECTED:
+                this.protectedSegment.moveToLast(entry);
+                break;
+            default:
+                // Not yet added to the eviction policy
+                break;
+        }
+    }
+
+    /**
+     * Remove an entry from the eviction policy. Must be called while holding the eviction lock.
+     * 
+     * @param entry the entry
+     */
+    private void unlink(TinyLFUCacheEntry<T> entry)
+    {
+        switch (entry.queue) {
+            case TinyLFUCacheEntry.WINDOW:
+                this.window.remove(entry);
+                break;
+            case TinyLFUCacheEntry.PROBATION:
+                this.probation.remove(entry);
+                break;
+            case TinyLFUCacheEntry.PROTECTED:
+                this.protectedSegment.remove(entry);
+                break;
+            default:
+                return;
+        }
+
+        this.weightedSize -= entry.getWeight();
+    }
+
+    /**
+     * Evict entries until the total weight fits in the capacity of the cache. Must be called while holding the eviction
+     * lock.
+     * 
+     * @param evicted the list where to add the evicted entries
+     */
+    private void evictEntries(List<TinyLFUCacheEntry<T>> evicted)
+    {
+        // Move the entries exceeding the capacity of the window to the probation segment, where they are candidates
+        TinyLFUCacheEntry<T> candidate = null;
+        while (this.window.getWeight() > this.windowMaximum) {
+            TinyLFUCacheEntry<T> entry = this.window.peekFirst();
+            this.window.remove(entry);
+            this.probation.addLast(entry);
+            if (candidate == null) {
+                candidate = entry;
+            }
+        }
+
+        while (this.weightedSize > this.maximum) {
+            TinyLFUCacheEntry<T> victim = this.probation.peekFirst();
+            if (victim == candidate) {
+                // Only candidates left in probation
+                victim = this.protectedSegment.peekFirst();
+            }
+
+            TinyLFUCacheEntry<T> entry;
+            if (candidate == null) {
+                entry = victim != null ? victim : this.window.peekFirst();
+            } else if (victim == null || !admit(candidate, victim)) {
+                entry = candidate;
+                candidate = candidate.next;
+            } else {
+                entry = victim;
+            }
+
+            if (entry == null) {
+                break;
+            }
+
+            evict(entry, evicted);
+        }
+    }
+
+    /**
+     * @param candidate the entry leaving the admission window
+     * @param victim the entry of the main space which would be evicted
+     * @return true if the candidate should replace the victim
+     */
+    private boolean admit(TinyLFUCacheEntry<T> candidate, TinyLFUCacheEntry<T> victim)
+    {
+        int candidateFrequency = this.sketch.frequency(candidate.getKey());
+        int victimFrequency = this.sketch.frequency(victim.getKey());
+        if (candidateFrequency > victimFrequency) {
+            return true;
+        }
+
+        // Admit a popular candidate from time to time so that an attacker can't keep a victim in the cache by
+        // artificially raising its frequency
+        return candidateFrequency > ADMIT_HASHDOS_THRESHOLD && (this.random.nextInt() & 127) == 0;
+    }
+
+    /**
+     * Remove an entry from the cache. Must be called while holding the eviction lock.
+     * 
+     * @param entry the entry
+     * @param evicted the list where to add the entry if it was still in the cache
+     */
+    private void evict(TinyLFUCacheEntry<T> entry, List<TinyLFUCacheEntry<T>> evicted)
+    {
+        unlink(entry);
+
+        if (this.data.remove(entry.getKey(), entry)) {
+            entry.retire();
+            evicted.add(entry);
+        }
+    }
+
+    /**
+     * Send the events for the entries removed by the cache itself. Called without holding the eviction lock so that
+     * listeners can access the cache.
+     * 
+     * @param evicted the entries removed by the cache
+     */
+    private void notifyEvicted(List<TinyLFUCacheEntry<T>> evicted)
+    {
+        for (TinyLFUCacheEntry<T> entry : evicted) {
+            this.statistics.recordEviction(1);
+            sendEntryRemovedEvent(new TinyLFUCacheEntryEvent<T>(entry));
+        }
+    }
+}
@@ -0,0 +1,187 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.cache.tinylfu.internal;
+
+import org.xwiki.cache.Cache;
+import org.xwiki.cache.CacheEntry;
+
+/**
+ * An entry of a {@link TinyLFUCache}. Entries are immutable: setting a new value for a key replaces the entry. The
+ * links to the other entries of the eviction policy are only accessed while holding the eviction lock of the cache.
+ * 
+ * @param <T> the class of the data stored in the cache.
+ * @version $Id$
+ * @since 4.4M1
+ */
+public class TinyLFUCacheEntry<T> implements CacheEntry<T>
+{
+    /**
+     * The entry is not part of the eviction policy.
+     */
+    static final int NONE = 0;
+
+    /**
+     * The entry is in the admission window.
+     */
+    static final int WINDOW = 1;
+
+    /**
+     * The entry is in the probation segment of the main space.
+     */
+    static final int PROBATION = 2;
+
+    /**
+     * The entry is in the protected segment of the main space.
+     */
+    static final int PROTECTED = 3;
+
+    /**
+     * The previous entry in the queue, guarded by the eviction lock.
+     */
+    TinyLFUCacheEntry<T> previous;
+
+    /**
+     * The next entry in the queue, guarded by the eviction lock.
+     */
+    TinyLFUCacheEntry<T> next;
+
+    /**
+     * The queue holding the entry, guarded by the eviction lock.
+     */
+    int queue = NONE;
+
+    /**
+     * The cache.
+     */
+    private final Cache<T> cache;
+
+    /**
+     * The entry key.
+     */
+    private final String key;
+
+    /**
+     * The entry data.
+     */
+    private final T value;
+
+    /**
+     * The weight of the entry.
+     */
+    private final int weight;
+
+    /**
+     * The time the entry has been created, in nanoseconds.
+     */
+    private final long writeTime;
+
+    /**
+     * The last time the entry has been read, in nanoseconds.
+     */
+    private volatile long accessTime;
+
+    /**
+     * True when the entry has been removed from the cache or replaced.
+     */
+    private volatile boolean retired;
+
+    /**
+     * @param cache the cache where this entry comes from
+     * @param key the entry key
+     * @param value the entry data
+     * @param weight the weight of the entry
+     * @param now the current time, in nanoseconds
+     */
+    TinyLFUCacheEntry(Cache<T> cache, String key, T value, int weight, long now)
+    {
+        this.cache = cache;
+        this.key = key;
+        this.value = value;
+        this.weight = weight;
+        this.writeTime = now;
+        this.accessTime = now;
+    }
+
+    @Override
+    public Cache<T> getCache()
+    {
+        return this.cache;
+    }
+
+    @Override
+    public String getKey()
+    {
+        return this.key;
+    }
+
+    @Override
+    public T getValue()
+    {
+        return this.value;
+    }
+
+    /**
+     * @return the weight of the entry
+     */
+    int getWeight()
+    {
+        return this.weight;
+    }
+
+    /**
+     * @return the time the entry has been created, in nanoseconds
+     */
+    long getWriteTime()
+    {
+        return this.writeTime;
+    }
+
+    /**
+     * @return the last time the entry has been read, in nanoseconds
+     */
+    long getAccessTime()
+    {
+        return this.accessTime;
+    }
+
+    /**
+     * @param accessTime the last time the entry has been read, in nanoseconds
+     */
+    void setAccessTime(long accessTime)
+    {
+        this.accessTime = accessTime;
+    }
+
+    /**
+     * @return true if the entry has been removed from the cache or replaced
+     */
+    boolean isRetired()
+    {
+        return this.retired;
+    }
+
+    /**
+     * Indicate that the entry has been removed from the cache or replaced.
+     */
+    void retire()
+    {
+        this.retired = true;
+    }
+}
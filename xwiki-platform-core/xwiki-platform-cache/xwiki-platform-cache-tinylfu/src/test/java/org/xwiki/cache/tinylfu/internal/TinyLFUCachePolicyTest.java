@@ -0,0 +1,162 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.cache.tinylfu.internal;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.xwiki.cache.config.CacheConfiguration;
+import org.xwiki.cache.eviction.EntryWeigher;
+import org.xwiki.cache.eviction.LRUEvictionConfiguration;
+
+/**
+ * Validate the eviction policy of {@link TinyLFUCache}.
+ * 
+ * @version $Id$
+ */
+public class TinyLFUCachePolicyTest
+{
+    private <T> T getOrSet(TinyLFUCache<T> cache, String key, T value)
+    {
+        T cachedValue = cache.get(key);
+        if (cachedValue == null) {
+            cache.set(key, value);
+            cachedValue = value;
+        }
+
+        return cachedValue;
+    }
+
+    @Test
+    public void scanDoesNotFlushPopularEntries()
+    {
+        TinyLFUCache<Integer> cache =
+            new TinyLFUCache<Integer>(new CacheConfiguration(new LRUEvictionConfiguration(100)));
+
+        for (int round = 0; round < 10; ++round) {
+            for (int i = 0; i < 50; ++i) {
+                getOrSet(cache, "hot" + i, i);
+            }
+        }
+
+        // A crawler reading many pages once
+        for (int i = 0; i < 10000; ++i) {
+            getOrSet(cache, "scan" + i, i);
+        }
+
+        int hot = 0;
+        for (int i = 0; i < 50; ++i) {
+            if (cache.get("hot" + i) != null) {
+                ++hot;
+            }
+        }
+
+        Assert.assertTrue("Only " + hot + " popular entries left", hot >= 45);
+        Assert.assertEquals(100, cache.getStatistics().getSize());
+    }
+
+    @Test
+    public void boundedByWeight()
+    {
+        LRUEvictionConfiguration eviction = new LRUEvictionConfiguration();
+        eviction.setMaxWeight(100, new EntryWeigher<String>()
+        {
+            @Override
+            public int weigh(String key, String value)
+            {
+                return value.length();
+            }
+        });
+        TinyLFUCache<String> cache = new TinyLFUCache<String>(new CacheConfiguration(eviction));
+
+        for (int i = 0; i < 20; ++i) {
+            cache.set("key" + i, "0123456789");
+        }
+
+        Assert.assertEquals(10, cache.getStatistics().getSize());
+
+        // Bigger than the whole cache
+        cache.set("big", new String(new char[200]));
+
+        Assert.assertNull(cache.get("big"));
+        Assert.assertEquals(10, cache.getStatistics().getSize());
+    }
+
+    @Test
+    public void maxIdle()
+    {
+        LRUEvictionConfiguration eviction = new LRUEvictionConfiguration();
+        eviction.setMaxIdle(1);
+        final AtomicLong time = new AtomicLong();
+        TinyLFUCache<String> cache = new TinyLFUCache<String>(new CacheConfiguration(eviction))
+        {
+            @Override
+            protected long currentTime()
+            {
+                return time.get();
+            }
+        };
+
+        cache.set("read", "value");
+        cache.set("unread", "value");
+
+        time.addAndGet(TimeUnit.MILLISECONDS.toNanos(600));
+        Assert.assertEquals("value", cache.get("read"));
+        time.addAndGet(TimeUnit.MILLISECONDS.toNanos(600));
+
+        Assert.assertEquals("value", cache.get("read"));
+        Assert.assertNull(cache.get("unread"));
+    }
+
+    @Test
+    public void concurrentAccess() throws InterruptedException
+    {
+        final TinyLFUCache<String> cache =
+            new TinyLFUCache<String>(new CacheConfiguration(new LRUEvictionConfiguration(100)));
+
+        Thread[] threads = new Thread[4];
+        for (int i = 0; i < threads.length; ++i) {
+            threads[i] = new Thread()
+            {
+                @Override
+                public void run()
+                {
+                    for (int j = 0; j < 20000; ++j) {
+                        String key = String.valueOf(j % 500);
+                        getOrSet(cache, key, key);
+                        if (j % 100 == 0) {
+                            cache.remove(key);
+                        }
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        cache.cleanUp();
+
+        Assert.assertTrue(cache.getStatistics().getSize() <= 100);
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.instrumentation;
+
+import java.util.List;
+import java.util.Map;
+
+import org.xwiki.component.annotation.Role;
+
+/**
+ * Measure the time spent by requests in the different {@link Phase}s of their processing. The durations of the spans
+ * are aggregated per phase in histograms, and the spans of the requests which are slower than a configured threshold
+ * are kept in traces showing where their time was spent.
+ * <p>
+ * Recording a span is lock-free and cheap enough to be kept enabled in production:
+ * 
+ * <pre>
+ * Span span = instrumentation.startSpan(Phase.STORE_LOAD, documentReference);
+ * try {
+ *     ...
+ * } finally {
+ *     span.end();
+ * }
+ * </pre>
+ * 
+ * @version $Id$
+ * @since 4.4M1
+ */
+@Role
+public interface Instrumentation
+{
+    /**
+     * Start measuring a request processed by the current thread. The spans started by this thread until
+     * {@link #endRequest()} is called are part of this request. Requests nested in the current request are ignored.
+     * 
+     * @param description the description of the request, usually its action and URL
+     */
+    void startRequest(String description);
+
+    /**
+     * End the request processed by the current thread, started with {@link #startRequest(String)}.
+     */
+    void endRequest();
+
+    /**
+     * Start a span of the given phase. The returned span must be ended by the current thread.
+     * 
+     * @param phase the phase
+     * @param subject what the span is about (a document reference, a query statement, a template name, etc.), only
+     *            converted to a string if the span is traced, can be {@code null}
+     * @return the span
+     */
+    Span startSpan(Phase phase, Object subject);
+
+    /**
+     * Record a span which has already been measured, for example a cache lookup whose phase is only known once it is
+     * done.
+     * 
+     * @param phase the phase
+     * @param subject what the span is about, only converted to a string if the span is traced, can be {@code null}
+     * @param duration the duration of the span, in nanoseconds
+     */
+    void record(Phase phase, Object subject, long duration);
+
+    /**
+     * @param phase a phase
+     * @return the statistics of the spans of the given phase
+     */
+    PhaseStatistics getStatistics(Phase phase);
+
+    /**
+     * @return the statistics of the spans of each phase
+     */
+    Map<Phase, PhaseStatistics> getStatistics();
+
+    /**
+     * @return the traces of the latest requests which took longer than the configured threshold, most recent first
+     */
+    List<RequestTrace> getSlowRequests();
+
+    /**
+     * Forget the recorded statistics and traces.
+     */
+    void reset();
+}
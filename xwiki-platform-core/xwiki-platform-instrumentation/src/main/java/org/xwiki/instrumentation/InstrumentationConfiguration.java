@@ -0,0 +1,53 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.instrumentation;
+
+import org.xwiki.component.annotation.Role;
+
+/**
+ * Configuration options for the {@link Instrumentation} component.
+ * 
+ * @version $Id$
+ * @since 4.4M1
+ */
+@Role
+public interface InstrumentationConfiguration
+{
+    /**
+     * @return {@code true} if the spans should be measured
+     */
+    boolean isEnabled();
+
+    /**
+     * @return the duration above which the spans of a request are traced, in milliseconds; 0 or less to disable the
+     *         traces
+     */
+    long getTraceThreshold();
+
+    /**
+     * @return the maximum number of spans kept in the trace of a request
+     */
+    int getMaxTraceSize();
+
+    /**
+     * @return the number of slow request traces to keep
+     */
+    int getSlowRequestHistorySize();
+}
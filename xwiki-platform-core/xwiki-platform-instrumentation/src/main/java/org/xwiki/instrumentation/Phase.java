@@ -0,0 +1,89 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.instrumentation;
+
+/**
+ * The phases of the processing of a request which are measured by {@link Instrumentation}.
+ * 
+ * @version $Id$
+ * @since 4.4M1
+ */
+public enum Phase
+{
+    /** The whole processing of a request. */
+    REQUEST("request"),
+
+    /** Loading data from the store. */
+    STORE_LOAD("store.load"),
+
+    /** Saving data to the store. */
+    STORE_SAVE("store.save"),
+
+    /** Deleting data from the store. */
+    STORE_DELETE("store.delete"),
+
+    /** Executing a query. */
+    QUERY("query"),
+
+    /** Rendering a content. */
+    RENDERING("rendering"),
+
+    /** Executing a macro. */
+    MACRO("macro"),
+
+    /** Evaluating a Velocity template or script. */
+    VELOCITY("velocity"),
+
+    /** Looking up a value which was found in a cache. */
+    CACHE_HIT("cache.hit"),
+
+    /** Looking up a value which was not found in a cache, including the time spent computing it. */
+    CACHE_MISS("cache.miss"),
+
+    /** Checking access rights. */
+    SECURITY("security");
+
+    /**
+     * @see #getId()
+     */
+    private final String id;
+
+    /**
+     * @param id the identifier of the phase
+     */
+    Phase(String id)
+    {
+        this.id = id;
+    }
+
+    /**
+     * @return the identifier of the phase, used in the JMX names and the traces
+     */
+    public String getId()
+    {
+        return this.id;
+    }
+
+    @Override
+    public String toString()
+    {
+        return this.id;
+    }
+}
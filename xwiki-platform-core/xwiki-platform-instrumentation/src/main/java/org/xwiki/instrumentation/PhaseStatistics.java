@@ -0,0 +1,56 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.instrumentation;
+
+/**
+ * Statistics about the durations of the spans of a {@link Phase}. Durations are kept in a histogram with a precision of
+ * about 3%, so the percentiles are approximations, but the count, the total and the maximum are exact.
+ * 
+ * @version $Id$
+ * @since 4.4M1
+ */
+public interface PhaseStatistics
+{
+    /**
+     * @return the number of recorded spans
+     */
+    long getCount();
+
+    /**
+     * @return the total duration of the recorded spans, in nanoseconds
+     */
+    long getTotalTime();
+
+    /**
+     * @return the average duration of the recorded spans, in nanoseconds (0 if no span was recorded)
+     */
+    double getMeanTime();
+
+    /**
+     * @return the longest duration recorded, in nanoseconds
+     */
+    long getMaxTime();
+
+    /**
+     * @param percentile the percentile, between 0 and 100
+     * @return the duration below which the given percentage of the recorded spans fall, in nanoseconds
+     */
+    long getTimeAtPercentile(double percentile);
+}
@@ -0,0 +1,90 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.instrumentation;
+
+import java.util.Date;
+import java.util.List;
+
+/**
+ * The spans of a request which took longer than the configured trace threshold, in the order they were started.
+ * 
+ * @version $Id$
+ * @since 4.4M1
+ */
+public interface RequestTrace
+{
+    /**
+     * A span of the traced request.
+     */
+    interface Entry
+    {
+        /**
+         * @return the phase of the span
+         */
+        Phase getPhase();
+
+        /**
+         * @return what the span was about (a document reference, a query statement, a template name, etc.), can be
+         *         {@code null}
+         */
+        String getSubject();
+
+        /**
+         * @return the number of spans this span was nested in
+         */
+        int getDepth();
+
+        /**
+         * @return the time elapsed between the beginning of the request and the beginning of the span, in nanoseconds
+         */
+        long getStartOffset();
+
+        /**
+         * @return the duration of the span in nanoseconds, -1 if the span was not ended when the request ended
+         */
+        long getDuration();
+    }
+
+    /**
+     * @return the description of the request, usually its action and URL
+     */
+    String getDescription();
+
+    /**
+     * @return when the request started
+     */
+    Date getStartDate();
+
+    /**
+     * @return the duration of the request, in nanoseconds
+     */
+    long getDuration();
+
+    /**
+     * @return the spans of the request, in the order they were started
+     */
+    List<Entry> getEntries();
+
+    /**
+     * @return {@code true} if some spans have not been kept because the request had more spans than the configured
+     *         maximum
+     */
+    boolean isTruncated();
+}
@@ -0,0 +1,284 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.instrumentation.internal;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.slf4j.Logger;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.component.manager.ComponentLifecycleException;
+import org.xwiki.component.phase.Disposable;
+import org.xwiki.component.phase.Initializable;
+import org.xwiki.component.phase.InitializationException;
+import org.xwiki.instrumentation.Instrumentation;
+import org.xwiki.instrumentation.InstrumentationConfiguration;
+import org.xwiki.instrumentation.Phase;
+import org.xwiki.instrumentation.PhaseStatistics;
+import org.xwiki.instrumentation.RequestTrace;
+import org.xwiki.instrumentation.Span;
+
+/**
+ * Default implementation of {@link Instrumentation}. The statistics of each phase are also registered against the
+ * platform JMX server with a name like {@code org.xwiki:type=Instrumentation,phase=<phase>}, and the traces of the slow
+ * requests are logged.
+ * 
+ * @version $Id$
+ * @since 4.4M1
+ */
+@Component
+@Singleton
+public class DefaultInstrumentation implements Instrumentation, Initializable, Disposable
+{
+    /**
+     * Returned when the instrumentation is disabled.
+     */
+    private static final Span NOOP_SPAN = new Span()
+    {
+        @Override
+        public void end()
+        {
+        }
+    };
+
+    /**
+     * The logger.
+     */
+    @Inject
+    private Logger logger;
+
+    /**
+     * The configuration.
+     */
+    @Inject
+    private InstrumentationConfiguration configuration;
+
+    /**
+     * The histograms of the phases. Not modified after initialization.
+     */
+    private final Map<Phase, Histogram> histograms = new EnumMap<Phase, Histogram>(Phase.class);
+
+    /**
+     * The request processed by the current thread.
+     */
+    private final ThreadLocal<DefaultRequestTrace> currentRequest = new ThreadLocal<DefaultRequestTrace>();
+
+    /**
+     * Whether the spans are measured.
+     */
+    private boolean enabled;
+
+    /**
+     * The duration above which the spans of a request are traced, in nanoseconds, 0 if the traces are disabled.
+     */
+    private long traceThreshold;
+
+    /**
+     * The maximum number of spans kept in a trace.
+     */
+    private int maxTraceSize;
+
+    /**
+     * The latest slow requests, used as a ring buffer.
+     */
+    private AtomicReferenceArray<RequestTrace> slowRequests;
+
+    /**
+     * The number of slow requests recorded, used to find the next slot of the ring buffer.
+     */
+    private final AtomicLong slowRequestCount = new AtomicLong();
+
+    @Override
+    public void initialize() throws InitializationException
+    {
+        this.enabled = this.configuration.isEnabled();
+        this.traceThreshold = TimeUnit.MILLISECONDS.toNanos(Math.max(0, this.configuration.getTraceThreshold()));
+        this.maxTraceSize = Math.max(1, this.configuration.getMaxTraceSize());
+        this.slowRequests = new AtomicReferenceArray<RequestTrace>(
+            Math.max(1, this.configuration.getSlowRequestHistorySize()));
+
+        MBeanServer mbs = ManagementFactory.getPlatformMBeanServer();
+        for (Phase phase : Phase.values()) {
+            Histogram histogram = new Histogram();
+            this.histograms.put(phase, histogram);
+
+            if (this.enabled) {
+                try {
+                    mbs.registerMBean(new JMXPhaseStatistics(histogram), getObjectName(phase));
+                } catch (Exception e) {
+                    this.logger.warn("Failed to register the statistics of phase [{}] against the JMX Server", phase,
+                        e);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void dispose() throws ComponentLifecycleException
+    {
+        if (this.enabled) {
+            MBeanServer mbs = ManagementFactory.getPlatformMBeanServer();
+            for (Phase phase : Phase.values()) {
+                try {
+                    mbs.unregisterMBean(getObjectName(phase));
+                } catch (Exception e) {
+                    this.logger.debug("Failed to unregister the statistics of phase [{}] from the JMX Server",
+                        phase, e);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void startRequest(String description)
+    {
+        if (!this.enabled) {
+            return;
+        }
+
+        DefaultRequestTrace trace = this.currentRequest.get();
+        if (trace != null) {
+            trace.nest();
+        } else {
+            this.currentRequest.set(new DefaultRequestTrace(description, this.traceThreshold > 0 ? this.maxTraceSize
+                : 0));
+        }
+    }
+
+    @Override
+    public void endRequest()
+    {
+        DefaultRequestTrace trace = this.currentRequest.get();
+        if (trace == null || !trace.unnest()) {
+            return;
+        }
+        this.currentRequest.remove();
+
+        long duration = trace.end();
+        this.histograms.get(Phase.REQUEST).record(duration);
+
+        if (trace.isTracing() && duration >= this.traceThreshold) {
+            int slot = (int) (this.slowRequestCount.getAndIncrement() % this.slowRequests.length());
+            this.slowRequests.set(slot, trace);
+
+            this.logger.info("Slow request: {}", trace);
+        }
+    }
+
+    @Override
+    public Span startSpan(Phase phase, Object subject)
+    {
+        if (!this.enabled) {
+            return NOOP_SPAN;
+        }
+
+        return new DefaultSpan(this.histograms.get(phase), phase, subject, getTracedRequest());
+    }
+
+    @Override
+    public void record(Phase phase, Object subject, long duration)
+    {
+        if (!this.enabled) {
+            return;
+        }
+
+        this.histograms.get(phase).record(duration);
+
+        DefaultRequestTrace trace = getTracedRequest();
+        if (trace != null) {
+            TraceEntry entry = trace.add(phase, subject, System.nanoTime() - duration);
+            if (entry != null) {
+                entry.setDuration(duration);
+            }
+        }
+    }
+
+    @Override
+    public PhaseStatistics getStatistics(Phase phase)
+    {
+        return this.histograms.get(phase);
+    }
+
+    @Override
+    public Map<Phase, PhaseStatistics> getStatistics()
+    {
+        return Collections.<Phase, PhaseStatistics> unmodifiableMap(this.histograms);
+    }
+
+    @Override
+    public List<RequestTrace> getSlowRequests()
+    {
+        int length = this.slowRequests.length();
+        long count = this.slowRequestCount.get();
+
+        List<RequestTrace> traces = new ArrayList<RequestTrace>(length);
+        for (long i = count - 1; i >= 0 && i >= count - length; --i) {
+            RequestTrace trace = this.slowRequests.get((int) (i % length));
+            if (trace != null) {
+                traces.add(trace);
+            }
+        }
+
+        return traces;
+    }
+
+    @Override
+    public void reset()
+    {
+        for (Histogram histogram : this.histograms.values()) {
+            histogram.reset();
+        }
+        for (int i = 0; i < this.slowRequests.length(); ++i) {
+            this.slowRequests.set(i, null);
+        }
+    }
+
+    /**
+     * @return the request processed by the current thread if it is traced, {@code null} otherwise
+     */
+    private DefaultRequestTrace getTracedRequest()
+    {
+        DefaultRequestTrace trace = this.currentRequest.get();
+
+        return trace != null && trace.isTracing() ? trace : null;
+    }
+
+    /**
+     * @param phase the phase
+     * @return the JMX name of the statistics of the phase
+     * @throws Exception when the name is invalid
+     */
+    private ObjectName getObjectName(Phase phase) throws Exception
+    {
+        return new ObjectName("org.xwiki:type=Instrumentation,phase=" + phase.getId());
+    }
+}
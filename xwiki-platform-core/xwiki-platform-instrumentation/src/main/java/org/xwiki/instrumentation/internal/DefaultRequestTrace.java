@@ -0,0 +1,248 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.instrumentation.internal;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import org.xwiki.instrumentation.Phase;
+import org.xwiki.instrumentation.RequestTrace;
+
+/**
+ * The state of the request processed by a thread. Only the thread processing the request modifies it, and it is not
+ * modified anymore once it has been published as a slow request.
+ * 
+ * @version $Id$
+ * @since 4.4M1
+ */
+public class DefaultRequestTrace implements RequestTrace
+{
+    /**
+     * The number of nanoseconds in a millisecond.
+     */
+    private static final double NANOS_PER_MILLI = 1000000D;
+
+    /**
+     * @see #getDescription()
+     */
+    private final String description;
+
+    /**
+     * @see #getStartDate()
+     */
+    private final Date startDate = new Date();
+
+    /**
+     * The value of {@link System#nanoTime()} when the request started.
+     */
+    private final long startTime = System.nanoTime();
+
+    /**
+     * The maximum number of spans to keep, 0 if the request is not traced.
+     */
+    private final int maxSize;
+
+    /**
+     * @see #getEntries()
+     */
+    private final List<Entry> entries;
+
+    /**
+     * @see #isTruncated()
+     */
+    private boolean truncated;
+
+    /**
+     * @see #getDuration()
+     */
+    private long duration = -1;
+
+    /**
+     * The number of spans currently started.
+     */
+    private int depth;
+
+    /**
+     * The number of requests started by the thread and not ended yet, including this one.
+     */
+    private int nesting = 1;
+
+    /**
+     * @param description the description of the request
+     * @param maxSize the maximum number of spans to keep, 0 if the request should not be traced
+     */
+    public DefaultRequestTrace(String description, int maxSize)
+    {
+        this.description = description;
+        this.maxSize = maxSize;
+        this.entries = maxSize > 0 ? new ArrayList<Entry>() : Collections.<Entry> emptyList();
+    }
+
+    /**
+     * @return {@code true} if the spans of the request are traced
+     */
+    public boolean isTracing()
+    {
+        return this.maxSize > 0;
+    }
+
+    /**
+     * Called when a request is started while this one is still running.
+     */
+    public void nest()
+    {
+        ++this.nesting;
+    }
+
+    /**
+     * Called when a request is ended.
+     * 
+     * @return {@code true} if this request is ended, {@code false} if a nested request has been ended
+     */
+    public boolean unnest()
+    {
+        return --this.nesting == 0;
+    }
+
+    /**
+     * End the request.
+     * 
+     * @return the duration of the request, in nanoseconds
+     */
+    public long end()
+    {
+        this.duration = System.nanoTime() - this.startTime;
+
+        return this.duration;
+    }
+
+    /**
+     * Called when a span is started by the thread processing this request.
+     * 
+     * @param phase the phase of the span
+     * @param subject what the span is about
+     * @param spanStartTime the value of {@link System#nanoTime()} when the span started
+     * @return the trace entry of the span, {@code null} if it is not kept
+     */
+    public TraceEntry startSpan(Phase phase, Object subject, long spanStartTime)
+    {
+        TraceEntry entry = add(phase, subject, spanStartTime);
+        ++this.depth;
+
+        return entry;
+    }
+
+    /**
+     * Called when a span started by the thread processing this request is ended.
+     */
+    public void endSpan()
+    {
+        --this.depth;
+    }
+
+    /**
+     * Add an entry to the trace.
+     * 
+     * @param phase the phase of the span
+     * @param subject what the span is about
+     * @param spanStartTime the value of {@link System#nanoTime()} when the span started
+     * @return the new entry, {@code null} if the trace is full
+     */
+    public TraceEntry add(Phase phase, Object subject, long spanStartTime)
+    {
+        if (this.entries.size() >= this.maxSize) {
+            this.truncated = true;
+            return null;
+        }
+
+        TraceEntry entry =
+            new TraceEntry(phase, subject != null ? subject.toString() : null, this.depth, spanStartTime
+                - this.startTime);
+        this.entries.add(entry);
+
+        return entry;
+    }
+
+    @Override
+    public String getDescription()
+    {
+        return this.description;
+    }
+
+    @Override
+    public Date getStartDate()
+    {
+        return this.startDate;
+    }
+
+    @Override
+    public long getDuration()
+    {
+        return this.duration;
+    }
+
+    @Override
+    public List<Entry> getEntries()
+    {
+        return Collections.unmodifiableList(this.entries);
+    }
+
+    @Override
+    public boolean isTruncated()
+    {
+        return this.truncated;
+    }
+
+    @Override
+    public String toString()
+    {
+        StringBuilder builder = new StringBuilder();
+        builder.append(this.description).append(" (").append(toMillis(this.duration)).append(" ms)");
+        for (Entry entry : this.entries) {
+            builder.append('\n');
+            for (int i = 0; i <= entry.getDepth(); ++i) {
+                builder.append("  ");
+            }
+            builder.append('+').append(toMillis(entry.getStartOffset())).append(" ms ").append(entry.getPhase());
+            if (entry.getSubject() != null) {
+                builder.append(" [").append(entry.getSubject()).append(']');
+            }
+            if (entry.getDuration() >= 0) {
+                builder.append(" (").append(toMillis(entry.getDuration())).append(" ms)");
+            }
+        }
+        if (this.truncated) {
+            builder.append("\n  ...");
+        }
+
+        return builder.toString();
+    }
+
+    /**
+     * @param nanos a duration in nanoseconds
+     * @return the duration in milliseconds
+     */
+    private static String toMillis(long nanos)
+    {
+        return String.format("%.1f", nanos / NANOS_PER_MILLI);
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.instrumentation.internal;
+
+import org.xwiki.instrumentation.Phase;
+import org.xwiki.instrumentation.Span;
+
+/**
+ * Measure a span and record its duration in the histogram of its phase, and in the trace of the current request if it
+ * is traced.
+ * 
+ * @version $Id$
+ * @since 4.4M1
+ */
+public class DefaultSpan implements Span
+{
+    /**
+     * The histogram of the phase of the span.
+     */
+    private final Histogram histogram;
+
+    /**
+     * The trace of the current request, {@code null} if it is not traced.
+     */
+    private final DefaultRequestTrace trace;
+
+    /**
+     * The entry of the span in the trace, {@code null} if it is not kept.
+     */
+    private final TraceEntry entry;
+
+    /**
+     * The value of {@link System#nanoTime()} when the span started.
+     */
+    private final long startTime = System.nanoTime();
+
+    /**
+     * Whether {@link #end()} has already been called.
+     */
+    private boolean ended;
+
+    /**
+     * @param histogram the histogram of the phase of the span
+     * @param phase the phase of the span
+     * @param subject what the span is about
+     * @param trace the trace of the current request, {@code null} if it is not traced
+     */
+    public DefaultSpan(Histogram histogram, Phase phase, Object subject, DefaultRequestTrace trace)
+    {
+        this.histogram = histogram;
+        this.trace = trace;
+        this.entry = trace != null ? trace.startSpan(phase, subject, this.startTime) : null;
+    }
+
+    @Override
+    public void end()
+    {
+        if (this.ended) {
+            return;
+        }
+        this.ended = true;
+
+        long duration = System.nanoTime() - this.startTime;
+        this.histogram.record(duration);
+
+        if (this.trace != null) {
+            this.trace.endSpan();
+            if (this.entry != null) {
+                this.entry.setDuration(duration);
+            }
+        }
+    }
+}
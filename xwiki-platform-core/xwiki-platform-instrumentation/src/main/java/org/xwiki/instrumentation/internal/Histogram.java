@@ -0,0 +1,197 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.instrumentation.internal;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.xwiki.instrumentation.PhaseStatistics;
+
+/**
+ * Lock-free histogram of durations, in the spirit of HdrHistogram: each power of two is split in
+ * {@value #SUB_BUCKET_COUNT} linear sub-buckets, so values are recorded with a relative precision of about 3% whatever
+ * their magnitude, in a fixed array of counters. Recording a value only increments atomic counters, so the histogram
+ * can be updated concurrently without locking.
+ * 
+ * @version $Id$
+ * @since 4.4M1
+ */
+public class Histogram implements PhaseStatistics
+{
+    /**
+     * The number of bits used to index the sub-buckets.
+     */
+    private static final int SUB_BUCKET_BITS = 5;
+
+    /**
+     * The number of sub-buckets of each power of two.
+     */
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+
+    /**
+     * Values lower than this are recorded exactly, each in its own bucket.
+     */
+    private static final int LINEAR_LIMIT = SUB_BUCKET_COUNT << 1;
+
+    /**
+     * The magnitude (position of the highest bit) of {@link #LINEAR_LIMIT}.
+     */
+    private static final int LINEAR_MAGNITUDE = SUB_BUCKET_BITS + 1;
+
+    /**
+     * Enough buckets for any positive long.
+     */
+    private static final int BUCKET_COUNT = LINEAR_LIMIT + (Long.SIZE - 1 - LINEAR_MAGNITUDE) * SUB_BUCKET_COUNT;
+
+    /**
+     * The number of values recorded in each bucket.
+     */
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+
+    /**
+     * The number of recorded values.
+     */
+    private final AtomicLong count = new AtomicLong();
+
+    /**
+     * The sum of the recorded values.
+     */
+    private final AtomicLong total = new AtomicLong();
+
+    /**
+     * The highest recorded value.
+     */
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * @param value the value to record, negative values are recorded as 0
+     */
+    public void record(long value)
+    {
+        long positiveValue = Math.max(0, value);
+
+        this.counts.incrementAndGet(getBucket(positiveValue));
+        this.count.incrementAndGet();
+        this.total.addAndGet(positiveValue);
+
+        long currentMax = this.max.get();
+        while (positiveValue > currentMax && !this.max.compareAndSet(currentMax, positiveValue)) {
+            currentMax = this.max.get();
+        }
+    }
+
+    /**
+     * Forget the recorded values. Values recorded concurrently may be partially forgotten.
+     */
+    public void reset()
+    {
+        for (int i = 0; i < BUCKET_COUNT; ++i) {
+            this.counts.set(i, 0);
+        }
+        this.count.set(0);
+        this.total.set(0);
+        this.max.set(0);
+    }
+
+    @Override
+    public long getCount()
+    {
+        return this.count.get();
+    }
+
+    @Override
+    public long getTotalTime()
+    {
+        return this.total.get();
+    }
+
+    @Override
+    public double getMeanTime()
+    {
+        long currentCount = this.count.get();
+
+        return currentCount > 0 ? (double) this.total.get() / currentCount : 0;
+    }
+
+    @Override
+    public long getMaxTime()
+    {
+        return this.max.get();
+    }
+
+    @Override
+    public long getTimeAtPercentile(double percentile)
+    {
+        long[] snapshot = new long[BUCKET_COUNT];
+        long snapshotCount = 0;
+        for (int i = 0; i < BUCKET_COUNT; ++i) {
+            snapshot[i] = this.counts.get(i);
+            snapshotCount += snapshot[i];
+        }
+        if (snapshotCount == 0) {
+            return 0;
+        }
+
+        double ratio = Math.min(100, Math.max(0, percentile)) / 100;
+        long rank = Math.max(1, (long) Math.ceil(ratio * snapshotCount));
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; ++i) {
+            seen += snapshot[i];
+            if (seen >= rank) {
+                return Math.min(getHighestValue(i), getMaxTime());
+            }
+        }
+
+        return getMaxTime();
+    }
+
+    /**
+     * @param value a positive value
+     * @return the index of the bucket where the value is counted
+     */
+    static int getBucket(long value)
+    {
+        if (value < LINEAR_LIMIT) {
+            return (int) value;
+        }
+
+        int magnitude = Long.SIZE - 1 - Long.numberOfLeadingZeros(value);
+        int subBucket = (int) (value >>> (magnitude - SUB_BUCKET_BITS)) - SUB_BUCKET_COUNT;
+
+        return LINEAR_LIMIT + (magnitude - LINEAR_MAGNITUDE) * SUB_BUCKET_COUNT + subBucket;
+    }
+
+    /**
+     * @param bucket the index of a bucket
+     * @return the highest value counted in the bucket
+     */
+    static long getHighestValue(int bucket)
+    {
+        if (bucket < LINEAR_LIMIT) {
+            return bucket;
+        }
+
+        int magnitude = LINEAR_MAGNITUDE + (bucket - LINEAR_LIMIT) / SUB_BUCKET_COUNT;
+        long subBucket = SUB_BUCKET_COUNT + (bucket - LINEAR_LIMIT) % SUB_BUCKET_COUNT;
+        int shift = magnitude - SUB_BUCKET_BITS;
+
+        return ((subBucket + 1) << shift) - 1;
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.instrumentation.internal;
+
+/**
+ * Expose the statistics of a phase over JMX.
+ * 
+ * @version $Id$
+ * @since 4.4M1
+ */
+public class JMXPhaseStatistics implements JMXPhaseStatisticsMBean
+{
+    /**
+     * The number of nanoseconds in a millisecond.
+     */
+    private static final double NANOS_PER_MILLI = 1000000D;
+
+    /**
+     * The histogram of the phase.
+     */
+    private final Histogram histogram;
+
+    /**
+     * @param histogram the histogram of the phase
+     */
+    public JMXPhaseStatistics(Histogram histogram)
+    {
+        this.histogram = histogram;
+    }
+
+    @Override
+    public long getCount()
+    {
+        return this.histogram.getCount();
+    }
+
+    @Override
+    public double getTotalTime()
+    {
+        return this.histogram.getTotalTime() / NANOS_PER_MILLI;
+    }
+
+    @Override
+    public double getMeanTime()
+    {
+        return this.histogram.getMeanTime() / NANOS_PER_MILLI;
+    }
+
+    @Override
+    public double getMaxTime()
+    {
+        return this.histogram.getMaxTime() / NANOS_PER_MILLI;
+    }
+
+    @Override
+    public double get50thPercentile()
+    {
+        return this.histogram.getTimeAtPercentile(50) / NANOS_PER_MILLI;
+    }
+
+    @Override
+    public double get95thPercentile()
+    {
+        return this.histogram.getTimeAtPercentile(95) / NANOS_PER_MILLI;
+    }
+
+    @Override
+    public double get99thPercentile()
+    {
+        return this.histogram.getTimeAtPercentile(99) / NANOS_PER_MILLI;
+    }
+
+    @Override
+    public void reset()
+    {
+        this.histogram.reset();
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.instrumentation.internal;
+
+/**
+ * Expose the statistics of a phase over JMX.
+ * 
+ * @version $Id$
+ * @since 4.4M1
+ */
+public interface JMXPhaseStatisticsMBean
+{
+    /**
+     * @return the number of recorded spans
+     */
+    long getCount();
+
+    /**
+     * @return the total duration of the recorded spans, in milliseconds
+     */
+    double getTotalTime();
+
+    /**
+     * @return the average duration of the recorded spans, in milliseconds
+     */
+    double getMeanTime();
+
+    /**
+     * @return the longest duration recorded, in milliseconds
+     */
+    double getMaxTime();
+
+    /**
+     * @return the median duration, in milliseconds
+     */
+    double get50thPercentile();
+
+    /**
+     * @return the duration below which 95% of the spans fall, in milliseconds
+     */
+    double get95thPercentile();
+
+    /**
+     * @return the duration below which 99% of the spans fall, in milliseconds
+     */
+    double get99thPercentile();
+
+    /**
+     * Forget the recorded spans.
+     */
+    void reset();
+}
@@ -0,0 +1,109 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.instrumentation.internal;
+
+import org.xwiki.instrumentation.Phase;
+import org.xwiki.instrumentation.RequestTrace;
+
+/**
+ * A span kept in the trace of a request.
+ * 
+ * @version $Id$
+ * @since 4.4M1
+ */
+public class TraceEntry implements RequestTrace.Entry
+{
+    /**
+     * @see #getPhase()
+     */
+    private final Phase phase;
+
+    /**
+     * @see #getSubject()
+     */
+    private final String subject;
+
+    /**
+     * @see #getDepth()
+     */
+    private final int depth;
+
+    /**
+     * @see #getStartOffset()
+     */
+    private final long startOffset;
+
+    /**
+     * @see #getDuration()
+     */
+    private long duration = -1;
+
+    /**
+     * @param phase the phase of the span
+     * @param subject what the span is about
+     * @param depth the number of spans this span is nested in
+     * @param startOffset the time elapsed between the beginning of the request and the beginning of the span
+     */
+    public TraceEntry(Phase phase, String subject, int depth, long startOffset)
+    {
+        this.phase = phase;
+        this.subject = subject;
+        this.depth = depth;
+        this.startOffset = startOffset;
+    }
+
+    @Override
+    public Phase getPhase()
+    {
+        return this.phase;
+    }
+
+    @Override
+    public String getSubject()
+    {
+        return this.subject;
+    }
+
+    @Override
+    public int getDepth()
+    {
+        return this.depth;
+    }
+
+    @Override
+    public long getStartOffset()
+    {
+        return this.startOffset;
+    }
+
+    @Override
+    public long getDuration()
+    {
+        return this.duration;
+    }
+
+    /**
+     * @param duration the duration of the span, in nanoseconds
+     */
+    public void setDuration(long duration)
+    {
+        this.duration = duration;
+    }
+}
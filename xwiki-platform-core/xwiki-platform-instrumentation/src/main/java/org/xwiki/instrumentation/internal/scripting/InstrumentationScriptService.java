@@ -0,0 +1,109 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.instrumentation.internal.scripting;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import org.xwiki.bridge.DocumentAccessBridge;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.instrumentation.Instrumentation;
+import org.xwiki.instrumentation.Phase;
+import org.xwiki.instrumentation.PhaseStatistics;
+import org.xwiki.instrumentation.RequestTrace;
+import org.xwiki.script.service.ScriptService;
+
+/**
+ * Provides Instrumentation-specific Scripting APIs.
+ * 
+ * @version $Id$
+ * @since 4.4M1
+ */
+@Component
+@Named("instrumentation")
+@Singleton
+public class InstrumentationScriptService implements ScriptService
+{
+    /**
+     * Measure the requests.
+     */
+    @Inject
+    private Instrumentation instrumentation;
+
+    /**
+     * Used to check programming rights.
+     */
+    @Inject
+    private DocumentAccessBridge bridge;
+
+    /**
+     * @return the statistics of the spans of each phase
+     */
+    public Map<Phase, PhaseStatistics> getStatistics()
+    {
+        return this.instrumentation.getStatistics();
+    }
+
+    /**
+     * @param phaseId the identifier of a phase, for example "store.load"
+     * @return the statistics of the spans of the phase, {@code null} if there is no phase with this identifier
+     */
+    public PhaseStatistics getStatistics(String phaseId)
+    {
+        for (Phase phase : Phase.values()) {
+            if (phase.getId().equals(phaseId)) {
+                return this.instrumentation.getStatistics(phase);
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * The traces contain the references of the documents and the queries used by other users, so they are only
+     * available with programming rights.
+     * 
+     * @return the traces of the latest slow requests, most recent first, or an empty list if the current document
+     *         doesn't have programming rights
+     */
+    public List<RequestTrace> getSlowRequests()
+    {
+        if (!this.bridge.hasProgrammingRights()) {
+            return Collections.emptyList();
+        }
+
+        return this.instrumentation.getSlowRequests();
+    }
+
+    /**
+     * Forget the recorded statistics and traces. Requires programming rights.
+     */
+    public void reset()
+    {
+        if (this.bridge.hasProgrammingRights()) {
+            this.instrumentation.reset();
+        }
+    }
+}
@@ -0,0 +1,156 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.instrumentation.internal;
+
+import java.util.List;
+
+import org.jmock.Expectations;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.xwiki.instrumentation.Instrumentation;
+import org.xwiki.instrumentation.InstrumentationConfiguration;
+import org.xwiki.instrumentation.Phase;
+import org.xwiki.instrumentation.RequestTrace;
+import org.xwiki.instrumentation.Span;
+import org.xwiki.test.AbstractMockingComponentTestCase;
+import org.xwiki.test.annotation.MockingRequirement;
+
+/**
+ * Unit tests for {@link DefaultInstrumentation}.
+ * 
+ * @version $Id$
+ * @since 4.4M1
+ */
+@MockingRequirement(DefaultInstrumentation.class)
+public class DefaultInstrumentationTest extends AbstractMockingComponentTestCase<Instrumentation>
+{
+    private Instrumentation instrumentation;
+
+    @Before
+    public void configure() throws Exception
+    {
+        final InstrumentationConfiguration configuration =
+            getComponentManager().getInstance(InstrumentationConfiguration.class);
+
+        getMockery().checking(new Expectations()
+        {
+            {
+                allowing(configuration).isEnabled();
+                will(returnValue(true));
+                allowing(configuration).getTraceThreshold();
+                will(returnValue(5L));
+                allowing(configuration).getMaxTraceSize();
+                will(returnValue(3));
+                allowing(configuration).getSlowRequestHistorySize();
+                will(returnValue(2));
+
+                ignoring(any(Logger.class));
+            }
+        });
+
+        this.instrumentation = getMockedComponent();
+    }
+
+    @Test
+    public void testSpansAreAggregated()
+    {
+        for (int i = 0; i < 10; ++i) {
+            Span span = this.instrumentation.startSpan(Phase.STORE_LOAD, "Main.WebHome");
+            span.end();
+            // Ending a span twice has no effect.
+            span.end();
+        }
+        this.instrumentation.record(Phase.CACHE_HIT, null, 1000);
+
+        Assert.assertEquals(10, this.instrumentation.getStatistics(Phase.STORE_LOAD).getCount());
+        Assert.assertEquals(1, this.instrumentation.getStatistics().get(Phase.CACHE_HIT).getCount());
+        Assert.assertEquals(1000, this.instrumentation.getStatistics(Phase.CACHE_HIT).getTotalTime());
+        Assert.assertEquals(0, this.instrumentation.getStatistics(Phase.QUERY).getCount());
+
+        this.instrumentation.reset();
+
+        Assert.assertEquals(0, this.instrumentation.getStatistics(Phase.STORE_LOAD).getCount());
+    }
+
+    @Test
+    public void testFastRequestIsNotTraced()
+    {
+        this.instrumentation.startRequest("view Main.WebHome");
+        this.instrumentation.startSpan(Phase.RENDERING, null).end();
+        this.instrumentation.endRequest();
+
+        Assert.assertEquals(1, this.instrumentation.getStatistics(Phase.REQUEST).getCount());
+        Assert.assertTrue(this.instrumentation.getSlowRequests().isEmpty());
+    }
+
+    @Test
+    public void testSlowRequestIsTraced() throws Exception
+    {
+        this.instrumentation.startRequest("view Main.WebHome");
+        Span rendering = this.instrumentation.startSpan(Phase.RENDERING, "Main.WebHome");
+        // Nested requests are part of the current request.
+        this.instrumentation.startRequest("nested");
+        this.instrumentation.startSpan(Phase.QUERY, "select doc.name from XWikiDocument doc").end();
+        this.instrumentation.endRequest();
+        Thread.sleep(10);
+        rendering.end();
+        this.instrumentation.startSpan(Phase.SECURITY, null).end();
+        this.instrumentation.startSpan(Phase.VELOCITY, "view.vm").end();
+        this.instrumentation.endRequest();
+
+        Assert.assertEquals(1, this.instrumentation.getStatistics(Phase.REQUEST).getCount());
+
+        List<RequestTrace> traces = this.instrumentation.getSlowRequests();
+        Assert.assertEquals(1, traces.size());
+
+        RequestTrace trace = traces.get(0);
+        Assert.assertEquals("view Main.WebHome", trace.getDescription());
+        Assert.assertTrue(trace.getDuration() >= 10000000L);
+        Assert.assertTrue(trace.isTruncated());
+
+        List<RequestTrace.Entry> entries = trace.getEntries();
+        Assert.assertEquals(3, entries.size());
+        Assert.assertEquals(Phase.RENDERING, entries.get(0).getPhase());
+        Assert.assertEquals(0, entries.get(0).getDepth());
+        Assert.assertTrue(entries.get(0).getDuration() >= 10000000L);
+        Assert.assertEquals(Phase.QUERY, entries.get(1).getPhase());
+        Assert.assertEquals("select doc.name from XWikiDocument doc", entries.get(1).getSubject());
+        Assert.assertEquals(1, entries.get(1).getDepth());
+        Assert.assertEquals(Phase.SECURITY, entries.get(2).getPhase());
+        Assert.assertEquals(0, entries.get(2).getDepth());
+    }
+
+    @Test
+    public void testSlowRequestHistoryIsBounded() throws Exception
+    {
+        for (int i = 0; i < 3; ++i) {
+            this.instrumentation.startRequest("request " + i);
+            Thread.sleep(6);
+            this.instrumentation.endRequest();
+        }
+
+        List<RequestTrace> traces = this.instrumentation.getSlowRequests();
+        Assert.assertEquals(2, traces.size());
+        Assert.assertEquals("request 2", traces.get(0).getDescription());
+        Assert.assertEquals("request 1", traces.get(1).getDescription());
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.instrumentation.internal;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link Histogram}.
+ * 
+ * @version $Id$
+ * @since 4.4M1
+ */
+public class HistogramTest
+{
+    @Test
+    public void testBucketPrecision()
+    {
+        long[] values = {0, 1, 63, 64, 65, 1000, 123456789, Long.MAX_VALUE / 3, Long.MAX_VALUE};
+        for (long value : values) {
+            int bucket = Histogram.getBucket(value);
+            long highest = Histogram.getHighestValue(bucket);
+            Assert.assertTrue("Value " + value + " is above its bucket", value <= highest);
+            Assert.assertTrue("Bucket of " + value + " is too wide", highest - value <= value / 32);
+            if (bucket > 0) {
+                Assert.assertTrue(Histogram.getHighestValue(bucket - 1) < value);
+            }
+        }
+    }
+
+    @Test
+    public void testStatistics()
+    {
+        Histogram histogram = new Histogram();
+        Assert.assertEquals(0, histogram.getTimeAtPercentile(50));
+        Assert.assertEquals(0, histogram.getMeanTime(), 0);
+
+        for (long i = 1; i <= 1000; ++i) {
+            histogram.record(i * 1000);
+        }
+
+        Assert.assertEquals(1000, histogram.getCount());
+        Assert.assertEquals(500500000L, histogram.getTotalTime());
+        Assert.assertEquals(500500, histogram.getMeanTime(), 0);
+        Assert.assertEquals(1000000, histogram.getMaxTime());
+        Assert.assertEquals(500000, histogram.getTimeAtPercentile(50), 500000 / 32);
+        Assert.assertEquals(990000, histogram.getTimeAtPercentile(99), 990000 / 32);
+        Assert.assertEquals(1000000, histogram.getTimeAtPercentile(100));
+
+        histogram.reset();
+
+        Assert.assertEquals(0, histogram.getCount());
+        Assert.assertEquals(0, histogram.getMaxTime());
+        Assert.assertEquals(0, histogram.getTimeAtPercentile(99));
+    }
+
+    @Test
+    public void testConcurrentRecording() throws Exception
+    {
+        final Histogram histogram = new Histogram();
+
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int i = 0; i < 8; ++i) {
+            final long offset = i;
+            threads.add(new Thread()
+            {
+                @Override
+                public void run()
+                {
+                    for (long value = 0; value < 10000; ++value) {
+                        histogram.record(value * 8 + offset);
+                    }
+                }
+            });
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        Assert.assertEquals(80000, histogram.getCount());
+        Assert.assertEquals(79999L * 80000 / 2, histogram.getTotalTime());
+        Assert.assertEquals(79999, histogram.getMaxTime());
+        Assert.assertEquals(79999, histogram.getTimeAtPercentile(100));
+    }
+}
@@ -47,18 +47,20 @@
 import org.hibernate.Session;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.xwiki.instrumentation.Instrumentation;
+import org.xwiki.instrumentation.Phase;
+import org.xwiki.instrumentation.Span;
 
 import com.xpn.xwiki.XWikiException;
 import com.xpn.xwiki.doc.XWikiAttachment;
 import com.xpn.xwiki.doc.XWikiDocument;
-import com.xpn.xwiki.monitor.api.MonitorPlugin;
 import com.xpn.xwiki.objects.BaseObject;
 import com.xpn.xwiki.objects.DBStringListProperty;
 import com.xpn.xwiki.objects.classes.BaseClass;
 import com.xpn.xwiki.objects.classes.PropertyClass;
 import com.xpn.xwiki.plugin.query.HibernateQuery.XWikiHibernateQueryTranslator.ObjProperty;
 import com.xpn.xwiki.store.XWikiHibernateStore;
-import com.xpn.xwiki.util.Util;
+import com.xpn.xwiki.web.Utils;
 
 /**
  * Query implementation for Hibernate.
@@ -860,13 +862,9 @@ public boolean isMultiValue()
     protected List hqlexec(String hql, Map params, int fs, int fr) throws XWikiException
     {
         boolean bTransaction = true;
-        final MonitorPlugin monitor = Util.getMonitorPlugin(getContext());
+        final Span span = Utils.getComponent(Instrumentation.class).startSpan(Phase.QUERY, hql);
         List r = null;
         try {
-            // Start monitoring timer
-            if (monitor != null)
-                monitor.startTimer("hibernate");
-
             getHibernateStore().checkHibernate(getContext());
             bTransaction = getHibernateStore().beginTransaction(getContext());
 
@@ -903,9 +901,7 @@ protected List hqlexec(String hql, Map params, int fs, int fr) throws XWikiExcep
                     getHibernateStore().endTransaction(getContext(), false);
             } catch (Exception e) {
             }
-            // End monitoring timer
-            if (monitor != null)
-                monitor.endTimer("hibernate");
+            span.end();
         }
     }
 
@@ -94,9 +94,7 @@ private Locale getParentLocale(Locale locale)
      */
     private LocalizedBundle getLocalizedBundle(Locale locale)
     {
-        String localeString = locale.toString();
-
-        LocalizedBundle bundle = this.bundleCache.get(localeString);
+        LocalizedBundle bundle = this.bundleCache.get(locale);
         if (bundle == null) {
             bundle = getSynchLocalizedBundle(locale);
         }
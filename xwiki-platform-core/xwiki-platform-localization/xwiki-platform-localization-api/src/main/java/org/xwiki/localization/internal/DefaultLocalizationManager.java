@@ -59,6 +59,12 @@ public class DefaultLocalizationManager implements LocalizationManager
     @Inject
     private TranslationBundleContext bundleContext;
 
+    /**
+     * Used to find translations without searching all the bundles.
+     */
+    @Inject
+    private TranslationIndexManager indexManager;
+
     /**
      * The logger to log.
      */
@@ -68,14 +74,7 @@ public class DefaultLocalizationManager implements LocalizationManager
     @Override
     public Translation getTranslation(String key, Locale locale)
     {
-        for (TranslationBundle bundle : this.bundleContext.getBundles()) {
-            Translation translation = bundle.getTranslation(key, locale);
-            if (translation != null) {
-                return translation;
-            }
-        }
-
-        return null;
+        return this.indexManager.getIndex().getTranslation(key, locale);
     }
 
     @Override
@@ -19,8 +19,11 @@
  */
 package org.xwiki.localization.internal;
 
-import java.util.Collection;
-import java.util.PriorityQueue;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 import javax.inject.Inject;
 import javax.inject.Named;
@@ -28,6 +31,7 @@
 import javax.inject.Singleton;
 
 import org.slf4j.Logger;
+import org.xwiki.bridge.DocumentAccessBridge;
 import org.xwiki.component.annotation.Component;
 import org.xwiki.component.manager.ComponentLookupException;
 import org.xwiki.component.manager.ComponentManager;
@@ -47,10 +51,53 @@
 public class DefaultTranslationBundleContext implements TranslationBundleContext
 {
     /**
-     * The key associated to the list of bundles in the {@link ExecutionContext}.
+     * The key associated to the bundles in the {@link ExecutionContext}.
      */
     private static final String CKEY_BUNDLES = "localization.bundles";
 
+    /**
+     * The bundles of an {@link ExecutionContext}.
+     */
+    private static class ContextBundles
+    {
+        /**
+         * The bundles explicitly added to the context.
+         */
+        private List<TranslationBundle> addedBundles = Collections.emptyList();
+
+        /**
+         * The bundles listed for each wiki and user, see
+         * {@link DefaultTranslationBundleContext#getScope(DocumentAccessBridge)}.
+         */
+        private final Map<String, ScopeBundles> scopes = new HashMap<String, ScopeBundles>();
+    }
+
+    /**
+     * The bundles of an {@link ExecutionContext} for a given wiki and user.
+     */
+    private static class ScopeBundles
+    {
+        /**
+         * The generation of the {@link TranslationIndexManager} when the bundles were listed.
+         */
+        private final long generation;
+
+        /**
+         * The bundles registered as components and the added bundles, sorted by priority.
+         */
+        private final List<TranslationBundle> bundles;
+
+        /**
+         * @param generation the generation of the {@link TranslationIndexManager} when the bundles were listed
+         * @param bundles the bundles registered as components and the added bundles, sorted by priority
+         */
+        ScopeBundles(long generation, List<TranslationBundle> bundles)
+        {
+            this.generation = generation;
+            this.bundles = bundles;
+        }
+    }
+
     /**
      * Used to access the current context.
      */
@@ -64,6 +111,19 @@ public class DefaultTranslationBundleContext implements TranslationBundleContext
     @Named("context")
     private Provider<ComponentManager> componentManager;
 
+    /**
+     * Used to know when the registered bundles may have changed. Lazily loaded since the indexes depend on this
+     * component.
+     */
+    @Inject
+    private Provider<TranslationIndexManager> indexManager;
+
+    /**
+     * Used to get the current wiki and user, which the bundles registered as components depend on.
+     */
+    @Inject
+    private DocumentAccessBridge documentAccessBridge;
+
     /**
      * The logger.
      */
@@ -71,55 +131,110 @@ public class DefaultTranslationBundleContext implements TranslationBundleContext
     private Logger logger;
 
     /**
-     * @return the current bundles
+     * The bundles registered as components depend on the current wiki and user since some bundles are registered in
+     * the wiki and user component managers, so the bundles and their index have to be cached for each of them.
+     * 
+     * @param documentAccessBridge used to get the current wiki and user
+     * @return the identifier of the current wiki and user
      */
-    private PriorityQueue<TranslationBundle> initializeContextBundle()
+    static String getScope(DocumentAccessBridge documentAccessBridge)
     {
-        PriorityQueue<TranslationBundle> bundles;
+        return documentAccessBridge.getCurrentWiki() + '/' + documentAccessBridge.getCurrentUserReference();
+    }
+
+    /**
+     * @param addedBundles the bundles explicitly added to the context
+     * @return the bundles registered as components and the added bundles, sorted by priority
+     */
+    private List<TranslationBundle> initializeContextBundle(List<TranslationBundle> addedBundles)
+    {
+        List<TranslationBundle> bundles;
 
         try {
             bundles =
-                new PriorityQueue<TranslationBundle>(this.componentManager.get().<TranslationBundle> getInstanceList(
+                new ArrayList<TranslationBundle>(this.componentManager.get().<TranslationBundle> getInstanceList(
                     TranslationBundle.class));
         } catch (ComponentLookupException e) {
             this.logger.error("Failed to lookup Bundle components", e);
 
-            bundles = new PriorityQueue<TranslationBundle>();
+            bundles = new ArrayList<TranslationBundle>();
         }
 
-        return bundles;
+        bundles.addAll(addedBundles);
+
+        Collections.sort(bundles);
+
+        return Collections.unmodifiableList(bundles);
     }
 
     /**
-     * @return the current bundles
+     * @param context the current context
+     * @return the bundles of the context
      */
-    private PriorityQueue<TranslationBundle> getBundlesInternal()
+    private ContextBundles getContextBundles(ExecutionContext context)
     {
-        PriorityQueue<TranslationBundle> bundles;
+        ContextBundles contextBundles = (ContextBundles) context.getProperty(CKEY_BUNDLES);
 
-        ExecutionContext context = this.execution.getContext();
-        if (context != null) {
-            bundles = (PriorityQueue<TranslationBundle>) context.getProperty(CKEY_BUNDLES);
+        if (contextBundles == null) {
+            contextBundles = new ContextBundles();
+            context.setProperty(CKEY_BUNDLES, contextBundles);
+        }
+
+        return contextBundles;
+    }
 
-            if (bundles == null) {
-                bundles = initializeContextBundle();
-            }
-        } else {
-            bundles = initializeContextBundle();
+    /**
+     * @param contextBundles the bundles of the context
+     * @return the bundles of the current wiki and user, listed again if bundles have been registered or unregistered
+     *         since they were cached
+     */
+    private List<TranslationBundle> getScopeBundles(ContextBundles contextBundles)
+    {
+        long generation = this.indexManager.get().getGeneration();
+        String scope = getScope(this.documentAccessBridge);
+
+        ScopeBundles scopeBundles = contextBundles.scopes.get(scope);
+
+        if (scopeBundles == null || scopeBundles.generation != generation) {
+            scopeBundles = new ScopeBundles(generation, initializeContextBundle(contextBundles.addedBundles));
+            contextBundles.scopes.put(scope, scopeBundles);
         }
 
-        return bundles;
+        return scopeBundles.bundles;
     }
 
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The returned list is sorted by priority and never modified: adding, registering or unregistering a bundle
+     * replaces it with a new list, so that it can be used as a key to cache the result of lookups.
+     */
     @Override
-    public Collection<TranslationBundle> getBundles()
+    public List<TranslationBundle> getBundles()
     {
-        return getBundlesInternal();
+        ExecutionContext context = this.execution.getContext();
+
+        if (context != null) {
+            return getScopeBundles(getContextBundles(context));
+        }
+
+        return initializeContextBundle(Collections.<TranslationBundle> emptyList());
     }
 
     @Override
     public void addBundle(TranslationBundle bundle)
     {
-        getBundlesInternal().add(bundle);
+        ExecutionContext context = this.execution.getContext();
+
+        if (context != null) {
+            ContextBundles contextBundles = getContextBundles(context);
+
+            List<TranslationBundle> addedBundles = new ArrayList<TranslationBundle>(contextBundles.addedBundles);
+            addedBundles.add(bundle);
+            contextBundles.addedBundles = Collections.unmodifiableList(addedBundles);
+
+            // The bundles of each scope will be listed again, with the added bundle.
+            contextBundles.scopes.clear();
+        }
     }
 }
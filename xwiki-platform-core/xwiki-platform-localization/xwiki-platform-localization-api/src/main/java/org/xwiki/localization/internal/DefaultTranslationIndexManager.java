@@ -0,0 +1,172 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.localization.internal;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.xwiki.bridge.DocumentAccessBridge;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.context.Execution;
+import org.xwiki.context.ExecutionContext;
+import org.xwiki.localization.TranslationBundle;
+import org.xwiki.localization.TranslationBundleContext;
+
+/**
+ * Default implementation of {@link TranslationIndexManager}. Indexes are shared between all the executions using the
+ * same bundles and are dropped when a bundle is registered or unregistered (which changes the list of bundles) or when
+ * the content of a bundle changes.
+ *
+ * @version $Id$
+ * @since 4.4M1
+ */
+@Component
+@Singleton
+public class DefaultTranslationIndexManager implements TranslationIndexManager
+{
+    /**
+     * The key associated to the indexes of the current bundles (for each wiki and user) in the
+     * {@link ExecutionContext}.
+     */
+    private static final String CKEY_INDEX = "localization.index";
+
+    /**
+     * The maximum number of bundle lists for which an index is kept.
+     */
+    private static final int MAX_INDEXES = 100;
+
+    /**
+     * Used to access the current context.
+     */
+    @Inject
+    private Execution execution;
+
+    /**
+     * Used to access the current bundles.
+     */
+    @Inject
+    private TranslationBundleContext bundleContext;
+
+    /**
+     * Used to get the current wiki and user.
+     */
+    @Inject
+    private DocumentAccessBridge documentAccessBridge;
+
+    /**
+     * The indexes, by list of bundles. Most executions use the bundles registered as components but some also use
+     * bundles added to the context, so several lists have to be indexed.
+     */
+    private final Map<List<TranslationBundle>, TranslationIndex> indexes =
+        new LinkedHashMap<List<TranslationBundle>, TranslationIndex>(16, 0.75f, true)
+        {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<List<TranslationBundle>, TranslationIndex> eldest)
+            {
+                return size() > MAX_INDEXES;
+            }
+        };
+
+    /**
+     * Incremented each time the indexes are invalidated.
+     */
+    private final AtomicLong generation = new AtomicLong();
+
+    @Override
+    public TranslationIndex getIndex()
+    {
+        List<TranslationBundle> bundles = getBundles();
+
+        ExecutionContext context = this.execution.getContext();
+        if (context != null) {
+            Map<String, TranslationIndex> contextIndexes =
+                (Map<String, TranslationIndex>) context.getProperty(CKEY_INDEX);
+            if (contextIndexes == null) {
+                contextIndexes = new HashMap<String, TranslationIndex>();
+                context.setProperty(CKEY_INDEX, contextIndexes);
+            }
+
+            String scope = DefaultTranslationBundleContext.getScope(this.documentAccessBridge);
+            TranslationIndex index = contextIndexes.get(scope);
+            if (index == null || index.getBundles() != bundles || !index.isValid()) {
+                index = getSharedIndex(bundles);
+                contextIndexes.put(scope, index);
+            }
+
+            return index;
+        }
+
+        return getSharedIndex(bundles);
+    }
+
+    /**
+     * @return the bundles applying to the current context, ordered by priority
+     */
+    private List<TranslationBundle> getBundles()
+    {
+        Collection<TranslationBundle> bundles = this.bundleContext.getBundles();
+
+        return bundles instanceof List ? (List<TranslationBundle>) bundles : new ArrayList<TranslationBundle>(bundles);
+    }
+
+    /**
+     * @param bundles the bundles, ordered by priority
+     * @return the index shared by all the executions using these bundles
+     */
+    private TranslationIndex getSharedIndex(List<TranslationBundle> bundles)
+    {
+        synchronized (this.indexes) {
+            TranslationIndex index = this.indexes.get(bundles);
+            if (index == null || !index.isValid()) {
+                index = new TranslationIndex(bundles);
+                this.indexes.put(bundles, index);
+            }
+
+            return index;
+        }
+    }
+
+    @Override
+    public void invalidate()
+    {
+        this.generation.incrementAndGet();
+
+        synchronized (this.indexes) {
+            for (TranslationIndex index : this.indexes.values()) {
+                index.invalidate();
+            }
+            this.indexes.clear();
+        }
+    }
+
+    @Override
+    public long getGeneration()
+    {
+        return this.generation.get();
+    }
+}
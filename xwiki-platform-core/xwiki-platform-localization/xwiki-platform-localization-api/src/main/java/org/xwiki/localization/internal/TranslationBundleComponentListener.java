@@ -0,0 +1,78 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.localization.internal;
+
+import java.util.Arrays;
+import java.util.List;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Provider;
+import javax.inject.Singleton;
+
+import org.xwiki.component.annotation.Component;
+import org.xwiki.component.event.ComponentDescriptorAddedEvent;
+import org.xwiki.component.event.ComponentDescriptorRemovedEvent;
+import org.xwiki.localization.TranslationBundle;
+import org.xwiki.observation.EventListener;
+import org.xwiki.observation.event.Event;
+
+/**
+ * Invalidate the translation indexes and the bundles cached in the execution contexts when a {@link TranslationBundle}
+ * component is registered or unregistered.
+ *
+ * @version $Id$
+ * @since 4.4M1
+ */
+@Component
+@Named(TranslationBundleComponentListener.NAME)
+@Singleton
+public class TranslationBundleComponentListener implements EventListener
+{
+    /**
+     * The name of the listener.
+     */
+    public static final String NAME = "localization.bundleComponentListener";
+
+    /**
+     * The indexes to invalidate. Lazily loaded to not initialize the localization when the listener is registered.
+     */
+    @Inject
+    private Provider<TranslationIndexManager> indexManager;
+
+    @Override
+    public List<Event> getEvents()
+    {
+        return Arrays.<Event> asList(new ComponentDescriptorAddedEvent(TranslationBundle.class),
+            new ComponentDescriptorRemovedEvent(TranslationBundle.class));
+    }
+
+    @Override
+    public String getName()
+    {
+        return NAME;
+    }
+
+    @Override
+    public void onEvent(Event event, Object source, Object data)
+    {
+        this.indexManager.get().invalidate();
+    }
+}
@@ -0,0 +1,224 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.localization.internal;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.xwiki.localization.Translation;
+import org.xwiki.localization.TranslationBundle;
+
+/**
+ * Merges the translations of a list of bundles ordered by priority: for each {@link Locale}, the translation found for
+ * a key is remembered with the position of the bundle it comes from, so that following lookups of the same key don't
+ * search the bundles again.
+ * <p>
+ * Only the translations of {@link AbstractCachedTranslationBundle}s, which don't depend on the context, are indexed.
+ * Other bundles (for example the bundles depending on the current wiki) are still searched on each lookup, but only
+ * when their priority is better than the one of the indexed translation.
+ *
+ * @version $Id$
+ * @since 4.4M1
+ */
+public class TranslationIndex
+{
+    /**
+     * The result of the search of a key in the indexed bundles.
+     */
+    private static class Entry
+    {
+        /**
+         * The position of the bundle containing the translation, the number of bundles if none does.
+         */
+        private final int position;
+
+        /**
+         * The translation, {@code null} if none of the indexed bundles contains the key.
+         */
+        private final Translation translation;
+
+        /**
+         * @param position the position of the bundle containing the translation
+         * @param translation the translation
+         */
+        Entry(int position, Translation translation)
+        {
+            this.position = position;
+            this.translation = translation;
+        }
+    }
+
+    /**
+     * The bundles, ordered by priority.
+     */
+    private final List<TranslationBundle> bundles;
+
+    /**
+     * Indicate for each bundle if its translations can be indexed.
+     */
+    private final boolean[] indexed;
+
+    /**
+     * The positions of the bundles which can't be indexed.
+     */
+    private final int[] contextual;
+
+    /**
+     * The indexed translations, by locale and key.
+     */
+    private final ConcurrentMap<Locale, ConcurrentMap<String, Entry>> entries =
+        new ConcurrentHashMap<Locale, ConcurrentMap<String, Entry>>();
+
+    /**
+     * False when the content of the indexed bundles has changed.
+     */
+    private volatile boolean valid = true;
+
+    /**
+     * @param bundles the bundles, ordered by priority
+     */
+    public TranslationIndex(List<TranslationBundle> bundles)
+    {
+        this.bundles = bundles;
+        this.indexed = new boolean[bundles.size()];
+
+        int contextualCount = 0;
+        for (int i = 0; i < this.indexed.length; ++i) {
+            this.indexed[i] = bundles.get(i) instanceof AbstractCachedTranslationBundle;
+            if (!this.indexed[i]) {
+                ++contextualCount;
+            }
+        }
+
+        this.contextual = new int[contextualCount];
+        for (int i = 0, j = 0; i < this.indexed.length; ++i) {
+            if (!this.indexed[i]) {
+                this.contextual[j++] = i;
+            }
+        }
+    }
+
+    /**
+     * @return the bundles, ordered by priority
+     */
+    public List<TranslationBundle> getBundles()
+    {
+        return this.bundles;
+    }
+
+    /**
+     * @return false if the content of the indexed bundles has changed since the index was created
+     */
+    public boolean isValid()
+    {
+        return this.valid;
+    }
+
+    /**
+     * Indicate that the content of the indexed bundles has changed and the index should not be used anymore.
+     */
+    public void invalidate()
+    {
+        this.valid = false;
+    }
+
+    /**
+     * @param key the key to translate
+     * @param locale the locale to translate into
+     * @return the translation from the bundle with the best priority, {@code null} if none can be found
+     */
+    public Translation getTranslation(String key, Locale locale)
+    {
+        if (key == null || locale == null) {
+            return search(key, locale);
+        }
+
+        ConcurrentMap<String, Entry> localeEntries = this.entries.get(locale);
+        if (localeEntries == null) {
+            localeEntries = new ConcurrentHashMap<String, Entry>();
+            ConcurrentMap<String, Entry> existingEntries = this.entries.putIfAbsent(locale, localeEntries);
+            if (existingEntries != null) {
+                localeEntries = existingEntries;
+            }
+        }
+
+        Entry entry = localeEntries.get(key);
+        if (entry == null) {
+            entry = index(key, locale);
+            // Don't remember missing keys: any key can be asked and the index would grow without limit.
+            if (entry.translation != null) {
+                localeEntries.put(key, entry);
+            }
+        }
+
+        // Bundles which can't be indexed and have a better priority may override the indexed translation.
+        for (int position : this.contextual) {
+            if (position > entry.position) {
+                break;
+            }
+            Translation translation = this.bundles.get(position).getTranslation(key, locale);
+            if (translation != null) {
+                return translation;
+            }
+        }
+
+        return entry.translation;
+    }
+
+    /**
+     * @param key the key to translate
+     * @param locale the locale to translate into
+     * @return the first translation found in the bundles which can be indexed
+     */
+    private Entry index(String key, Locale locale)
+    {
+        for (int i = 0; i < this.indexed.length; ++i) {
+            if (this.indexed[i]) {
+                Translation translation = this.bundles.get(i).getTranslation(key, locale);
+                if (translation != null) {
+                    return new Entry(i, translation);
+                }
+            }
+        }
+
+        return new Entry(this.indexed.length, null);
+    }
+
+    /**
+     * Search the bundles without using the index.
+     *
+     * @param key the key to translate
+     * @param locale the locale to translate into
+     * @return the first translation found
+     */
+    private Translation search(String key, Locale locale)
+    {
+        for (TranslationBundle bundle : this.bundles) {
+            Translation translation = bundle.getTranslation(key, locale);
+            if (translation != null) {
+                return translation;
+            }
+        }
+
+        return null;
+    }
+}
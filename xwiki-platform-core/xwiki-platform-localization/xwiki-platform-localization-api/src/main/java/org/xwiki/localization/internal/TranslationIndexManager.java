@@ -0,0 +1,49 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.localization.internal;
+
+import org.xwiki.component.annotation.Role;
+
+/**
+ * Provides the {@link TranslationIndex} of the bundles applying to the current context.
+ *
+ * @version $Id$
+ * @since 4.4M1
+ */
+@Role
+public interface TranslationIndexManager
+{
+    /**
+     * @return the index of the bundles applying to the current context
+     */
+    TranslationIndex getIndex();
+
+    /**
+     * Indicate that a bundle has been registered, unregistered or modified and that the existing indexes should not be
+     * used anymore.
+     */
+    void invalidate();
+
+    /**
+     * @return a number which changes each time {@link #invalidate()} is called, used to know if the bundles cached
+     *         from a previous call may have changed
+     */
+    long getGeneration();
+}
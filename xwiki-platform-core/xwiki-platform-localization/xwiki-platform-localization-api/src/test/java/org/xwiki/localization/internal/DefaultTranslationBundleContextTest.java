@@ -0,0 +1,126 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.localization.internal;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import javax.inject.Provider;
+
+import org.jmock.Expectations;
+import org.jmock.Mockery;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.xwiki.bridge.DocumentAccessBridge;
+import org.xwiki.component.manager.ComponentManager;
+import org.xwiki.component.util.ReflectionUtils;
+import org.xwiki.context.Execution;
+import org.xwiki.context.ExecutionContext;
+import org.xwiki.localization.TranslationBundle;
+import org.xwiki.model.reference.DocumentReference;
+
+/**
+ * Unit tests for {@link DefaultTranslationBundleContext}.
+ *
+ * @version $Id$
+ */
+public class DefaultTranslationBundleContextTest
+{
+    private Mockery mockery = new Mockery();
+
+    private DefaultTranslationBundleContext bundleContext;
+
+    private ComponentManager mockComponentManager;
+
+    private DocumentAccessBridge mockDocumentAccessBridge;
+
+    private ExecutionContext context = new ExecutionContext();
+
+    @SuppressWarnings("unchecked")
+    @Before
+    public void setUp()
+    {
+        this.bundleContext = new DefaultTranslationBundleContext();
+
+        final Execution mockExecution = this.mockery.mock(Execution.class);
+        final Provider<ComponentManager> mockComponentManagerProvider =
+            this.mockery.mock(Provider.class, "componentManagerProvider");
+        this.mockComponentManager = this.mockery.mock(ComponentManager.class);
+        final Provider<TranslationIndexManager> mockIndexManagerProvider =
+            this.mockery.mock(Provider.class, "indexManagerProvider");
+        final TranslationIndexManager mockIndexManager = this.mockery.mock(TranslationIndexManager.class);
+        this.mockDocumentAccessBridge = this.mockery.mock(DocumentAccessBridge.class);
+
+        ReflectionUtils.setFieldValue(this.bundleContext, "execution", mockExecution);
+        ReflectionUtils.setFieldValue(this.bundleContext, "componentManager", mockComponentManagerProvider);
+        ReflectionUtils.setFieldValue(this.bundleContext, "indexManager", mockIndexManagerProvider);
+        ReflectionUtils.setFieldValue(this.bundleContext, "documentAccessBridge", this.mockDocumentAccessBridge);
+        ReflectionUtils.setFieldValue(this.bundleContext, "logger", this.mockery.mock(Logger.class));
+
+        this.mockery.checking(new Expectations()
+        {
+            {
+                allowing(mockExecution).getContext();
+                will(returnValue(context));
+                allowing(mockComponentManagerProvider).get();
+                will(returnValue(mockComponentManager));
+                allowing(mockIndexManagerProvider).get();
+                will(returnValue(mockIndexManager));
+                allowing(mockIndexManager).getGeneration();
+                will(returnValue(0L));
+                allowing(mockDocumentAccessBridge).getCurrentUserReference();
+                will(returnValue(new DocumentReference("wiki", "XWiki", "user")));
+            }
+        });
+    }
+
+    @Test
+    public void bundlesPerWikiInExecution() throws Exception
+    {
+        final List<TranslationBundle> wikiBundles =
+            Arrays.<TranslationBundle> asList(AbstractTranslationBundle.EMPTY);
+        final List<TranslationBundle> otherWikiBundles = Collections.emptyList();
+
+        this.mockery.checking(new Expectations()
+        {
+            {
+                allowing(mockDocumentAccessBridge).getCurrentWiki();
+                will(onConsecutiveCalls(returnValue("wiki"), returnValue("otherwiki"), returnValue("wiki"),
+                    returnValue("otherwiki")));
+                // Listed once per wiki, the context being the same.
+                exactly(2).of(mockComponentManager).getInstanceList(TranslationBundle.class);
+                will(onConsecutiveCalls(returnValue(wikiBundles), returnValue(otherWikiBundles)));
+            }
+        });
+
+        List<TranslationBundle> bundles = this.bundleContext.getBundles();
+        List<TranslationBundle> otherBundles = this.bundleContext.getBundles();
+
+        Assert.assertEquals(wikiBundles, bundles);
+        Assert.assertEquals(otherWikiBundles, otherBundles);
+        Assert.assertSame(bundles, this.bundleContext.getBundles());
+        Assert.assertSame(otherBundles, this.bundleContext.getBundles());
+
+        this.mockery.assertIsSatisfied();
+    }
+}
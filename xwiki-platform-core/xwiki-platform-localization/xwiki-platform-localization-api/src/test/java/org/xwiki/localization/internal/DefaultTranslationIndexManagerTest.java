@@ -0,0 +1,176 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.localization.internal;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.jmock.Expectations;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.xwiki.bridge.DocumentAccessBridge;
+import org.xwiki.context.Execution;
+import org.xwiki.context.ExecutionContext;
+import org.xwiki.localization.TranslationBundle;
+import org.xwiki.localization.TranslationBundleContext;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.test.AbstractMockingComponentTestCase;
+import org.xwiki.test.annotation.MockingRequirement;
+
+/**
+ * Unit tests for {@link DefaultTranslationIndexManager}.
+ *
+ * @version $Id$
+ */
+@MockingRequirement(DefaultTranslationIndexManager.class)
+public class DefaultTranslationIndexManagerTest extends AbstractMockingComponentTestCase
+{
+    private TranslationIndexManager indexManager;
+
+    private Execution mockExecution;
+
+    private TranslationBundleContext mockBundleContext;
+
+    private DocumentAccessBridge mockDocumentAccessBridge;
+
+    private List<TranslationBundle> bundles =
+        Arrays.<TranslationBundle> asList(AbstractTranslationBundle.EMPTY);
+
+    @Before
+    public void configure() throws Exception
+    {
+        this.indexManager = getComponentManager().getInstance(TranslationIndexManager.class);
+        this.mockExecution = getComponentManager().getInstance(Execution.class);
+        this.mockBundleContext = getComponentManager().getInstance(TranslationBundleContext.class);
+        this.mockDocumentAccessBridge = getComponentManager().getInstance(DocumentAccessBridge.class);
+
+        getMockery().checking(new Expectations()
+        {
+            {
+                allowing(mockDocumentAccessBridge).getCurrentUserReference();
+                will(returnValue(new DocumentReference("wiki", "XWiki", "user")));
+            }
+        });
+    }
+
+    @Test
+    public void indexIsSharedBetweenExecutions()
+    {
+        getMockery().checking(new Expectations()
+        {
+            {
+                allowing(mockExecution).getContext();
+                will(onConsecutiveCalls(returnValue(new ExecutionContext()), returnValue(new ExecutionContext()),
+                    returnValue(null)));
+                allowing(mockDocumentAccessBridge).getCurrentWiki();
+                will(returnValue("wiki"));
+                allowing(mockBundleContext).getBundles();
+                will(returnValue(bundles));
+            }
+        });
+
+        TranslationIndex index = this.indexManager.getIndex();
+
+        Assert.assertSame(this.bundles, index.getBundles());
+        Assert.assertSame(index, this.indexManager.getIndex());
+        Assert.assertSame(index, this.indexManager.getIndex());
+    }
+
+    @Test
+    public void newIndexWhenBundlesChange()
+    {
+        final List<TranslationBundle> otherBundles =
+            Arrays.<TranslationBundle> asList(AbstractTranslationBundle.EMPTY, AbstractTranslationBundle.EMPTY);
+
+        getMockery().checking(new Expectations()
+        {
+            {
+                allowing(mockExecution).getContext();
+                will(returnValue(new ExecutionContext()));
+                allowing(mockDocumentAccessBridge).getCurrentWiki();
+                will(returnValue("wiki"));
+                allowing(mockBundleContext).getBundles();
+                will(onConsecutiveCalls(returnValue(bundles), returnValue(otherBundles)));
+            }
+        });
+
+        TranslationIndex index = this.indexManager.getIndex();
+        TranslationIndex otherIndex = this.indexManager.getIndex();
+
+        Assert.assertNotSame(index, otherIndex);
+        Assert.assertSame(otherBundles, otherIndex.getBundles());
+    }
+
+    @Test
+    public void invalidate()
+    {
+        getMockery().checking(new Expectations()
+        {
+            {
+                allowing(mockExecution).getContext();
+                will(returnValue(new ExecutionContext()));
+                allowing(mockDocumentAccessBridge).getCurrentWiki();
+                will(returnValue("wiki"));
+                allowing(mockBundleContext).getBundles();
+                will(returnValue(bundles));
+            }
+        });
+
+        TranslationIndex index = this.indexManager.getIndex();
+        long generation = this.indexManager.getGeneration();
+
+        this.indexManager.invalidate();
+
+        Assert.assertFalse(index.isValid());
+        Assert.assertTrue(this.indexManager.getGeneration() != generation);
+
+        TranslationIndex newIndex = this.indexManager.getIndex();
+
+        Assert.assertNotSame(index, newIndex);
+        Assert.assertTrue(newIndex.isValid());
+    }
+
+    @Test
+    public void indexPerWikiInExecution()
+    {
+        final List<TranslationBundle> otherBundles =
+            Arrays.<TranslationBundle> asList(AbstractTranslationBundle.EMPTY, AbstractTranslationBundle.EMPTY);
+
+        getMockery().checking(new Expectations()
+        {
+            {
+                allowing(mockExecution).getContext();
+                will(returnValue(new ExecutionContext()));
+                allowing(mockDocumentAccessBridge).getCurrentWiki();
+                will(onConsecutiveCalls(returnValue("wiki"), returnValue("otherwiki"), returnValue("wiki")));
+                allowing(mockBundleContext).getBundles();
+                will(onConsecutiveCalls(returnValue(bundles), returnValue(otherBundles), returnValue(bundles)));
+            }
+        });
+
+        TranslationIndex index = this.indexManager.getIndex();
+        TranslationIndex otherIndex = this.indexManager.getIndex();
+
+        Assert.assertSame(bundles, index.getBundles());
+        Assert.assertSame(otherBundles, otherIndex.getBundles());
+        Assert.assertSame(index, this.indexManager.getIndex());
+    }
+}
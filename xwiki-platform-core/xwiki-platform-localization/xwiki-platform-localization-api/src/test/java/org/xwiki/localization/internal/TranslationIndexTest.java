@@ -0,0 +1,178 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.localization.internal;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+import org.jmock.Expectations;
+import org.jmock.Mockery;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.xwiki.localization.Translation;
+import org.xwiki.localization.TranslationBundle;
+
+/**
+ * Unit tests for {@link TranslationIndex}.
+ *
+ * @version $Id$
+ */
+public class TranslationIndexTest
+{
+    private Mockery mockery = new Mockery();
+
+    private LocalizedBundle mockLocalizedBundle;
+
+    private TranslationBundle indexedBundle;
+
+    private TranslationBundle mockContextualBundle;
+
+    private Translation mockTranslation;
+
+    @Before
+    public void setUp()
+    {
+        this.mockLocalizedBundle = this.mockery.mock(LocalizedBundle.class);
+        this.mockContextualBundle = this.mockery.mock(TranslationBundle.class);
+        this.mockTranslation = this.mockery.mock(Translation.class, "indexed");
+
+        // Locale.ROOT is used in the tests so that the bundle doesn't search parent locales
+        this.indexedBundle = new AbstractCachedTranslationBundle("indexed")
+        {
+            @Override
+            protected LocalizedBundle createBundle(Locale locale)
+            {
+                return mockLocalizedBundle;
+            }
+        };
+    }
+
+    @After
+    public void tearDown()
+    {
+        this.mockery.assertIsSatisfied();
+    }
+
+    @Test
+    public void indexedTranslationIsSearchedOnce()
+    {
+        this.mockery.checking(new Expectations()
+        {
+            {
+                oneOf(mockLocalizedBundle).getTranslation("key");
+                will(returnValue(mockTranslation));
+            }
+        });
+
+        TranslationIndex index = new TranslationIndex(Arrays.asList(this.indexedBundle));
+
+        Assert.assertSame(this.mockTranslation, index.getTranslation("key", Locale.ROOT));
+        Assert.assertSame(this.mockTranslation, index.getTranslation("key", Locale.ROOT));
+    }
+
+    @Test
+    public void missingTranslationIsNotRemembered()
+    {
+        this.mockery.checking(new Expectations()
+        {
+            {
+                exactly(2).of(mockLocalizedBundle).getTranslation("missing");
+                will(returnValue(null));
+            }
+        });
+
+        TranslationIndex index = new TranslationIndex(Arrays.asList(this.indexedBundle));
+
+        Assert.assertNull(index.getTranslation("missing", Locale.ROOT));
+        Assert.assertNull(index.getTranslation("missing", Locale.ROOT));
+    }
+
+    @Test
+    public void contextualBundleWithBetterPriorityOverridesIndexedTranslation()
+    {
+        final Translation contextualTranslation = this.mockery.mock(Translation.class, "contextual");
+
+        this.mockery.checking(new Expectations()
+        {
+            {
+                oneOf(mockLocalizedBundle).getTranslation("key");
+                will(returnValue(mockTranslation));
+                exactly(2).of(mockContextualBundle).getTranslation("key", Locale.ROOT);
+                will(onConsecutiveCalls(returnValue(contextualTranslation), returnValue(null)));
+            }
+        });
+
+        TranslationIndex index = new TranslationIndex(Arrays.asList(this.mockContextualBundle, this.indexedBundle));
+
+        Assert.assertSame(contextualTranslation, index.getTranslation("key", Locale.ROOT));
+        Assert.assertSame(this.mockTranslation, index.getTranslation("key", Locale.ROOT));
+    }
+
+    @Test
+    public void contextualBundleWithWorsePriorityIsNotSearchedWhenIndexedTranslationExists()
+    {
+        this.mockery.checking(new Expectations()
+        {
+            {
+                oneOf(mockLocalizedBundle).getTranslation("key");
+                will(returnValue(mockTranslation));
+                never(mockContextualBundle).getTranslation("key", Locale.ROOT);
+            }
+        });
+
+        TranslationIndex index = new TranslationIndex(Arrays.asList(this.indexedBundle, this.mockContextualBundle));
+
+        Assert.assertSame(this.mockTranslation, index.getTranslation("key", Locale.ROOT));
+    }
+
+    @Test
+    public void contextualBundleIsSearchedWhenNoIndexedTranslationExists()
+    {
+        final Translation contextualTranslation = this.mockery.mock(Translation.class, "contextual");
+
+        this.mockery.checking(new Expectations()
+        {
+            {
+                oneOf(mockLocalizedBundle).getTranslation("key");
+                will(returnValue(null));
+                oneOf(mockContextualBundle).getTranslation("key", Locale.ROOT);
+                will(returnValue(contextualTranslation));
+            }
+        });
+
+        TranslationIndex index = new TranslationIndex(Arrays.asList(this.indexedBundle, this.mockContextualBundle));
+
+        Assert.assertSame(contextualTranslation, index.getTranslation("key", Locale.ROOT));
+    }
+
+    @Test
+    public void invalidate()
+    {
+        TranslationIndex index = new TranslationIndex(Arrays.asList(this.indexedBundle));
+
+        Assert.assertTrue(index.isValid());
+
+        index.invalidate();
+
+        Assert.assertFalse(index.isValid());
+    }
+}
@@ -45,6 +45,7 @@
 import org.xwiki.localization.internal.DefaultLocalizedTranslationBundle;
 import org.xwiki.localization.internal.DefaultTranslation;
 import org.xwiki.localization.internal.LocalizedBundle;
+import org.xwiki.localization.internal.TranslationIndexManager;
 import org.xwiki.localization.message.TranslationMessage;
 import org.xwiki.localization.message.TranslationMessageParser;
 import org.xwiki.model.reference.DocumentReference;
@@ -83,6 +84,9 @@ public abstract class AbstractDocumentTranslationBundle extends AbstractCachedTr
     @Inject
     private ObservationManager observation;
 
+    @Inject
+    private TranslationIndexManager indexManager;
+
     protected TranslationMessageParser translationMessageParser;
 
     protected List<Event> events;
@@ -95,6 +99,8 @@ public void onEvent(Event arg0, Object arg1, Object arg2)
             XWikiDocument document = (XWikiDocument) arg1;
 
             bundleCache.remove(document.getLocale() != null ? document.getLocale() : Locale.ROOT);
+            // Translations of this bundle may be indexed
+            indexManager.invalidate();
         }
 
         @Override
@@ -121,6 +127,7 @@ public AbstractDocumentTranslationBundle(DocumentReference reference, ComponentM
             componentManager.getInstance(new DefaultParameterizedType(null, Provider.class,
                 new Type[] {XWikiContext.class}));
         this.observation = componentManager.getInstance(ObservationManager.class);
+        this.indexManager = componentManager.getInstance(TranslationIndexManager.class);
 
         this.translationMessageParser = translationMessageParser;
 
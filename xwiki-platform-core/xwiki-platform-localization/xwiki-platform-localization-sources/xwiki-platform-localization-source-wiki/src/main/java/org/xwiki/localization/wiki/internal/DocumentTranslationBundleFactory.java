@@ -51,6 +51,7 @@
 import org.xwiki.localization.TranslationBundle;
 import org.xwiki.localization.TranslationBundleDoesNotExistsException;
 import org.xwiki.localization.TranslationBundleFactory;
+import org.xwiki.localization.internal.TranslationIndexManager;
 import org.xwiki.localization.message.TranslationMessageParser;
 import org.xwiki.localization.wiki.internal.TranslationDocumentModel.Scope;
 import org.xwiki.model.EntityType;
@@ -134,6 +135,9 @@ public class DocumentTranslationBundleFactory implements TranslationBundleFactor
     @Inject
     private AuthorizationManager authorizationManager;
 
+    @Inject
+    private Provider<TranslationIndexManager> indexManagerProvider;
+
     private Cache<TranslationBundle> bundlesCache;
 
     private EventListener listener = new EventListener()
@@ -370,6 +374,9 @@ private void unregisterTranslationBundle(XWikiDocument document)
                 createComponentDescriptor(document.getDocumentReference());
 
             getComponentManager(document, scope, true).unregisterComponent(descriptor);
+
+            // Component events are not sent by all component managers
+            this.indexManagerProvider.get().invalidate();
         }
 
         // Remove from cache
@@ -398,6 +405,9 @@ private void registerTranslationBundle(XWikiDocument document) throws Translatio
                 createComponentDescriptor(document.getDocumentReference());
 
             getComponentManager(document, scope, true).registerComponent(descriptor, bundle);
+
+            // Component events are not sent by all component managers
+            this.indexManagerProvider.get().invalidate();
         }
     }
 
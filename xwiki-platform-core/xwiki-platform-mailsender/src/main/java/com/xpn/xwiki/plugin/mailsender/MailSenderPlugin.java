@@ -29,6 +29,7 @@
 import java.io.UnsupportedEncodingException;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
 import java.util.Iterator;
 import java.util.List;
@@ -58,6 +59,11 @@
 import org.apache.velocity.context.Context;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.xwiki.environment.Environment;
+import org.xwiki.observation.EventListener;
+import org.xwiki.observation.ObservationManager;
+import org.xwiki.observation.event.ApplicationStoppedEvent;
+import org.xwiki.observation.event.Event;
 import org.xwiki.rendering.syntax.Syntax;
 
 import com.xpn.xwiki.XWiki;
@@ -71,8 +77,10 @@
 import com.xpn.xwiki.objects.classes.BaseClass;
 import com.xpn.xwiki.plugin.XWikiDefaultPlugin;
 import com.xpn.xwiki.plugin.XWikiPluginInterface;
+import com.xpn.xwiki.plugin.mailsender.queue.MailQueue;
 import com.xpn.xwiki.render.XWikiVelocityRenderer;
 import com.xpn.xwiki.web.ExternalServletURLFactory;
+import com.xpn.xwiki.web.Utils;
 import com.xpn.xwiki.web.XWikiURLFactory;
 
 /**
@@ -120,6 +128,15 @@ public class MailSenderPlugin extends XWikiDefaultPlugin
     /** The name of the header that specifies the sender of the mail. */
     private static final String FROM = "From";
 
+    /** The name of the directory, in the permanent directory, holding the messages queued for delivery. */
+    private static final String OUTBOX_DIRECTORY = "mailsender/outbox";
+
+    /** The name of the listener stopping the delivery queue when XWiki is stopped. */
+    private static final String QUEUE_SHUTDOWN_LISTENER = "mailsender.queueShutdown";
+
+    /** The queue used to deliver messages asynchronously, {@code null} if messages are sent synchronously. */
+    private MailQueue mailQueue;
+
     /**
      * Default plugin constructor.
      * 
@@ -138,6 +155,84 @@ public void init(XWikiContext context)
         } catch (Exception e) {
             e.printStackTrace();
         }
+
+        initMailQueue(context);
+    }
+
+    /**
+     * Start the asynchronous delivery queue if sender threads have been configured in xwiki.cfg.
+     * 
+     * @param context the XWiki context
+     */
+    protected void initMailQueue(XWikiContext context)
+    {
+        int threads = (int) context.getWiki().ParamAsLong("xwiki.plugin.mailsender.queue.threads", 0);
+        if (threads > 0 && this.mailQueue == null) {
+            File outbox = new File(Utils.getComponent(Environment.class).getPermanentDirectory(), OUTBOX_DIRECTORY);
+            int maxAttempts = (int) context.getWiki().ParamAsLong("xwiki.plugin.mailsender.queue.maxAttempts", 5);
+            long retryDelay = context.getWiki().ParamAsLong("xwiki.plugin.mailsender.queue.retryDelay", 60000);
+            MailQueue queue = new MailQueue(outbox, threads, maxAttempts, retryDelay);
+            queue.setPasswordProvider(new WikiSmtpPasswordProvider(context.getWiki(), context.getMainXWiki()));
+            setMailQueue(queue);
+            registerQueueShutdownListener();
+        }
+    }
+
+    /**
+     * Stop the sender threads of the delivery queue when XWiki is stopped. The messages which haven't been delivered
+     * yet stay in the outbox.
+     */
+    private void registerQueueShutdownListener()
+    {
+        ObservationManager observationManager = Utils.getComponent(ObservationManager.class);
+        // The plugin may be initialized several times, only the last instance holds a queue to stop.
+        observationManager.removeListener(QUEUE_SHUTDOWN_LISTENER);
+        observationManager.addListener(new EventListener()
+        {
+            @Override
+            public String getName()
+            {
+                return QUEUE_SHUTDOWN_LISTENER;
+            }
+
+            @Override
+            public List<Event> getEvents()
+            {
+                return Collections.<Event>singletonList(new ApplicationStoppedEvent());
+            }
+
+            @Override
+            public void onEvent(Event event, Object source, Object data)
+            {
+                setMailQueue(null);
+            }
+        });
+    }
+
+    /**
+     * Make the plugin deliver messages asynchronously through the given queue, which is started if needed.
+     * 
+     * @param mailQueue the queue to use, {@code null} to send messages synchronously
+     * @since 4.4M1
+     */
+    public void setMailQueue(MailQueue mailQueue)
+    {
+        if (this.mailQueue != null) {
+            this.mailQueue.stop();
+        }
+        this.mailQueue = mailQueue;
+        if (mailQueue != null) {
+            mailQueue.start();
+        }
+    }
+
+    /**
+     * @return the queue used to deliver messages asynchronously, {@code null} if messages are sent synchronously
+     * @since 4.4M1
+     */
+    public MailQueue getMailQueue()
+    {
+        return this.mailQueue;
     }
 
     @Override
@@ -677,7 +772,7 @@ public boolean sendMail(Mail mailItem, MailConfiguration mailConfiguration, XWik
      * Send a Collection of Mails (multiple emails)
      * 
      * @param emails Mail Collection
-     * @return True in any case (TODO ?)
+     * @return False if a message could not be written to the outbox of the mail queue, true otherwise
      */
     public boolean sendMails(Collection<Mail> emails, XWikiContext context) throws MessagingException,
         UnsupportedEncodingException
@@ -688,14 +783,19 @@ public boolean sendMails(Collection<Mail> emails, XWikiContext context) throws M
     }
 
     /**
-     * Send a Collection of Mails (multiple emails)
+     * Send a Collection of Mails (multiple emails). When a {@link #getMailQueue() mail queue} is configured the
+     * messages are only queued and this method returns without waiting for them to be delivered.
      * 
      * @param emails Mail Collection
-     * @return True in any case (TODO ?)
+     * @return False if a message could not be written to the outbox of the mail queue, true otherwise
      */
     public boolean sendMails(Collection<Mail> emails, MailConfiguration mailConfiguration, XWikiContext context)
         throws MessagingException, UnsupportedEncodingException
     {
+        if (this.mailQueue != null) {
+            return queueMails(emails, mailConfiguration, context);
+        }
+
         Session session = null;
         Transport transport = null;
         int emailCount = emails.size();
@@ -778,6 +878,54 @@ public boolean sendMails(Collection<Mail> emails, MailConfiguration mailConfigur
         return true;
     }
 
+    /**
+     * Build the MIME messages on the current thread, since they may need the XWiki context to read attachments, and
+     * hand them to the delivery queue.
+     * 
+     * @param emails Mail Collection
+     * @param mailConfiguration the SMTP configuration to deliver the messages with
+     * @param context the XWiki context
+     * @return false if a message could not be written to the outbox, true otherwise since delivery failures are
+     *         handled by the queue
+     * @throws MessagingException if a message cannot be built or queued and it was the only one to send
+     */
+    private boolean queueMails(Collection<Mail> emails, MailConfiguration mailConfiguration, XWikiContext context)
+        throws MessagingException
+    {
+        Properties props = initProperties(mailConfiguration);
+        Session session = Session.getInstance(props, null);
+        String username = mailConfiguration.usesAuthentication() ? mailConfiguration.getSmtpUsername() : null;
+
+        boolean queued = true;
+        for (Mail mail : emails) {
+            LOGGER.info("Queuing email: " + mail.toString());
+            try {
+                MimeMessage message = createMimeMessage(mail, session, context);
+                if (message != null) {
+                    this.mailQueue.add(message, props, context.getDatabase(), username,
+                        mailConfiguration.getSmtpPassword());
+                }
+            } catch (MessagingException mex) {
+                LOGGER.error("MessagingException has occured.", mex);
+                LOGGER.error("Detailed email information" + mail.toString());
+                if (emails.size() == 1) {
+                    throw mex;
+                }
+            } catch (XWikiException e) {
+                LOGGER.error("XWikiException has occured.", e);
+            } catch (IOException e) {
+                // The message has not been written to the outbox, it won't be sent
+                if (emails.size() == 1) {
+                    throw new MessagingException("Failed to queue email " + mail.toString(), e);
+                }
+                LOGGER.error("Failed to queue email " + mail.toString(), e);
+                queued = false;
+            }
+        }
+
+        return queued;
+    }
+
     /**
      * Uses an XWiki document to build the message subject and context, based on variables stored in the
      * VelocityContext. Sends the email.
@@ -30,6 +30,8 @@
 import com.xpn.xwiki.api.Attachment;
 import com.xpn.xwiki.api.XWiki;
 import com.xpn.xwiki.plugin.PluginApi;
+import com.xpn.xwiki.plugin.mailsender.queue.MailQueue;
+import com.xpn.xwiki.plugin.mailsender.queue.MailQueueStatistics;
 
 /**
  * Plugin that brings powerful mailing capabilities. This is the wrapper accessible from in-document scripts.
@@ -181,6 +183,18 @@ public int sendMail(Mail mail)
         return result;
     }
 
+    /**
+     * @return the activity counters of the asynchronous delivery queue, {@code null} if messages are sent
+     *         synchronously
+     * @since 4.4M1
+     */
+    public MailQueueStatistics getQueueStatistics()
+    {
+        MailQueue queue = getProtectedPlugin().getMailQueue();
+
+        return queue != null ? queue.getStatistics() : null;
+    }
+
     @Override
     public MailConfiguration createMailConfiguration(XWiki xwiki)
     {
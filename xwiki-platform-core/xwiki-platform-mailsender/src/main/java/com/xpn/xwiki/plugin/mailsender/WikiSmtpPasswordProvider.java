@@ -0,0 +1,92 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.xpn.xwiki.plugin.mailsender;
+
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xwiki.context.Execution;
+import org.xwiki.context.ExecutionContext;
+import org.xwiki.context.ExecutionContextException;
+import org.xwiki.context.ExecutionContextManager;
+
+import com.xpn.xwiki.XWiki;
+import com.xpn.xwiki.XWikiContext;
+import com.xpn.xwiki.plugin.mailsender.queue.SmtpPasswordProvider;
+import com.xpn.xwiki.web.Utils;
+
+/**
+ * Reads the SMTP password of the messages queued before a restart from the mail configuration of their wiki, since
+ * passwords are not stored in the outbox. Called from the sender threads, which have no execution context.
+ *
+ * @version $Id$
+ * @since 4.4M1
+ */
+public class WikiSmtpPasswordProvider implements SmtpPasswordProvider
+{
+    /** Logging helper object. */
+    private static final Logger LOGGER = LoggerFactory.getLogger(WikiSmtpPasswordProvider.class);
+
+    /** The XWiki instance to read the mail configuration from. */
+    private final XWiki xwiki;
+
+    /** The name of the main wiki. */
+    private final String mainWiki;
+
+    /**
+     * @param xwiki the XWiki instance to read the mail configuration from
+     * @param mainWiki the name of the main wiki
+     */
+    public WikiSmtpPasswordProvider(XWiki xwiki, String mainWiki)
+    {
+        this.xwiki = xwiki;
+        this.mainWiki = mainWiki;
+    }
+
+    @Override
+    public String getPassword(String wiki, String username)
+    {
+        XWikiContext xcontext = new XWikiContext();
+        xcontext.setWiki(this.xwiki);
+        xcontext.setMainXWiki(this.mainWiki);
+        xcontext.setDatabase(wiki != null ? wiki : this.mainWiki);
+
+        Execution execution = Utils.getComponent(Execution.class);
+        try {
+            ExecutionContext context = new ExecutionContext();
+            // Bridge with old XWiki Context, required for old code.
+            xcontext.declareInExecutionContext(context);
+            Utils.getComponent(ExecutionContextManager.class).initialize(context);
+
+            MailConfiguration configuration = new MailConfiguration(new com.xpn.xwiki.api.XWiki(this.xwiki, xcontext));
+            // The password of the configuration only applies if the message has been queued with the same account
+            if (StringUtils.equals(username, configuration.getSmtpUsername())) {
+                return configuration.getSmtpPassword();
+            }
+        } catch (ExecutionContextException e) {
+            LOGGER.error("Failed to initialize the execution context to read the mail configuration of wiki [{}]",
+                wiki, e);
+        } finally {
+            execution.removeContext();
+        }
+
+        return null;
+    }
+}
@@ -0,0 +1,339 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.xpn.xwiki.plugin.mailsender.queue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.TimeUnit;
+
+import javax.mail.MessagingException;
+import javax.mail.internet.MimeMessage;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Outbox-backed queue of messages delivered asynchronously by a pool of {@link MailSenderThread}s. Each message is
+ * written to the outbox directory before being queued and removed from it once delivered, so that messages which
+ * haven't been delivered yet are sent after a restart. Failed deliveries are retried with an exponential backoff, and
+ * messages which still can't be delivered after the maximum number of attempts are moved to the {@code failed}
+ * sub-directory of the outbox.
+ * <p>
+ * SMTP passwords are only kept in memory. Messages left in the outbox by a previous run get theirs from the
+ * {@link SmtpPasswordProvider}, if any.
+ *
+ * @version $Id$
+ * @since 4.4M1
+ */
+public class MailQueue
+{
+    /** The name of the outbox sub-directory holding the messages which could not be delivered. */
+    public static final String FAILED_DIRECTORY = "failed";
+
+    /** The maximum delay between two delivery attempts, in milliseconds. */
+    private static final long MAX_RETRY_DELAY = TimeUnit.HOURS.toMillis(6);
+
+    /** Logging helper object. */
+    private static final Logger LOGGER = LoggerFactory.getLogger(MailQueue.class);
+
+    /** The messages waiting to be delivered, ordered by time of next delivery attempt. */
+    private final DelayQueue<QueuedMail> queue = new DelayQueue<QueuedMail>();
+
+    /** The directory where the messages waiting to be delivered are stored. */
+    private final File outbox;
+
+    /** The number of sender threads. */
+    private final int threadCount;
+
+    /** The maximum number of delivery attempts for a message. */
+    private final int maxAttempts;
+
+    /** The delay before the first retry, in milliseconds. Doubled after each failed attempt. */
+    private final long retryDelay;
+
+    /** The sender threads. */
+    private final List<MailSenderThread> threads = new ArrayList<MailSenderThread>();
+
+    /** The activity counters of the queue. */
+    private final MailQueueStatistics statistics = new MailQueueStatistics(this);
+
+    /** The SMTP passwords the messages have been queued with, by wiki and user name. */
+    private final ConcurrentMap<String, String> passwords = new ConcurrentHashMap<String, String>();
+
+    /** Gives the SMTP passwords which are not known by this queue, {@code null} if there's none. */
+    private volatile SmtpPasswordProvider passwordProvider;
+
+    /**
+     * @param outbox the directory where the messages waiting to be delivered are stored
+     * @param threadCount the number of sender threads, each holding its own SMTP connection
+     * @param maxAttempts the maximum number of delivery attempts for a message
+     * @param retryDelay the delay before the first retry, in milliseconds, doubled after each failed attempt
+     */
+    public MailQueue(File outbox, int threadCount, int maxAttempts, long retryDelay)
+    {
+        this.outbox = outbox;
+        this.threadCount = threadCount;
+        this.maxAttempts = maxAttempts;
+        this.retryDelay = retryDelay;
+    }
+
+    /**
+     * @param passwordProvider gives the SMTP password of the messages left in the outbox by a previous run
+     */
+    public void setPasswordProvider(SmtpPasswordProvider passwordProvider)
+    {
+        this.passwordProvider = passwordProvider;
+    }
+
+    /**
+     * Load the messages left in the outbox by a previous run and start the sender threads.
+     */
+    public synchronized void start()
+    {
+        if (!this.threads.isEmpty()) {
+            return;
+        }
+
+        this.outbox.mkdirs();
+        loadOutbox();
+
+        for (int i = 0; i < this.threadCount; i++) {
+            MailSenderThread thread = new MailSenderThread(this, "Mail Sender " + (i + 1));
+            this.threads.add(thread);
+            thread.start();
+        }
+    }
+
+    /**
+     * Stop the sender threads. Messages which haven't been delivered stay in the outbox.
+     */
+    public synchronized void stop()
+    {
+        for (MailSenderThread thread : this.threads) {
+            thread.stopSending();
+        }
+        for (MailSenderThread thread : this.threads) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        this.threads.clear();
+    }
+
+    /**
+     * Queue the messages stored in the outbox.
+     */
+    private void loadOutbox()
+    {
+        File[] files = this.outbox.listFiles();
+        if (files == null) {
+            return;
+        }
+
+        for (File file : files) {
+            String name = file.getName();
+            if (file.isFile() && name.endsWith(QueuedMail.MESSAGE_EXTENSION)) {
+                QueuedMail mail =
+                    new QueuedMail(name.substring(0, name.length() - QueuedMail.MESSAGE_EXTENSION.length()),
+                        this.outbox);
+                try {
+                    mail.loadMetadata();
+                    this.queue.add(mail);
+                    this.statistics.onQueued();
+                } catch (IOException e) {
+                    LOGGER.error("Failed to load the queued message [{}]", file, e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Store a message in the outbox and queue it for delivery.
+     *
+     * @param message the message to send
+     * @param sessionProperties the JavaMail session properties to use for sending the message
+     * @param wiki the wiki whose mail configuration the message is sent with
+     * @param username the SMTP user name, {@code null} if the server doesn't require authentication
+     * @param password the SMTP password, kept in memory only
+     * @return the identifier of the queued message
+     * @throws IOException if the message cannot be written to the outbox
+     * @throws MessagingException if the message content cannot be serialized
+     */
+    public String add(MimeMessage message, Properties sessionProperties, String wiki, String username,
+        String password) throws IOException, MessagingException
+    {
+        QueuedMail mail = new QueuedMail(UUID.randomUUID().toString(), this.outbox);
+        mail.setSessionProperties(sessionProperties);
+        mail.setAccount(wiki, username);
+        if (username != null && password != null) {
+            this.passwords.put(getPasswordKey(wiki, username), password);
+        }
+
+        // Write the message to a temporary file first and rename it so that loadOutbox() never sees partial messages.
+        mail.storeMetadata();
+        File tmpFile = new File(this.outbox, mail.getId() + ".tmp");
+        OutputStream out = new FileOutputStream(tmpFile);
+        try {
+            message.writeTo(out);
+        } finally {
+            IOUtils.closeQuietly(out);
+        }
+        if (!tmpFile.renameTo(mail.getMessageFile())) {
+            tmpFile.delete();
+            mail.getMetadataFile().delete();
+            throw new IOException("Failed to move message to " + mail.getMessageFile());
+        }
+
+        this.queue.add(mail);
+        this.statistics.onQueued();
+
+        return mail.getId();
+    }
+
+    /**
+     * @param mail a message using SMTP authentication
+     * @return the SMTP password to send the message with, {@code null} if it is not known
+     */
+    String getPassword(QueuedMail mail)
+    {
+        String password = this.passwords.get(getPasswordKey(mail.getWiki(), mail.getUsername()));
+        SmtpPasswordProvider provider = this.passwordProvider;
+        if (password == null && provider != null) {
+            password = provider.getPassword(mail.getWiki(), mail.getUsername());
+        }
+
+        return password;
+    }
+
+    /**
+     * @param wiki the wiki whose mail configuration a message is sent with
+     * @param username the SMTP user name
+     * @return the key of the password in {@link #passwords}
+     */
+    private String getPasswordKey(String wiki, String username)
+    {
+        return wiki + '|' + username;
+    }
+
+    /**
+     * @param attempts the number of failed delivery attempts
+     * @return the time to wait before the next attempt, in milliseconds: the retry delay doubled after each failed
+     *         attempt, up to a few hours
+     */
+    long getRetryDelay(int attempts)
+    {
+        long maxDelay = Math.max(this.retryDelay, MAX_RETRY_DELAY);
+        long delay = this.retryDelay;
+        for (int i = 0; i < attempts && delay < maxDelay; i++) {
+            delay *= 2;
+        }
+
+        return Math.min(delay, maxDelay);
+    }
+
+    /**
+     * Wait for a message ready to be delivered.
+     *
+     * @param timeout how long to wait, in milliseconds
+     * @return the next message to deliver, {@code null} if none is ready before the timeout
+     * @throws InterruptedException if interrupted while waiting
+     */
+    QueuedMail poll(long timeout) throws InterruptedException
+    {
+        return this.queue.poll(timeout, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Remove a delivered message from the outbox.
+     *
+     * @param mail the delivered message
+     * @param time the time spent sending the message, in milliseconds
+     */
+    void onSent(QueuedMail mail, long time)
+    {
+        mail.getMessageFile().delete();
+        mail.getMetadataFile().delete();
+        this.statistics.onSent(time);
+    }
+
+    /**
+     * Reschedule a message which could not be delivered, or move it out of the queue if it can't be delivered at all.
+     *
+     * @param mail the message which could not be delivered
+     * @param retry false if the failure is permanent and the message should not be sent again
+     * @param cause the delivery failure
+     */
+    void onFailed(QueuedMail mail, boolean retry, Exception cause)
+    {
+        if (retry && mail.getAttempts() + 1 < this.maxAttempts) {
+            long delay = getRetryDelay(mail.getAttempts());
+            LOGGER.warn("Failed to send message [{}], retrying in {} ms: {}",
+                new Object[] {mail, delay, cause.getMessage()});
+            mail.retryLater(delay);
+            try {
+                mail.storeMetadata();
+            } catch (IOException e) {
+                LOGGER.error("Failed to update the queued message [{}]", mail, e);
+            }
+            this.queue.add(mail);
+            this.statistics.onRetry();
+        } else {
+            LOGGER.error("Failed to send message [{}], giving up", mail, cause);
+            File failed = new File(this.outbox, FAILED_DIRECTORY);
+            try {
+                FileUtils.moveFileToDirectory(mail.getMessageFile(), failed, true);
+                FileUtils.moveFileToDirectory(mail.getMetadataFile(), failed, true);
+            } catch (IOException e) {
+                LOGGER.error("Failed to move the message [{}] to [{}]", new Object[] {mail, failed, e});
+            }
+            this.statistics.onFailed();
+        }
+    }
+
+    /**
+     * @return the number of messages waiting to be delivered
+     */
+    public int size()
+    {
+        return this.queue.size();
+    }
+
+    /**
+     * @return the activity counters of the queue
+     */
+    public MailQueueStatistics getStatistics()
+    {
+        return this.statistics;
+    }
+}
@@ -0,0 +1,182 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.xpn.xwiki.plugin.mailsender.queue;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counters describing the activity of the {@link MailQueue} since it has been started.
+ *
+ * @version $Id$
+ * @since 4.4M1
+ */
+public class MailQueueStatistics
+{
+    /** Number of milliseconds in a second. */
+    private static final double MILLISECONDS_PER_SECOND = 1000.0;
+
+    /** The time at which the queue has been started. */
+    private final long startTime = System.currentTimeMillis();
+
+    /** Number of messages added to the queue. */
+    private final AtomicLong queuedCount = new AtomicLong();
+
+    /** Number of messages successfully delivered. */
+    private final AtomicLong sentCount = new AtomicLong();
+
+    /** Number of failed delivery attempts which have been rescheduled. */
+    private final AtomicLong retryCount = new AtomicLong();
+
+    /** Number of messages abandoned after too many failed delivery attempts. */
+    private final AtomicLong failedCount = new AtomicLong();
+
+    /** Number of SMTP connections opened by the sender threads. */
+    private final AtomicLong connectionCount = new AtomicLong();
+
+    /** Total time spent sending messages, in milliseconds. */
+    private final AtomicLong sendTime = new AtomicLong();
+
+    /** The queue these statistics describe. */
+    private final MailQueue queue;
+
+    /**
+     * @param queue the queue these statistics describe
+     */
+    MailQueueStatistics(MailQueue queue)
+    {
+        this.queue = queue;
+    }
+
+    /**
+     * Record a message added to the queue.
+     */
+    void onQueued()
+    {
+        this.queuedCount.incrementAndGet();
+    }
+
+    /**
+     * Record a message successfully delivered.
+     *
+     * @param time the time spent sending the message, in milliseconds
+     */
+    void onSent(long time)
+    {
+        this.sentCount.incrementAndGet();
+        this.sendTime.addAndGet(time);
+    }
+
+    /**
+     * Record a failed delivery attempt which has been rescheduled.
+     */
+    void onRetry()
+    {
+        this.retryCount.incrementAndGet();
+    }
+
+    /**
+     * Record a message abandoned after too many failed delivery attempts.
+     */
+    void onFailed()
+    {
+        this.failedCount.incrementAndGet();
+    }
+
+    /**
+     * Record a new SMTP connection.
+     */
+    void onConnection()
+    {
+        this.connectionCount.incrementAndGet();
+    }
+
+    /**
+     * @return the number of messages currently waiting in the queue, including the ones waiting for a retry
+     */
+    public int getQueueSize()
+    {
+        return this.queue.size();
+    }
+
+    /**
+     * @return the number of messages added to the queue
+     */
+    public long getQueuedCount()
+    {
+        return this.queuedCount.get();
+    }
+
+    /**
+     * @return the number of messages successfully delivered
+     */
+    public long getSentCount()
+    {
+        return this.sentCount.get();
+    }
+
+    /**
+     * @return the number of failed delivery attempts which have been rescheduled
+     */
+    public long getRetryCount()
+    {
+        return this.retryCount.get();
+    }
+
+    /**
+     * @return the number of messages abandoned after too many failed delivery attempts
+     */
+    public long getFailedCount()
+    {
+        return this.failedCount.get();
+    }
+
+    /**
+     * @return the number of SMTP connections opened by the sender threads
+     */
+    public long getConnectionCount()
+    {
+        return this.connectionCount.get();
+    }
+
+    /**
+     * @return the average time spent sending a message, in milliseconds
+     */
+    public double getAverageSendTime()
+    {
+        long sent = getSentCount();
+        return sent > 0 ? (double) this.sendTime.get() / sent : 0;
+    }
+
+    /**
+     * @return the average number of messages delivered per second since the queue has been started
+     */
+    public double getThroughput()
+    {
+        long elapsed = System.currentTimeMillis() - this.startTime;
+        return elapsed > 0 ? getSentCount() * MILLISECONDS_PER_SECOND / elapsed : 0;
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("queue size = %d, queued = %d, sent = %d, retries = %d, failed = %d, connections = %d",
+            getQueueSize(), getQueuedCount(), getSentCount(), getRetryCount(), getFailedCount(), getConnectionCount());
+    }
+}
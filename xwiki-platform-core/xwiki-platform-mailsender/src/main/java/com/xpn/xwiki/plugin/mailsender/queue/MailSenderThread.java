@@ -0,0 +1,195 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.xpn.xwiki.plugin.mailsender.queue;
+
+import java.io.BufferedInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import javax.mail.Address;
+import javax.mail.MessagingException;
+import javax.mail.SendFailedException;
+import javax.mail.Session;
+import javax.mail.Transport;
+import javax.mail.internet.MimeMessage;
+
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Thread delivering the messages of a {@link MailQueue}. Each thread keeps its SMTP connection open between messages
+ * sent with the same configuration, and closes it once the queue has been idle for a while.
+ *
+ * @version $Id$
+ * @since 4.4M1
+ */
+public class MailSenderThread extends Thread
+{
+    /** Time after which an idle SMTP connection is closed, in milliseconds. */
+    private static final long IDLE_TIMEOUT = 10000;
+
+    /** Logging helper object. */
+    private static final Logger LOGGER = LoggerFactory.getLogger(MailSenderThread.class);
+
+    /** The queue to deliver the messages of. */
+    private final MailQueue queue;
+
+    /** The JavaMail session of the current connection. */
+    private Session session;
+
+    /** The current SMTP connection. */
+    private Transport transport;
+
+    /** The configuration the current connection has been opened with, see {@link QueuedMail#getConnectionKey()}. */
+    private String connectionKey;
+
+    /** Whether the thread has been asked to stop. */
+    private volatile boolean stopped;
+
+    /**
+     * @param queue the queue to deliver the messages of
+     * @param name the name of the thread
+     */
+    MailSenderThread(MailQueue queue, String name)
+    {
+        super(name);
+        this.queue = queue;
+        // The JVM should be allowed to shutdown while this thread is running
+        setDaemon(true);
+    }
+
+    /**
+     * Ask the thread to stop once the message being sent, if any, has been delivered.
+     */
+    void stopSending()
+    {
+        this.stopped = true;
+        interrupt();
+    }
+
+    @Override
+    public void run()
+    {
+        try {
+            while (!this.stopped) {
+                QueuedMail mail;
+                try {
+                    mail = this.queue.poll(IDLE_TIMEOUT);
+                } catch (InterruptedException e) {
+                    break;
+                }
+
+                if (mail == null) {
+                    closeTransport();
+                } else {
+                    send(mail);
+                }
+            }
+        } finally {
+            closeTransport();
+        }
+    }
+
+    /**
+     * Deliver a message, reusing the current SMTP connection if possible.
+     *
+     * @param mail the message to deliver
+     */
+    private void send(QueuedMail mail)
+    {
+        long startTime = System.currentTimeMillis();
+        InputStream in = null;
+        try {
+            Transport connectedTransport = getTransport(mail);
+            in = new BufferedInputStream(new FileInputStream(mail.getMessageFile()));
+            MimeMessage message = new MimeMessage(this.session, in);
+            Address[] recipients = message.getAllRecipients();
+            if (recipients == null || recipients.length == 0) {
+                LOGGER.info("No recipient for message [{}], skipping it", mail);
+            } else {
+                connectedTransport.sendMessage(message, recipients);
+            }
+            this.queue.onSent(mail, System.currentTimeMillis() - startTime);
+        } catch (SendFailedException e) {
+            // Some of the addresses are invalid; sending the message again would fail the same way.
+            this.queue.onFailed(mail, false, e);
+        } catch (MessagingException e) {
+            // The connection is probably broken, open a new one for the next message.
+            closeTransport();
+            this.queue.onFailed(mail, true, e);
+        } catch (IOException e) {
+            this.queue.onFailed(mail, false, e);
+        } finally {
+            IOUtils.closeQuietly(in);
+        }
+    }
+
+    /**
+     * Get a connection to the SMTP server configured for the given message, opening a new one if the current one
+     * has been closed or uses another configuration.
+     *
+     * @param mail the message to deliver
+     * @return the connected transport
+     * @throws MessagingException if the connection fails
+     */
+    private Transport getTransport(QueuedMail mail) throws MessagingException
+    {
+        if (this.transport != null
+            && (!mail.getConnectionKey().equals(this.connectionKey) || !this.transport.isConnected())) {
+            closeTransport();
+        }
+
+        if (this.transport == null) {
+            this.session = Session.getInstance(mail.getSessionProperties(), null);
+            Transport newTransport = this.session.getTransport("smtp");
+            if (mail.usesAuthentication()) {
+                // auth info present - typical with external smtp server
+                newTransport.connect(mail.getUsername(), this.queue.getPassword(mail));
+            } else {
+                // no auth info - typical 127.0.0.1 open relay scenario
+                newTransport.connect();
+            }
+            this.transport = newTransport;
+            this.connectionKey = mail.getConnectionKey();
+            this.queue.getStatistics().onConnection();
+        }
+
+        return this.transport;
+    }
+
+    /**
+     * Close the current SMTP connection, if any.
+     */
+    private void closeTransport()
+    {
+        if (this.transport != null) {
+            try {
+                this.transport.close();
+            } catch (MessagingException e) {
+                LOGGER.debug("Failed to close SMTP connection", e);
+            }
+            this.transport = null;
+            this.session = null;
+            this.connectionKey = null;
+        }
+    }
+}
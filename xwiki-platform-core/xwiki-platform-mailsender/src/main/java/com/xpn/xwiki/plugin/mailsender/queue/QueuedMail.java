@@ -0,0 +1,266 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.xpn.xwiki.plugin.mailsender.queue;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Properties;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.IOUtils;
+
+/**
+ * A message waiting in the outbox of the {@link MailQueue}. The MIME content of the message is stored in a
+ * {@code .eml} file and the information needed to deliver it (JavaMail session properties, SMTP user name, number
+ * of delivery attempts) in a {@code .properties} file with the same base name, so that pending messages survive a
+ * restart. The SMTP password is never written to the outbox, see {@link MailQueue#getPassword(QueuedMail)}.
+ *
+ * @version $Id$
+ * @since 4.4M1
+ */
+public class QueuedMail implements Delayed
+{
+    /** Extension of the file holding the MIME content of the message. */
+    public static final String MESSAGE_EXTENSION = ".eml";
+
+    /** Extension of the file holding the delivery information of the message. */
+    public static final String METADATA_EXTENSION = ".properties";
+
+    /** Prefix of the metadata keys which are not JavaMail session properties. */
+    private static final String QUEUE_PREFIX = "xwiki.mailqueue.";
+
+    /** Metadata key of the SMTP user name. */
+    private static final String USERNAME = QUEUE_PREFIX + "username";
+
+    /** Metadata key of the wiki whose mail configuration the message has been queued with. */
+    private static final String WIKI = QUEUE_PREFIX + "wiki";
+
+    /** Metadata key of the number of delivery attempts. */
+    private static final String ATTEMPTS = QUEUE_PREFIX + "attempts";
+
+    /** The identifier of the message in the outbox. */
+    private final String id;
+
+    /** The file holding the MIME content of the message. */
+    private final File messageFile;
+
+    /** The file holding the delivery information of the message. */
+    private final File metadataFile;
+
+    /** The JavaMail session properties to use for delivering the message. */
+    private final Properties sessionProperties = new Properties();
+
+    /** The SMTP user name, {@code null} if the server doesn't require authentication. */
+    private String username;
+
+    /** The wiki whose mail configuration the message has been queued with. */
+    private String wiki;
+
+    /** The number of failed delivery attempts. */
+    private int attempts;
+
+    /** The time (in milliseconds) before which the message should not be delivered. */
+    private long nextAttemptTime;
+
+    /**
+     * @param id the identifier of the message in the outbox
+     * @param outbox the outbox directory
+     */
+    QueuedMail(String id, File outbox)
+    {
+        this.id = id;
+        this.messageFile = new File(outbox, id + MESSAGE_EXTENSION);
+        this.metadataFile = new File(outbox, id + METADATA_EXTENSION);
+    }
+
+    /**
+     * @return the identifier of the message in the outbox
+     */
+    public String getId()
+    {
+        return this.id;
+    }
+
+    /**
+     * @return the file holding the MIME content of the message
+     */
+    public File getMessageFile()
+    {
+        return this.messageFile;
+    }
+
+    /**
+     * @return the file holding the delivery information of the message
+     */
+    public File getMetadataFile()
+    {
+        return this.metadataFile;
+    }
+
+    /**
+     * @return the JavaMail session properties to use for delivering the message
+     */
+    public Properties getSessionProperties()
+    {
+        return this.sessionProperties;
+    }
+
+    /**
+     * @param sessionProperties the JavaMail session properties to use for delivering the message
+     */
+    void setSessionProperties(Properties sessionProperties)
+    {
+        this.sessionProperties.clear();
+        this.sessionProperties.putAll(sessionProperties);
+    }
+
+    /**
+     * @return the SMTP user name, {@code null} if the server doesn't require authentication
+     */
+    public String getUsername()
+    {
+        return this.username;
+    }
+
+    /**
+     * @return the wiki whose mail configuration the message has been queued with
+     */
+    public String getWiki()
+    {
+        return this.wiki;
+    }
+
+    /**
+     * @param wiki the wiki whose mail configuration the message has been queued with
+     * @param username the SMTP user name, {@code null} if the server doesn't require authentication
+     */
+    void setAccount(String wiki, String username)
+    {
+        this.wiki = wiki;
+        this.username = username;
+    }
+
+    /**
+     * @return true if the SMTP server requires authentication
+     */
+    public boolean usesAuthentication()
+    {
+        return this.username != null;
+    }
+
+    /**
+     * @return the number of failed delivery attempts
+     */
+    public int getAttempts()
+    {
+        return this.attempts;
+    }
+
+    /**
+     * Record a failed delivery attempt and postpone the next one.
+     *
+     * @param delay the time to wait before the next attempt, in milliseconds
+     */
+    void retryLater(long delay)
+    {
+        this.attempts++;
+        this.nextAttemptTime = System.currentTimeMillis() + delay;
+    }
+
+    /**
+     * @return an identifier of the SMTP connection the message should be sent with, used to know if a connection can
+     *         be reused for this message
+     */
+    String getConnectionKey()
+    {
+        return this.sessionProperties.toString() + '|' + this.username;
+    }
+
+    /**
+     * Write the delivery information of the message to the outbox.
+     *
+     * @throws IOException if the file cannot be written
+     */
+    void storeMetadata() throws IOException
+    {
+        Properties metadata = new Properties();
+        metadata.putAll(this.sessionProperties);
+        if (this.wiki != null) {
+            metadata.setProperty(WIKI, this.wiki);
+        }
+        if (this.username != null) {
+            metadata.setProperty(USERNAME, this.username);
+        }
+        metadata.setProperty(ATTEMPTS, String.valueOf(this.attempts));
+
+        OutputStream out = new FileOutputStream(this.metadataFile);
+        try {
+            metadata.store(out, null);
+        } finally {
+            IOUtils.closeQuietly(out);
+        }
+    }
+
+    /**
+     * Read the delivery information of the message from the outbox.
+     *
+     * @throws IOException if the file cannot be read
+     */
+    void loadMetadata() throws IOException
+    {
+        Properties metadata = new Properties();
+        InputStream in = new FileInputStream(this.metadataFile);
+        try {
+            metadata.load(in);
+        } finally {
+            IOUtils.closeQuietly(in);
+        }
+
+        this.username = (String) metadata.remove(USERNAME);
+        this.wiki = (String) metadata.remove(WIKI);
+        String attemptsValue = (String) metadata.remove(ATTEMPTS);
+        this.attempts = attemptsValue != null ? Integer.parseInt(attemptsValue) : 0;
+        setSessionProperties(metadata);
+    }
+
+    @Override
+    public long getDelay(TimeUnit unit)
+    {
+        return unit.convert(this.nextAttemptTime - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public int compareTo(Delayed other)
+    {
+        long diff = getDelay(TimeUnit.MILLISECONDS) - other.getDelay(TimeUnit.MILLISECONDS);
+        return diff < 0 ? -1 : (diff > 0 ? 1 : 0);
+    }
+
+    @Override
+    public String toString()
+    {
+        return this.id;
+    }
+}
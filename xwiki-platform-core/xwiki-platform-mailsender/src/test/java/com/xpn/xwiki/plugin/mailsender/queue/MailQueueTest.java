@@ -0,0 +1,188 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.xpn.xwiki.plugin.mailsender.queue;
+
+import java.io.File;
+import java.util.List;
+import java.util.Properties;
+
+import javax.mail.Message;
+import javax.mail.Session;
+import javax.mail.internet.InternetAddress;
+import javax.mail.internet.MimeMessage;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.jvnet.mock_javamail.Mailbox;
+
+/**
+ * Unit tests for {@link MailQueue}. The SMTP server is replaced by the in-process mock JavaMail transport.
+ *
+ * @version $Id$
+ */
+public class MailQueueTest
+{
+    private static final String RECIPIENT = "peter@acme.org";
+
+    private File outbox;
+
+    private Properties properties;
+
+    private MailQueue queue;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        // Use a new outbox for each test so that concurrent or interrupted runs don't share messages.
+        this.outbox = File.createTempFile("xwiki-mailqueue-test", "");
+        this.outbox.delete();
+        this.outbox.mkdirs();
+
+        this.properties = new Properties();
+        this.properties.put("mail.smtp.host", "myserver");
+
+        Mailbox.clearAll();
+    }
+
+    @After
+    public void tearDown() throws Exception
+    {
+        if (this.queue != null) {
+            this.queue.stop();
+        }
+        FileUtils.deleteDirectory(this.outbox);
+    }
+
+    private MimeMessage createMessage(String subject) throws Exception
+    {
+        MimeMessage message = new MimeMessage(Session.getInstance(this.properties, null));
+        message.setFrom(new InternetAddress("john@acme.org"));
+        message.setRecipient(Message.RecipientType.TO, new InternetAddress(RECIPIENT));
+        message.setSubject(subject);
+        message.setText("Text content");
+        message.saveChanges();
+
+        return message;
+    }
+
+    private void waitForDelivery(long expectedCount) throws InterruptedException
+    {
+        MailQueueStatistics statistics = this.queue.getStatistics();
+        for (int i = 0; i < 100 && statistics.getSentCount() + statistics.getFailedCount() < expectedCount; i++) {
+            Thread.sleep(50);
+        }
+    }
+
+    @Test
+    public void sendQueuedMessages() throws Exception
+    {
+        this.queue = new MailQueue(this.outbox, 2, 3, 10);
+        this.queue.start();
+
+        for (int i = 0; i < 10; i++) {
+            this.queue.add(createMessage("Subject " + i), this.properties, "xwiki", null, null);
+        }
+        waitForDelivery(10);
+
+        List<Message> inbox = Mailbox.get(RECIPIENT);
+        Assert.assertEquals(10, inbox.size());
+        Assert.assertEquals(10, this.queue.getStatistics().getSentCount());
+        Assert.assertEquals(0, this.queue.size());
+        // The sender threads reuse their connection.
+        Assert.assertTrue(this.queue.getStatistics().getConnectionCount() <= 2);
+        Assert.assertEquals(0, this.outbox.listFiles().length);
+    }
+
+    @Test
+    public void sendMessagesLeftInOutbox() throws Exception
+    {
+        // Messages queued before a restart are still in the outbox.
+        MailQueue previousQueue = new MailQueue(this.outbox, 1, 3, 10);
+        previousQueue.add(createMessage("Before restart"), this.properties, "xwiki", null, null);
+        Assert.assertEquals(0, Mailbox.get(RECIPIENT).size());
+
+        this.queue = new MailQueue(this.outbox, 1, 3, 10);
+        this.queue.start();
+        waitForDelivery(1);
+
+        List<Message> inbox = Mailbox.get(RECIPIENT);
+        Assert.assertEquals(1, inbox.size());
+        Assert.assertEquals("Before restart", inbox.get(0).getSubject());
+    }
+
+    @Test
+    public void retryAndGiveUp() throws Exception
+    {
+        Mailbox.get(RECIPIENT).setError(true);
+
+        this.queue = new MailQueue(this.outbox, 1, 2, 10);
+        this.queue.start();
+        this.queue.add(createMessage("Failing"), this.properties, "xwiki", null, null);
+        waitForDelivery(1);
+
+        Assert.assertEquals(1, this.queue.getStatistics().getRetryCount());
+        Assert.assertEquals(1, this.queue.getStatistics().getFailedCount());
+        Assert.assertEquals(0, this.queue.getStatistics().getSentCount());
+        Assert.assertEquals(2, new File(this.outbox, MailQueue.FAILED_DIRECTORY).listFiles().length);
+    }
+
+    @Test
+    public void passwordIsNotStoredInOutbox() throws Exception
+    {
+        MailQueue previousQueue = new MailQueue(this.outbox, 1, 3, 10);
+        String id = previousQueue.add(createMessage("Authenticated"), this.properties, "xwiki", "john", "secret");
+
+        QueuedMail mail = new QueuedMail(id, this.outbox);
+        Assert.assertFalse(FileUtils.readFileToString(mail.getMetadataFile()).contains("secret"));
+        mail.loadMetadata();
+        Assert.assertEquals("xwiki", mail.getWiki());
+        Assert.assertEquals("john", mail.getUsername());
+        // The queue the message has been added to keeps the password in memory
+        Assert.assertEquals("secret", previousQueue.getPassword(mail));
+
+        // After a restart the password is read from the mail configuration again
+        this.queue = new MailQueue(this.outbox, 1, 3, 10);
+        Assert.assertNull(this.queue.getPassword(mail));
+        this.queue.setPasswordProvider(new SmtpPasswordProvider()
+        {
+            @Override
+            public String getPassword(String wiki, String username)
+            {
+                return "xwiki".equals(wiki) && "john".equals(username) ? "configured" : null;
+            }
+        });
+        Assert.assertEquals("configured", this.queue.getPassword(mail));
+    }
+
+    @Test
+    public void retryDelayIsBounded()
+    {
+        MailQueue retryingQueue = new MailQueue(this.outbox, 1, 100, 60000);
+        Assert.assertEquals(60000, retryingQueue.getRetryDelay(0));
+        Assert.assertEquals(240000, retryingQueue.getRetryDelay(2));
+        long maxDelay = retryingQueue.getRetryDelay(20);
+        Assert.assertTrue(maxDelay > 0);
+        Assert.assertEquals(maxDelay, retryingQueue.getRetryDelay(64));
+        Assert.assertEquals(maxDelay, retryingQueue.getRetryDelay(Integer.MAX_VALUE));
+    }
+}
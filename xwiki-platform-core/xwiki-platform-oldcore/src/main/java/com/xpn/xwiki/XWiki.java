@@ -32,7 +32,6 @@
 import java.lang.reflect.Type;
 import java.net.InetAddress;
 import java.net.MalformedURLException;
-import java.net.URI;
 import java.net.URL;
 import java.text.DateFormatSymbols;
 import java.text.SimpleDateFormat;
@@ -81,6 +80,7 @@
 import org.hibernate.HibernateException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.xwiki.bridge.RenderingDependencyRecorder;
 import org.xwiki.bridge.event.ApplicationReadyEvent;
 import org.xwiki.bridge.event.DocumentCreatedEvent;
 import org.xwiki.bridge.event.DocumentCreatingEvent;
@@ -144,6 +144,10 @@
 import com.xpn.xwiki.internal.event.XObjectPropertyEvent;
 import com.xpn.xwiki.internal.event.XObjectPropertyUpdatedEvent;
 import com.xpn.xwiki.internal.event.XObjectUpdatedEvent;
+import com.xpn.xwiki.internal.skin.SkinFileCache;
+import com.xpn.xwiki.internal.skin.SkinFileLocation;
+import com.xpn.xwiki.internal.skin.SkinTemplateCache;
+import com.xpn.xwiki.internal.skin.TemplateSource;
 import com.xpn.xwiki.objects.BaseObject;
 import com.xpn.xwiki.objects.PropertyInterface;
 import com.xpn.xwiki.objects.classes.BaseClass;
@@ -1395,6 +1399,9 @@ public void saveDocument(XWikiDocument doc, String comment, boolean isMinorEdit,
 
     public XWikiDocument getDocument(XWikiDocument doc, XWikiContext context) throws XWikiException
     {
+        // The rendering in progress, if any, depends on this document
+        RenderingDependencyRecorder.record(doc.getDocumentReference(), context);
+
         String database = context.getDatabase();
         try {
             if (doc.getDocumentReference().getWikiReference().getName() != null) {
@@ -1723,21 +1730,16 @@ public String parseTemplate(String template, XWikiContext context)
      */
     public String evaluateTemplate(String template, XWikiContext context) throws IOException
     {
+        List<String> skins = new ArrayList<String>();
         try {
             String skin = getSkin(context);
-            String result = parseTemplate(template, skin, context);
-            if (result != null) {
-                return result;
-            }
+            skins.add(skin);
 
             // If we could not find the template in the skin
             // let's try in the base skin (as long as the base skin is not the same as the skin)
             String baseskin = getBaseSkin(context);
             if (!skin.equals(baseskin)) {
-                result = parseTemplate(template, baseskin, context);
-                if (result != null) {
-                    return result;
-                }
+                skins.add(baseskin);
             }
 
             // If we still could not find the template in the skin or in the base skin
@@ -1745,79 +1747,33 @@ public String evaluateTemplate(String template, XWikiContext context) throws IOE
             // as the skin or the base skin
             String defaultbaseskin = getDefaultBaseSkin(context);
             if ((!baseskin.equals(defaultbaseskin)) && (!skin.equals(defaultbaseskin))) {
-                result = parseTemplate(template, defaultbaseskin, context);
-                if (result != null) {
-                    return result;
-                }
+                skins.add(defaultbaseskin);
             }
         } catch (Exception ex) {
             LOGGER.debug("Exception while parsing template [{}] from skin", template, ex);
         }
 
-        // Prevent inclusion of templates from other directories
-        template = URI.create("/templates/" + template).normalize().toString();
-        if (!template.startsWith("/templates/")) {
-            LOGGER.warn("Direct access to template file [{}] refused. Possible break-in attempt!", template);
+        // The template is looked up in the skins then in /templates/, and the location where it has been found is
+        // remembered, along with its source.
+        TemplateSource source =
+            Utils.getComponent((Type) SkinTemplateCache.class).getTemplateSource(template, skins, true, context);
+        if (source == null) {
             return "";
         }
 
-        String content = getResourceContent(template);
-        return XWikiVelocityRenderer.evaluate(content, template, (VelocityContext) context.get("vcontext"), context);
+        return XWikiVelocityRenderer.evaluate(source.getContent(), source.getName(),
+            (VelocityContext) context.get("vcontext"), context);
     }
 
     public String parseTemplate(String template, String skin, XWikiContext context)
     {
         try {
-            XWikiDocument doc = getDocument(skin, context);
-            if (!doc.isNew()) {
-                // Try parsing the object property
-                BaseObject object =
-                    doc.getXObject(new DocumentReference(doc.getDocumentReference().getWikiReference().getName(),
-                        SYSTEM_SPACE, "XWikiSkins"));
-                if (object != null) {
-                    String content = object.getStringValue(template);
-                    if (StringUtils.isNotBlank(content)) {
-                        // Let's use this template
-                        // Use "" as namespace to register macros in global namespace. That way it
-                        // can be used in a renderer content not parsed at the same level.
-                        return XWikiVelocityRenderer.evaluate(content, "", (VelocityContext) context.get("vcontext"),
-                            context);
-                    }
-                }
-                // Try parsing a document attachment
-                XWikiAttachment attachment = doc.getAttachment(template);
-                if (attachment != null) {
-                    // It's impossible to know the real attachemtn encoding, but let's assume that they respect the
-                    // standard and use UTF-8 (which is required for the files located on the filesystem)
-                    String content = IOUtils.toString(attachment.getContentInputStream(context), DEFAULT_ENCODING);
-                    if (StringUtils.isNotBlank(content)) {
-                        // Let's use this template
-                        // Use "" as namespace to register macros in global namespace. That way it
-                        // can be used in a renderer content not parsed at the same level.
-                        return XWikiVelocityRenderer.evaluate(content, "", (VelocityContext) context.get("vcontext"),
-                            context);
-                    }
-                }
-            }
-        } catch (Exception e) {
-        }
-
-        // Try parsing a file located in the directory with the same name.
-        try {
-            String path = "/skins/" + skin + "/" + template;
-            // We must make sure the file is taken from the skins directory, otherwise people might
-            // try to read things from WEB-INF.
-            path = URI.create(path).normalize().toString();
-            // This is a safe assumption, as templates found under /templates/ are treated
-            // separately, and there is no need to have templates in another place.
-            if (path.startsWith("/skins/")) {
-                String content = getResourceContent(path);
-                // Use "" as namespace to register macros in global namespace. That way it can be
-                // used in a renderer content not parsed at the same level.
-                return XWikiVelocityRenderer.evaluate(content, "", (VelocityContext) context.get("vcontext"), context);
-            } else {
-                LOGGER.warn("Illegal access, tried to use file [" + path + "] as a template."
-                    + " Possible break-in attempt!");
+            TemplateSource source =
+                Utils.getComponent((Type) SkinTemplateCache.class).getTemplateSource(template,
+                    Collections.singletonList(skin), false, context);
+            if (source != null) {
+                return XWikiVelocityRenderer.evaluate(source.getContent(), source.getName(),
+                    (VelocityContext) context.get("vcontext"), context);
             }
         } catch (Exception e) {
         }
@@ -1891,19 +1847,19 @@ public String getSkinFile(String filename, boolean forceSkinAction, XWikiContext
         XWikiURLFactory urlf = context.getURLFactory();
 
         try {
-            // Try in the specified skin
+            // Try in the specified skin then in the parent skin
+            List<String> skins = new ArrayList<String>();
             String skin = getSkin(context);
-            String result = getSkinFile(filename, skin, forceSkinAction, context);
-            if (result != null) {
-                return result;
-            }
-            // Try in the parent skin
+            skins.add(skin);
             String baseskin = getBaseSkin(context);
             if (!skin.equals(baseskin)) {
-                result = getSkinFile(filename, baseskin, forceSkinAction, context);
-                if (result != null) {
-                    return result;
-                }
+                skins.add(baseskin);
+            }
+
+            SkinFileLocation location =
+                Utils.getComponent((Type) SkinFileCache.class).getSkinFile(filename, skins, context);
+            if (location != null) {
+                return getSkinFileURL(location, forceSkinAction, context);
             }
         } catch (Exception e) {
             if (LOGGER.isDebugEnabled()) {
@@ -1928,59 +1884,71 @@ public String getSkinFile(String filename, String skin, XWikiContext context)
 
     public String getSkinFile(String filename, String skin, boolean forceSkinAction, XWikiContext context)
     {
-        XWikiURLFactory urlf = context.getURLFactory();
         try {
-            XWikiDocument doc = getDocument(skin, context);
-            if (!doc.isNew()) {
-                // Look for an object property
-                BaseObject object =
-                    doc.getXObject(new DocumentReference(doc.getDocumentReference().getWikiReference().getName(),
-                        SYSTEM_SPACE, "XWikiSkins"));
-                if (object != null) {
-                    String content = object.getStringValue(filename);
-                    if (StringUtils.isNotBlank(content)) {
-                        URL url =
-                            urlf.createSkinURL(filename, doc.getSpace(), doc.getName(), doc.getDatabase(), context);
-                        return urlf.getURL(url, context);
-                    }
-                }
-
-                // Look for an attachment
-                String shortName = StringUtils.replaceChars(filename, '/', '.');
-                XWikiAttachment attachment = doc.getAttachment(shortName);
-                if (attachment != null) {
-                    return doc.getAttachmentURL(shortName, "skin", context);
-                }
+            SkinFileLocation location =
+                Utils.getComponent((Type) SkinFileCache.class).getSkinFile(filename,
+                    Collections.singletonList(skin), context);
+            if (location != null) {
+                return getSkinFileURL(location, forceSkinAction, context);
             }
+        } catch (Exception e) {
+            if (LOGGER.isDebugEnabled()) {
+                LOGGER.debug("Exception while getting skin file [" + filename + "] from skin [" + skin + "]", e);
+            }
+        }
 
-            // Look for a skin file
-            String path = "/skins/" + skin + "/" + filename;
-            if (resourceExists(path)) {
-                URL url;
+        return null;
+    }
 
+    /**
+     * Create the URL of a skin file. The URL carries the version of the file content, so that browsers can keep the
+     * file in cache until it is modified.
+     * 
+     * @param location where the skin file has been found
+     * @param forceSkinAction true to make sure that static files are retrieved through the skin action
+     * @param context the XWiki context
+     * @return the URL of the skin file
+     */
+    private String getSkinFileURL(SkinFileLocation location, boolean forceSkinAction, XWikiContext context)
+    {
+        XWikiURLFactory urlf = context.getURLFactory();
+        String filename = location.getName();
+        String versionParameter =
+            StringUtils.isEmpty(location.getVersion()) ? null : "cache-version="
+                + Util.encodeURI(location.getVersion(), context);
+
+        URL url;
+        DocumentReference documentReference = location.getDocumentReference();
+        switch (location.getKind()) {
+            case OBJECT:
+                url =
+                    urlf.createSkinURL(filename, documentReference.getLastSpaceReference().getName(),
+                        documentReference.getName(), documentReference.getWikiReference().getName(), context);
+                break;
+            case ATTACHMENT:
+                url =
+                    urlf.createAttachmentURL(filename, documentReference.getLastSpaceReference().getName(),
+                        documentReference.getName(), "skin", versionParameter,
+                        documentReference.getWikiReference().getName(), context);
+                return urlf.getURL(url, context);
+            case SKIN_DIRECTORY:
                 if (forceSkinAction) {
-                    url = urlf.createSkinURL(filename, "skins", skin, context);
+                    url = urlf.createSkinURL(filename, "skins", location.getSkin(), context);
                 } else {
-                    url = urlf.createSkinURL(filename, skin, context);
+                    url = urlf.createSkinURL(filename, location.getSkin(), context);
                 }
-                return urlf.getURL(url, context);
-            }
-
-            // Look for a resource file
-            path = "/resources/" + filename;
-            if (resourceExists(path)) {
-                URL url;
+                break;
+            default:
                 url = urlf.createResourceURL(filename, forceSkinAction, context);
-                return urlf.getURL(url, context);
-            }
+                break;
+        }
 
-        } catch (Exception e) {
-            if (LOGGER.isDebugEnabled()) {
-                LOGGER.debug("Exception while getting skin file [" + filename + "] from skin [" + skin + "]", e);
-            }
+        String result = urlf.getURL(url, context);
+        if (versionParameter != null) {
+            result += (result.indexOf('?') < 0 ? '?' : '&') + versionParameter;
         }
 
-        return null;
+        return result;
     }
 
     public String getSkin(XWikiContext context)
@@ -2743,6 +2711,10 @@ public void flushCache(XWikiContext context)
             pmanager.flushCache(context);
         }
 
+        // Flush the skin templates and files, since the skin documents may have been modified without sending events
+        Utils.getComponent((Type) SkinTemplateCache.class).flush();
+        Utils.getComponent((Type) SkinFileCache.class).flush();
+
         // Make sure we call all classes flushCache function
         try {
             List<String> classes = getClassList(context);
@@ -5836,6 +5808,7 @@ public BaseClass getXClass(DocumentReference documentReference, XWikiContext con
         // Used to avoid recursive loading of documents if there are recursives usage of classes
         BaseClass bclass = context.getBaseClass(documentReference);
         if (bclass != null) {
+            RenderingDependencyRecorder.record(documentReference, context);
             return bclass;
         }
 
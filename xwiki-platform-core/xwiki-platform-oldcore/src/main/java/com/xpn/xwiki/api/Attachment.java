@@ -198,6 +198,13 @@ public List<Version> getVersionList() throws XWikiException
     public XWikiAttachment getAttachment()
     {
         if (hasProgrammingRights()) {
+            if (this.doc != null && this.doc.doc.getAttachment(getFilename()) == this.attachment) {
+                // The caller may modify the attachment: make sure it belongs to a copy of the shared document.
+                XWikiAttachment attachment = this.doc.getDoc().getAttachment(getFilename());
+                if (attachment != null) {
+                    this.attachment = attachment;
+                }
+            }
             return this.attachment;
         } else {
             return null;
@@ -36,6 +36,14 @@ protected BaseCollection getCollection()
         return (BaseCollection) this.element;
     }
 
+    /**
+     * @return the wrapped collection, which can be modified without affecting the other users of the collection
+     */
+    protected BaseCollection getWritableCollection()
+    {
+        return getCollection();
+    }
+
     public Class getxWikiClass()
     {
         return new Class(getCollection().getXClass(getXWikiContext()), getXWikiContext());
@@ -72,7 +80,7 @@ public Element[] getProperties()
         Property[] properties = new Property[coll.size()];
         int i = 0;
         for (BaseProperty prop : coll) {
-            properties[i++] = new Property(prop, getXWikiContext());
+            properties[i++] = new Property(prop, this, getXWikiContext());
         }
         return properties;
     }
@@ -85,7 +93,7 @@ public Property getProperty(String name)
                 return null;
             }
 
-            return new Property((BaseProperty) prop, getXWikiContext());
+            return new Property((BaseProperty) prop, this, getXWikiContext());
         } catch (Exception e) {
             return null;
         }
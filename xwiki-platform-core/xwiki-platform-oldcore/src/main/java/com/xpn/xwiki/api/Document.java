@@ -158,7 +158,9 @@ public XWikiDocument getDocument()
     }
 
     /**
-     * Get a clone of the XWikiDocument wrapped by this API.
+     * Get a clone of the XWikiDocument wrapped by this API. The wrapped document is usually shared with the other
+     * requests (e.g. it comes from the document cache), so it is cloned the first time it is needed in order to be
+     * modified. Methods which only read the document should use {@link #doc} directly instead.
      * 
      * @return A clone of the XWikiDocument wrapped by this API.
      */
@@ -921,7 +923,7 @@ public int getObjectNumbers(String classname)
      */
     public Map<String, Vector<Object>> getxWikiObjects()
     {
-        Map<DocumentReference, List<BaseObject>> map = this.getDoc().getXObjects();
+        Map<DocumentReference, List<BaseObject>> map = this.doc.getXObjects();
         Map<String, Vector<Object>> resultmap = new HashMap<String, Vector<Object>>();
         for (Map.Entry<DocumentReference, List<BaseObject>> entry : map.entrySet()) {
             List<BaseObject> objects = entry.getValue();
@@ -952,7 +954,7 @@ protected Vector<Object> getXObjects(List<BaseObject> objects)
      */
     public Vector<Object> getObjects(String className)
     {
-        List<BaseObject> objects = this.getDoc().getXObjects(this.doc.resolveClassReference(className));
+        List<BaseObject> objects = this.doc.getXObjects(this.doc.resolveClassReference(className));
         return getXObjects(objects);
     }
 
@@ -964,7 +966,7 @@ public Vector<Object> getObjects(String className)
     public Object getFirstObject(String fieldname)
     {
         try {
-            BaseObject obj = this.getDoc().getFirstObject(fieldname, getXWikiContext());
+            BaseObject obj = this.doc.getFirstObject(fieldname, getXWikiContext());
             if (obj == null) {
                 return null;
             } else {
@@ -987,7 +989,7 @@ public Object getFirstObject(String fieldname)
     public Object getObject(String classname, String key, String value, boolean failover)
     {
         try {
-            BaseObject obj = this.getDoc().getObject(classname, key, value, failover);
+            BaseObject obj = this.doc.getObject(classname, key, value, failover);
             if (obj == null) {
                 return null;
             } else {
@@ -1014,7 +1016,7 @@ public Vector<Object> getObjects(String classname, String key, String value)
             return getObjects(classname);
         }
         try {
-            Vector<BaseObject> allObjects = this.getDoc().getObjects(classname);
+            Vector<BaseObject> allObjects = this.doc.getObjects(classname);
             if (allObjects == null || allObjects.size() == 0) {
                 return result;
             } else {
@@ -1047,7 +1049,7 @@ public Vector<Object> getObjects(String classname, String key, String value)
     public Object getObject(String classname, String key, String value)
     {
         try {
-            BaseObject obj = this.getDoc().getObject(classname, key, value);
+            BaseObject obj = this.doc.getObject(classname, key, value);
             if (obj == null) {
                 return null;
             } else {
@@ -1080,7 +1082,11 @@ public Object getObject(String classname)
     public Object getObject(String classname, boolean create)
     {
         try {
-            BaseObject obj = getDoc().getObject(classname, create, getXWikiContext());
+            // The document is copied only when the object has to be created.
+            BaseObject obj = this.doc.getObject(classname, false, getXWikiContext());
+            if (obj == null && create) {
+                obj = getDoc().getObject(classname, true, getXWikiContext());
+            }
 
             if (obj == null) {
                 return null;
@@ -1102,7 +1108,7 @@ public Object getObject(String classname, boolean create)
     public Object getObject(String classname, int nb)
     {
         try {
-            BaseObject obj = this.getDoc().getObject(classname, nb);
+            BaseObject obj = this.doc.getObject(classname, nb);
             if (obj == null) {
                 return null;
             } else {
@@ -1115,7 +1121,11 @@ public Object getObject(String classname, int nb)
 
     private Object newObjectApi(BaseObject obj, XWikiContext context)
     {
-        return obj.newObjectApi(obj, context);
+        // The object is read from the wrapped document without copying it: the document is copied only when the
+        // object is modified.
+        Object object = obj.newObjectApi(obj, context);
+        object.setOwner(this, this.doc);
+        return object;
     }
 
     public String getXMLContent() throws XWikiException
@@ -1185,7 +1195,7 @@ public RevisionInfo getRevisionInfo(String version) throws XWikiException
     public List<Attachment> getAttachmentList()
     {
         List<Attachment> apis = new ArrayList<Attachment>();
-        for (XWikiAttachment attachment : this.getDoc().getAttachmentList()) {
+        for (XWikiAttachment attachment : this.doc.getAttachmentList()) {
             apis.add(new Attachment(this, attachment, getXWikiContext()));
         }
         return apis;
@@ -1198,7 +1208,7 @@ public Vector<Object> getComments()
 
     public Vector<Object> getComments(boolean asc)
     {
-        return getXObjects(this.getDoc().getComments(asc));
+        return getXObjects(this.doc.getComments(asc));
     }
 
     /**
@@ -1592,7 +1602,7 @@ public List<String> getLinkedPages()
 
     public Attachment getAttachment(String filename)
     {
-        XWikiAttachment attach = this.getDoc().getAttachment(filename);
+        XWikiAttachment attach = this.doc.getAttachment(filename);
         if (attach == null) {
             return null;
         } else {
@@ -1947,7 +1957,7 @@ public java.lang.Object getValue(String fieldName)
     {
         Object object;
         if (this.currentObj == null) {
-            object = new Object(this.getDoc().getFirstObject(fieldName, getXWikiContext()), getXWikiContext());
+            object = getFirstObject(fieldName);
         } else {
             object = this.currentObj;
         }
@@ -1958,7 +1968,7 @@ public java.lang.Object getValue(String fieldName, Object object)
     {
         if (object != null) {
             try {
-                return ((BaseProperty) object.getBaseObject().safeget(fieldName)).getValue();
+                return Property.copyValue(((BaseProperty) object.getBaseObject().safeget(fieldName)).getValue());
             } catch (NullPointerException e) {
                 return null;
             }
@@ -1993,7 +2003,9 @@ public String getTags()
 
     public List<String> getTagList()
     {
-        return this.getDoc().getTagsList(getXWikiContext());
+        // The list is the value of the tag property of the wrapped document, which must not be modified.
+        List<String> tags = this.doc.getTagsList(getXWikiContext());
+        return tags != null ? new ArrayList<String>(tags) : null;
     }
 
     public List<String> getTagsPossibleValues()
@@ -2557,7 +2569,7 @@ public boolean validate(String[] classNames) throws XWikiException
      */
     public String getValidationScript()
     {
-        return getDoc().getValidationScript();
+        return this.doc.getValidationScript();
     }
 
     /**
@@ -22,15 +22,73 @@
 import com.xpn.xwiki.XWikiContext;
 import com.xpn.xwiki.XWikiException;
 import com.xpn.xwiki.doc.XWikiDocument;
+import com.xpn.xwiki.objects.BaseCollection;
 import com.xpn.xwiki.objects.BaseObject;
 
 public class Object extends Collection
 {
+    /**
+     * The document API this object has been read from, {@code null} if the object doesn't belong to a document API.
+     */
+    private Document owner;
+
+    /**
+     * The document wrapped by the owner when the object has been read from it. When the owner copies its document
+     * on the first write, the wrapped object is replaced by its counterpart in the copy.
+     */
+    private XWikiDocument source;
+
     public Object(BaseObject obj, XWikiContext context)
     {
         super(obj, context);
     }
 
+    /**
+     * Indicate the document API this object has been read from, so that modifying the object copies the document
+     * instead of modifying the document shared with the other requests.
+     *
+     * @param owner the document API wrapping the document which contains the object
+     * @param source the document wrapped by the owner, which contains the object
+     */
+    void setOwner(Document owner, XWikiDocument source)
+    {
+        this.owner = owner;
+        this.source = source;
+    }
+
+    @Override
+    protected BaseCollection getCollection()
+    {
+        if (this.owner != null && this.owner.doc != this.source) {
+            // The owner has copied its document since this object has been read: use the copy of the object.
+            BaseObject object = (BaseObject) this.element;
+            BaseObject copy = this.owner.doc.getXObject(object.getXClassReference(), object.getNumber());
+            if (copy != null) {
+                this.element = copy;
+            }
+            this.source = this.owner.doc;
+        }
+
+        return (BaseCollection) this.element;
+    }
+
+    @Override
+    protected BaseCollection getWritableCollection()
+    {
+        if (this.owner != null) {
+            // Make sure the owner works on its own copy of the document before modifying the object.
+            this.owner.getDoc();
+            BaseObject object = getBaseObject();
+            if (this.owner.doc.getXObject(object.getXClassReference(), object.getNumber()) != object) {
+                // The object is not part of the copy, don't modify the original.
+                this.element = object.clone();
+                this.owner = null;
+            }
+        }
+
+        return getCollection();
+    }
+
     protected BaseObject getBaseObject()
     {
         return (BaseObject) getCollection();
@@ -39,7 +97,7 @@ protected BaseObject getBaseObject()
     public BaseObject getXWikiObject()
     {
         if (hasProgrammingRights()) {
-            return (BaseObject) getCollection();
+            return (BaseObject) getWritableCollection();
         } else {
             return null;
         }
@@ -52,7 +110,7 @@ public String getGuid()
 
     public void setGuid(String guid)
     {
-        getBaseObject().setGuid(guid);
+        ((BaseObject) getWritableCollection()).setGuid(guid);
     }
 
     /**
@@ -94,6 +152,6 @@ public boolean equals(java.lang.Object arg0)
 
     public void set(String fieldname, java.lang.Object value)
     {
-        getBaseObject().set(fieldname, value, getXWikiContext());
+        ((BaseObject) getWritableCollection()).set(fieldname, value, getXWikiContext());
     }
 }
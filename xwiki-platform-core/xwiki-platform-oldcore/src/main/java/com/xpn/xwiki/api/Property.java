@@ -19,8 +19,12 @@
  */
 package com.xpn.xwiki.api;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import com.xpn.xwiki.XWikiContext;
 import com.xpn.xwiki.objects.BaseProperty;
+import com.xpn.xwiki.objects.PropertyInterface;
 
 /**
  * Property is a single attribute of an XWiki {@link com.xpn.xwiki.api.Object}.
@@ -29,6 +33,11 @@
  */
 public class Property extends Element
 {
+    /**
+     * The collection API this property has been read from, {@code null} if unknown.
+     */
+    private Collection collection;
+
     /**
      * The Constructor.
      *
@@ -40,6 +49,20 @@ public Property(BaseProperty property, XWikiContext context)
         super(property, context);
     }
 
+    /**
+     * Create a property read from a collection API, so that giving access to the internal property doesn't allow to
+     * modify a collection shared with the other requests.
+     *
+     * @param property the internal {@link com.xpn.xwiki.objects.BaseProperty} to wrap.
+     * @param collection the collection API the property has been read from.
+     * @param context the XWikiContext which may be used to get information about the current request.
+     */
+    Property(BaseProperty property, Collection collection, XWikiContext context)
+    {
+        super(property, context);
+        this.collection = collection;
+    }
+
     /**
      * @return the internal {@link com.xpn.xwiki.objects.BaseProperty} which this Property wraps.
      */
@@ -54,6 +77,13 @@ protected BaseProperty getBaseProperty()
     public BaseProperty getProperty()
     {
         if (hasProgrammingRights()) {
+            if (this.collection != null) {
+                // The caller may modify the returned property.
+                PropertyInterface property = this.collection.getWritableCollection().safeget(element.getName());
+                if (property != null) {
+                    element = (BaseProperty) property;
+                }
+            }
             return (BaseProperty) element;
         } else {
             return null;
@@ -71,6 +101,20 @@ public java.lang.Object getValue()
                 getXWikiContext())) {
             return null;
         }
-        return ((BaseProperty) element).getValue();
+        return copyValue(((BaseProperty) element).getValue());
+    }
+
+    /**
+     * @param value the value of a property
+     * @return the value itself, or a copy of it if it is a list, so that modifying it doesn't modify a property shared
+     *         with the other requests
+     */
+    static java.lang.Object copyValue(java.lang.Object value)
+    {
+        if (value instanceof List) {
+            return new ArrayList<java.lang.Object>((List< ? >) value);
+        }
+
+        return value;
     }
 }
@@ -82,6 +82,9 @@
 import org.xwiki.context.ExecutionContextManager;
 import org.xwiki.display.internal.DocumentDisplayer;
 import org.xwiki.display.internal.DocumentDisplayerParameters;
+import org.xwiki.instrumentation.Instrumentation;
+import org.xwiki.instrumentation.Phase;
+import org.xwiki.instrumentation.Span;
 import org.xwiki.model.EntityType;
 import org.xwiki.model.reference.DocumentReference;
 import org.xwiki.model.reference.DocumentReferenceResolver;
@@ -358,7 +361,8 @@ public void onUpdate()
 
     /**
      * The document structure expressed as a tree of Block objects. We store it for performance reasons since parsing is
-     * a costly operation that we don't want to repeat whenever some code ask for the XDOM information.
+     * a costly operation that we don't want to repeat whenever some code ask for the XDOM information. It is never
+     * modified once parsed, so it is shared with the clones of this document, and it is only exposed through clones.
      */
     private XDOM xdom;
 
@@ -910,13 +914,18 @@ public String getRenderedContent(Syntax targetSyntax, boolean isolateVelocityMac
         String renderedContent = getRenderingCache().getRenderedContent(getDocumentReference(), content, context);
 
         if (renderedContent == null) {
-            DocumentDisplayerParameters parameters = new DocumentDisplayerParameters();
-            parameters.setTransformationContextIsolated(isolateVelocityMacros);
-            // Render the translated content (matching the current language) using this document's syntax.
-            parameters.setContentTranslated(tdoc != this);
-            XDOM contentXDOM = getDocumentDisplayer().display(this, parameters);
-            renderedContent = renderXDOM(contentXDOM, targetSyntax);
-            getRenderingCache().setRenderedContent(getDocumentReference(), content, renderedContent, context);
+            Span span = Utils.getComponent(Instrumentation.class).startSpan(Phase.RENDERING, getDocumentReference());
+            try {
+                DocumentDisplayerParameters parameters = new DocumentDisplayerParameters();
+                parameters.setTransformationContextIsolated(isolateVelocityMacros);
+                // Render the translated content (matching the current language) using this document's syntax.
+                parameters.setContentTranslated(tdoc != this);
+                XDOM contentXDOM = getDocumentDisplayer().display(this, parameters);
+                renderedContent = renderXDOM(contentXDOM, targetSyntax);
+                getRenderingCache().setRenderedContent(getDocumentReference(), content, renderedContent, context);
+            } finally {
+                span.end();
+            }
         }
 
         return renderedContent;
@@ -981,6 +990,7 @@ public String getRenderedContent(String text, String sourceSyntaxId, String targ
 
         if (result == null) {
             Map<String, Object> backup = null;
+            Span span = Utils.getComponent(Instrumentation.class).startSpan(Phase.RENDERING, getDocumentReference());
             try {
                 // We have to render the given text in the context of this document. Check if this document is already
                 // on the context (same Java object reference). We don't check if the document references are equal
@@ -1013,6 +1023,7 @@ public String getRenderedContent(String text, String sourceSyntaxId, String targ
                 if (backup != null) {
                     restoreContext(backup, context);
                 }
+                span.end();
             }
         }
 
@@ -3393,6 +3404,8 @@ private XWikiDocument cloneInternal(DocumentReference newDocumentReference, bool
             doc.setXClass(bClass);
 
             if (keepsIdentity) {
+                // The clone has the same content, syntax and reference so it can reuse the parsed content.
+                doc.xdom = this.xdom;
                 doc.setXClassXML(getXClassXML());
                 doc.cloneXObjects(this);
                 doc.cloneAttachments(this);
@@ -4578,7 +4591,7 @@ public Set<String> getUniqueLinkedPages(XWikiContext context)
             if (is10Syntax()) {
                 pageNames = getUniqueLinkedPages10(context);
             } else {
-                XDOM dom = getXDOM();
+                XDOM dom = getParsedXDOM();
 
                 List<LinkBlock> linkBlocks =
                     dom.getBlocks(new ClassBlockMatcher(LinkBlock.class), Block.Axes.DESCENDANT);
@@ -4822,7 +4835,7 @@ public List<String> getIncludedPages(XWikiContext context)
             return getIncludedPagesForXWiki10Syntax(getContent(), context);
         } else {
             // Find all include macros listed on the page
-            XDOM dom = getXDOM();
+            XDOM dom = getParsedXDOM();
 
             List<String> result = new ArrayList<String>();
             List<MacroBlock> macroBlocks =
@@ -6233,7 +6246,7 @@ public String getDefaultEditMode(XWikiContext context) throws XWikiException
             // Find all include macros and extract the document names
             // TODO: Is there a good way not to hardcode the macro name? The macro itself shouldn't know
             // its own name since it's a deployment time concern.
-            for (Block macroBlock : getXDOM().getBlocks(new MacroBlockMatcher("include"), Axes.CHILD)) {
+            for (Block macroBlock : getParsedXDOM().getBlocks(new MacroBlockMatcher("include"), Axes.CHILD)) {
                 String documentName = macroBlock.getParameter("document");
                 if (documentName != null) {
                     // Resolve the document name into a valid Reference
@@ -7659,9 +7672,21 @@ public void convertSyntax(Syntax targetSyntax, XWikiContext context) throws XWik
      */
     public XDOM getXDOM()
     {
-        if (this.xdom == null) {
+        // The callers are allowed to modify the returned XDOM.
+        return getParsedXDOM().clone();
+    }
+
+    /**
+     * @return the XDOM corresponding to the document's string content, shared with the other callers and the clones of
+     *         this document: it must not be modified
+     */
+    private XDOM getParsedXDOM()
+    {
+        XDOM parsedXDOM = this.xdom;
+        if (parsedXDOM == null) {
             try {
-                this.xdom = parseContent(getContent());
+                parsedXDOM = parseContent(getContent());
+                this.xdom = parsedXDOM;
             } catch (XWikiException e) {
                 if (StringUtils.isEmpty(getContent())) {
                     LOGGER.debug("Syntax [{}] cannot handle empty input. Returning empty XDOM.", getSyntax());
@@ -7671,7 +7696,7 @@ public XDOM getXDOM()
             }
         }
 
-        return this.xdom.clone();
+        return parsedXDOM;
     }
 
     /**
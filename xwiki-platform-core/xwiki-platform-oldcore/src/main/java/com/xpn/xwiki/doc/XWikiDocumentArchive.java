@@ -21,9 +21,12 @@
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.SortedMap;
 import java.util.SortedSet;
@@ -48,6 +51,9 @@
  */
 public class XWikiDocumentArchive
 {
+    /** Number of versions whose content is loaded at once while compacting the history. */
+    private static final int COMPACTION_BATCH_SIZE = 100;
+
     /** =docId. */
     private long id;
 
@@ -131,9 +137,7 @@ protected XWikiRCSNodeContent makePatch(XWikiRCSNodeInfo newnode, XWikiDocument
         XWikiRCSNodeInfo latestNode = getLatestNode();
         if (latestNode != null) {
             int nodesCount = getNodes().size();
-            int nodesPerFull =
-                context.getWiki() == null ? 5 : Integer.parseInt(context.getWiki().getConfig()
-                    .getProperty("xwiki.store.rcs.nodesPerFull", "5"));
+            int nodesPerFull = getNodesPerFull(context);
             if (nodesPerFull <= 0 || (nodesCount % nodesPerFull) != 0) {
                 XWikiRCSNodeContent latestContent = latestNode.getContent(context);
                 latestContent.getPatch().setDiffVersion(latestContent.getPatch().getContent(),
@@ -146,6 +150,17 @@ protected XWikiRCSNodeContent makePatch(XWikiRCSNodeInfo newnode, XWikiDocument
         return result;
     }
 
+    /**
+     * @param context - used to read the configuration
+     * @return the number of versions between two versions stored in full instead of as a patch, 0 or less to store
+     *         only the latest version in full
+     */
+    public static int getNodesPerFull(XWikiContext context)
+    {
+        return context.getWiki() == null ? 5 : Integer.parseInt(context.getWiki().getConfig()
+            .getProperty("xwiki.store.rcs.nodesPerFull", "5"));
+    }
+
     /** @return {@link XWikiDocument#getId()} - primary key */
     public long getId()
     {
@@ -321,15 +336,35 @@ public void removeVersions(Version newerVersion, Version olderVersion, XWikiCont
      */
     public XWikiDocument loadDocument(Version version, XWikiContext context)
         throws XWikiException
+    {
+        if (getNode(version) == null) {
+            return null;
+        }
+        String content;
+        try {
+            content = getVersionXml(version, context);
+        } catch (Exception e) {
+            throw createReadingException(version, e);
+        }
+        return loadDocument(version, content);
+    }
+
+    /**
+     * @return selected version of document, null if version is not found.
+     * @param version - which version to load
+     * @param versionXml - the XML of the version, as returned by {@link #getVersionXml(Version, XWikiContext)}
+     * @throws XWikiException if any error
+     * @since 4.4M1
+     */
+    public XWikiDocument loadDocument(Version version, String versionXml) throws XWikiException
     {
         XWikiRCSNodeInfo nodeInfo = getNode(version);
         if (nodeInfo == null) {
             return null;
         }
         try {
-            String content = getVersionXml(version, context);
             XWikiDocument doc = new XWikiDocument();
-            doc.fromXML(content);
+            doc.fromXML(versionXml);
 
             doc.setRCSVersion(version);
             doc.setComment(nodeInfo.getComment());
@@ -338,13 +373,23 @@ public XWikiDocument loadDocument(Version version, XWikiContext context)
             doc.setMostRecent(version.equals(getLatestVersion()));
             return doc;
         } catch (Exception e) {
-            Object[] args = {version.toString(), new Long(getId())};
-            throw new XWikiException(XWikiException.MODULE_XWIKI_STORE,
-                XWikiException.ERROR_XWIKI_STORE_RCS_READING_REVISIONS,
-                "Exception while reading version [{0}] for document id [{1,number}]", e, args);
+            throw createReadingException(version, e);
         }
     }
 
+    /**
+     * @param version - the version which can't be read
+     * @param cause - the reason why it can't be read
+     * @return the exception to throw
+     */
+    private XWikiException createReadingException(Version version, Exception cause)
+    {
+        Object[] args = {version.toString(), new Long(getId())};
+        return new XWikiException(XWikiException.MODULE_XWIKI_STORE,
+            XWikiException.ERROR_XWIKI_STORE_RCS_READING_REVISIONS,
+            "Exception while reading version [{0}] for document id [{1,number}]", cause, args);
+    }
+
     /**
      * Return the XML corresponding to a version. If the version node contains just a diff, then
      * restore the complete XML by applying all patches from the nearest full version to the
@@ -439,14 +484,117 @@ public Version getNearestFullVersion(Version ver)
     private List<XWikiRCSNodeContent> loadRCSNodeContents(Version vfrom, Version vto, XWikiContext context)
         throws XWikiException
     {
-        List<XWikiRCSNodeContent> result = new ArrayList<XWikiRCSNodeContent>();
-        for (XWikiRCSNodeInfo nodeInfo : getNodes(vfrom, vto)) {
-            XWikiRCSNodeContent nodeContent = nodeInfo.getContent(context);
+        Collection<XWikiRCSNodeInfo> nodes = getNodes(vfrom, vto);
+
+        // Load the contents which are not in memory anymore with a single query instead of one query per version.
+        List<XWikiRCSNodeInfo> missingNodes = new ArrayList<XWikiRCSNodeInfo>();
+        for (XWikiRCSNodeInfo nodeInfo : nodes) {
+            if (nodeInfo.getContent(null) == null) {
+                missingNodes.add(nodeInfo);
+            }
+        }
+        Map<String, XWikiRCSNodeContent> loadedContents = Collections.emptyMap();
+        if (missingNodes.size() > 1 && context.getWiki() != null) {
+            loadedContents = new HashMap<String, XWikiRCSNodeContent>();
+            for (XWikiRCSNodeContent nodeContent : context.getWiki().getVersioningStore().loadRCSNodeContents(getId(),
+                missingNodes.get(0).getVersion(), missingNodes.get(missingNodes.size() - 1).getVersion(), true,
+                context)) {
+                loadedContents.put(nodeContent.getId().getVersion().toString(), nodeContent);
+            }
+        }
+
+        List<XWikiRCSNodeContent> result = new ArrayList<XWikiRCSNodeContent>(nodes.size());
+        for (XWikiRCSNodeInfo nodeInfo : nodes) {
+            XWikiRCSNodeContent nodeContent = loadedContents.get(nodeInfo.getVersion().toString());
+            if (nodeContent != null) {
+                nodeInfo.setContent(nodeContent);
+            } else {
+                nodeContent = nodeInfo.getContent(context);
+            }
             result.add(nodeContent);
         }
         return result;
     }
 
+    /**
+     * Rewrite the history so that it follows the given storage policy: the latest version and every
+     * {@code nodesPerFull}th version are stored in full, the other versions are stored as a patch from the next
+     * version. This is the policy {@link #updateArchive} follows for new versions, so compacting is needed only for
+     * the versions created before the policy has been changed. The modified nodes need to be saved after.
+     * 
+     * @param nodesPerFull - the number of versions between two full versions, 0 or less to store only the latest
+     *            version in full
+     * @param context - used for loading nodes content
+     * @return true if some nodes have been modified
+     * @throws XWikiException if any error
+     * @since 4.4M1
+     */
+    public boolean compact(int nodesPerFull, XWikiContext context) throws XWikiException
+    {
+        // Latest version first, like the patches are applied.
+        List<XWikiRCSNodeInfo> nodes = new ArrayList<XWikiRCSNodeInfo>(getNodes());
+        if (isCompact(nodes, nodesPerFull)) {
+            // Don't load the content of the versions for nothing.
+            return false;
+        }
+
+        boolean modified = false;
+        List<String> text = new ArrayList<String>();
+        String nextXml = null;
+        for (int start = 0; start < nodes.size(); start += COMPACTION_BATCH_SIZE) {
+            List<XWikiRCSNodeInfo> batch = nodes.subList(start, Math.min(nodes.size(), start + COMPACTION_BATCH_SIZE));
+            List<XWikiRCSNodeContent> contents =
+                loadRCSNodeContents(batch.get(0).getVersion(), batch.get(batch.size() - 1).getVersion(), context);
+            for (int i = 0; i < batch.size(); i++) {
+                XWikiRCSNodeInfo nodeInfo = batch.get(i);
+                XWikiRCSNodeContent nodeContent = contents.get(i);
+                nodeContent.getPatch().patch(text);
+                String xml = ToString.arrayToString(text.toArray());
+
+                if (isFull(nodes.size() - start - i, nodes.size(), nodesPerFull) == nodeInfo.isDiff()) {
+                    if (nodeInfo.isDiff()) {
+                        nodeContent.getPatch().setFullVersion(xml);
+                    } else {
+                        nodeContent.getPatch().setDiffVersion(xml, nextXml, "");
+                    }
+                    nodeInfo.setContent(nodeContent);
+                    updateNode(nodeInfo);
+                    getUpdatedNodeContents().add(nodeContent);
+                    modified = true;
+                }
+                nextXml = xml;
+            }
+        }
+        return modified;
+    }
+
+    /**
+     * @param nodes - the nodes of the history, latest version first
+     * @param nodesPerFull - the number of versions between two full versions
+     * @return true if the history already follows the storage policy
+     */
+    private boolean isCompact(List<XWikiRCSNodeInfo> nodes, int nodesPerFull)
+    {
+        for (int i = 0; i < nodes.size(); i++) {
+            if (isFull(nodes.size() - i, nodes.size(), nodesPerFull) == nodes.get(i).isDiff()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @param position - the position of the version in the history, starting with 1 for the first version, like
+     *            {@link #makePatch} counts them
+     * @param count - the number of versions in the history
+     * @param nodesPerFull - the number of versions between two full versions
+     * @return true if the version should be stored in full
+     */
+    private boolean isFull(int position, int count, int nodesPerFull)
+    {
+        return position == count || (nodesPerFull > 0 && position % nodesPerFull == 0);
+    }
+
     /** reset history. history becomes empty. */
     public void resetArchive()
     {
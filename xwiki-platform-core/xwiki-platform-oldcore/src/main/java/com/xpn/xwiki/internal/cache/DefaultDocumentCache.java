@@ -21,8 +21,9 @@
 
 import java.util.Arrays;
 import java.util.Collection;
-import java.util.HashSet;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.inject.Inject;
 
@@ -34,6 +35,9 @@
 import org.xwiki.cache.CacheException;
 import org.xwiki.cache.CacheManager;
 import org.xwiki.cache.config.CacheConfiguration;
+import org.xwiki.cache.event.CacheEntryEvent;
+import org.xwiki.cache.event.CacheEntryListener;
+import org.xwiki.cache.eviction.LRUEvictionConfiguration;
 import org.xwiki.component.annotation.Component;
 import org.xwiki.component.annotation.InstantiationStrategy;
 import org.xwiki.component.descriptor.ComponentInstantiationStrategy;
@@ -44,9 +48,8 @@
 import org.xwiki.observation.event.Event;
 
 /**
- * Specialized cache component related to documents. It automatically clean the cache when the document is related.
- * <p>
- * TODO: add support for dependencies
+ * Specialized cache component related to documents. It automatically clean the cache when the document or one of
+ * the dependencies of an entry is modified.
  * 
  * @param <C> the type of the data stored in the cache
  * @version $Id$
@@ -62,6 +65,12 @@
     private static final List<Event> EVENTS = Arrays.<Event> asList(new DocumentCreatedEvent(),
         new DocumentUpdatedEvent(), new DocumentDeletedEvent());
 
+    /**
+     * The default number of documents the mapping cache can hold for each entry of the cache, since an entry can
+     * depend on several documents.
+     */
+    private static final int MAPPING_SIZE_RATIO = 10;
+
     /**
      * Used to listen to document modification events.
      * 
@@ -103,6 +112,37 @@ public void onEvent(Event event, Object source, Object data)
      */
     protected Listener listener = new Listener();
 
+    /**
+     * Removes the entries related to a document when the mapping of this document is evicted from the mapping cache,
+     * since they could not be invalidated anymore.
+     */
+    private CacheEntryListener<Collection<String>> mappingListener = new CacheEntryListener<Collection<String>>()
+    {
+        @Override
+        public void cacheEntryAdded(CacheEntryEvent<Collection<String>> event)
+        {
+            // Nothing to do
+        }
+
+        @Override
+        public void cacheEntryRemoved(CacheEntryEvent<Collection<String>> event)
+        {
+            Collection<String> keys = event.getEntry().getValue();
+
+            if (keys != null) {
+                for (String key : keys) {
+                    cache.remove(key);
+                }
+            }
+        }
+
+        @Override
+        public void cacheEntryModified(CacheEntryEvent<Collection<String>> event)
+        {
+            // Nothing to do
+        }
+    };
+
     /**
      * Used to initialize the actual cache component.
      */
@@ -138,15 +178,31 @@ public void onEvent(Event event, Object source, Object data)
 
     @Override
     public void create(CacheConfiguration cacheConfiguration) throws CacheException
+    {
+        CacheConfiguration mappingCacheConfiguration = (CacheConfiguration) cacheConfiguration.clone();
+        mappingCacheConfiguration.setConfigurationId(cacheConfiguration.getConfigurationId() + ".mapping");
+        LRUEvictionConfiguration lru = (LRUEvictionConfiguration) cacheConfiguration.get(
+            LRUEvictionConfiguration.CONFIGURATIONID);
+        if (lru != null && lru.getMaxEntries() > 0) {
+            // The mappings don't expire: they are removed with the documents or when the cache is full.
+            LRUEvictionConfiguration mappingLRU = new LRUEvictionConfiguration();
+            mappingLRU.setMaxEntries(lru.getMaxEntries() * MAPPING_SIZE_RATIO);
+            mappingCacheConfiguration.put(LRUEvictionConfiguration.CONFIGURATIONID, mappingLRU);
+        }
+
+        create(cacheConfiguration, mappingCacheConfiguration);
+    }
+
+    @Override
+    public void create(CacheConfiguration cacheConfiguration, CacheConfiguration mappingCacheConfiguration)
+        throws CacheException
     {
         this.name = cacheConfiguration.getConfigurationId();
 
         this.cache = this.cacheManager.createNewCache(cacheConfiguration);
 
-        CacheConfiguration mappingCacheConfiguration = (CacheConfiguration) cacheConfiguration.clone();
-        mappingCacheConfiguration.setConfigurationId(cacheConfiguration.getConfigurationId() + ".mapping");
-
         this.mappingCache = this.cacheManager.createNewCache(mappingCacheConfiguration);
+        this.mappingCache.addCacheEntryListener(this.mappingListener);
 
         this.observationManager.addListener(this.listener);
     }
@@ -161,16 +217,39 @@ public C get(DocumentReference documentReference, Object... extensions)
 
     @Override
     public void set(C data, DocumentReference documentReference, Object... extensions)
+    {
+        set(data, Collections.<DocumentReference> emptyList(), documentReference, extensions);
+    }
+
+    @Override
+    public void set(C data, Collection<DocumentReference> dependencies, DocumentReference documentReference,
+        Object... extensions)
     {
         String key = getKey(documentReference, extensions);
         this.cache.set(key, data);
 
+        addMapping(key, documentReference);
+        for (DocumentReference dependency : dependencies) {
+            if (!dependency.equals(documentReference)) {
+                addMapping(key, dependency);
+            }
+        }
+    }
+
+    /**
+     * Associate a cache entry to a document, so that the entry is removed when the document is modified.
+     * 
+     * @param key the key of the cache entry
+     * @param documentReference the reference of the document
+     */
+    private void addMapping(String key, DocumentReference documentReference)
+    {
         String documentReferenceString = this.serializer.serialize(documentReference);
 
         Collection<String> keys = this.mappingCache.get(documentReferenceString);
 
         if (keys == null) {
-            keys = new HashSet<String>();
+            keys = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
             this.mappingCache.set(documentReferenceString, keys);
         }
 
@@ -19,6 +19,8 @@
  */
 package com.xpn.xwiki.internal.cache;
 
+import java.util.Collection;
+
 import org.xwiki.cache.CacheException;
 import org.xwiki.cache.config.CacheConfiguration;
 import org.xwiki.component.annotation.ComponentRole;
@@ -44,6 +46,21 @@
      */
     void create(CacheConfiguration cacheConfiguration) throws CacheException;
 
+    /**
+     * Initialize the cache, with a specific configuration for the cache associating the documents to the entries which
+     * depend on them. When a document is evicted from this cache, the entries depending on it are removed, so it should
+     * be able to hold more documents than there are entries.
+     * <p>
+     * This method should be called before anything else.
+     * 
+     * @param cacheConfiguration the cache configuration
+     * @param mappingCacheConfiguration the configuration of the cache associating the documents to the entries
+     * @throws CacheException failed to initialize the cache
+     * @since 4.4M1
+     */
+    void create(CacheConfiguration cacheConfiguration, CacheConfiguration mappingCacheConfiguration)
+        throws CacheException;
+
     /**
      * Get the value associated with the provided key.
      * 
@@ -62,6 +79,19 @@
      */
     void set(C data, DocumentReference documentReference, Object... extensions);
 
+    /**
+     * Add a new value or overwrite the existing one associated with the provided key. The value is removed from the
+     * cache when the document or any of the provided dependencies is modified.
+     * 
+     * @param data the data to store
+     * @param dependencies the references of the other documents the data depends on
+     * @param documentReference the reference of the document
+     * @param extensions the extensions to the document reference
+     * @since 4.4M1
+     */
+    void set(C data, Collection<DocumentReference> dependencies, DocumentReference documentReference,
+        Object... extensions);
+
     /**
      * Remove from the cache the value associated to the provided key elements.
      * 
@@ -21,13 +21,19 @@
 
 import java.io.UnsupportedEncodingException;
 import java.net.URLEncoder;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Map;
+import java.util.Set;
 import java.util.SortedMap;
 import java.util.TreeMap;
 
 import javax.inject.Inject;
 import javax.inject.Singleton;
 
+import org.apache.commons.codec.binary.Hex;
+import org.xwiki.bridge.RenderingDependencyRecorder;
 import org.xwiki.cache.CacheException;
 import org.xwiki.cache.config.CacheConfiguration;
 import org.xwiki.cache.eviction.LRUEvictionConfiguration;
@@ -49,6 +55,34 @@
 @Singleton
 public class DefaultRenderingCache implements RenderingCache, Initializable
 {
+    /**
+     * A cached rendering result.
+     * 
+     * @version $Id$
+     */
+    private static class CachedRendering
+    {
+        /**
+         * The rendered content.
+         */
+        private final String content;
+
+        /**
+         * The documents read during the rendering.
+         */
+        private final Set<DocumentReference> dependencies;
+
+        /**
+         * @param content the rendered content
+         * @param dependencies the documents read during the rendering
+         */
+        CachedRendering(String content, Set<DocumentReference> dependencies)
+        {
+            this.content = content;
+            this.dependencies = dependencies;
+        }
+    }
+
     /**
      * Identifier of the rendering cache.
      */
@@ -69,7 +103,7 @@ public class DefaultRenderingCache implements RenderingCache, Initializable
      * Actually cache object.
      */
     @Inject
-    private DocumentCache<String> cache;
+    private DocumentCache<CachedRendering> cache;
 
     @Override
     public void initialize() throws InitializationException
@@ -82,8 +116,14 @@ public void initialize() throws InitializationException
             lru.setTimeToLive(this.configuration.getDuration());
             cacheConfiguration.put(LRUEvictionConfiguration.CONFIGURATIONID, lru);
 
+            CacheConfiguration mappingCacheConfiguration = new CacheConfiguration();
+            mappingCacheConfiguration.setConfigurationId(NAME + ".mapping");
+            LRUEvictionConfiguration mappingLRU = new LRUEvictionConfiguration();
+            mappingLRU.setMaxEntries(this.configuration.getMappingSize());
+            mappingCacheConfiguration.put(LRUEvictionConfiguration.CONFIGURATIONID, mappingLRU);
+
             try {
-                this.cache.create(cacheConfiguration);
+                this.cache.create(cacheConfiguration, mappingCacheConfiguration);
             } catch (CacheException e) {
                 throw new InitializationException("Failed to initialize core rendering cache", e);
             }
@@ -98,12 +138,26 @@ public String getRenderedContent(DocumentReference documentReference, String sou
         String renderedContent = null;
 
         if (this.configuration.isCached(documentReference)) {
+            Object[] extensions = getExtensions(source, context);
+
             String refresh = context.getRequest() != null ? context.getRequest().getParameter(PARAMETER_REFRESH) : null;
 
             if (!"1".equals(refresh)) {
-                renderedContent =
-                    this.cache.get(documentReference, source, getAction(context), context.getLanguage(),
-                        getRequestParameters(context));
+                CachedRendering cachedRendering = this.cache.get(documentReference, extensions);
+
+                if (cachedRendering != null) {
+                    if (this.configuration.isDependencyTrackingEnabled()) {
+                        // The rendering in progress, if any, depends on the same documents as the cached one
+                        RenderingDependencyRecorder.getRecorder(context).addAll(cachedRendering.dependencies);
+                    }
+
+                    renderedContent = cachedRendering.content;
+                }
+            }
+
+            if (renderedContent == null && this.configuration.isDependencyTrackingEnabled()) {
+                // The content is going to be rendered, record the documents read in the meantime
+                RenderingDependencyRecorder.getRecorder(context).start(getRenderingId(documentReference, extensions));
             }
         }
 
@@ -115,8 +169,63 @@ public void setRenderedContent(DocumentReference documentReference, String sourc
         XWikiContext context)
     {
         if (this.configuration.isCached(documentReference)) {
-            this.cache.set(renderedContent, documentReference, source, getAction(context), context.getLanguage(),
-                getRequestParameters(context));
+            Object[] extensions = getExtensions(source, context);
+
+            Set<DocumentReference> dependencies = null;
+            if (this.configuration.isDependencyTrackingEnabled()) {
+                dependencies =
+                    RenderingDependencyRecorder.getRecorder(context).stop(
+                        getRenderingId(documentReference, extensions));
+            }
+            if (dependencies == null) {
+                dependencies = Collections.emptySet();
+            }
+
+            this.cache.set(new CachedRendering(renderedContent, dependencies), dependencies, documentReference,
+                extensions);
+        }
+    }
+
+    /**
+     * @param source the source to render
+     * @param context the XWiki context
+     * @return the elements identifying the rendering result of a document
+     */
+    private Object[] getExtensions(String source, XWikiContext context)
+    {
+        return new Object[] {getSourceHash(source), getAction(context), context.getLanguage(),
+            getRequestParameters(context)};
+    }
+
+    /**
+     * @param documentReference the reference of the document being rendered
+     * @param extensions the elements identifying the rendering result of the document
+     * @return an identifier of the rendering
+     */
+    private String getRenderingId(DocumentReference documentReference, Object[] extensions)
+    {
+        return documentReference + Arrays.toString(extensions);
+    }
+
+    /**
+     * The source can be large, so its hash is used in the cache key instead.
+     * 
+     * @param source the source to render
+     * @return the hash of the source
+     */
+    private String getSourceHash(String source)
+    {
+        if (source == null) {
+            return "";
+        }
+
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+
+            return new String(Hex.encodeHex(digest.digest(source.getBytes("UTF-8"))));
+        } catch (Exception e) {
+            // That should never happen, SHA-1 and UTF-8 are always supported
+            return source;
         }
     }
 
@@ -147,7 +256,7 @@ private String getRequestParameters(XWikiContext context)
 
                 StringBuilder sb = new StringBuilder();
                 for (Map.Entry<String, String[]> entry : sortedMap.entrySet()) {
-                    if (!parameters.containsKey(PARAMETER_REFRESH)) {
+                    if (!PARAMETER_REFRESH.equals(entry.getKey())) {
                         for (String value : entry.getValue()) {
                             if (sb.length() > 0) {
                                 sb.append('&');
@@ -161,9 +270,9 @@ private String getRequestParameters(XWikiContext context)
                             }
                         }
                     }
-
-                    return sb.toString();
                 }
+
+                return sb.toString();
             }
         }
 
@@ -78,6 +78,21 @@ public class DefaultRenderingCacheConfiguration implements RenderingCacheConfigu
      */
     private static final int PROPVALUE_SIZE = 100;
 
+    /**
+     * Name of the property indicating the number of documents the results in the cache are associated to.
+     */
+    private static final String PROPNAME_MAPPINGSIZE = PREFIX + "mappingSize";
+
+    /**
+     * The default number of documents the results in the cache are associated to, for each result.
+     */
+    private static final int PROPVALUE_MAPPINGSIZE_RATIO = 10;
+
+    /**
+     * Name of the property indicating if the documents read during a rendering are tracked.
+     */
+    private static final String PROPNAME_DEPENDENCIES = PREFIX + "trackDependencies";
+
     /**
      * xwiki.properties file configurations.
      */
@@ -150,6 +165,18 @@ public int getSize()
         return this.farmConfiguration.getProperty(PROPNAME_SIZE, PROPVALUE_SIZE);
     }
 
+    @Override
+    public int getMappingSize()
+    {
+        return this.farmConfiguration.getProperty(PROPNAME_MAPPINGSIZE, getSize() * PROPVALUE_MAPPINGSIZE_RATIO);
+    }
+
+    @Override
+    public boolean isDependencyTrackingEnabled()
+    {
+        return this.farmConfiguration.getProperty(PROPNAME_DEPENDENCIES, true);
+    }
+
     @Override
     public boolean isCached(DocumentReference documentReference)
     {
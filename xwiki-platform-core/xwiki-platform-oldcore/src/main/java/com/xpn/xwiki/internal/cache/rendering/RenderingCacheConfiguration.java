@@ -46,6 +46,13 @@
      */
     int getSize();
 
+    /**
+     * @return the maximum number of documents for which the cached results depending on them are remembered; when a
+     *         document is forgotten, the results depending on it are removed from the cache
+     * @since 4.4M1
+     */
+    int getMappingSize();
+
     /**
      * Indicate if the provided document's rendering result should be cached.
      * 
@@ -53,4 +60,12 @@
      * @return true if the document should be cached, false otherwise
      */
     boolean isCached(DocumentReference documentReference);
+
+    /**
+     * @return true if the documents read while rendering a document should be recorded so that the rendering result is
+     *         removed from the cache when any of them is modified, false if only the modification of the rendered
+     *         document removes the rendering result from the cache
+     * @since 4.4M1
+     */
+    boolean isDependencyTrackingEnabled();
 }
@@ -28,6 +28,8 @@
 import java.util.HashMap;
 import java.util.Map;
 
+import javax.xml.transform.Templates;
+
 import org.artofsolving.jodconverter.document.DefaultDocumentFormatRegistry;
 import org.artofsolving.jodconverter.document.DocumentFormat;
 import org.artofsolving.jodconverter.document.DocumentFormatRegistry;
@@ -88,6 +90,14 @@ public ExportType getExportType(String format)
         return null;
     }
 
+    @Override
+    protected void exportXHTML(org.dom4j.Document xhtml, OutputStream out, ExportType type, XWikiContext context)
+        throws XWikiException
+    {
+        // The office converter needs the XHTML as a file, so there is nothing to stream here.
+        exportXHTML(serializeXHTML(xhtml, context), out, type, context);
+    }
+
     @Override
     protected void exportXHTML(String xhtml, OutputStream out, ExportType type, XWikiContext context)
         throws XWikiException
@@ -157,11 +167,12 @@ private void addEmbeddedObjects(Map<String, InputStream> inputStreams, XWikiCont
      * Get the XSLT for preparing a (valid) XHTML to be converted to an office format.
      * 
      * @param context the current request context
-     * @return the content of the XSLT as a byte stream
-     * @see PdfExportImpl#getXslt(String, String, XWikiContext)
+     * @return the compiled XSLT
+     * @throws XWikiException if the XSLT is not valid
+     * @see PdfExportImpl#getXsltTemplates(String, String, XWikiContext)
      */
-    private InputStream getOfficeExportXSLT(XWikiContext context)
+    private Templates getOfficeExportXSLT(XWikiContext context) throws XWikiException
     {
-        return getXslt("officeExportXSLT", "officeExport.xsl", context);
+        return getXsltTemplates("officeExportXSLT", "officeExport.xsl", context);
     }
 }
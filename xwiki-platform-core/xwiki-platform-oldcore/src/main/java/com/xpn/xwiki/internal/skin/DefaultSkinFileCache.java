@@ -0,0 +1,218 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.xpn.xwiki.internal.skin;
+
+import java.io.File;
+import java.util.List;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import org.apache.commons.lang3.StringUtils;
+import org.xwiki.cache.CacheException;
+import org.xwiki.cache.config.CacheConfiguration;
+import org.xwiki.cache.eviction.LRUEvictionConfiguration;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.component.phase.Initializable;
+import org.xwiki.component.phase.InitializationException;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.model.reference.DocumentReferenceResolver;
+
+import com.xpn.xwiki.XWiki;
+import com.xpn.xwiki.XWikiContext;
+import com.xpn.xwiki.doc.XWikiAttachment;
+import com.xpn.xwiki.doc.XWikiDocument;
+import com.xpn.xwiki.internal.cache.DocumentCache;
+import com.xpn.xwiki.internal.skin.SkinFileLocation.Kind;
+import com.xpn.xwiki.objects.BaseObject;
+
+/**
+ * Default implementation of {@link SkinFileCache}. The locations are stored in a {@link DocumentCache} keyed by the
+ * first skin document and depending on all the skin documents searched. The files of the skins are only checked
+ * again when the {@code xwiki.skin.developmentmode} configuration parameter is enabled, since they don't change on a
+ * production instance. The result of a lookup during which a skin document couldn't be loaded is not cached.
+ *
+ * @version $Id$
+ * @since 4.4M1
+ */
+@Component
+@Singleton
+public class DefaultSkinFileCache implements SkinFileCache, Initializable
+{
+    /**
+     * Identifier of the cache.
+     */
+    private static final String NAME = "core.skinfiles";
+
+    /**
+     * The maximum number of locations to keep.
+     */
+    private static final int CACHE_SIZE = 5000;
+
+    /**
+     * Used to resolve the skin document names, the same way {@link XWiki#getDocument(String, XWikiContext)} does.
+     */
+    @Inject
+    @Named("currentmixed")
+    private DocumentReferenceResolver<String> resolver;
+
+    /**
+     * The cached locations.
+     */
+    @Inject
+    private DocumentCache<SkinFileLocation> cache;
+
+    @Override
+    public void initialize() throws InitializationException
+    {
+        CacheConfiguration cacheConfiguration = new CacheConfiguration();
+        cacheConfiguration.setConfigurationId(NAME);
+        LRUEvictionConfiguration lru = new LRUEvictionConfiguration();
+        lru.setMaxEntries(CACHE_SIZE);
+        cacheConfiguration.put(LRUEvictionConfiguration.CONFIGURATIONID, lru);
+
+        try {
+            this.cache.create(cacheConfiguration);
+        } catch (CacheException e) {
+            throw new InitializationException("Failed to initialize the skin file cache", e);
+        }
+    }
+
+    @Override
+    public SkinFileLocation getSkinFile(String filename, List<String> skins, XWikiContext context)
+    {
+        if (skins.isEmpty()) {
+            return null;
+        }
+
+        List<DocumentReference> skinReferences = SkinLookup.resolve(skins, this.resolver);
+        Object[] extensions = SkinLookup.getKey(skins, filename);
+
+        SkinFileLocation location = this.cache.get(skinReferences.get(0), extensions);
+        if (location == null || location.isModified()) {
+            SkinLookup skinLookup =
+                new SkinLookup("1".equals(context.getWiki().Param("xwiki.skin.developmentmode", "0")));
+            location = lookup(filename, skins, skinReferences, skinLookup, context);
+            // A skin document which couldn't be loaded may provide the file once it can be loaded again.
+            if (!skinLookup.isFailed()) {
+                this.cache.set(location, skinReferences, skinReferences.get(0), extensions);
+            }
+        }
+
+        // The files which can't be found are cached too, with no kind.
+        return location.getKind() != null ? location : null;
+    }
+
+    @Override
+    public void flush()
+    {
+        this.cache.removeAll();
+    }
+
+    /**
+     * Look up a skin file without using the cache.
+     *
+     * @param filename the name of the file
+     * @param skins the skins in which to look for the file, by priority
+     * @param skinReferences the references of the skin documents
+     * @param skinLookup records the files checked and the errors
+     * @param context the XWiki context
+     * @return the location of the file, with a {@code null} kind if it can't be found
+     */
+    private SkinFileLocation lookup(String filename, List<String> skins, List<DocumentReference> skinReferences,
+        SkinLookup skinLookup, XWikiContext context)
+    {
+        for (int i = 0; i < skins.size(); i++) {
+            SkinFileLocation location =
+                lookupInSkin(filename, skins.get(i), skinReferences.get(i), skinLookup, context);
+            if (location != null) {
+                return location;
+            }
+        }
+
+        return new SkinFileLocation(null, null, null, filename, null, skinLookup.getFiles());
+    }
+
+    /**
+     * Look up a skin file in a skin.
+     *
+     * @param filename the name of the file
+     * @param skin the skin in which to look for the file
+     * @param skinReference the reference of the skin document
+     * @param skinLookup records the files checked and the errors
+     * @param context the XWiki context
+     * @return the location of the file, {@code null} if the skin doesn't provide it
+     */
+    private SkinFileLocation lookupInSkin(String filename, String skin, DocumentReference skinReference,
+        SkinLookup skinLookup, XWikiContext context)
+    {
+        XWiki xwiki = context.getWiki();
+
+        XWikiDocument doc = skinLookup.getSkinDocument(skinReference, context);
+        if (doc != null) {
+            // Look for an object property
+            BaseObject object = SkinLookup.getSkinObject(doc);
+            if (object != null && StringUtils.isNotBlank(object.getStringValue(filename))) {
+                return new SkinFileLocation(Kind.OBJECT, skin, skinReference, filename, doc.getVersion(),
+                    skinLookup.getFiles());
+            }
+
+            // Look for an attachment
+            String shortName = StringUtils.replaceChars(filename, '/', '.');
+            XWikiAttachment attachment = doc.getAttachment(shortName);
+            if (attachment != null) {
+                return new SkinFileLocation(Kind.ATTACHMENT, skin, skinReference, shortName, attachment.getVersion(),
+                    skinLookup.getFiles());
+            }
+        }
+
+        // Look for a skin file
+        String path = "/skins/" + skin + '/' + filename;
+        File file = skinLookup.watch(path, context);
+        if (xwiki.resourceExists(path)) {
+            return new SkinFileLocation(Kind.SKIN_DIRECTORY, skin, null, filename, getVersion(file, context),
+                skinLookup.getFiles());
+        }
+
+        // Look for a resource file
+        path = "/resources/" + filename;
+        file = skinLookup.watch(path, context);
+        if (xwiki.resourceExists(path)) {
+            return new SkinFileLocation(Kind.RESOURCES_DIRECTORY, skin, null, filename, getVersion(file, context),
+                skinLookup.getFiles());
+        }
+
+        return null;
+    }
+
+    /**
+     * @param file the file found in the web application, {@code null} if it is not available on the filesystem
+     * @param context the XWiki context
+     * @return the version of the file content: its modification date if it is available, otherwise the version of
+     *         XWiki, since the files of the web application only change when it is upgraded
+     */
+    private String getVersion(File file, XWikiContext context)
+    {
+        long lastModified = file != null ? file.lastModified() : 0;
+
+        return lastModified != 0 ? String.valueOf(lastModified) : context.getWiki().getVersion();
+    }
+}
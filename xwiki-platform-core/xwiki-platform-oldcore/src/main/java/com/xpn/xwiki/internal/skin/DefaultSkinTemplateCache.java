@@ -0,0 +1,269 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.xpn.xwiki.internal.skin;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.Collections;
+import java.util.List;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.xwiki.cache.CacheException;
+import org.xwiki.cache.config.CacheConfiguration;
+import org.xwiki.cache.eviction.LRUEvictionConfiguration;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.component.phase.Initializable;
+import org.xwiki.component.phase.InitializationException;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.model.reference.DocumentReferenceResolver;
+
+import com.xpn.xwiki.XWiki;
+import com.xpn.xwiki.XWikiContext;
+import com.xpn.xwiki.doc.XWikiAttachment;
+import com.xpn.xwiki.doc.XWikiDocument;
+import com.xpn.xwiki.internal.cache.DocumentCache;
+import com.xpn.xwiki.objects.BaseObject;
+
+/**
+ * Default implementation of {@link SkinTemplateCache}. The sources are stored in a {@link DocumentCache} keyed by the
+ * first skin document and depending on all the skin documents searched, so that creating, modifying or deleting one
+ * of them removes the sources it may affect. The template files checked during the lookup are recorded with their
+ * modification date and compared on each access.
+ * <p>
+ * Only the sources are cached, not their parsed Velocity trees: the templates are evaluated through the XWiki
+ * {@link org.xwiki.velocity.VelocityEngine}, which takes a source and doesn't give access to its Velocity runtime, so a
+ * parsed tree could neither be produced for nor rendered by the engine of the current skin.
+ *
+ * @version $Id$
+ * @since 4.4M1
+ */
+@Component
+@Singleton
+public class DefaultSkinTemplateCache implements SkinTemplateCache, Initializable
+{
+    /**
+     * Identifier of the cache.
+     */
+    private static final String NAME = "core.skintemplates";
+
+    /**
+     * The maximum number of template sources to keep.
+     */
+    private static final int CACHE_SIZE = 1000;
+
+    /**
+     * The directory holding the files of the skins.
+     */
+    private static final String SKINS_DIRECTORY = "/skins/";
+
+    /**
+     * The directory holding the default templates.
+     */
+    private static final String TEMPLATES_DIRECTORY = "/templates/";
+
+    /**
+     * The name under which the skin templates are evaluated. Use "" as namespace to register macros in global
+     * namespace. That way it can be used in a renderer content not parsed at the same level.
+     */
+    private static final String SKIN_TEMPLATE_NAME = "";
+
+    /**
+     * Used to log the illegal template names.
+     */
+    @Inject
+    private Logger logger;
+
+    /**
+     * Used to resolve the skin document names, the same way {@link XWiki#getDocument(String, XWikiContext)} does.
+     */
+    @Inject
+    @Named("currentmixed")
+    private DocumentReferenceResolver<String> resolver;
+
+    /**
+     * The cached template sources.
+     */
+    @Inject
+    private DocumentCache<TemplateSource> cache;
+
+    @Override
+    public void initialize() throws InitializationException
+    {
+        CacheConfiguration cacheConfiguration = new CacheConfiguration();
+        cacheConfiguration.setConfigurationId(NAME);
+        LRUEvictionConfiguration lru = new LRUEvictionConfiguration();
+        lru.setMaxEntries(CACHE_SIZE);
+        cacheConfiguration.put(LRUEvictionConfiguration.CONFIGURATIONID, lru);
+
+        try {
+            this.cache.create(cacheConfiguration);
+        } catch (CacheException e) {
+            throw new InitializationException("Failed to initialize the skin template cache", e);
+        }
+    }
+
+    @Override
+    public TemplateSource getTemplateSource(String template, List<String> skins, boolean withTemplatesDirectory,
+        XWikiContext context) throws IOException
+    {
+        if (skins.isEmpty()) {
+            return lookup(template, skins, Collections.<DocumentReference> emptyList(), withTemplatesDirectory,
+                new SkinLookup(true), context);
+        }
+
+        List<DocumentReference> skinReferences = SkinLookup.resolve(skins, this.resolver);
+        Object[] extensions = SkinLookup.getKey(skins, withTemplatesDirectory, template);
+
+        TemplateSource source = this.cache.get(skinReferences.get(0), extensions);
+        if (source == null || source.isModified()) {
+            SkinLookup skinLookup = new SkinLookup(true);
+            source = lookup(template, skins, skinReferences, withTemplatesDirectory, skinLookup, context);
+            // A skin document which couldn't be loaded may provide the template once it can be loaded again.
+            if (source != null && !skinLookup.isFailed()) {
+                this.cache.set(source, skinReferences, skinReferences.get(0), extensions);
+            }
+        }
+
+        return source;
+    }
+
+    @Override
+    public void flush()
+    {
+        this.cache.removeAll();
+    }
+
+    /**
+     * Look up the source of a template without using the cache.
+     *
+     * @param template the name of the template
+     * @param skins the skins in which to look for the template, by priority
+     * @param skinReferences the references of the skin documents
+     * @param withTemplatesDirectory whether to look in the {@code /templates/} directory when none of the skins
+     *            provide the template
+     * @param skinLookup records the files checked and the errors
+     * @param context the XWiki context
+     * @return the source of the template, {@code null} if it can't be found
+     * @throws IOException if the templates directory is searched and the template can't be read from it
+     */
+    private TemplateSource lookup(String template, List<String> skins, List<DocumentReference> skinReferences,
+        boolean withTemplatesDirectory, SkinLookup skinLookup, XWikiContext context) throws IOException
+    {
+        for (int i = 0; i < skins.size(); i++) {
+            String content = getSkinDocumentTemplate(template, skinReferences.get(i), skinLookup, context);
+            if (content == null) {
+                content = getSkinFileTemplate(template, skins.get(i), skinLookup, context);
+            }
+            if (content != null) {
+                return new TemplateSource(content, SKIN_TEMPLATE_NAME, skinLookup.getFiles());
+            }
+        }
+
+        if (withTemplatesDirectory) {
+            // Prevent inclusion of templates from other directories
+            String path = URI.create(TEMPLATES_DIRECTORY + template).normalize().toString();
+            if (!path.startsWith(TEMPLATES_DIRECTORY)) {
+                this.logger.warn("Direct access to template file [{}] refused. Possible break-in attempt!", path);
+                return null;
+            }
+
+            skinLookup.watch(path, context);
+            return new TemplateSource(context.getWiki().getResourceContent(path), path, skinLookup.getFiles());
+        }
+
+        return null;
+    }
+
+    /**
+     * @param template the name of the template
+     * @param skinReference the reference of the skin document
+     * @param skinLookup records the errors
+     * @param context the XWiki context
+     * @return the template provided by the {@code XWikiSkins} object or the attachments of the skin document,
+     *         {@code null} if it doesn't provide it
+     */
+    private String getSkinDocumentTemplate(String template, DocumentReference skinReference, SkinLookup skinLookup,
+        XWikiContext context)
+    {
+        XWikiDocument doc = skinLookup.getSkinDocument(skinReference, context);
+        if (doc != null) {
+            // Try parsing the object property
+            BaseObject object = SkinLookup.getSkinObject(doc);
+            if (object != null) {
+                String content = object.getStringValue(template);
+                if (StringUtils.isNotBlank(content)) {
+                    return content;
+                }
+            }
+            // Try parsing a document attachment
+            XWikiAttachment attachment = doc.getAttachment(template);
+            if (attachment != null) {
+                try {
+                    // It's impossible to know the real attachment encoding, but let's assume that they respect the
+                    // standard and use UTF-8 (which is required for the files located on the filesystem)
+                    String content =
+                        IOUtils.toString(attachment.getContentInputStream(context), XWiki.DEFAULT_ENCODING);
+                    if (StringUtils.isNotBlank(content)) {
+                        return content;
+                    }
+                } catch (Exception e) {
+                    skinLookup.fail(String.format("Failed to read template [%s] from skin document [%s]", template,
+                        skinReference), e);
+                }
+            }
+        }
+
+        // Look for the template in the skin directory
+        return null;
+    }
+
+    /**
+     * @param template the name of the template
+     * @param skin the name of the skin
+     * @param skinLookup records the files checked
+     * @param context the XWiki context
+     * @return the template provided by the skin directory, {@code null} if it doesn't provide it
+     */
+    private String getSkinFileTemplate(String template, String skin, SkinLookup skinLookup, XWikiContext context)
+    {
+        // We must make sure the file is taken from the skins directory, otherwise people might try to read things
+        // from WEB-INF.
+        String path = URI.create(SKINS_DIRECTORY + skin + '/' + template).normalize().toString();
+        // This is a safe assumption, as templates found under /templates/ are treated separately, and there is no
+        // need to have templates in another place.
+        if (!path.startsWith(SKINS_DIRECTORY)) {
+            this.logger.warn("Illegal access, tried to use file [{}] as a template. Possible break-in attempt!", path);
+            return null;
+        }
+
+        skinLookup.watch(path, context);
+        try {
+            return context.getWiki().getResourceContent(path);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,55 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.xpn.xwiki.internal.skin;
+
+import java.util.List;
+
+import org.xwiki.component.annotation.Role;
+
+import com.xpn.xwiki.XWikiContext;
+
+/**
+ * Remembers where the skin files (style sheets, scripts, images) are found, so that creating their URLs doesn't load
+ * the skin documents and probe the web application for each of them. The locations are invalidated when the skin
+ * documents are created, modified or deleted, and, in development mode, when the files of the skins are modified.
+ *
+ * @version $Id$
+ * @since 4.4M1
+ */
+@Role
+public interface SkinFileCache
+{
+    /**
+     * Look up a skin file. For each skin, in order, the file is searched in the {@code XWikiSkins} object of the skin
+     * document, then in its attachments, in the {@code /skins/<skin>/} directory and finally in the
+     * {@code /resources/} directory.
+     *
+     * @param filename the name of the file
+     * @param skins the skins in which to look for the file, by priority
+     * @param context the XWiki context
+     * @return the location of the file, {@code null} if none of the skins provide it
+     */
+    SkinFileLocation getSkinFile(String filename, List<String> skins, XWikiContext context);
+
+    /**
+     * Remove all the cached locations.
+     */
+    void flush();
+}
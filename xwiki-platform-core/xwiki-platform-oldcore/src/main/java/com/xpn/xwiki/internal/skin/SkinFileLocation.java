@@ -0,0 +1,169 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.xpn.xwiki.internal.skin;
+
+import java.io.File;
+import java.util.Map;
+
+import org.xwiki.model.reference.DocumentReference;
+
+/**
+ * Where a skin file has been found, with the version of its content. Instances are immutable and shared between
+ * threads; the URL of the file is created from the location on each request since it depends on the request.
+ *
+ * @version $Id$
+ * @since 4.4M1
+ */
+public class SkinFileLocation
+{
+    /**
+     * The places where a skin file can be found, by priority.
+     */
+    public enum Kind
+    {
+        /**
+         * A property of the {@code XWikiSkins} object of a skin document.
+         */
+        OBJECT,
+
+        /**
+         * An attachment of a skin document.
+         */
+        ATTACHMENT,
+
+        /**
+         * A file of the {@code /skins/<skin>/} directory.
+         */
+        SKIN_DIRECTORY,
+
+        /**
+         * A file of the {@code /resources/} directory.
+         */
+        RESOURCES_DIRECTORY
+    }
+
+    /**
+     * The place where the file has been found, {@code null} if it has not been found.
+     */
+    private final Kind kind;
+
+    /**
+     * The skin providing the file.
+     */
+    private final String skin;
+
+    /**
+     * The reference of the skin document, for the files found in a skin document.
+     */
+    private final DocumentReference documentReference;
+
+    /**
+     * The name of the file in its location.
+     */
+    private final String name;
+
+    /**
+     * The version of the file content.
+     */
+    private final String version;
+
+    /**
+     * The files which have been checked while looking up the skin file, with their modification date at that time, 0
+     * for the files which didn't exist.
+     */
+    private final Map<File, Long> files;
+
+    /**
+     * @param kind the place where the file has been found, {@code null} if it has not been found
+     * @param skin the skin providing the file
+     * @param documentReference the reference of the skin document, for the files found in a skin document
+     * @param name the name of the file in its location
+     * @param version the version of the file content
+     * @param files the files checked while looking up the skin file, with their modification date at that time
+     */
+    public SkinFileLocation(Kind kind, String skin, DocumentReference documentReference, String name, String version,
+        Map<File, Long> files)
+    {
+        this.kind = kind;
+        this.skin = skin;
+        this.documentReference = documentReference;
+        this.name = name;
+        this.version = version;
+        this.files = files;
+    }
+
+    /**
+     * @return the place where the file has been found, {@code null} if it has not been found
+     */
+    public Kind getKind()
+    {
+        return this.kind;
+    }
+
+    /**
+     * @return the skin providing the file
+     */
+    public String getSkin()
+    {
+        return this.skin;
+    }
+
+    /**
+     * @return the reference of the skin document, for the files found in a skin document
+     */
+    public DocumentReference getDocumentReference()
+    {
+        return this.documentReference;
+    }
+
+    /**
+     * @return the name of the file in its location: the attachment name for the files attached to a skin document,
+     *         the requested file name otherwise
+     */
+    public String getName()
+    {
+        return this.name;
+    }
+
+    /**
+     * @return the version of the file content, which changes each time the content changes; it can be added to the
+     *         URL of the file so that it is cached by the browsers as long as it doesn't change
+     */
+    public String getVersion()
+    {
+        return this.version;
+    }
+
+    /**
+     * @return {@code true} if one of the files checked while looking up the skin file has been created, modified or
+     *         deleted since
+     */
+    public boolean isModified()
+    {
+        for (Map.Entry<File, Long> file : this.files.entrySet()) {
+            // File#lastModified() returns 0 for missing files.
+            if (file.getKey().lastModified() != file.getValue()) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+}
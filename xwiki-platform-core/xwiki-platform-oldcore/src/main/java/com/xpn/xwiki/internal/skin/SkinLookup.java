@@ -0,0 +1,196 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.xpn.xwiki.internal.skin;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.model.reference.DocumentReferenceResolver;
+
+import com.xpn.xwiki.XWiki;
+import com.xpn.xwiki.XWikiContext;
+import com.xpn.xwiki.doc.XWikiDocument;
+import com.xpn.xwiki.objects.BaseObject;
+import com.xpn.xwiki.web.XWikiEngineContext;
+
+/**
+ * The state of a lookup through the skins, shared by {@link DefaultSkinTemplateCache} and
+ * {@link DefaultSkinFileCache}: the skin files checked, to know when the result should be looked up again, and whether
+ * an error prevented checking one of the places, in which case the result should not be cached.
+ * 
+ * @version $Id$
+ * @since 4.4M1
+ */
+class SkinLookup
+{
+    /**
+     * The name of the class of the objects holding the templates and files of a skin document.
+     */
+    private static final String SKIN_CLASS_NAME = "XWikiSkins";
+
+    /**
+     * Used to log the errors which prevented checking a skin.
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(SkinLookup.class);
+
+    /**
+     * The files checked with their modification date at that time, {@code null} if they are not checked again.
+     */
+    private final Map<File, Long> files;
+
+    /**
+     * Whether an error prevented checking one of the places.
+     */
+    private boolean failed;
+
+    /**
+     * @param watchFiles whether to record the files checked, so that the result is looked up again when one of them
+     *            is created, modified or deleted
+     */
+    SkinLookup(boolean watchFiles)
+    {
+        this.files = watchFiles ? new LinkedHashMap<File, Long>() : null;
+    }
+
+    /**
+     * @param skins the names of the skins
+     * @param resolver used to resolve the skin document names
+     * @return the references of the skin documents
+     */
+    static List<DocumentReference> resolve(List<String> skins, DocumentReferenceResolver<String> resolver)
+    {
+        List<DocumentReference> skinReferences = new ArrayList<DocumentReference>(skins.size());
+        for (String skin : skins) {
+            skinReferences.add(resolver.resolve(skin));
+        }
+
+        return skinReferences;
+    }
+
+    /**
+     * Build the extensions of the cache key of a lookup. The first skin document and the wiki it belongs to are part
+     * of the key through the primary reference, so only the other skins are added.
+     * 
+     * @param skins the names of the skins, by priority
+     * @param parameters the parameters of the lookup
+     * @return the extensions to pass to the {@link com.xpn.xwiki.internal.cache.DocumentCache}
+     */
+    static Object[] getKey(List<String> skins, Object... parameters)
+    {
+        Object[] extensions = new Object[parameters.length + skins.size() - 1];
+        System.arraycopy(parameters, 0, extensions, 0, parameters.length);
+        for (int i = 1; i < skins.size(); i++) {
+            extensions[parameters.length + i - 1] = skins.get(i);
+        }
+
+        return extensions;
+    }
+
+    /**
+     * @param skinReference the reference of a skin document
+     * @param context the XWiki context
+     * @return the skin document, {@code null} if it doesn't exist or can't be loaded
+     */
+    XWikiDocument getSkinDocument(DocumentReference skinReference, XWikiContext context)
+    {
+        try {
+            XWikiDocument doc = context.getWiki().getDocument(skinReference, context);
+
+            return doc.isNew() ? null : doc;
+        } catch (Exception e) {
+            fail(String.format("Failed to load skin document [%s]", skinReference), e);
+
+            return null;
+        }
+    }
+
+    /**
+     * @param doc a skin document
+     * @return the {@code XWikiSkins} object of the document, {@code null} if it doesn't have one
+     */
+    static BaseObject getSkinObject(XWikiDocument doc)
+    {
+        DocumentReference skinReference = doc.getDocumentReference();
+
+        return doc.getXObject(new DocumentReference(skinReference.getWikiReference().getName(), XWiki.SYSTEM_SPACE,
+            SKIN_CLASS_NAME));
+    }
+
+    /**
+     * Record the modification date of a file of the web application, so that the result is looked up again when the
+     * file is created, modified or deleted. Files that are not available on the filesystem (for example when the web
+     * application is not unpacked) can't change and are not recorded.
+     * 
+     * @param path the path of the file in the web application
+     * @param context the XWiki context
+     * @return the file on the filesystem, {@code null} if it is not available on the filesystem
+     */
+    File watch(String path, XWikiContext context)
+    {
+        XWikiEngineContext engineContext = context.getWiki().getEngineContext();
+        String realPath = engineContext != null ? engineContext.getRealPath(path) : null;
+        if (realPath == null) {
+            return null;
+        }
+
+        File file = new File(realPath);
+        if (this.files != null) {
+            this.files.put(file, file.lastModified());
+        }
+
+        return file;
+    }
+
+    /**
+     * Record that an error prevented checking one of the places, so that the result is not cached.
+     * 
+     * @param message the description of the error
+     * @param e the error
+     */
+    void fail(String message, Exception e)
+    {
+        LOGGER.debug(message, e);
+        this.failed = true;
+    }
+
+    /**
+     * @return {@code true} if an error prevented checking one of the places, in which case the result may be wrong and
+     *         should not be cached
+     */
+    boolean isFailed()
+    {
+        return this.failed;
+    }
+
+    /**
+     * @return the files checked so far with their modification date at that time
+     */
+    Map<File, Long> getFiles()
+    {
+        return this.files != null ? new LinkedHashMap<File, Long>(this.files) : Collections.<File, Long> emptyMap();
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.xpn.xwiki.internal.skin;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.xwiki.component.annotation.Role;
+
+import com.xpn.xwiki.XWikiContext;
+
+/**
+ * Looks up the source of the templates in the skins and remembers where each template has been found, so that
+ * evaluating a template doesn't read the skin documents, their attachments or the template files on each request.
+ * Cached sources are invalidated when the skin documents are created, modified or deleted, and when the template
+ * files are modified.
+ *
+ * @version $Id$
+ * @since 4.4M1
+ */
+@Role
+public interface SkinTemplateCache
+{
+    /**
+     * Look up the source of a template. For each skin, in order, the template is searched in the {@code XWikiSkins}
+     * object of the skin document, then in its attachments and finally in the {@code /skins/<skin>/} directory.
+     *
+     * @param template the name of the template
+     * @param skins the skins in which to look for the template, by priority
+     * @param withTemplatesDirectory whether to look in the {@code /templates/} directory when none of the skins
+     *            provide the template
+     * @param context the XWiki context
+     * @return the source of the template, {@code null} if none of the skins provide it and the templates directory is
+     *         not searched, or the template name is not allowed
+     * @throws IOException if the templates directory is searched and the template can't be read from it
+     */
+    TemplateSource getTemplateSource(String template, List<String> skins, boolean withTemplatesDirectory,
+        XWikiContext context) throws IOException;
+
+    /**
+     * Remove all the cached sources.
+     */
+    void flush();
+}
@@ -0,0 +1,93 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.xpn.xwiki.internal.skin;
+
+import java.io.File;
+import java.util.Map;
+
+/**
+ * The source of a template, as found in a skin or in the templates directory, with the files the lookup depended on.
+ * Instances are immutable and shared between threads.
+ *
+ * @version $Id$
+ * @since 4.4M1
+ */
+public class TemplateSource
+{
+    /**
+     * The template source.
+     */
+    private final String content;
+
+    /**
+     * The name under which the template is evaluated, used as Velocity macro namespace.
+     */
+    private final String name;
+
+    /**
+     * The files which have been checked while looking up the template, with their modification date at that time, 0
+     * for the files which didn't exist.
+     */
+    private final Map<File, Long> files;
+
+    /**
+     * @param content the template source
+     * @param name the name under which the template is evaluated, used as Velocity macro namespace
+     * @param files the files checked while looking up the template, with their modification date at that time
+     */
+    public TemplateSource(String content, String name, Map<File, Long> files)
+    {
+        this.content = content;
+        this.name = name;
+        this.files = files;
+    }
+
+    /**
+     * @return the template source
+     */
+    public String getContent()
+    {
+        return this.content;
+    }
+
+    /**
+     * @return the name under which the template is evaluated, used as Velocity macro namespace
+     */
+    public String getName()
+    {
+        return this.name;
+    }
+
+    /**
+     * @return {@code true} if one of the files checked while looking up the template has been created, modified or
+     *         deleted since, in which case the template may be found somewhere else or have a different source
+     */
+    public boolean isModified()
+    {
+        for (Map.Entry<File, Long> file : this.files.entrySet()) {
+            // File#lastModified() returns 0 for missing files.
+            if (file.getKey().lastModified() != file.getValue()) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.xpn.xwiki.internal.store;
+
+import java.util.List;
+
+import org.xwiki.cache.eviction.EntryWeigher;
+
+import com.xpn.xwiki.doc.XWikiAttachment;
+import com.xpn.xwiki.doc.XWikiDocument;
+import com.xpn.xwiki.objects.BaseObject;
+import com.xpn.xwiki.objects.BaseProperty;
+
+/**
+ * Estimate the memory used by a cached {@link XWikiDocument}, in bytes, so that the document cache can be bounded by
+ * size instead of number of documents. The estimate is rough: it counts the characters of the content and of the
+ * object properties plus a fixed overhead for each element, and the content of the attachments only when it has been
+ * loaded.
+ * 
+ * @version $Id$
+ * @since 4.4M1
+ */
+public class XWikiDocumentWeigher implements EntryWeigher<XWikiDocument>
+{
+    /**
+     * The estimated size of a document without content, objects or attachments.
+     */
+    private static final int DOCUMENT_OVERHEAD = 2048;
+
+    /**
+     * The estimated size of an object without properties.
+     */
+    private static final int OBJECT_OVERHEAD = 256;
+
+    /**
+     * The estimated size of a property without value, of an object or a class.
+     */
+    private static final int PROPERTY_OVERHEAD = 128;
+
+    /**
+     * The estimated size of an attachment without content.
+     */
+    private static final int ATTACHMENT_OVERHEAD = 256;
+
+    /**
+     * The content is kept both as a string and parsed, which roughly doubles its size.
+     */
+    private static final int CONTENT_FACTOR = 2;
+
+    @Override
+    public int weigh(String key, XWikiDocument document)
+    {
+        long weight = DOCUMENT_OVERHEAD;
+
+        weight += CONTENT_FACTOR * sizeOf(document.getContent());
+
+        for (List<BaseObject> objects : document.getXObjects().values()) {
+            for (BaseObject object : objects) {
+                // Deleted objects leave null holes in the lists
+                if (object != null) {
+                    weight += OBJECT_OVERHEAD;
+                    for (Object property : object.getFieldList()) {
+                        weight += PROPERTY_OVERHEAD + sizeOf(((BaseProperty) property).toText());
+                    }
+                }
+            }
+        }
+
+        weight += PROPERTY_OVERHEAD * document.getXClass().getFieldList().size();
+
+        for (XWikiAttachment attachment : document.getAttachmentList()) {
+            weight += ATTACHMENT_OVERHEAD;
+            if (attachment.getAttachment_content() != null) {
+                weight += attachment.getFilesize();
+            }
+        }
+
+        return (int) Math.min(weight, Integer.MAX_VALUE);
+    }
+
+    /**
+     * @param value a string
+     * @return the size of the characters of the string, in bytes
+     */
+    private long sizeOf(String value)
+    {
+        return value != null ? 2L * value.length() : 0;
+    }
+}
@@ -30,6 +30,14 @@
 import com.xpn.xwiki.XWikiContext;
 import com.xpn.xwiki.plugin.XWikiDefaultPlugin;
 
+/**
+ * Collects timers for the requests handled by the wiki.
+ *
+ * @version $Id$
+ * @deprecated since 4.4M1 the core doesn't feed this plugin anymore, use
+ *             {@link org.xwiki.instrumentation.Instrumentation} instead
+ */
+@Deprecated
 public class MonitorPlugin extends XWikiDefaultPlugin
 {
     private static final Logger LOGGER = org.slf4j.LoggerFactory.getLogger(MonitorPlugin.class);
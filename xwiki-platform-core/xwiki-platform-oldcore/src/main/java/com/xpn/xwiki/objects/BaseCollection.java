@@ -238,6 +238,10 @@ public void safeput(String name, PropertyInterface property)
     {
         addField(name, property);
         if (property instanceof BaseProperty) {
+            // The value of a property coming from another collection is not stored for this one.
+            if (property.getObject() != null && property.getObject() != this) {
+                ((BaseProperty) property).setValueDirty(true);
+            }
             ((BaseProperty) property).setObject(this);
             ((BaseProperty) property).setName(name);
         }
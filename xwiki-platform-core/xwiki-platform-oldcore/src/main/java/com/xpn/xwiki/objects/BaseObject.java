@@ -59,6 +59,24 @@ public class BaseObject extends BaseCollection<BaseObjectReference> implements O
      */
     private XWikiDocument ownerDocument;
 
+    /**
+     * The identifier under which this object has been loaded from or saved to the database for the last time,
+     * {@code null} if it's not known to be stored.
+     */
+    private Long storedId;
+
+    /**
+     * The wiki in which this object has been loaded or saved for the last time. Object identifiers don't depend on the
+     * wiki, so an object copied to another wiki is not stored there even if its identifier is unchanged.
+     */
+    private String storedWiki;
+
+    /**
+     * Set to true when the fields of the object row which are not part of its identifier have been modified since the
+     * object has been loaded or saved.
+     */
+    private boolean dirty = true;
+
     /**
      * {@inheritDoc}
      * <p>
@@ -427,9 +445,58 @@ public String getGuid()
 
     public void setGuid(String guid)
     {
+        if (!StringUtils.equals(guid, this.guid)) {
+            this.dirty = true;
+        }
         this.guid = guid;
     }
 
+    /**
+     * @return {@literal true} if the database holds a row for this object under its current identifier, i.e. the
+     *         object has been loaded or saved and has not been moved to another wiki, document, class or number since
+     *         then
+     * @since 4.4M1
+     */
+    public boolean isStored()
+    {
+        return this.storedId != null && this.storedId.longValue() == getId()
+            && StringUtils.equals(this.storedWiki, getWikiName());
+    }
+
+    /**
+     * @return {@literal true} if the object row doesn't match the row in the database. The properties have their own
+     *         dirty flag, see {@link BaseProperty#isValueDirty()}.
+     * @since 4.4M1
+     */
+    public boolean isDirty()
+    {
+        return this.dirty || !isStored();
+    }
+
+    /**
+     * Indicate if this object matches its row in the database, after it has been loaded, saved or deleted.
+     *
+     * @param stored {@literal true} if the object has just been loaded or saved, {@literal false} if it has been
+     *            deleted
+     * @since 4.4M1
+     */
+    public void setStored(boolean stored)
+    {
+        this.storedId = stored ? Long.valueOf(getId()) : null;
+        this.storedWiki = stored ? getWikiName() : null;
+        this.dirty = !stored;
+    }
+
+    /**
+     * @return the name of the wiki of the document holding this object, {@code null} if it's not known
+     */
+    private String getWikiName()
+    {
+        DocumentReference documentReference = getDocumentReference();
+
+        return documentReference != null ? documentReference.getWikiReference().getName() : null;
+    }
+
     /**
      * Set the owner document of this base object.
      *
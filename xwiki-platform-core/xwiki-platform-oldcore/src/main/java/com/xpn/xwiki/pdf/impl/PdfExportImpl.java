@@ -34,22 +34,26 @@
 import java.io.StringWriter;
 import java.lang.reflect.Type;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.transform.Result;
 import javax.xml.transform.Source;
-import javax.xml.transform.Transformer;
+import javax.xml.transform.Templates;
+import javax.xml.transform.TransformerConfigurationException;
 import javax.xml.transform.TransformerFactory;
 import javax.xml.transform.dom.DOMSource;
 import javax.xml.transform.sax.SAXResult;
+import javax.xml.transform.sax.SAXTransformerFactory;
+import javax.xml.transform.sax.TransformerHandler;
 import javax.xml.transform.stream.StreamResult;
-import javax.xml.transform.stream.StreamSource;
 
 import org.apache.avalon.framework.configuration.DefaultConfigurationBuilder;
+import org.apache.commons.collections.map.LRUMap;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.RandomStringUtils;
@@ -61,6 +65,8 @@
 import org.apache.fop.apps.PageSequenceResults;
 import org.apache.velocity.VelocityContext;
 import org.dom4j.Element;
+import org.dom4j.io.DOMReader;
+import org.dom4j.io.DocumentSource;
 import org.dom4j.io.OutputFormat;
 import org.dom4j.io.SAXReader;
 import org.dom4j.io.XMLWriter;
@@ -68,11 +74,7 @@
 import org.slf4j.LoggerFactory;
 import org.w3c.dom.Document;
 import org.w3c.dom.NodeList;
-import org.w3c.dom.bootstrap.DOMImplementationRegistry;
 import org.w3c.dom.css.CSSStyleDeclaration;
-import org.w3c.dom.ls.DOMImplementationLS;
-import org.w3c.dom.ls.LSOutput;
-import org.w3c.dom.ls.LSSerializer;
 import org.w3c.tidy.Tidy;
 import org.xml.sax.InputSource;
 import org.xwiki.bridge.DocumentAccessBridge;
@@ -110,6 +112,9 @@ public class PdfExportImpl implements PdfExport
     /** The name of the default FOP post-processing transformation file. */
     private static final String DEFAULT_CLEANUP_XSLT = "fop.xsl";
 
+    /** The maximum number of compiled XSLT templates to keep in {@link #templatesCache}. */
+    private static final int TEMPLATES_CACHE_CAPACITY = 20;
+
     /** Logging helper object. */
     private static final Logger LOGGER = LoggerFactory.getLogger(PdfExportImpl.class);
 
@@ -133,12 +138,18 @@ public class PdfExportImpl implements PdfExport
     /** DOM parser factory. */
     private static DocumentBuilderFactory dbFactory = DocumentBuilderFactory.newInstance();
 
-    /** DOM Serializer factory. */
-    private static DOMImplementationLS lsImpl;
-
     /** XSLT transformer factory. */
     private static TransformerFactory transformerFactory = TransformerFactory.newInstance();
 
+    /**
+     * Compiled XSLT templates, indexed by the name of the resource they come from or, for the XSLT overridden in a
+     * PDFTemplate, by their content. A modified PDFTemplate XSLT thus gets compiled again, and the previous version is
+     * eventually evicted. Compiled templates are thread safe and can be shared by concurrent exports.
+     */
+    @SuppressWarnings("unchecked")
+    private static Map<String, Templates> templatesCache = Collections.synchronizedMap(new LRUMap(
+        TEMPLATES_CACHE_CAPACITY));
+
     /** The Apache FOP instance used for XSL-FO processing. */
     private static FopFactory fopFactory;
 
@@ -158,12 +169,6 @@ public class PdfExportImpl implements PdfExport
         dbFactory.setNamespaceAware(true);
         dbFactory.setValidating(false);
 
-        try {
-            lsImpl = (DOMImplementationLS) DOMImplementationRegistry.newInstance().getDOMImplementation("LS 3.0");
-        } catch (Exception ex) {
-            LOGGER.warn("Cannot initialize the DomLS implementation needed by the PDF export: " + ex.getMessage());
-        }
-
         // ----------------------------------------------------------------------
         // CSS4J configuration
         // ----------------------------------------------------------------------
@@ -283,16 +288,23 @@ public void export(XWikiDocument doc, OutputStream out, ExportType type, XWikiCo
     @Override
     public void exportHtml(String html, OutputStream out, ExportType type, XWikiContext context) throws XWikiException
     {
-        exportXHTML(applyCSS(convertToStrictXHtml(html), context), out, type, context);
+        Document xhtml = convertToStrictXHtml(html);
+        if (xhtml != null) {
+            // The cleaned up document is styled and passed to the XSLT transformations and to FOP without being
+            // serialized in between.
+            exportXHTML(applyCSS(xhtml, context), out, type, context);
+        } else {
+            exportXHTML(applyCSS(html, context), out, type, context);
+        }
     }
 
     /**
      * Cleans up an HTML document, turning it into valid XHTML.
      * 
      * @param input the source HTML to process
-     * @return the cleaned up source
+     * @return the cleaned up document, or {@code null} if the input couldn't be cleaned up
      */
-    private String convertToStrictXHtml(String input)
+    private Document convertToStrictXHtml(String input)
     {
         if (LOGGER.isDebugEnabled()) {
             LOGGER.debug("Cleaning HTML: " + input);
@@ -314,18 +326,10 @@ private String convertToStrictXHtml(String input)
             List<String> seenIDs = new ArrayList<String>();
             this.cleanIDs(doc.getDocumentElement(), seenIDs);
 
-            // Write back the fixed document to a String
-            LSOutput output = lsImpl.createLSOutput();
-            StringWriter result = new StringWriter();
-            output.setCharacterStream(result);
-            LSSerializer serializer = lsImpl.createLSSerializer();
-            serializer.setNewLine("\n");
-            output.setEncoding(doc.getXmlEncoding());
-            serializer.write(doc, output);
-            return result.toString();
+            return doc;
         } catch (Exception ex) {
             LOGGER.warn("Failed to tidy document for export: " + ex.getMessage(), ex);
-            return input;
+            return null;
         }
     }
 
@@ -379,65 +383,105 @@ protected void exportXHTML(String xhtml, OutputStream out, ExportType type, XWik
             LOGGER.debug("Final XHTML for export: " + xhtml);
         }
 
-        // XSL Transformation to XML-FO
-        String xmlfo = convertXHtmlToXMLFO(xhtml, context);
+        Document xhtmlDocument;
+        try {
+            DocumentBuilder docBuilder = dbFactory.newDocumentBuilder();
+            docBuilder.setEntityResolver(Utils.getComponent(EntityResolver.class));
+            xhtmlDocument = docBuilder.parse(new InputSource(new StringReader(xhtml)));
+        } catch (Exception e) {
+            throw new XWikiException(XWikiException.MODULE_XWIKI_EXPORT, XWikiException.ERROR_XWIKI_EXPORT_XSL_FAILED,
+                "XSL Transformation Failed", e);
+        }
 
-        // Debug output
+        renderXSLFO(new DOMSource(xhtmlDocument), out, type, context);
+    }
+
+    /**
+     * Convert a styled XHTML document into PDF. The SAX events of the document are streamed through the XSLT
+     * transformations and into FOP, without serializing any intermediate document.
+     * <p>
+     * Note: This method is protected just allow other exporters to hook their code and use the PDF export
+     * infrastructure. Exporters which need the XHTML as a String can call {@link #serializeXHTML(
+     * org.dom4j.Document, XWikiContext)}.
+     * 
+     * @param xhtml the source document to transform
+     * @param out where to write the resulting document
+     * @param type the type of the output: PDF or RTF
+     * @param context the current request context
+     * @throws XWikiException if the conversion fails for any reason
+     * @since 4.4M1
+     */
+    protected void exportXHTML(org.dom4j.Document xhtml, OutputStream out, ExportType type, XWikiContext context)
+        throws XWikiException
+    {
         if (LOGGER.isDebugEnabled()) {
-            LOGGER.debug("XSL-FO source: " + xmlfo);
+            LOGGER.debug("Final XHTML for export: " + serializeXHTML(xhtml, context));
         }
 
-        renderXSLFO(xmlfo, out, type);
+        renderXSLFO(new DocumentSource(xhtml), out, type, context);
     }
 
     /**
-     * Convert a valid XHTML document into an XSL-FO document through XSLT transformations. Two transformations are
-     * involved:
-     * <ol>
-     * <li>A base transformation which converts the XHTML into a temporary XSL-FO; it uses the <tt>xhtml2fo.xsl</tt>
-     * file, or the <tt>xhtmlxsl</tt> property of the applied PDFTemplate.</li>
-     * <li>An eventual post-processing transformation which cleans up the temporary XSL-FO in order to avoid FOP bugs;
-     * it uses the <tt>fop.xsl</tt> file, or the <tt>fopxsl</tt> property of the applied PDFTemplate.</li>
-     * </ol>
+     * Serialize an XHTML document using the encoding of the wiki.
      * 
-     * @param xhtml the XHTML document to convert
+     * @param xhtml the document to serialize
      * @param context the current request context
-     * @return the resulting XML-FO document
-     * @throws XWikiException if the conversion fails for any reason
+     * @return the serialized document
+     * @since 4.4M1
      */
-    private String convertXHtmlToXMLFO(String xhtml, XWikiContext context) throws XWikiException
+    protected String serializeXHTML(org.dom4j.Document xhtml, XWikiContext context)
     {
-        String xmlfo = applyXSLT(xhtml, getXhtml2FopXslt(context));
-        return applyXSLT(xmlfo, getFopCleanupXslt(context));
+        OutputFormat outputFormat = new OutputFormat("", false);
+        if ((context == null) || (context.getWiki() == null)) {
+            outputFormat.setEncoding("UTF-8");
+        } else {
+            outputFormat.setEncoding(context.getWiki().getEncoding());
+        }
+        StringWriter out = new StringWriter();
+        try {
+            XMLWriter writer = new XMLWriter(out, outputFormat);
+            writer.write(xhtml);
+        } catch (IOException e) {
+            // Shouldn't happen, we're writing to a String
+            LOGGER.warn("Failed to serialize XHTML: " + e.getMessage());
+        }
+        return out.toString();
     }
 
     /**
-     * Convert an XSL-FO document into PDF.
+     * Convert a valid XHTML document into PDF. Two XSLT transformations are chained before FOP:
+     * <ol>
+     * <li>A base transformation which converts the XHTML into a temporary XSL-FO; it uses the <tt>xhtml2fo.xsl</tt>
+     * file, or the <tt>xhtmlxsl</tt> property of the applied PDFTemplate.</li>
+     * <li>An eventual post-processing transformation which cleans up the temporary XSL-FO in order to avoid FOP bugs;
+     * it uses the <tt>fop.xsl</tt> file, or the <tt>fopxsl</tt> property of the applied PDFTemplate.</li>
+     * </ol>
+     * The output of each step is sent as SAX events to the next one.
      * 
-     * @param xmlfo the source FO to render
+     * @param xhtml the source XHTML to render
      * @param out where to write the resulting document
      * @param type the type of the output: PDF or RTF
+     * @param context the current request context
      * @throws XWikiException if the conversion fails for any reason
      */
-    private void renderXSLFO(String xmlfo, OutputStream out, ExportType type) throws XWikiException
+    private void renderXSLFO(Source xhtml, OutputStream out, ExportType type, XWikiContext context)
+        throws XWikiException
     {
+        Templates xhtml2fo = getXhtml2FopXsltTemplates(context);
+        Templates cleanup = getFopCleanupXsltTemplates(context);
+
         try {
             FOUserAgent foUserAgent = fopFactory.newFOUserAgent();
 
             // Construct fop with desired output format
             Fop fop = fopFactory.newFop(type.getMimeType(), foUserAgent, out);
 
-            // Identity transformer
-            Transformer transformer = transformerFactory.newTransformer();
-
-            // Setup input stream
-            Source source = new StreamSource(new StringReader(xmlfo));
-
-            // Resulting SAX events (the generated FO) must be piped through to FOP
-            Result res = new SAXResult(fop.getDefaultHandler());
+            // The cleaned up FO is piped through to FOP
+            TransformerHandler cleanupHandler = newTransformerHandler(cleanup);
+            cleanupHandler.setResult(new SAXResult(fop.getDefaultHandler()));
 
-            // Start XSLT transformation and FOP processing
-            transformer.transform(source, res);
+            // Start XSLT transformations and FOP processing
+            xhtml2fo.newTransformer().transform(xhtml, new SAXResult(cleanupHandler));
 
             // Result processing
             FormattingResults foResults = fop.getResults();
@@ -452,11 +496,29 @@ private void renderXSLFO(String xmlfo, OutputStream out, ExportType type) throws
             }
         } catch (IllegalStateException e) {
             throw createException(e, type, XWikiException.ERROR_XWIKI_APP_SEND_RESPONSE_EXCEPTION);
+        } catch (TransformerConfigurationException e) {
+            throw new XWikiException(XWikiException.MODULE_XWIKI_EXPORT, XWikiException.ERROR_XWIKI_EXPORT_XSL_FAILED,
+                "XSL Transformation Failed", e);
         } catch (Exception e) {
             throw createException(e, type, XWikiException.ERROR_XWIKI_EXPORT_PDF_FOP_FAILED);
         }
     }
 
+    /**
+     * Create a SAX content handler applying the given XSLT transformation.
+     * 
+     * @param templates the compiled XSLT
+     * @return the transformer handler
+     * @throws TransformerConfigurationException if the handler cannot be created
+     */
+    private TransformerHandler newTransformerHandler(Templates templates) throws TransformerConfigurationException
+    {
+        // Transformer factories are not guaranteed to be thread safe.
+        synchronized (transformerFactory) {
+            return ((SAXTransformerFactory) transformerFactory).newTransformerHandler(templates);
+        }
+    }
+
     /**
      * Applies an XSLT transformation to an XML document.
      * 
@@ -466,16 +528,28 @@ private void renderXSLFO(String xmlfo, OutputStream out, ExportType type) throws
      * @throws XWikiException if the transformation fails for any reason
      */
     protected String applyXSLT(String xml, InputStream xslt) throws XWikiException
+    {
+        return applyXSLT(xml, compileXSLT(xslt));
+    }
+
+    /**
+     * Applies a compiled XSLT transformation to an XML document.
+     * 
+     * @param xml the XML document to convert
+     * @param xslt the compiled XSLT to apply
+     * @return the converted document
+     * @throws XWikiException if the transformation fails for any reason
+     * @since 4.4M1
+     */
+    protected String applyXSLT(String xml, Templates xslt) throws XWikiException
     {
         StringWriter output = new StringWriter(xml.length());
 
         try {
             DocumentBuilder docBuilder = dbFactory.newDocumentBuilder();
             docBuilder.setEntityResolver(Utils.getComponent(EntityResolver.class));
-            Document xsltDocument = docBuilder.parse(new InputSource(xslt));
             Document xmlDocument = docBuilder.parse(new InputSource(new StringReader(xml)));
-            Transformer transformer = transformerFactory.newTransformer(new DOMSource(xsltDocument));
-            transformer.transform(new DOMSource(xmlDocument), new StreamResult(output));
+            xslt.newTransformer().transform(new DOMSource(xmlDocument), new StreamResult(output));
         } catch (Exception e) {
             throw new XWikiException(XWikiException.MODULE_XWIKI_EXPORT, XWikiException.ERROR_XWIKI_EXPORT_XSL_FAILED,
                 "XSL Transformation Failed", e);
@@ -484,6 +558,31 @@ protected String applyXSLT(String xml, InputStream xslt) throws XWikiException
         return output.toString();
     }
 
+    /**
+     * Compile an XSLT.
+     * 
+     * @param xslt the content of the XSLT
+     * @return the compiled XSLT
+     * @throws XWikiException if the XSLT is not valid
+     */
+    private Templates compileXSLT(InputStream xslt) throws XWikiException
+    {
+        try {
+            DocumentBuilder docBuilder = dbFactory.newDocumentBuilder();
+            docBuilder.setEntityResolver(Utils.getComponent(EntityResolver.class));
+            Document xsltDocument = docBuilder.parse(new InputSource(xslt));
+            // Transformer factories are not guaranteed to be thread safe.
+            synchronized (transformerFactory) {
+                return transformerFactory.newTemplates(new DOMSource(xsltDocument));
+            }
+        } catch (Exception e) {
+            throw new XWikiException(XWikiException.MODULE_XWIKI_EXPORT, XWikiException.ERROR_XWIKI_EXPORT_XSL_FAILED,
+                "XSL Transformation Failed", e);
+        } finally {
+            IOUtils.closeQuietly(xslt);
+        }
+    }
+
     /**
      * Apply CSS styling to an XHTML document. The style to apply is taken from:
      * <ol>
@@ -500,6 +599,36 @@ protected String applyXSLT(String xml, InputStream xslt) throws XWikiException
      * @throws XWikiException if any exception occurs
      */
     private String applyCSS(String html, XWikiContext context) throws XWikiException
+    {
+        return applyCSS(html, getCSS(context), context);
+    }
+
+    /**
+     * Apply CSS styling to an XHTML document, in the same way as {@link #applyCSS(String, XWikiContext)}, but without
+     * serializing the document.
+     * 
+     * @param xhtml the valid XHTML document to style
+     * @param context the current request context
+     * @return the document with inlined style
+     */
+    private org.dom4j.Document applyCSS(Document xhtml, XWikiContext context)
+    {
+        XHTMLDocument document = (XHTMLDocument) new DOMReader(XHTMLDocumentFactory.getInstance()).read(xhtml);
+        try {
+            document.addStyleSheet(new org.w3c.css.sac.InputSource(new StringReader(getCSS(context))));
+            applyInlineStyle(document.getRootElement());
+        } catch (Exception ex) {
+            LOGGER.warn("Failed to apply CSS: " + ex.getMessage(), ex);
+        }
+        return document;
+    }
+
+    /**
+     * @param context the current request context
+     * @return the style sheet to apply on the exported document: the <tt>pdf.css</tt> skin file followed by the
+     *         <tt>style</tt> property of the applied PDFTemplate
+     */
+    private String getCSS(XWikiContext context)
     {
         String css =
             (context == null || context.getWiki() == null) ? "" : context.getWiki().parseTemplate("pdf.css", context);
@@ -507,7 +636,7 @@ private String applyCSS(String html, XWikiContext context) throws XWikiException
         if (style != null) {
             css += style;
         }
-        return applyCSS(html, css, context);
+        return css;
     }
 
     /**
@@ -532,16 +661,7 @@ private String applyCSS(String html, String css, XWikiContext context)
             // Apply the style sheet
             document.addStyleSheet(new org.w3c.css.sac.InputSource(new StringReader(css)));
             applyInlineStyle(document.getRootElement());
-            OutputFormat outputFormat = new OutputFormat("", false);
-            if ((context == null) || (context.getWiki() == null)) {
-                outputFormat.setEncoding("UTF-8");
-            } else {
-                outputFormat.setEncoding(context.getWiki().getEncoding());
-            }
-            StringWriter out = new StringWriter();
-            XMLWriter writer = new XMLWriter(out, outputFormat);
-            writer.write(document);
-            String result = out.toString();
+            String result = serializeXHTML(document, context);
             // Debug output
             if (LOGGER.isDebugEnabled()) {
                 LOGGER.debug("HTML with CSS applied: " + result);
@@ -577,33 +697,74 @@ private void applyInlineStyle(Element element)
     }
 
     /**
-     * Get the XSLT for converting (valid) XHTML to XSL-FO. The content is searched in:
+     * Get the compiled XSLT for converting (valid) XHTML to XSL-FO. The content is searched in:
      * <ol>
      * <li>the <tt>xhtmlxsl</tt> property of the current PDFTemplate</li>
      * <li>the <tt>xhtml2fo.xsl</tt> resource (usually a file inside xwiki-core-*.jar)</li>
      * </ol>
      * 
      * @param context the current request context
-     * @return the content of the XSLT as a byte stream
+     * @return the compiled XSLT
+     * @throws XWikiException if the XSLT is not valid
      */
-    private InputStream getXhtml2FopXslt(XWikiContext context)
+    private Templates getXhtml2FopXsltTemplates(XWikiContext context) throws XWikiException
     {
-        return getXslt("xhtmlxsl", DEFAULT_XHTML2FOP_XSLT, context);
+        return getXsltTemplates("xhtmlxsl", DEFAULT_XHTML2FOP_XSLT, context);
     }
 
     /**
-     * Get the XSLT for post-processing the XSL-FO file. The content is searched in:
+     * Get the compiled XSLT for post-processing the XSL-FO file. The content is searched in:
      * <ol>
      * <li>the <tt>fopxsl</tt> property of the current PDFTemplate</li>
      * <li>the <tt>fop.xsl</tt> resource (usually a file inside xwiki-core-*.jar)</li>
      * </ol>
      * 
      * @param context the current request context
-     * @return the content of the XSLT as a byte stream
+     * @return the compiled XSLT
+     * @throws XWikiException if the XSLT is not valid
+     */
+    private Templates getFopCleanupXsltTemplates(XWikiContext context) throws XWikiException
+    {
+        return getXsltTemplates("fopxsl", DEFAULT_CLEANUP_XSLT, context);
+    }
+
+    /**
+     * Get a compiled XSLT, looked up in the same places as {@link #getXslt(String, String, XWikiContext)}. Compiled
+     * XSLTs are cached, keyed by resource name or, for PDFTemplate overrides, by content, so that they are compiled
+     * again only when they change.
+     * 
+     * @param propertyName the name of the <tt>XWiki.PDFClass</tt> property to read from the current PDFTemplate
+     *            document
+     * @param fallbackFile the name of a resource file to use when the PDFTemplate does not contain an override
+     * @param context the current request context
+     * @return the compiled XSLT
+     * @throws XWikiException if the XSLT is not valid
+     * @since 4.4M1
      */
-    private InputStream getFopCleanupXslt(XWikiContext context)
+    protected Templates getXsltTemplates(String propertyName, String fallbackFile, XWikiContext context)
+        throws XWikiException
     {
-        return getXslt("fopxsl", DEFAULT_CLEANUP_XSLT, context);
+        String xsl = getPDFTemplateProperty(propertyName, context);
+        String key = StringUtils.isBlank(xsl) ? "resource:" + fallbackFile : "template:" + xsl;
+
+        Templates templates = templatesCache.get(key);
+        if (templates == null) {
+            InputStream xslt;
+            if (StringUtils.isBlank(xsl)) {
+                xslt = getClass().getClassLoader().getResourceAsStream(fallbackFile);
+            } else {
+                try {
+                    xslt = IOUtils.toInputStream(xsl, context.getWiki().getEncoding());
+                } catch (IOException ex) {
+                    throw new XWikiException(XWikiException.MODULE_XWIKI_EXPORT,
+                        XWikiException.ERROR_XWIKI_EXPORT_XSL_FAILED, "XSL Transformation Failed", ex);
+                }
+            }
+            templates = compileXSLT(xslt);
+            templatesCache.put(key, templates);
+        }
+
+        return templates;
     }
 
     /**
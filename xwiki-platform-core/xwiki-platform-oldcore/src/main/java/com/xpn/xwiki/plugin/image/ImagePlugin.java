@@ -21,26 +21,28 @@
 
 import java.awt.Image;
 import java.awt.image.RenderedImage;
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.lang.reflect.Type;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.xwiki.cache.Cache;
-import org.xwiki.cache.CacheException;
-import org.xwiki.cache.config.CacheConfiguration;
-import org.xwiki.cache.eviction.LRUEvictionConfiguration;
 import org.xwiki.environment.Environment;
+import org.xwiki.observation.EventListener;
+import org.xwiki.observation.ObservationManager;
+import org.xwiki.observation.event.ApplicationStoppedEvent;
+import org.xwiki.observation.event.Event;
 
 import com.xpn.xwiki.XWikiContext;
 import com.xpn.xwiki.XWikiException;
 import com.xpn.xwiki.api.Api;
 import com.xpn.xwiki.doc.XWikiAttachment;
+import com.xpn.xwiki.doc.XWikiAttachmentContent;
 import com.xpn.xwiki.plugin.XWikiDefaultPlugin;
 import com.xpn.xwiki.plugin.XWikiPluginInterface;
 import com.xpn.xwiki.web.Utils;
@@ -65,14 +67,27 @@ public class ImagePlugin extends XWikiDefaultPlugin
     private static final String PLUGIN_NAME = "image";
 
     /**
-     * Cache for already served images.
+     * Disk store for already served images.
      */
-    private Cache<XWikiAttachment> imageCache;
+    private ImageThumbnailStore thumbnailStore;
 
     /**
-     * The size of the cache. This parameter can be configured using the key {@code xwiki.plugin.image.cache.capacity}.
+     * The maximum number of images scaled at the same time. This parameter can be configured using the key
+     * {@code xwiki.plugin.image.thumbnailThreads}.
      */
-    private int capacity = 50;
+    private int thumbnailThreads = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * The maximum number of stored thumbnails. This parameter can be configured using the key
+     * {@code xwiki.plugin.image.cache.capacity}.
+     */
+    private int capacity = 1000;
+
+    /**
+     * The maximum number of bytes used by the stored thumbnails. This parameter can be configured using the key
+     * {@code xwiki.plugin.image.cache.maxSize}.
+     */
+    private long maxSize = 100 * 1024 * 1024;
 
     /**
      * Default JPEG image quality.
@@ -85,7 +100,7 @@ public class ImagePlugin extends XWikiDefaultPlugin
     private final ImageProcessor imageProcessor = Utils.getComponent(ImageProcessor.class);
 
     /**
-     * Used to get the temporary directory.
+     * Used to get the permanent directory.
      */
     private Environment environment = Utils.getComponent((Type) Environment.class);
 
@@ -121,7 +136,7 @@ public void init(XWikiContext context)
     {
         super.init(context);
 
-        initCache(context);
+        initThumbnailStore(context);
 
         String defaultQualityParam = context.getWiki().Param("xwiki.plugin.image.defaultQuality");
         if (!StringUtils.isBlank(defaultQualityParam)) {
@@ -135,57 +150,79 @@ public void init(XWikiContext context)
     }
 
     /**
-     * Tries to initializes the image cache. If the initialization fails the image cache remains {@code null}.
+     * Initializes the thumbnail store, if not already done.
      * 
      * @param context the XWiki context
      */
-    private void initCache(XWikiContext context)
+    private synchronized void initThumbnailStore(XWikiContext context)
     {
-        if (this.imageCache == null) {
-            CacheConfiguration configuration = new CacheConfiguration();
+        if (this.thumbnailStore == null) {
+            this.thumbnailThreads =
+                (int) Math.max(1, getLongParam("xwiki.plugin.image.thumbnailThreads", this.thumbnailThreads, context));
+            this.capacity = (int) getLongParam("xwiki.plugin.image.cache.capacity", this.capacity, context);
+            this.maxSize = getLongParam("xwiki.plugin.image.cache.maxSize", this.maxSize, context);
+
+            File thumbnailDir = new File(this.environment.getPermanentDirectory(), "image/thumbnails");
+            final ImageThumbnailStore store =
+                new ImageThumbnailStore(thumbnailDir, this.thumbnailThreads, this.capacity, this.maxSize);
+            this.thumbnailStore = store;
+
+            // Stop the thumbnail generation threads when XWiki is stopped.
+            Utils.getComponent(ObservationManager.class).addListener(new EventListener()
+            {
+                @Override
+                public String getName()
+                {
+                    return "imageThumbnailStore-" + System.identityHashCode(store);
+                }
 
-            configuration.setConfigurationId("xwiki.plugin.image");
+                @Override
+                public List<Event> getEvents()
+                {
+                    return Collections.<Event>singletonList(new ApplicationStoppedEvent());
+                }
 
-            // Set folder to store cache.
-            File tempDir = this.environment.getTemporaryDirectory();
-            File imgTempDir = new File(tempDir, configuration.getConfigurationId());
-            try {
-                imgTempDir.mkdirs();
-            } catch (Exception ex) {
-                LOG.warn("Cannot create temporary files.", ex);
-            }
-            configuration.put("cache.path", imgTempDir.getAbsolutePath());
-            // Set cache constraints.
-            LRUEvictionConfiguration lru = new LRUEvictionConfiguration();
-            configuration.put(LRUEvictionConfiguration.CONFIGURATIONID, lru);
-
-            String capacityParam = context.getWiki().Param("xwiki.plugin.image.cache.capacity");
-            if (!StringUtils.isBlank(capacityParam) && StringUtils.isNumeric(capacityParam.trim())) {
-                try {
-                    this.capacity = Integer.parseInt(capacityParam.trim());
-                } catch (NumberFormatException e) {
-                    LOG.warn(String.format(
-                        "Failed to parse xwiki.plugin.image.cache.capacity configuration parameter. "
-                            + "Using %s as the cache capacity.", this.capacity), e);
+                @Override
+                public void onEvent(Event event, Object source, Object data)
+                {
+                    store.dispose();
                 }
-            }
-            lru.setMaxEntries(this.capacity);
+            });
+        }
+    }
 
+    /**
+     * @param name the name of the configuration parameter
+     * @param defaultValue the value to use if the parameter is not set or is not a valid number
+     * @param context the XWiki context
+     * @return the value of the configuration parameter
+     */
+    private long getLongParam(String name, long defaultValue, XWikiContext context)
+    {
+        String param = context.getWiki().Param(name);
+        if (!StringUtils.isBlank(param)) {
             try {
-                this.imageCache = context.getWiki().getLocalCacheFactory().newCache(configuration);
-            } catch (CacheException e) {
-                LOG.error("Error initializing the image cache.", e);
+                return Long.parseLong(param.trim());
+            } catch (NumberFormatException e) {
+                LOG.warn("Failed to parse {} configuration parameter. Using {} as its value.", name, defaultValue);
             }
         }
+        return defaultValue;
     }
 
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Removes the stored thumbnails.
+     * 
+     * @see XWikiDefaultPlugin#flushCache()
+     */
     @Override
     public void flushCache()
     {
-        if (this.imageCache != null) {
-            this.imageCache.dispose();
+        if (this.thumbnailStore != null) {
+            this.thumbnailStore.clear();
         }
-        this.imageCache = null;
     }
 
     /**
@@ -257,13 +294,11 @@ public XWikiAttachment downloadAttachment(XWikiAttachment attachment, XWikiConte
     private XWikiAttachment downloadImage(XWikiAttachment image, int width, int height, float quality,
         XWikiContext context) throws Exception
     {
-        initCache(context);
+        initThumbnailStore(context);
 
         boolean keepAspectRatio = Boolean.valueOf(context.getRequest().getParameter("keepAspectRatio"));
 
-        XWikiAttachment thumbnail = (this.imageCache == null)
-                ? shrinkImage(image, width, height, keepAspectRatio, quality, context)
-                : downloadImageFromCache(image, width, height, keepAspectRatio, quality, context);
+        XWikiAttachment thumbnail = downloadImageFromStore(image, width, height, keepAspectRatio, quality, context);
 
         // If the image has been transformed, update the file name extension to match the image format.
         String fileName = thumbnail.getFilename();
@@ -276,7 +311,7 @@ private XWikiAttachment downloadImage(XWikiAttachment image, int width, int heig
     }
 
     /**
-     * Downloads the given image from cache.
+     * Downloads the given image from the thumbnail store, generating the thumbnail if needed.
      * 
      * @param image the image to be downloaded
      * @param width the desired image width; this value is taken into account only if it is greater than zero and less
@@ -286,21 +321,47 @@ private XWikiAttachment downloadImage(XWikiAttachment image, int width, int heig
      * @param keepAspectRatio {@code true} to preserve aspect ratio when resizing the image, {@code false} otherwise
      * @param quality the desired compression quality
      * @param context the XWiki context
-     * @return the transformed image
+     * @return the transformed image, streamed from the stored thumbnail
      * @throws Exception if transforming the image fails
      */
-    private XWikiAttachment downloadImageFromCache(XWikiAttachment image, int width, int height,
-        boolean keepAspectRatio, float quality, XWikiContext context) throws Exception
+    private XWikiAttachment downloadImageFromStore(final XWikiAttachment image, final int width, final int height,
+        final boolean keepAspectRatio, final float quality, final XWikiContext context) throws Exception
     {
-        String key =
-            String.format("%s;%s;%s;%s;%s;%s", image.getId(), image.getVersion(), width, height, keepAspectRatio,
-                quality);
-
-        XWikiAttachment thumbnail = this.imageCache.get(key);
-        if (thumbnail == null) {
-            thumbnail = shrinkImage(image, width, height, keepAspectRatio, quality, context);
-            this.imageCache.set(key, thumbnail);
+        String path =
+            String.format("%s/%s/%s-%sx%s-%s-%s", context.getDatabase(), image.getId(), image.getVersion(), width,
+                height, keepAspectRatio, quality);
+
+        final String mimeType = image.getMimeType(context);
+        File thumbnailFile = this.thumbnailStore.get(path, new ImageThumbnailStore.ThumbnailWriter()
+        {
+            private XWikiAttachmentContent content;
+
+            @Override
+            public void prepare() throws Exception
+            {
+                // Load the original image in the request thread since loading the attachment content requires the
+                // context.
+                image.getContentSize(context);
+                this.content = image.getAttachment_content();
+            }
+
+            @Override
+            public boolean write(OutputStream out) throws Exception
+            {
+                return shrinkImage(this.content, mimeType, width, height, keepAspectRatio, quality, out);
+            }
+        });
+
+        if (thumbnailFile == null) {
+            // No transformation is needed.
+            return image;
         }
+
+        // Create an image attachment for the shrunk image.
+        XWikiAttachment thumbnail = (XWikiAttachment) image.clone();
+        thumbnail.setAttachment_content(new ThumbnailAttachmentContent(thumbnailFile, thumbnail));
+        thumbnail.setFilesize(thumbnail.getAttachment_content().getSize());
+
         return thumbnail;
     }
 
@@ -308,7 +369,8 @@ private XWikiAttachment downloadImageFromCache(XWikiAttachment image, int width,
      * Reduces the size (i.e. the number of bytes) of an image by scaling its width and height and by reducing its
      * compression quality. This helps decreasing the time needed to download the image attachment.
      * 
-     * @param attachment the image to be shrunk
+     * @param content the image to be shrunk
+     * @param mimeType the image mime type
      * @param requestedWidth the desired image width; this value is taken into account only if it is greater than zero
      *            and less than the current image width
      * @param requestedHeight the desired image height; this value is taken into account only if it is greater than zero
@@ -317,14 +379,18 @@ private XWikiAttachment downloadImageFromCache(XWikiAttachment image, int width,
      *            properly specified (in this case the image will be resized to best fit the rectangle with the
      *            requested width and height), {@code false} otherwise
      * @param requestedQuality the desired compression quality
-     * @param context the XWiki context
-     * @return the modified image attachment
-     * @throws Exception if shrinking the image fails
+     * @param out where to write the shrunk image
+     * @return {@code false} if the original image should be used because no transformation is needed, {@code true} if
+     *         the shrunk image has been written
+     * @throws IOException if shrinking the image fails
      */
-    private XWikiAttachment shrinkImage(XWikiAttachment attachment, int requestedWidth, int requestedHeight,
-        boolean keepAspectRatio, float requestedQuality, XWikiContext context) throws Exception
+    private boolean shrinkImage(XWikiAttachmentContent content, String mimeType, int requestedWidth,
+        int requestedHeight, boolean keepAspectRatio, float requestedQuality, OutputStream out) throws IOException
     {
-        Image image = this.imageProcessor.readImage(attachment.getContentInputStream(context));
+        if (content == null) {
+            throw new IOException("The content of the original image has not been loaded");
+        }
+        Image image = this.imageProcessor.readImage(content.getContentInputStream());
 
         // Compute the new image dimension.
         int currentWidth = image.getWidth(null);
@@ -336,7 +402,7 @@ private XWikiAttachment shrinkImage(XWikiAttachment attachment, int requestedWid
         if (quality < 0) {
             // If no scaling is needed and the quality parameter is not specified, return the original image.
             if (dimensions[0] == currentWidth && dimensions[1] == currentHeight) {
-                return attachment;
+                return false;
             }
             quality = this.defaultQuality;
         }
@@ -344,16 +410,9 @@ private XWikiAttachment shrinkImage(XWikiAttachment attachment, int requestedWid
         // Scale the image to the new dimensions.
         RenderedImage shrunkImage = this.imageProcessor.scaleImage(image, dimensions[0], dimensions[1]);
 
-        // Create an image attachment for the shrunk image.
-        XWikiAttachment thumbnail = (XWikiAttachment) attachment.clone();
-        thumbnail.loadContent(context);
-
-        this.imageProcessor.writeImage(shrunkImage,
-                                       attachment.getMimeType(context),
-                                       quality,
-                                       thumbnail.getAttachment_content().getContentOutputStream());
+        this.imageProcessor.writeImage(shrunkImage, mimeType, quality, out);
 
-        return thumbnail;
+        return true;
     }
 
     /**
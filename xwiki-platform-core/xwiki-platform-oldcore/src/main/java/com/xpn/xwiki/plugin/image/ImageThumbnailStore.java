@@ -0,0 +1,473 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.xpn.xwiki.plugin.image;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Stores the thumbnails generated by the {@link ImagePlugin} on disk. Each thumbnail is identified by a relative path
+ * computed from the attachment version and the transformation parameters, so that a thumbnail is generated only once
+ * and then streamed from disk until the attachment is modified. Concurrent requests for the same missing thumbnail
+ * share a single generation, and generations are run by a bounded pool of threads in order to limit the memory and
+ * CPU used to decode and scale images.
+ * <p>
+ * The number of stored thumbnails and the disk space they use are bounded: the least recently used thumbnails are
+ * removed when a new thumbnail exceeds one of the bounds. The most recently used thumbnail is never removed, so that
+ * the file returned by {@link #get(String, ThumbnailWriter)} can still be streamed after the call.
+ *
+ * @version $Id$
+ * @since 4.4M1
+ */
+public class ImageThumbnailStore
+{
+    /**
+     * Generates a thumbnail.
+     */
+    public interface ThumbnailWriter
+    {
+        /**
+         * Called in the requesting thread before the generation is scheduled, to load what the generation needs but
+         * cannot load from the generating thread (e.g. the attachment content, which requires the XWiki context).
+         * Not called when the thumbnail is already stored or when the requesting thread waits for a generation
+         * started by another thread. If it fails, the threads waiting for the generation fail as well.
+         *
+         * @throws Exception if loading what the generation needs fails
+         */
+        void prepare() throws Exception;
+
+        /**
+         * @param out where to write the thumbnail
+         * @return {@code false} if no thumbnail is needed because the original image already matches the requested
+         *         transformation, {@code true} if the thumbnail has been written
+         * @throws Exception if generating the thumbnail fails
+         */
+        boolean write(OutputStream out) throws Exception;
+    }
+
+    /**
+     * A thumbnail generation, which can be failed before it is run.
+     */
+    private static class Generation extends FutureTask<File>
+    {
+        /**
+         * @param callable generates the thumbnail
+         */
+        Generation(Callable<File> callable)
+        {
+            super(callable);
+        }
+
+        /**
+         * Fail the generation without running it.
+         *
+         * @param e the reason of the failure
+         */
+        void fail(Exception e)
+        {
+            setException(e);
+        }
+    }
+
+    /**
+     * Extension of the empty files recording that the original image should be served instead of a thumbnail.
+     */
+    private static final String ORIGINAL_EXTENSION = ".original";
+
+    /**
+     * Extension of the files being written.
+     */
+    private static final String TEMPORARY_EXTENSION = ".tmp";
+
+    /**
+     * The size recorded in the index for the thumbnails replaced by the original image.
+     */
+    private static final long ORIGINAL = -1;
+
+    /**
+     * Logging helper object.
+     */
+    private static final Logger LOG = LoggerFactory.getLogger(ImageThumbnailStore.class);
+
+    /**
+     * The directory where the thumbnails are stored.
+     */
+    private final File directory;
+
+    /**
+     * The maximum number of stored thumbnails, or a negative or zero value for no limit.
+     */
+    private final int capacity;
+
+    /**
+     * The maximum number of bytes used by the stored thumbnails, or a negative or zero value for no limit.
+     */
+    private final long maxSize;
+
+    /**
+     * The size of the stored thumbnails indexed by thumbnail path, from the least recently used to the most recently
+     * used. Also guards {@link #size}.
+     */
+    private final Map<String, Long> index = new LinkedHashMap<String, Long>(16, 0.75f, true);
+
+    /**
+     * The number of bytes used by the stored thumbnails.
+     */
+    private long size;
+
+    /**
+     * The threads generating the thumbnails.
+     */
+    private final ExecutorService executor;
+
+    /**
+     * The generations in progress, indexed by thumbnail path.
+     */
+    private final ConcurrentMap<String, Generation> generations = new ConcurrentHashMap<String, Generation>();
+
+    /**
+     * @param directory the directory where the thumbnails are stored
+     * @param threadCount the maximum number of thumbnails generated at the same time
+     * @param capacity the maximum number of stored thumbnails, or a negative or zero value for no limit
+     * @param maxSize the maximum number of bytes used by the stored thumbnails, or a negative or zero value for no
+     *            limit
+     */
+    public ImageThumbnailStore(File directory, int threadCount, int capacity, long maxSize)
+    {
+        this.directory = directory;
+        this.capacity = capacity;
+        this.maxSize = maxSize;
+        this.executor = Executors.newFixedThreadPool(Math.max(1, threadCount), new ThreadFactory()
+        {
+            private final AtomicInteger counter = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable runnable)
+            {
+                Thread thread = new Thread(runnable, "Image Thumbnail Generator " + this.counter.incrementAndGet());
+                // The JVM should be allowed to shutdown while this thread is running
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+
+        loadIndex();
+    }
+
+    /**
+     * @return the directory where the thumbnails are stored
+     */
+    public File getDirectory()
+    {
+        return this.directory;
+    }
+
+    /**
+     * Get a thumbnail, generating it if it is not stored yet. If the same thumbnail is being generated by another
+     * thread, wait for that generation instead of starting a new one.
+     *
+     * @param path the relative path identifying the thumbnail
+     * @param writer used to generate the thumbnail if it is not stored yet
+     * @return the file holding the thumbnail, or {@code null} if the original image should be served instead
+     * @throws Exception if generating or storing the thumbnail fails
+     */
+    public File get(final String path, final ThumbnailWriter writer) throws Exception
+    {
+        Long stored = getStoredSize(path);
+        if (stored != null) {
+            return stored == ORIGINAL ? null : getFile(path);
+        }
+
+        Generation generation = this.generations.get(path);
+        if (generation == null) {
+            Generation newGeneration = new Generation(new Callable<File>()
+            {
+                @Override
+                public File call() throws Exception
+                {
+                    try {
+                        return generate(path, writer);
+                    } finally {
+                        generations.remove(path);
+                    }
+                }
+            });
+            generation = this.generations.putIfAbsent(path, newGeneration);
+            if (generation == null) {
+                generation = newGeneration;
+                // Only the thread which started the generation prepares it.
+                try {
+                    writer.prepare();
+                } catch (Exception e) {
+                    this.generations.remove(path);
+                    newGeneration.fail(e);
+                    throw e;
+                }
+                this.executor.execute(generation);
+            }
+        }
+
+        try {
+            return generation.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Exception) {
+                throw (Exception) e.getCause();
+            }
+            throw new IOException("Failed to generate thumbnail [" + path + "]", e.getCause());
+        }
+    }
+
+    /**
+     * Generate a thumbnail and store it. The thumbnail is written to a temporary file which is then renamed, so that
+     * partially written thumbnails are never served.
+     *
+     * @param path the relative path identifying the thumbnail
+     * @param writer used to generate the thumbnail
+     * @return the file holding the thumbnail, or {@code null} if the original image should be served instead
+     * @throws Exception if generating or storing the thumbnail fails
+     */
+    private File generate(String path, ThumbnailWriter writer) throws Exception
+    {
+        // The thumbnail may have been stored since the generation has been requested.
+        Long stored = getStoredSize(path);
+        if (stored != null) {
+            return stored == ORIGINAL ? null : getFile(path);
+        }
+
+        File file = getFile(path);
+        File parent = file.getParentFile();
+        if (!parent.mkdirs() && !parent.isDirectory()) {
+            throw new IOException("Failed to create thumbnail directory " + parent);
+        }
+
+        File tmpFile = File.createTempFile("tmp-" + file.getName(), TEMPORARY_EXTENSION, parent);
+        try {
+            boolean written;
+            OutputStream out = new BufferedOutputStream(new FileOutputStream(tmpFile));
+            try {
+                written = writer.write(out);
+            } finally {
+                IOUtils.closeQuietly(out);
+            }
+
+            if (!written) {
+                getOriginalMarker(path).createNewFile();
+                add(path, ORIGINAL);
+                return null;
+            }
+            if (!tmpFile.renameTo(file) && !file.exists()) {
+                throw new IOException("Failed to move thumbnail to " + file);
+            }
+        } finally {
+            tmpFile.delete();
+        }
+
+        add(path, file.length());
+
+        return file;
+    }
+
+    /**
+     * @param path the relative path identifying the thumbnail
+     * @return the size of the stored thumbnail, {@link #ORIGINAL} if the original image should be served instead, or
+     *         {@code null} if the thumbnail is not stored
+     */
+    private Long getStoredSize(String path)
+    {
+        synchronized (this.index) {
+            // Also marks the thumbnail as the most recently used.
+            Long stored = this.index.get(path);
+            if (stored != null && stored != ORIGINAL && !getFile(path).exists()) {
+                // The thumbnail has been removed from the disk by someone else.
+                remove(path);
+                stored = null;
+            }
+            return stored;
+        }
+    }
+
+    /**
+     * Record a stored thumbnail and remove the least recently used thumbnails if the store exceeds its bounds.
+     *
+     * @param path the relative path identifying the thumbnail
+     * @param thumbnailSize the size of the thumbnail, or {@link #ORIGINAL} if the original image should be served
+     */
+    private void add(String path, long thumbnailSize)
+    {
+        synchronized (this.index) {
+            Long previous = this.index.put(path, thumbnailSize);
+            if (previous != null) {
+                this.size -= Math.max(0, previous);
+            }
+            this.size += Math.max(0, thumbnailSize);
+
+            Iterator<Map.Entry<String, Long>> it = this.index.entrySet().iterator();
+            while (this.index.size() > 1 && isFull()) {
+                Map.Entry<String, Long> eldest = it.next();
+                this.size -= Math.max(0, eldest.getValue());
+                it.remove();
+                delete(eldest.getKey());
+            }
+        }
+    }
+
+    /**
+     * Forget a stored thumbnail and remove its files. Must be called while holding the {@link #index} lock.
+     *
+     * @param path the relative path identifying the thumbnail
+     */
+    private void remove(String path)
+    {
+        Long previous = this.index.remove(path);
+        if (previous != null) {
+            this.size -= Math.max(0, previous);
+        }
+        delete(path);
+    }
+
+    /**
+     * @param path the relative path identifying the thumbnail
+     */
+    private void delete(String path)
+    {
+        getFile(path).delete();
+        getOriginalMarker(path).delete();
+    }
+
+    /**
+     * @return {@code true} if the store exceeds one of its bounds
+     */
+    private boolean isFull()
+    {
+        return (this.capacity > 0 && this.index.size() > this.capacity)
+            || (this.maxSize > 0 && this.size > this.maxSize);
+    }
+
+    /**
+     * Index the thumbnails stored by a previous run, from the oldest to the newest, and remove the partially written
+     * ones.
+     */
+    private void loadIndex()
+    {
+        if (!this.directory.isDirectory()) {
+            return;
+        }
+
+        List<File> files = new ArrayList<File>(FileUtils.listFiles(this.directory, null, true));
+        Collections.sort(files, new Comparator<File>()
+        {
+            @Override
+            public int compare(File file1, File file2)
+            {
+                long modified1 = file1.lastModified();
+                long modified2 = file2.lastModified();
+                return modified1 < modified2 ? -1 : (modified1 == modified2 ? 0 : 1);
+            }
+        });
+
+        String root = this.directory.toURI().getPath();
+        for (File file : files) {
+            String path = file.toURI().getPath().substring(root.length());
+            if (path.endsWith(TEMPORARY_EXTENSION)) {
+                file.delete();
+            } else if (path.endsWith(ORIGINAL_EXTENSION)) {
+                add(path.substring(0, path.length() - ORIGINAL_EXTENSION.length()), ORIGINAL);
+            } else {
+                add(path, file.length());
+            }
+        }
+    }
+
+    /**
+     * @param path the relative path identifying the thumbnail
+     * @return the file where the thumbnail is stored
+     */
+    private File getFile(String path)
+    {
+        return new File(this.directory, path);
+    }
+
+    /**
+     * @param path the relative path identifying the thumbnail
+     * @return the file recording that the original image should be served instead of the thumbnail
+     */
+    private File getOriginalMarker(String path)
+    {
+        return new File(this.directory, path + ORIGINAL_EXTENSION);
+    }
+
+    /**
+     * @return the number of stored thumbnails, including the ones replaced by the original image
+     */
+    public int size()
+    {
+        synchronized (this.index) {
+            return this.index.size();
+        }
+    }
+
+    /**
+     * Remove all the stored thumbnails.
+     */
+    public void clear()
+    {
+        synchronized (this.index) {
+            this.index.clear();
+            this.size = 0;
+            try {
+                FileUtils.cleanDirectory(this.directory);
+            } catch (Exception e) {
+                LOG.warn("Failed to remove the stored thumbnails from [{}]", this.directory, e);
+            }
+        }
+    }
+
+    /**
+     * Stop the threads generating the thumbnails.
+     */
+    public void dispose()
+    {
+        this.executor.shutdown();
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.xpn.xwiki.plugin.image;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.AutoCloseInputStream;
+import org.xwiki.store.UnexpectedException;
+
+import com.xpn.xwiki.doc.XWikiAttachment;
+import com.xpn.xwiki.doc.XWikiAttachmentContent;
+
+/**
+ * Read-only attachment content backed by a thumbnail file of the {@link ImageThumbnailStore}, so that thumbnails are
+ * streamed from disk to the response instead of being copied in memory.
+ *
+ * @version $Id$
+ * @since 4.4M1
+ */
+public class ThumbnailAttachmentContent extends XWikiAttachmentContent
+{
+    /**
+     * The file holding the thumbnail.
+     */
+    private final File thumbnailFile;
+
+    /**
+     * @param thumbnailFile the file holding the thumbnail
+     * @param attachment the thumbnail attachment to associate this content with
+     */
+    public ThumbnailAttachmentContent(File thumbnailFile, XWikiAttachment attachment)
+    {
+        this.thumbnailFile = thumbnailFile;
+        setAttachment(attachment);
+    }
+
+    @Override
+    public ThumbnailAttachmentContent clone()
+    {
+        return new ThumbnailAttachmentContent(this.thumbnailFile, getAttachment());
+    }
+
+    /**
+     * @return the file holding the thumbnail
+     */
+    public File getThumbnailFile()
+    {
+        return this.thumbnailFile;
+    }
+
+    @Override
+    @Deprecated
+    public byte[] getContent()
+    {
+        InputStream is = getContentInputStream();
+        try {
+            return IOUtils.toByteArray(is);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to load thumbnail content", e);
+        } finally {
+            IOUtils.closeQuietly(is);
+        }
+    }
+
+    @Override
+    public InputStream getContentInputStream()
+    {
+        try {
+            return new AutoCloseInputStream(new FileInputStream(this.thumbnailFile));
+        } catch (IOException e) {
+            throw new UnexpectedException("Failed to get InputStream", e);
+        }
+    }
+
+    @Override
+    public void setContent(InputStream is) throws IOException
+    {
+        // Stored thumbnails are shared between requests and must not be modified. Detach this content from the
+        // attachment and let it create a new XWikiAttachmentContent instance.
+        getAttachment().setAttachment_content(null);
+        getAttachment().setContent(is);
+    }
+
+    @Override
+    public int getSize()
+    {
+        return (int) Math.min(this.thumbnailFile.length(), Integer.MAX_VALUE);
+    }
+}
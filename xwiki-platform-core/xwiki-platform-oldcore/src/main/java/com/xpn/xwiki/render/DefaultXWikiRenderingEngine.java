@@ -33,14 +33,15 @@
 import org.xwiki.cache.CacheManager;
 import org.xwiki.cache.config.CacheConfiguration;
 import org.xwiki.cache.eviction.LRUEvictionConfiguration;
+import org.xwiki.instrumentation.Instrumentation;
+import org.xwiki.instrumentation.Phase;
+import org.xwiki.instrumentation.Span;
 
 import com.xpn.xwiki.XWiki;
 import com.xpn.xwiki.XWikiContext;
 import com.xpn.xwiki.XWikiException;
 import com.xpn.xwiki.doc.XWikiDocument;
-import com.xpn.xwiki.monitor.api.MonitorPlugin;
 import com.xpn.xwiki.render.groovy.XWikiGroovyRenderer;
-import com.xpn.xwiki.util.Util;
 import com.xpn.xwiki.web.Utils;
 import com.xpn.xwiki.web.XWikiRequest;
 
@@ -263,15 +264,12 @@ private String renderText(String text, boolean onlyInterpret, XWikiDocument cont
         } catch (Exception e) {
         }
 
-        MonitorPlugin monitor = Util.getMonitorPlugin(context);
+        Span span = Utils.getComponent(Instrumentation.class).startSpan(Phase.RENDERING,
+            contentdoc != null ? contentdoc.getDocumentReference() : null);
         try {
             // We need to make sure we don't use the cache duretion currently in the system
             context
                 .setCacheDuration((int) context.getWiki().ParamAsLong("xwiki.rendering.defaultCacheDuration", 0));
-            // Start monitoring timer
-            if (monitor != null) {
-                monitor.startTimer("rendering");
-            }
 
             String content = text;
 
@@ -342,9 +340,7 @@ private String renderText(String text, boolean onlyInterpret, XWikiDocument cont
             // We need to make sure we reset the cache Duration
             context.setCacheDuration(currentCacheDuration);
 
-            if (monitor != null) {
-                monitor.endTimer("rendering");
-            }
+            span.end();
         }
     }
 
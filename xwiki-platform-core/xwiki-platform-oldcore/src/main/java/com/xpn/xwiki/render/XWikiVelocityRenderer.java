@@ -29,6 +29,9 @@
 import org.apache.velocity.VelocityContext;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.xwiki.instrumentation.Instrumentation;
+import org.xwiki.instrumentation.Phase;
+import org.xwiki.instrumentation.Span;
 import org.xwiki.velocity.VelocityManager;
 
 import com.xpn.xwiki.XWikiContext;
@@ -100,6 +103,7 @@ public void flushCache()
     public static String evaluate(String content, String name, VelocityContext vcontext, XWikiContext context)
     {
         StringWriter writer = new StringWriter();
+        Span span = Utils.getComponent(Instrumentation.class).startSpan(Phase.VELOCITY, name);
         try {
             VelocityManager velocityManager = Utils.getComponent(VelocityManager.class);
             velocityManager.getVelocityEngine().evaluate(vcontext, writer, name, content);
@@ -112,6 +116,8 @@ public static String evaluate(String content, String name, VelocityContext vcont
                     XWikiException.ERROR_XWIKI_RENDERING_VELOCITY_EXCEPTION, "Error while parsing velocity page {0}",
                     e, args);
             return Util.getHTMLExceptionMessage(xe, context);
+        } finally {
+            span.end();
         }
     }
 
@@ -23,11 +23,15 @@
 import java.io.StringWriter;
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.Collections;
 import java.util.Iterator;
+import java.util.Map;
 import java.util.Properties;
+import java.util.WeakHashMap;
 
 import org.apache.commons.dbcp.BasicDataSource;
 import org.apache.commons.dbcp.BasicDataSourceFactory;
+import org.apache.commons.dbcp.DelegatingConnection;
 import org.hibernate.HibernateException;
 import org.hibernate.cfg.Environment;
 import org.hibernate.connection.ConnectionProvider;
@@ -79,6 +83,21 @@
  * href="http://jakarta.apache.org/commons/dbcp/">DBCP website</a>. There you will also find the DBCP wiki, mailing
  * lists, issue tracking and other support facilities
  * </p>
+ * <p>
+ * In virtual mode each wiki is stored in its own schema and the connections have to be switched to the schema of the
+ * wiki before being used. This provider remembers the schema each pooled connection has been switched to (see
+ * {@link #setSchema(Connection, String)}) so that the switch can be skipped when a connection taken from the pool is
+ * already on the right schema. The connections themselves are fully managed by DBCP. This requires DBCP to give access
+ * to the underlying connections, which is enabled unless {@code hibernate.dbcp.accessToUnderlyingConnectionAllowed}
+ * is explicitly set to {@code false}.
+ * </p>
+ * <p>
+ * Note that the connections are not taken from the pool according to their schema: DBCP hands out the most recently
+ * returned idle connection (unless {@code hibernate.dbcp.lifo} is set to {@code false}), which is on the right schema
+ * mostly when successive requests target the same wiki. The number of schema switches and the time spent doing them
+ * are available from {@link XWikiHibernateBaseStore#getSchemaSwitchCount()} and
+ * {@link XWikiHibernateBaseStore#getSchemaSwitchTime()}.
+ * </p>
  * 
  * @see org.hibernate.connection.ConnectionProvider
  * @author Dirk Verbeeck
@@ -98,6 +117,18 @@ public class DBCPConnectionProvider implements ConnectionProvider
     // Property doesn't exists in Hibernate2
     private static final String AUTOCOMMIT = "hibernate.connection.autocommit";
 
+    /**
+     * The DBCP property allowing to access the connections wrapped by the pool.
+     */
+    private static final String ACCESS_UNDERLYING = "accessToUnderlyingConnectionAllowed";
+
+    /**
+     * The schema each pooled connection is on, when it is known. The physical connections are used as keys since DBCP
+     * wraps them in a new object each time they are taken from the pool, and they are weakly referenced so that the
+     * connections destroyed by DBCP are forgotten.
+     */
+    private final Map<Connection, String> schemas = Collections.synchronizedMap(new WeakHashMap<Connection, String>());
+
     @Override
     public void configure(Properties props) throws HibernateException
     {
@@ -188,6 +219,11 @@ public void configure(Properties props) throws HibernateException
                 LOGGER.debug(sw.toString());
             }
 
+            // Needed to remember the schema of the pooled connections
+            if (!dbcpProperties.containsKey(ACCESS_UNDERLYING)) {
+                dbcpProperties.put(ACCESS_UNDERLYING, String.valueOf(Boolean.TRUE));
+            }
+
             // Let the factory create the pool
             ds = (BasicDataSource) BasicDataSourceFactory.createDataSource(dbcpProperties);
 
@@ -223,12 +259,61 @@ public Connection getConnection() throws SQLException
         Connection conn = null;
         try {
             conn = ds.getConnection();
+            // DBCP resets the catalog of the connections taken from the pool when a default catalog is configured
+            if (ds.getDefaultCatalog() != null) {
+                Connection physicalConnection = getPhysicalConnection(conn);
+                if (physicalConnection != null) {
+                    this.schemas.remove(physicalConnection);
+                }
+            }
         } finally {
             logStatistics();
         }
         return conn;
     }
 
+    /**
+     * @param connection a connection handed out by this provider
+     * @return the schema the connection is on, {@code null} if it is not known
+     * @since 4.4M1
+     */
+    public String getSchema(Connection connection)
+    {
+        Connection physicalConnection = getPhysicalConnection(connection);
+
+        return physicalConnection != null ? this.schemas.get(physicalConnection) : null;
+    }
+
+    /**
+     * Record the schema a connection handed out by this provider has been switched to. The schema is remembered until
+     * the physical connection is closed by DBCP, so the connection must not be switched to another schema without
+     * calling this method again.
+     * 
+     * @param connection the connection
+     * @param schema the schema the connection is on
+     * @since 4.4M1
+     */
+    public void setSchema(Connection connection, String schema)
+    {
+        Connection physicalConnection = getPhysicalConnection(connection);
+        if (physicalConnection != null) {
+            this.schemas.put(physicalConnection, schema);
+        }
+    }
+
+    /**
+     * @param connection a connection handed out by this provider
+     * @return the physical connection wrapped by DBCP, {@code null} if DBCP doesn't give access to it
+     */
+    private Connection getPhysicalConnection(Connection connection)
+    {
+        if (connection instanceof DelegatingConnection) {
+            return ((DelegatingConnection) connection).getInnermostDelegate();
+        }
+
+        return null;
+    }
+
     @Override
     public void closeConnection(Connection conn) throws SQLException
     {
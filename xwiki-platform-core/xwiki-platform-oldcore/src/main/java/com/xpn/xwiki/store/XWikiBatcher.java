@@ -19,50 +19,149 @@
  */
 package com.xpn.xwiki.store;
 
-/*
- import org.hibernate.jdbc.BatchingBatcher;
- import org.hibernate.jdbc.JDBCContext;
- import org.hibernate.jdbc.ConnectionManager;
- import org.hibernate.HibernateException;
- import org.hibernate.ScrollMode;
- import org.hibernate.Interceptor;
- import org.hibernate.dialect.Dialect;
-
- import java.sql.SQLException;
- import java.sql.ResultSet;
- import java.sql.PreparedStatement;
- import java.sql.CallableStatement;
- */
+import java.sql.CallableStatement;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
 
-public class XWikiBatcher
-{
-}
+import org.hibernate.HibernateException;
+import org.hibernate.Interceptor;
+import org.hibernate.ScrollMode;
+import org.hibernate.jdbc.BatchingBatcher;
+import org.hibernate.jdbc.ConnectionManager;
+import org.hibernate.jdbc.Expectation;
 
-/*
- * private static ThreadLocal sqlStats = new ThreadLocal() { protected synchronized Object initialValue() { return new
- * XWikiBatcherStats(); } }; public static XWikiBatcherStats getSQLStats() { return (XWikiBatcherStats) sqlStats.get();
- * } public void addToBatch(int expectedRowCount) throws SQLException, HibernateException {
- * getSQLStats().incrementAddToBatchCounter(); super.addToBatch(expectedRowCount); } public
- * XWikiBatcher(ConnectionManager cmgr, Interceptor interceptor) { super(cmgr, interceptor); } public void
- * abortBatch(SQLException sqle) { getSQLStats().incrementAbortBatchCounter(); super.abortBatch(sqle); } public
- * CallableStatement prepareCallableStatement(String sql) throws SQLException, HibernateException {
- * addToPreparedSql(sql); return super.prepareCallableStatement(sql); } private void addToPreparedSql(String sql) {
- * getSQLStats().addToSqlList(sql); getSQLStats().incrementPreparedSQLCounter(); } public PreparedStatement
- * prepareStatement(String sql, boolean getGeneratedKeys, String[] param) throws SQLException, HibernateException {
- * addToPreparedSql(sql); return super.prepareStatement(sql, getGeneratedKeys, param); } public PreparedStatement
- * prepareSelectStatement(String sql) throws SQLException, HibernateException { addToPreparedSql(sql); return
- * super.prepareSelectStatement(sql); } public PreparedStatement prepareQueryStatement(String sql, boolean scrollable,
- * ScrollMode scrollMode) throws SQLException, HibernateException { addToPreparedSql(sql); return
- * super.prepareQueryStatement(sql, scrollable, scrollMode); } public CallableStatement
- * prepareCallableQueryStatement(String sql, boolean scrollable, ScrollMode scrollMode) throws SQLException,
- * HibernateException { addToPreparedSql(sql); return super.prepareCallableQueryStatement(sql, scrollable, scrollMode);
- * } public PreparedStatement prepareBatchStatement(String sql) throws SQLException, HibernateException {
- * addToPreparedSql(sql); return super.prepareBatchStatement(sql); } public CallableStatement
- * prepareBatchCallableStatement(String sql) throws SQLException, HibernateException { addToPreparedSql(sql); return
- * super.prepareBatchCallableStatement(sql); } public ResultSet getResultSet(PreparedStatement ps) throws SQLException {
- * getSQLStats().incrementResultSetCounter(); return super.getResultSet(ps); } public ResultSet
- * getResultSet(CallableStatement ps, Dialect dialect) throws SQLException { getSQLStats().incrementResultSetCounter();
- * return super.getResultSet(ps, dialect); } protected void doExecuteBatch(PreparedStatement ps) throws SQLException,
- * HibernateException { getSQLStats().incrementExecuteBatchCounter(); super.doExecuteBatch(ps);
- * getSQLStats().resetOnNextSQL(); } }
+/**
+ * Hibernate batcher recording the statements prepared and the JDBC batches executed by the current thread in a
+ * {@link XWikiBatcherStats}. Enabled by setting {@code hibernate.jdbc.factory_class} to {@link XWikiBatcherFactory}
+ * in the Hibernate configuration; the statements are actually batched only when {@code jdbc.batch_size} is greater
+ * than 1.
+ *
+ * @version $Id$
  */
+public class XWikiBatcher extends BatchingBatcher
+{
+    /**
+     * The statistics of the current thread.
+     */
+    private static final ThreadLocal<XWikiBatcherStats> SQL_STATS = new ThreadLocal<XWikiBatcherStats>()
+    {
+        @Override
+        protected XWikiBatcherStats initialValue()
+        {
+            return new XWikiBatcherStats();
+        }
+    };
+
+    /**
+     * The number of statements added to the current batch.
+     */
+    private int currentBatchSize;
+
+    /**
+     * @param connectionManager the connection manager of the session
+     * @param interceptor the interceptor of the session
+     */
+    public XWikiBatcher(ConnectionManager connectionManager, Interceptor interceptor)
+    {
+        super(connectionManager, interceptor);
+    }
+
+    /**
+     * @return the statistics of the current thread
+     */
+    public static XWikiBatcherStats getSQLStats()
+    {
+        return SQL_STATS.get();
+    }
+
+    @Override
+    public void addToBatch(Expectation expectation) throws SQLException, HibernateException
+    {
+        getSQLStats().incrementAddToBatchCounter();
+        this.currentBatchSize++;
+        super.addToBatch(expectation);
+    }
+
+    @Override
+    protected void doExecuteBatch(PreparedStatement ps) throws SQLException, HibernateException
+    {
+        XWikiBatcherStats stats = getSQLStats();
+        if (this.currentBatchSize > 0) {
+            stats.incrementExecuteBatchCounter();
+            stats.addBatchSize(this.currentBatchSize);
+            this.currentBatchSize = 0;
+        }
+        super.doExecuteBatch(ps);
+        stats.resetOnNextSQL();
+    }
+
+    @Override
+    public void abortBatch(SQLException sqle)
+    {
+        getSQLStats().incrementAbortBatchCounter();
+        this.currentBatchSize = 0;
+        super.abortBatch(sqle);
+    }
+
+    @Override
+    public PreparedStatement prepareStatement(String sql) throws SQLException, HibernateException
+    {
+        addToPreparedSql(sql);
+        return super.prepareStatement(sql);
+    }
+
+    @Override
+    public PreparedStatement prepareStatement(String sql, boolean getGeneratedKeys) throws SQLException,
+        HibernateException
+    {
+        addToPreparedSql(sql);
+        return super.prepareStatement(sql, getGeneratedKeys);
+    }
+
+    @Override
+    public PreparedStatement prepareSelectStatement(String sql) throws SQLException, HibernateException
+    {
+        addToPreparedSql(sql);
+        return super.prepareSelectStatement(sql);
+    }
+
+    @Override
+    public PreparedStatement prepareQueryStatement(String sql, boolean scrollable, ScrollMode scrollMode)
+        throws SQLException, HibernateException
+    {
+        addToPreparedSql(sql);
+        return super.prepareQueryStatement(sql, scrollable, scrollMode);
+    }
+
+    @Override
+    public CallableStatement prepareCallableStatement(String sql) throws SQLException, HibernateException
+    {
+        addToPreparedSql(sql);
+        return super.prepareCallableStatement(sql);
+    }
+
+    @Override
+    public PreparedStatement prepareBatchStatement(String sql) throws SQLException, HibernateException
+    {
+        addToPreparedSql(sql);
+        return super.prepareBatchStatement(sql);
+    }
+
+    @Override
+    public ResultSet getResultSet(PreparedStatement ps) throws SQLException
+    {
+        getSQLStats().incrementResultSetCounter();
+        return super.getResultSet(ps);
+    }
+
+    /**
+     * @param sql the statement being prepared
+     */
+    private void addToPreparedSql(String sql)
+    {
+        XWikiBatcherStats stats = getSQLStats();
+        stats.addToSqlList(sql);
+        stats.incrementPreparedSQLCounter();
+    }
+}
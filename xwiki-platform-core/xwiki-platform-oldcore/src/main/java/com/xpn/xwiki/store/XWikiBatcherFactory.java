@@ -19,10 +19,21 @@
  */
 package com.xpn.xwiki.store;
 
-public class XWikiBatcherFactory
+import org.hibernate.Interceptor;
+import org.hibernate.jdbc.Batcher;
+import org.hibernate.jdbc.BatchingBatcherFactory;
+import org.hibernate.jdbc.ConnectionManager;
+
+/**
+ * Creates {@link XWikiBatcher}s, set {@code hibernate.jdbc.factory_class} to this class to use it.
+ *
+ * @version $Id$
+ */
+public class XWikiBatcherFactory extends BatchingBatcherFactory
 {
+    @Override
+    public Batcher createBatcher(ConnectionManager connectionManager, Interceptor interceptor)
+    {
+        return new XWikiBatcher(connectionManager, interceptor);
+    }
 }
-/*
- * public class XWikiBatcherFactory extends BatchingBatcherFactory { public Batcher createBatcher(ConnectionManager
- * cmgr, Interceptor interceptor) { return new XWikiBatcher( cmgr, interceptor ); } }
- */
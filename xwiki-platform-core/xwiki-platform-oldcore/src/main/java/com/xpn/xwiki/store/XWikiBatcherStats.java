@@ -46,6 +46,11 @@
 
     private int addToBatchCounter = 0;
 
+    /**
+     * The size of the largest batch executed.
+     */
+    private int maxBatchSize = 0;
+
     public void resetStats()
     {
         sqlList = new ArrayList();
@@ -54,6 +59,7 @@ public void resetStats()
         abortBatchCounter = 0;
         resultSetCounter = 0;
         addToBatchCounter = 0;
+        maxBatchSize = 0;
     }
 
     public List getSqlList()
@@ -73,6 +79,10 @@ public void resetRecentSqlList()
 
     public void addToSqlList(String sql)
     {
+        // The statements are only kept for logging, don't let the lists grow otherwise
+        if (!LOGGER.isDebugEnabled()) {
+            return;
+        }
         if (resetOnNextSQL) {
             resetRecentSqlList();
             resetOnNextSQL = false;
@@ -136,6 +146,35 @@ public void incrementAddToBatchCounter()
         this.addToBatchCounter++;
     }
 
+    /**
+     * Record the size of an executed batch.
+     *
+     * @param batchSize the number of statements in the batch
+     * @since 4.4M1
+     */
+    public void addBatchSize(int batchSize)
+    {
+        this.maxBatchSize = Math.max(this.maxBatchSize, batchSize);
+    }
+
+    /**
+     * @return the size of the largest batch executed
+     * @since 4.4M1
+     */
+    public int getMaxBatchSize()
+    {
+        return maxBatchSize;
+    }
+
+    /**
+     * @return the average number of statements per batch executed
+     * @since 4.4M1
+     */
+    public double getAverageBatchSize()
+    {
+        return executeBatchCounter > 0 ? (double) addToBatchCounter / executeBatchCounter : 0;
+    }
+
     public void printSQLList(PrintStream out)
     {
         out.println("SQL: number of queries " + sqlList.size());
@@ -22,6 +22,7 @@
 import java.util.Arrays;
 import java.util.List;
 
+import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.xwiki.bridge.event.DocumentCreatedEvent;
@@ -30,9 +31,14 @@
 import org.xwiki.bridge.event.WikiDeletedEvent;
 import org.xwiki.cache.Cache;
 import org.xwiki.cache.CacheException;
-import org.xwiki.cache.CacheFactory;
+import org.xwiki.cache.CacheManager;
+import org.xwiki.cache.CacheManagerConfiguration;
 import org.xwiki.cache.config.CacheConfiguration;
 import org.xwiki.cache.eviction.LRUEvictionConfiguration;
+import org.xwiki.cache.internal.CacheRegistry;
+import org.xwiki.instrumentation.Instrumentation;
+import org.xwiki.instrumentation.Phase;
+import org.xwiki.instrumentation.Span;
 import org.xwiki.model.reference.DocumentReference;
 import org.xwiki.observation.EventListener;
 import org.xwiki.observation.ObservationManager;
@@ -45,6 +51,7 @@
 import com.xpn.xwiki.doc.XWikiDocument;
 import com.xpn.xwiki.doc.XWikiLink;
 import com.xpn.xwiki.doc.XWikiLock;
+import com.xpn.xwiki.internal.store.XWikiDocumentWeigher;
 import com.xpn.xwiki.objects.classes.BaseClass;
 import com.xpn.xwiki.web.Utils;
 
@@ -68,6 +75,11 @@ public class XWikiCacheStore implements XWikiCacheStoreInterface, EventListener
 
     private int pageExistCacheCapacity = 10000;
 
+    /**
+     * The maximum estimated size of the cached documents in bytes, 0 to only bound the cache by number of documents.
+     */
+    private long cacheMaxSize;
+
     /**
      * Used to know if a received event is a local or remote one.
      */
@@ -78,6 +90,11 @@ public class XWikiCacheStore implements XWikiCacheStoreInterface, EventListener
      */
     private ObservationManager observationManager;
 
+    /**
+     * Used to measure the document cache hits and misses.
+     */
+    private Instrumentation instrumentation;
+
     public XWikiCacheStore(XWikiStoreInterface store, XWikiContext context) throws XWikiException
     {
         setStore(store);
@@ -87,6 +104,8 @@ public XWikiCacheStore(XWikiStoreInterface store, XWikiContext context) throws X
         this.remoteObservationManagerContext = Utils.getComponent(RemoteObservationManagerContext.class);
         this.observationManager = Utils.getComponent(ObservationManager.class);
         this.observationManager.addListener(this);
+
+        this.instrumentation = Utils.getComponent(Instrumentation.class);
     }
 
     @Override
@@ -119,6 +138,13 @@ public synchronized void initCache(XWikiContext context) throws XWikiException
                 }
             } catch (Exception e) {
             }
+            try {
+                String maxSize = context.getWiki().Param("xwiki.store.cache.maxsize");
+                if (maxSize != null) {
+                    this.cacheMaxSize = Long.parseLong(maxSize);
+                }
+            } catch (Exception e) {
+            }
             initCache(this.cacheCapacity, this.pageExistCacheCapacity, context);
         }
     }
@@ -126,16 +152,18 @@ public synchronized void initCache(XWikiContext context) throws XWikiException
     @Override
     public void initCache(int capacity, int pageExistCacheCapacity, XWikiContext context) throws XWikiException
     {
-        CacheFactory cacheFactory = context.getWiki().getCacheFactory();
-
         try {
             CacheConfiguration cacheConfiguration = new CacheConfiguration();
             cacheConfiguration.setConfigurationId("xwiki.store.pagecache");
             LRUEvictionConfiguration lru = new LRUEvictionConfiguration();
             lru.setMaxEntries(capacity);
+            if (this.cacheMaxSize > 0) {
+                // Only used by the cache implementations supporting it, the others keep the maximum number of entries
+                lru.setMaxWeight(this.cacheMaxSize, new XWikiDocumentWeigher());
+            }
             cacheConfiguration.put(LRUEvictionConfiguration.CONFIGURATIONID, lru);
 
-            Cache<XWikiDocument> pageCache = cacheFactory.newCache(cacheConfiguration);
+            Cache<XWikiDocument> pageCache = createCache(cacheConfiguration, context);
             setCache(pageCache);
 
             cacheConfiguration = new CacheConfiguration();
@@ -144,7 +172,7 @@ public void initCache(int capacity, int pageExistCacheCapacity, XWikiContext con
             lru.setMaxEntries(pageExistCacheCapacity);
             cacheConfiguration.put(LRUEvictionConfiguration.CONFIGURATIONID, lru);
 
-            Cache<Boolean> pageExistcache = cacheFactory.newCache(cacheConfiguration);
+            Cache<Boolean> pageExistcache = createCache(cacheConfiguration, context);
             setPageExistCache(pageExistcache);
         } catch (CacheException e) {
             throw new XWikiException(XWikiException.MODULE_XWIKI_CACHE, XWikiException.ERROR_CACHE_INITIALIZING,
@@ -152,6 +180,33 @@ public void initCache(int capacity, int pageExistCacheCapacity, XWikiContext con
         }
     }
 
+    /**
+     * Create a cache with the cache implementation configured for this cache if any, with the one configured with
+     * {@code xwiki.cache.cachefactory.hint} otherwise.
+     * 
+     * @param <T> the class of the data stored in the cache
+     * @param configuration the configuration of the cache
+     * @param context the XWiki context
+     * @return the new cache
+     * @throws CacheException when failing to create the cache
+     */
+    private <T> Cache<T> createCache(CacheConfiguration configuration, XWikiContext context) throws CacheException
+    {
+        String hint = context.getWiki() != null ? context.getWiki().Param("xwiki.cache.cachefactory.hint") : null;
+        CacheManagerConfiguration cacheConfiguration = Utils.getComponent(CacheManagerConfiguration.class);
+
+        if (StringUtils.isNotEmpty(hint) && cacheConfiguration.getCache(configuration.getConfigurationId()) == null) {
+            Cache<T> cache = context.getWiki().getCacheFactory().newCache(configuration);
+
+            // Expose the statistics of the cache like the caches created by the cache manager
+            Utils.getComponent(CacheRegistry.class).register(configuration.getConfigurationId(), cache);
+
+            return cache;
+        }
+
+        return Utils.getComponent(CacheManager.class).createNewCache(configuration);
+    }
+
     @Override
     public XWikiStoreInterface getStore()
     {
@@ -277,25 +332,33 @@ public XWikiDocument loadXWikiDoc(XWikiDocument doc, XWikiContext context) throw
 
         LOGGER.debug("Cache: Trying to get doc {} from cache", key);
 
+        long startTime = System.nanoTime();
         XWikiDocument cachedoc = getCache().get(key);
 
         if (cachedoc != null) {
             doc = cachedoc;
             doc.setFromCache(true);
 
+            this.instrumentation.record(Phase.CACHE_HIT, key, System.nanoTime() - startTime);
+
             LOGGER.debug("Cache: got doc {} from cache", key);
         } else {
-            LOGGER.debug("Cache: Trying to get doc {} from persistent storage", key);
+            Span span = this.instrumentation.startSpan(Phase.CACHE_MISS, key);
+            try {
+                LOGGER.debug("Cache: Trying to get doc {} from persistent storage", key);
 
-            doc = this.store.loadXWikiDoc(doc, context);
-            doc.setStore(this.store);
+                doc = this.store.loadXWikiDoc(doc, context);
+                doc.setStore(this.store);
 
-            LOGGER.debug("Cache: Got doc {} from storage", key);
+                LOGGER.debug("Cache: Got doc {} from storage", key);
 
-            getCache().set(key, doc);
-            getPageExistCache().set(key, new Boolean(!doc.isNew()));
+                getCache().set(key, doc);
+                getPageExistCache().set(key, new Boolean(!doc.isNew()));
 
-            LOGGER.debug("Cache: put doc {} in cache", key);
+                LOGGER.debug("Cache: put doc {} in cache", key);
+            } finally {
+                span.end();
+            }
         }
 
         LOGGER.debug("Cache: end for doc {} in cache", key);
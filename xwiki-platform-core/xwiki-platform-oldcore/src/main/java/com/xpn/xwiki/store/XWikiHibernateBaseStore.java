@@ -28,6 +28,8 @@
 import java.util.Iterator;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.inject.Inject;
 import javax.inject.Named;
@@ -58,11 +60,9 @@
 import com.xpn.xwiki.XWiki;
 import com.xpn.xwiki.XWikiContext;
 import com.xpn.xwiki.XWikiException;
-import com.xpn.xwiki.monitor.api.MonitorPlugin;
 import com.xpn.xwiki.objects.classes.BaseClass;
 import com.xpn.xwiki.store.hibernate.HibernateSessionFactory;
 import com.xpn.xwiki.store.migration.DataMigrationManager;
-import com.xpn.xwiki.util.Util;
 import com.xpn.xwiki.web.Utils;
 import com.xpn.xwiki.objects.PropertyInterface;
 import com.xpn.xwiki.objects.ListProperty;
@@ -99,6 +99,47 @@ public class XWikiHibernateBaseStore implements Initializable
 
     private DatabaseProduct databaseProduct = DatabaseProduct.UNKNOWN;
 
+    /**
+     * How to switch a connection to the schema of a wiki.
+     */
+    private static final class SchemaSwitch
+    {
+        /**
+         * The schema of the wiki.
+         */
+        private final String schema;
+
+        /**
+         * The statement switching to the schema, {@code null} if the JDBC catalog should be set instead.
+         */
+        private final String sql;
+
+        /**
+         * @param schema the schema of the wiki
+         * @param sql the statement switching to the schema, {@code null} if the JDBC catalog should be set instead
+         */
+        private SchemaSwitch(String schema, String sql)
+        {
+            this.schema = schema;
+            this.sql = sql;
+        }
+    }
+
+    /**
+     * How to switch to the schema of each wiki, computed once per wiki.
+     */
+    private final ConcurrentMap<String, SchemaSwitch> schemaSwitches = new ConcurrentHashMap<String, SchemaSwitch>();
+
+    /**
+     * The number of times a connection has been switched to another schema.
+     */
+    private final AtomicLong schemaSwitchCount = new AtomicLong();
+
+    /**
+     * The total time spent switching connections to another schema, in nanoseconds.
+     */
+    private final AtomicLong schemaSwitchTime = new AtomicLong();
+
     /**
      * THis allows to initialize our storage engine. The hibernate config file path is taken from xwiki.cfg or directly
      * in the WEB-INF directory.
@@ -141,6 +182,15 @@ public void initialize() throws InitializationException
         setPath(context.getWiki().Param("xwiki.store.hibernate.path", getPath()));
     }
 
+    /**
+     * @return the execution, used by the stores to access the XWiki context while initializing
+     * @since 4.4M1
+     */
+    protected Execution getExecution()
+    {
+        return this.execution;
+    }
+
     /**
      * Allows to get the current hibernate config file path
      */
@@ -179,6 +229,8 @@ public DatabaseProduct getDatabaseProductName()
             try {
                 connection = connectionProvider.getConnection();
                 product = DatabaseProduct.toProduct(connection.getMetaData().getDatabaseProductName());
+                // The database can't change without restarting
+                this.databaseProduct = product;
             } catch (SQLException ignored) {
                 // do not care, return UNKNOWN
             } finally {
@@ -525,7 +577,6 @@ public void updateSchema(String[] createSQL, XWikiContext context)
         Connection connection;
         Statement stmt = null;
         boolean bTransaction = true;
-        MonitorPlugin monitor = Util.getMonitorPlugin(context);
         String sql = "";
 
         try {
@@ -535,10 +586,6 @@ public void updateSchema(String[] createSQL, XWikiContext context)
             setDatabase(session, context);
             stmt = connection.createStatement();
 
-            // Start monitoring timer
-            if (monitor != null) {
-                monitor.startTimer("sqlupgrade");
-            }
             for (int j = 0; j < createSQL.length; j++) {
                 sql = createSQL[j];
                 if (LOGGER.isDebugEnabled()) {
@@ -564,11 +611,6 @@ public void updateSchema(String[] createSQL, XWikiContext context)
                 }
             } catch (Exception e) {
             }
-
-            // End monitoring timer
-            if (monitor != null) {
-                monitor.endTimer("sqlupgrade");
-            }
         }
     }
 
@@ -641,23 +683,7 @@ public void setDatabase(Session session, XWikiContext context) throws XWikiExcep
                 }
 
                 if (context.getDatabase() != null) {
-                    String schemaName = getSchemaFromWikiName(context);
-                    String escapedSchemaName = escapeSchema(schemaName, context);
-
-                    DatabaseProduct databaseProduct = getDatabaseProductName(context);
-                    if (DatabaseProduct.ORACLE == databaseProduct) {
-                        executeSQL("alter session set current_schema = " + escapedSchemaName, session);
-                    } else if (DatabaseProduct.DERBY == databaseProduct || DatabaseProduct.HSQLDB == databaseProduct
-                        || DatabaseProduct.DB2 == databaseProduct)
-                    {
-                        executeSQL("SET SCHEMA " + escapedSchemaName, session);
-                    } else {
-                        String catalog = session.connection().getCatalog();
-                        catalog = (catalog == null) ? null : catalog.replace('_', '-');
-                        if (!schemaName.equals(catalog)) {
-                            session.connection().setCatalog(schemaName);
-                        }
-                    }
+                    switchSchema(session, context);
                     setCurrentDatabase(context, context.getDatabase());
                 }
             }
@@ -673,32 +699,103 @@ public void setDatabase(Session session, XWikiContext context) throws XWikiExcep
     }
 
     /**
-     * Execute an SQL statement using Hibernate.
-     *
-     * @param sql the SQL statement to execute
-     * @param session the Hibernate Session in which to execute the statement
+     * Switch the connection of a session to the schema of the context wiki, unless the connection is already known to
+     * be on that schema.
+     * 
+     * @param session the Hibernate session
+     * @param context the XWiki context
      */
-    private void executeSQL(final String sql, Session session)
+    private void switchSchema(Session session, XWikiContext context)
     {
-        session.doWork(new Work() {
+        final SchemaSwitch schemaSwitch = getSchemaSwitch(context);
+        final ConnectionProvider connectionProvider =
+            ((SessionFactoryImplementor) session.getSessionFactory()).getConnectionProvider();
+        session.doWork(new Work()
+        {
+            @Override
             public void execute(Connection connection) throws SQLException
             {
-                Statement stmt = null;
-                try {
-                    stmt = connection.createStatement();
-                    stmt.execute(sql);
-                } finally {
+                DBCPConnectionProvider dbcpProvider = null;
+                if (connectionProvider instanceof DBCPConnectionProvider) {
+                    dbcpProvider = (DBCPConnectionProvider) connectionProvider;
+                    if (schemaSwitch.schema.equals(dbcpProvider.getSchema(connection))) {
+                        return;
+                    }
+                }
+
+                long start = System.nanoTime();
+                if (schemaSwitch.sql != null) {
+                    Statement stmt = connection.createStatement();
                     try {
-                        if (stmt != null) {
-                            stmt.close();
-                        }
-                    } catch (Exception e) {
+                        stmt.execute(schemaSwitch.sql);
+                    } finally {
+                        stmt.close();
+                    }
+                } else {
+                    String catalog = connection.getCatalog();
+                    catalog = (catalog == null) ? null : catalog.replace('_', '-');
+                    if (!schemaSwitch.schema.equals(catalog)) {
+                        connection.setCatalog(schemaSwitch.schema);
                     }
                 }
+                schemaSwitchTime.addAndGet(System.nanoTime() - start);
+                schemaSwitchCount.incrementAndGet();
+
+                if (dbcpProvider != null) {
+                    dbcpProvider.setSchema(connection, schemaSwitch.schema);
+                }
             }
         });
     }
 
+    /**
+     * @param context the XWiki context
+     * @return how to switch to the schema of the context wiki
+     */
+    private SchemaSwitch getSchemaSwitch(XWikiContext context)
+    {
+        SchemaSwitch schemaSwitch = this.schemaSwitches.get(context.getDatabase());
+        if (schemaSwitch == null) {
+            String schemaName = getSchemaFromWikiName(context);
+            String escapedSchemaName = escapeSchema(schemaName, context);
+
+            String sql;
+            DatabaseProduct databaseProduct = getDatabaseProductName(context);
+            if (DatabaseProduct.ORACLE == databaseProduct) {
+                sql = "alter session set current_schema = " + escapedSchemaName;
+            } else if (DatabaseProduct.DERBY == databaseProduct || DatabaseProduct.HSQLDB == databaseProduct
+                || DatabaseProduct.DB2 == databaseProduct)
+            {
+                sql = "SET SCHEMA " + escapedSchemaName;
+            } else {
+                sql = null;
+            }
+
+            schemaSwitch = new SchemaSwitch(schemaName, sql);
+            this.schemaSwitches.put(context.getDatabase(), schemaSwitch);
+        }
+
+        return schemaSwitch;
+    }
+
+    /**
+     * @return the number of times a connection has been switched to the schema of another wiki
+     * @since 4.4M1
+     */
+    public long getSchemaSwitchCount()
+    {
+        return this.schemaSwitchCount.get();
+    }
+
+    /**
+     * @return the total time spent switching connections to the schema of another wiki, in milliseconds
+     * @since 4.4M1
+     */
+    public long getSchemaSwitchTime()
+    {
+        return this.schemaSwitchTime.get() / 1000000;
+    }
+
     /**
      * Escape schema name depending of the database engine.
      * 
@@ -1216,14 +1313,9 @@ public <T> T failSafeExecute(XWikiContext context, boolean doCommit, HibernateCa
     public <T> T execute(XWikiContext context, boolean doCommit, HibernateCallback<T> cb)
         throws XWikiException
     {
-        MonitorPlugin monitor = Util.getMonitorPlugin(context);
         boolean bTransaction = false;
 
         try {
-            // Start monitoring timer
-            if (monitor != null) {
-                monitor.startTimer("hibernate");
-            }
             checkHibernate(context);
             bTransaction = beginTransaction(context);
             return cb.doInHibernate(getSession(context));
@@ -1239,9 +1331,6 @@ public <T> T execute(XWikiContext context, boolean doCommit, HibernateCallback<T
                 if (bTransaction) {
                     endTransaction(context, doCommit);
                 }
-                if (monitor != null) {
-                    monitor.endTimer("hibernate");
-                }
             } catch (Exception e) {
                 if (LOGGER.isErrorEnabled()) {
                     LOGGER.error("Exeption while close transaction", e);
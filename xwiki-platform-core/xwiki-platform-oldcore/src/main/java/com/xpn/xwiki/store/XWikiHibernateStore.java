@@ -26,6 +26,7 @@
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -61,6 +62,9 @@
 import org.xwiki.component.phase.InitializationException;
 import org.xwiki.context.Execution;
 import org.xwiki.context.ExecutionContext;
+import org.xwiki.instrumentation.Instrumentation;
+import org.xwiki.instrumentation.Phase;
+import org.xwiki.instrumentation.Span;
 import org.xwiki.model.EntityType;
 import org.xwiki.model.reference.DocumentReference;
 import org.xwiki.model.reference.DocumentReferenceResolver;
@@ -82,7 +86,6 @@
 import com.xpn.xwiki.doc.XWikiDocument;
 import com.xpn.xwiki.doc.XWikiLink;
 import com.xpn.xwiki.doc.XWikiLock;
-import com.xpn.xwiki.monitor.api.MonitorPlugin;
 import com.xpn.xwiki.objects.BaseCollection;
 import com.xpn.xwiki.objects.BaseElement;
 import com.xpn.xwiki.objects.BaseObject;
@@ -109,7 +112,6 @@
 import com.xpn.xwiki.render.XWikiRenderer;
 import com.xpn.xwiki.stats.impl.XWikiStats;
 import com.xpn.xwiki.store.migration.MigrationRequiredException;
-import com.xpn.xwiki.util.Util;
 import com.xpn.xwiki.web.Utils;
 
 /**
@@ -124,6 +126,11 @@ public class XWikiHibernateStore extends XWikiHibernateBaseStore implements XWik
 {
     private static final Logger LOGGER = LoggerFactory.getLogger(XWikiHibernateStore.class);
 
+    /**
+     * The maximum number of identifiers passed to a {@code in} clause, Oracle supports at most 1000.
+     */
+    private static final int MAX_IDS_PER_QUERY = 500;
+
     private Map<String, String[]> validTypesMap = new HashMap<String, String[]>();
 
     /**
@@ -168,6 +175,11 @@ public class XWikiHibernateStore extends XWikiHibernateBaseStore implements XWik
     private EntityReferenceSerializer<String> localEntityReferenceSerializer = Utils.getComponent(
         EntityReferenceSerializer.TYPE_STRING, "local");
 
+    /**
+     * Used to measure the time spent loading, saving and searching. Looked up when first needed.
+     */
+    private Instrumentation instrumentation;
+
     /**
      * This allows to initialize our storage engine. The hibernate config file path is taken from xwiki.cfg or directly
      * in the WEB-INF directory.
@@ -409,25 +421,17 @@ public void deleteWiki(String wikiName, XWikiContext context) throws XWikiExcept
     public boolean exists(XWikiDocument doc, XWikiContext context) throws XWikiException
     {
         boolean bTransaction = true;
-        MonitorPlugin monitor = Util.getMonitorPlugin(context);
+        Span span = getInstrumentation().startSpan(Phase.STORE_LOAD, doc.getDocumentReference());
         try {
 
             doc.setStore(this);
             checkHibernate(context);
 
-            // Start monitoring timer
-            if (monitor != null) {
-                monitor.startTimer("hibernate");
-            }
-
             bTransaction = bTransaction && beginTransaction(false, context);
             Session session = getSession(context);
             String fullName = doc.getFullName();
 
             String sql = "select doc.fullName from XWikiDocument as doc where doc.fullName=:fullName";
-            if (monitor != null) {
-                monitor.setTimerDesc("hibernate", sql);
-            }
             Query query = session.createQuery(sql);
             query.setString("fullName", fullName);
             Iterator<String> it = query.list().iterator();
@@ -443,10 +447,7 @@ public boolean exists(XWikiDocument doc, XWikiContext context) throws XWikiExcep
                 XWikiException.ERROR_XWIKI_STORE_HIBERNATE_CHECK_EXISTS_DOC, "Exception while reading document {0}", e,
                 args);
         } finally {
-            // End monitoring timer
-            if (monitor != null) {
-                monitor.endTimer("hibernate");
-            }
+            span.end();
 
             try {
                 if (bTransaction) {
@@ -460,12 +461,13 @@ public boolean exists(XWikiDocument doc, XWikiContext context) throws XWikiExcep
     @Override
     public void saveXWikiDoc(XWikiDocument doc, XWikiContext context, boolean bTransaction) throws XWikiException
     {
-        MonitorPlugin monitor = Util.getMonitorPlugin(context);
+        Span span = getInstrumentation().startSpan(Phase.STORE_SAVE, doc.getDocumentReference());
+        // Only filled when the XWikiBatcherFactory is configured in hibernate.cfg.xml
+        XWikiBatcherStats sqlStats = XWikiBatcher.getSQLStats();
+        int preparedSQL = sqlStats.getPreparedSQLCounter();
+        int addedToBatch = sqlStats.getAddToBatchCounter();
+        int executedBatches = sqlStats.getExecuteBatchCounter();
         try {
-            // Start monitoring timer
-            if (monitor != null) {
-                monitor.startTimer("hibernate");
-            }
             doc.setStore(this);
             // Make sure the database name is stored
             doc.setDatabase(context.getDatabase());
@@ -678,8 +680,10 @@ else if (prop instanceof NumberClass) {
                 }
             }
 
+            List<BaseElement> savedElements = Collections.emptyList();
             if (doc.hasElement(XWikiDocument.HAS_OBJECTS)) {
                 // TODO: Delete all objects for which we don't have a name in the Map
+                List<BaseCollection> objectsToSave = new ArrayList<BaseCollection>();
                 for (List<BaseObject> objects : doc.getXObjects().values()) {
                     for (BaseObject obj : objects) {
                         if (obj != null) {
@@ -688,10 +692,11 @@ else if (prop instanceof NumberClass) {
                             if (StringUtils.isEmpty(obj.getGuid())) {
                                 obj.setGuid(UUID.randomUUID().toString());
                             }
-                            saveXWikiCollection(obj, context, false);
+                            objectsToSave.add(obj);
                         }
                     }
                 }
+                savedElements = saveXWikiCollections(objectsToSave, context);
             }
 
             if (context.getWiki().hasBacklinks(context)) {
@@ -700,6 +705,7 @@ else if (prop instanceof NumberClass) {
 
             if (bTransaction) {
                 endTransaction(context, true);
+                setStored(savedElements);
             }
 
             doc.setNew(false);
@@ -719,9 +725,13 @@ else if (prop instanceof NumberClass) {
             } catch (Exception e) {
             }
 
-            // End monitoring timer
-            if (monitor != null) {
-                monitor.endTimer("hibernate");
+            span.end();
+
+            if (sqlStats.getPreparedSQLCounter() > preparedSQL) {
+                LOGGER.debug("Saving document [{}] prepared [{}] statements and added [{}] of them to [{}] batches",
+                    new Object[] {doc.getDocumentReference(), sqlStats.getPreparedSQLCounter() - preparedSQL,
+                    sqlStats.getAddToBatchCounter() - addedToBatch,
+                    sqlStats.getExecuteBatchCounter() - executedBatches});
             }
         }
     }
@@ -737,12 +747,8 @@ public XWikiDocument loadXWikiDoc(XWikiDocument doc, XWikiContext context) throw
     {
         // To change body of implemented methods use Options | File Templates.
         boolean bTransaction = true;
-        MonitorPlugin monitor = Util.getMonitorPlugin(context);
+        Span span = getInstrumentation().startSpan(Phase.STORE_LOAD, doc.getDocumentReference());
         try {
-            // Start monitoring timer
-            if (monitor != null) {
-                monitor.startTimer("hibernate");
-            }
             doc.setStore(this);
             checkHibernate(context);
 
@@ -882,10 +888,7 @@ public XWikiDocument loadXWikiDoc(XWikiDocument doc, XWikiContext context) throw
             } catch (Exception e) {
             }
 
-            // End monitoring timer
-            if (monitor != null) {
-                monitor.endTimer("hibernate");
-            }
+            span.end();
         }
 
         LOGGER.debug("Loaded XWikiDocument: " + doc.getDocumentReference());
@@ -897,12 +900,8 @@ public XWikiDocument loadXWikiDoc(XWikiDocument doc, XWikiContext context) throw
     public void deleteXWikiDoc(XWikiDocument doc, XWikiContext context) throws XWikiException
     {
         boolean bTransaction = true;
-        MonitorPlugin monitor = Util.getMonitorPlugin(context);
+        Span span = getInstrumentation().startSpan(Phase.STORE_DELETE, doc.getDocumentReference());
         try {
-            // Start monitoring timer
-            if (monitor != null) {
-                monitor.startTimer("hibernate");
-            }
             checkHibernate(context);
             SessionFactory sfactory = injectCustomMappingsInSessionFactory(doc, context);
             bTransaction = bTransaction && beginTransaction(sfactory, context);
@@ -966,11 +965,20 @@ public void deleteXWikiDoc(XWikiDocument doc, XWikiContext context) throws XWiki
             } catch (Exception e) {
             }
 
-            // End monitoring timer
-            if (monitor != null) {
-                monitor.endTimer("hibernate");
-            }
+            span.end();
+        }
+    }
+
+    /**
+     * @return the component measuring the time spent loading, saving and searching
+     */
+    private Instrumentation getInstrumentation()
+    {
+        if (this.instrumentation == null) {
+            this.instrumentation = Utils.getComponent(Instrumentation.class);
         }
+
+        return this.instrumentation;
     }
 
     private void checkObjectClassIsLocal(BaseCollection object, XWikiContext context) throws XWikiException
@@ -997,94 +1005,16 @@ public void saveXWikiCollection(BaseCollection object, XWikiContext context, boo
             if (object == null) {
                 return;
             }
-            // We need a slightly different behavior here
-            boolean stats = (object instanceof XWikiStats);
-            if (!stats) {
-                checkObjectClassIsLocal(object, context);
-            }
-
             if (bTransaction) {
                 checkHibernate(context);
                 bTransaction = beginTransaction(context);
             }
-            Session session = getSession(context);
-
-            // Verify if the property already exists
-            Query query;
-            if (stats) {
-                query = session.createQuery("select obj.id from " + object.getClass().getName()
-                    + " as obj where obj.id = :id");
-            } else {
-                query = session.createQuery("select obj.id from BaseObject as obj where obj.id = :id");
-            }
-            query.setLong("id", object.getId());
-            if (query.uniqueResult() == null) {
-                if (stats) {
-                    session.save(object);
-                } else {
-                    session.save("com.xpn.xwiki.objects.BaseObject", object);
-                }
-            } else {
-                if (stats) {
-                    session.update(object);
-                } else {
-                    session.update("com.xpn.xwiki.objects.BaseObject", object);
-                }
-            }
-            /*
-             * if (stats) session.saveOrUpdate(object); else
-             * session.saveOrUpdate((String)"com.xpn.xwiki.objects.BaseObject", (Object)object);
-             */
-            BaseClass bclass = object.getXClass(context);
-            List<String> handledProps = new ArrayList<String>();
-            if ((bclass != null) && (bclass.hasCustomMapping()) && context.getWiki().hasCustomMappings()) {
-                // save object using the custom mapping
-                Map<String, Object> objmap = object.getCustomMappingMap();
-                handledProps = bclass.getCustomMappingPropertyList(context);
-                Session dynamicSession = session.getSession(EntityMode.MAP);
-                query = session.createQuery("select obj.id from " + bclass.getName() + " as obj where obj.id = :id");
-                query.setLong("id", object.getId());
-                if (query.uniqueResult() == null) {
-                    dynamicSession.save(bclass.getName(), objmap);
-                } else {
-                    dynamicSession.update(bclass.getName(), objmap);
-                }
-
-                // dynamicSession.saveOrUpdate((String) bclass.getName(), objmap);
-            }
-
-            if (object.getXClassReference() != null) {
-                // Remove all existing properties
-                if (object.getFieldsToRemove().size() > 0) {
-                    for (int i = 0; i < object.getFieldsToRemove().size(); i++) {
-                        BaseProperty prop = (BaseProperty) object.getFieldsToRemove().get(i);
-                        if (!handledProps.contains(prop.getName())) {
-                            session.delete(prop);
-                        }
-                    }
-                    object.setFieldsToRemove(new ArrayList<BaseProperty>());
-                }
-
-                Iterator<String> it = object.getPropertyList().iterator();
-                while (it.hasNext()) {
-                    String key = it.next();
-                    BaseProperty prop = (BaseProperty) object.getField(key);
-                    if (!prop.getName().equals(key)) {
-                        Object[] args = {key, object.getName()};
-                        throw new XWikiException(XWikiException.MODULE_XWIKI_CLASSES,
-                            XWikiException.ERROR_XWIKI_CLASSES_FIELD_INVALID,
-                            "Field {0} in object {1} has an invalid name", null, args);
-                    }
 
-                    String pname = prop.getName();
-                    if (pname != null && !pname.trim().equals("") && !handledProps.contains(pname)) {
-                        saveXWikiPropertyInternal(prop, context, false);
-                    }
-                }
-            }
+            List<BaseElement> savedElements = saveXWikiCollections(Collections.singletonList(object), context);
 
             if (bTransaction) {
                 endTransaction(context, true);
+                setStored(savedElements);
             }
         } catch (XWikiException xe) {
             throw xe;
@@ -1239,6 +1169,10 @@ private void loadXWikiCollectionInternal(BaseCollection object1, XWikiDocument d
                 }
             }
 
+            if (object instanceof BaseObject) {
+                ((BaseObject) object).setStored(true);
+            }
+
             if (bTransaction) {
                 endTransaction(context, false, false);
             }
@@ -1325,6 +1259,10 @@ public void deleteXWikiCollection(BaseCollection object, XWikiContext context, b
                 session.delete(object);
             }
 
+            if (object instanceof BaseObject) {
+                ((BaseObject) object).setStored(false);
+            }
+
             if (bTransaction) {
                 endTransaction(context, true);
             }
@@ -1399,56 +1337,263 @@ private void loadXWikiProperty(PropertyInterface property, XWikiContext context,
         }
     }
 
-    private void saveXWikiPropertyInternal(final PropertyInterface property,
-                                           final XWikiContext context,
-                                           final boolean runInOwnTransaction) throws XWikiException
+    /**
+     * Save objects in the current session. Only the object rows and the properties which don't match the database are
+     * written: the existence of the rows is checked with one query for all the objects instead of one query per row,
+     * and the writes are grouped by table so that consecutive identical statements can be sent as JDBC batches when
+     * {@code jdbc.batch_size} is set in the Hibernate configuration.
+     * <p>
+     * The saved objects and properties are not marked as stored since the transaction may still be rolled back, see
+     * {@link #setStored(List)}.
+     * 
+     * @param objects the objects to save
+     * @param context the XWiki context
+     * @return the objects and properties which have been written
+     * @throws XWikiException if an object can't be saved
+     */
+    private List<BaseElement> saveXWikiCollections(Collection< ? extends BaseCollection> objects,
+        XWikiContext context) throws XWikiException
     {
-        // Clone runInOwnTransaction so the value passed is not altered.
-        boolean bTransaction = runInOwnTransaction;
-        try {
-            if (bTransaction) {
-                this.checkHibernate(context);
-                bTransaction = this.beginTransaction(context);
-            }
+        Session session = getSession(context);
 
-            final Session session = this.getSession(context);
+        // Find the objects which have been modified since they have been loaded or saved
+        List<BaseCollection> modifiedObjects = new ArrayList<BaseCollection>(objects.size());
+        Map<String, Set<Long>> objectsToCheck = new HashMap<String, Set<Long>>();
+        for (BaseCollection object : objects) {
+            // We need a slightly different behavior for statistics
+            if (!(object instanceof XWikiStats)) {
+                checkObjectClassIsLocal(object, context);
+            }
+            if (isModified(object)) {
+                modifiedObjects.add(object);
+                if (!isStored(object)) {
+                    String entityName = getEntityName(object);
+                    Set<Long> ids = objectsToCheck.get(entityName);
+                    if (ids == null) {
+                        ids = new HashSet<Long>();
+                        objectsToCheck.put(entityName, ids);
+                    }
+                    ids.add(object.getId());
+                }
+            }
+        }
 
-            final Query query =
-                session
-                    .createQuery("select prop.name from BaseProperty as prop where prop.id.id = :id and prop.id.name= :name");
-            query.setLong("id", property.getId());
-            query.setString("name", property.getName());
+        // Verify which objects already exist
+        Set<Long> existingObjects = new HashSet<Long>();
+        for (Map.Entry<String, Set<Long>> entry : objectsToCheck.entrySet()) {
+            for (Object id : listByIds("select obj.id from " + entry.getKey() + " as obj where obj.id in (:ids)",
+                entry.getValue(), session)) {
+                existingObjects.add((Long) id);
+            }
+        }
 
-            if (query.uniqueResult() == null) {
-                session.save(property);
+        // Write the object rows, inserts first and then updates, so that identical statements follow each other
+        List<BaseCollection> updatedObjects = new ArrayList<BaseCollection>();
+        for (BaseCollection object : modifiedObjects) {
+            if (isStored(object) || existingObjects.contains(object.getId())) {
+                if (!isStored(object) || ((BaseObject) object).isDirty()) {
+                    updatedObjects.add(object);
+                }
             } else {
-                session.update(property);
+                session.save(getEntityName(object), object);
             }
+        }
+        for (BaseCollection object : updatedObjects) {
+            session.update(getEntityName(object), object);
+        }
 
-            ((BaseProperty) property).setValueDirty(false);
+        // Collect the properties to write
+        List<BaseProperty> propertiesToSave = new ArrayList<BaseProperty>();
+        Set<Long> propertiesToCheck = new HashSet<Long>();
+        for (BaseCollection object : modifiedObjects) {
+            BaseClass bclass = object.getXClass(context);
+            List<String> handledProps = new ArrayList<String>();
+            if ((bclass != null) && (bclass.hasCustomMapping()) && context.getWiki().hasCustomMappings()) {
+                // save object using the custom mapping
+                Map<String, Object> objmap = object.getCustomMappingMap();
+                handledProps = bclass.getCustomMappingPropertyList(context);
+                Session dynamicSession = session.getSession(EntityMode.MAP);
+                Query query =
+                    session.createQuery("select obj.id from " + bclass.getName() + " as obj where obj.id = :id");
+                query.setLong("id", object.getId());
+                if (query.uniqueResult() == null) {
+                    dynamicSession.save(bclass.getName(), objmap);
+                } else {
+                    dynamicSession.update(bclass.getName(), objmap);
+                }
+            }
 
-            if (bTransaction) {
-                endTransaction(context, true);
+            if (object.getXClassReference() != null) {
+                // Remove all existing properties
+                Set<String> removedProps = new HashSet<String>();
+                if (object.getFieldsToRemove().size() > 0) {
+                    for (int i = 0; i < object.getFieldsToRemove().size(); i++) {
+                        BaseProperty prop = (BaseProperty) object.getFieldsToRemove().get(i);
+                        if (!handledProps.contains(prop.getName())) {
+                            session.delete(prop);
+                            removedProps.add(prop.getName());
+                        }
+                    }
+                    object.setFieldsToRemove(new ArrayList<BaseProperty>());
+                }
+
+                Iterator<String> it = object.getPropertyList().iterator();
+                while (it.hasNext()) {
+                    String key = it.next();
+                    BaseProperty prop = (BaseProperty) object.getField(key);
+                    if (!prop.getName().equals(key)) {
+                        Object[] args = {key, object.getName()};
+                        throw new XWikiException(XWikiException.MODULE_XWIKI_CLASSES,
+                            XWikiException.ERROR_XWIKI_CLASSES_FIELD_INVALID,
+                            "Field {0} in object {1} has an invalid name", null, args);
+                    }
+
+                    String pname = prop.getName();
+                    if (pname != null && !pname.trim().equals("") && !handledProps.contains(pname)
+                        && (!isStored(object) || prop.isValueDirty() || prop.getObject() != object
+                        || removedProps.contains(pname))) {
+                        propertiesToSave.add(prop);
+                        propertiesToCheck.add(prop.getId());
+                    }
+                }
             }
-        } catch (Exception e) {
-            // Something went wrong, collect some information.
-            final BaseCollection obj = property.getObject();
-            final Object[] args = {(obj != null) ? obj.getName() : "unknown", property.getName()};
+        }
 
-            // Try to roll back the transaction if this is in it's own transaction.
-            try {
-                if (bTransaction) {
-                    this.endTransaction(context, false);
+        // Verify which properties already exist
+        Set<String> existingProperties = new HashSet<String>();
+        for (Object result : listByIds(
+            "select prop.id.id, prop.name from BaseProperty as prop where prop.id.id in (:ids)", propertiesToCheck,
+            session)) {
+            Object[] row = (Object[]) result;
+            existingProperties.add(row[0] + ":" + row[1]);
+        }
+
+        // Write the properties grouped by type, since each type is stored in its own table
+        Collections.sort(propertiesToSave, new Comparator<BaseProperty>()
+        {
+            @Override
+            public int compare(BaseProperty property1, BaseProperty property2)
+            {
+                return property1.getClassType().compareTo(property2.getClassType());
+            }
+        });
+        List<BaseProperty> updatedProperties = new ArrayList<BaseProperty>();
+        for (BaseProperty prop : propertiesToSave) {
+            if (existingProperties.contains(prop.getId() + ":" + prop.getName())) {
+                updatedProperties.add(prop);
+            } else {
+                try {
+                    session.save(prop);
+                } catch (Exception e) {
+                    throw newSavePropertyException(prop, e);
                 }
-            } catch (Exception ee) {
-                // Not a lot we can do here if there was an exception committing and an exception rolling back.
             }
+        }
+        for (BaseProperty prop : updatedProperties) {
+            try {
+                session.update(prop);
+            } catch (Exception e) {
+                throw newSavePropertyException(prop, e);
+            }
+        }
 
-            // Throw the exception.
-            throw new XWikiException(XWikiException.MODULE_XWIKI_STORE,
-                XWikiException.ERROR_XWIKI_STORE_HIBERNATE_LOADING_OBJECT,
-                "Exception while saving property {1} of object {0}", e, args);
+        List<BaseElement> savedElements = new ArrayList<BaseElement>(modifiedObjects.size() + propertiesToSave.size());
+        savedElements.addAll(modifiedObjects);
+        savedElements.addAll(propertiesToSave);
+
+        return savedElements;
+    }
+
+    /**
+     * Mark objects and properties as matching the database, once the transaction in which they have been saved has
+     * been committed. Until then a retried save has to write them again.
+     * 
+     * @param savedElements the objects and properties which have been written
+     */
+    private void setStored(List<BaseElement> savedElements)
+    {
+        for (BaseElement element : savedElements) {
+            if (element instanceof BaseObject) {
+                ((BaseObject) element).setStored(true);
+            } else if (element instanceof BaseProperty) {
+                ((BaseProperty) element).setValueDirty(false);
+            }
+        }
+    }
+
+    /**
+     * @param property the property which could not be saved
+     * @param e the cause
+     * @return the exception to throw
+     */
+    private XWikiException newSavePropertyException(BaseProperty property, Exception e)
+    {
+        BaseCollection obj = property.getObject();
+        Object[] args = {(obj != null) ? obj.getName() : "unknown", property.getName()};
+
+        return new XWikiException(XWikiException.MODULE_XWIKI_STORE,
+            XWikiException.ERROR_XWIKI_STORE_HIBERNATE_LOADING_OBJECT,
+            "Exception while saving property {1} of object {0}", e, args);
+    }
+
+    /**
+     * @param object an object
+     * @return {@code true} if the object or one of its properties may not match the database
+     */
+    private boolean isModified(BaseCollection object)
+    {
+        if (!isStored(object) || ((BaseObject) object).isDirty() || object.getFieldsToRemove().size() > 0) {
+            return true;
+        }
+
+        for (Object field : object.getFieldList()) {
+            BaseProperty prop = (BaseProperty) field;
+            if (prop.isValueDirty() || prop.getObject() != object) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * @param object an object
+     * @return {@code true} if the database is known to hold a row for the object under its current identifier
+     */
+    private boolean isStored(BaseCollection object)
+    {
+        return object instanceof BaseObject && ((BaseObject) object).isStored();
+    }
+
+    /**
+     * @param object an object
+     * @return the name of the Hibernate entity used to store the object
+     */
+    private String getEntityName(BaseCollection object)
+    {
+        return (object instanceof XWikiStats) ? object.getClass().getName() : BaseObject.class.getName();
+    }
+
+    /**
+     * Run a query taking a list of identifiers, splitting the list so that each query stays below the limit of the
+     * number of elements in a {@code in} clause supported by the databases.
+     * 
+     * @param hql the query, with an {@code ids} parameter
+     * @param ids the identifiers
+     * @param session the Hibernate session
+     * @return the results of the queries
+     */
+    private List<Object> listByIds(String hql, Collection<Long> ids, Session session)
+    {
+        List<Object> results = new ArrayList<Object>();
+        List<Long> idList = new ArrayList<Long>(ids);
+        for (int i = 0; i < idList.size(); i += MAX_IDS_PER_QUERY) {
+            Query query = session.createQuery(hql);
+            query.setParameterList("ids", idList.subList(i, Math.min(i + MAX_IDS_PER_QUERY, idList.size())));
+            results.addAll(query.list());
         }
+
+        return results;
     }
 
     private void loadAttachmentList(XWikiDocument doc, XWikiContext context, boolean bTransaction)
@@ -2154,12 +2299,8 @@ public <T> List<T> search(String sql, int nb, int start, Object[][] whereParams,
             return null;
         }
 
-        MonitorPlugin monitor = Util.getMonitorPlugin(context);
+        Span span = getInstrumentation().startSpan(Phase.QUERY, sql);
         try {
-            // Start monitoring timer
-            if (monitor != null) {
-                monitor.startTimer("hibernate");
-            }
             checkHibernate(context);
             bTransaction = beginTransaction(false, context);
             Session session = getSession(context);
@@ -2202,10 +2343,7 @@ public <T> List<T> search(String sql, int nb, int start, Object[][] whereParams,
             } catch (Exception e) {
             }
 
-            // End monitoring timer
-            if (monitor != null) {
-                monitor.endTimer("hibernate");
-            }
+            span.end();
         }
     }
 
@@ -2245,12 +2383,8 @@ public List search(Query query, int nb, int start, XWikiContext context) throws
             return null;
         }
 
-        MonitorPlugin monitor = Util.getMonitorPlugin(context);
+        Span span = getInstrumentation().startSpan(Phase.QUERY, query.getQueryString());
         try {
-            // Start monitoring timer
-            if (monitor != null) {
-                monitor.startTimer("hibernate", query.getQueryString());
-            }
             checkHibernate(context);
             bTransaction = beginTransaction(false, context);
             if (start != 0) {
@@ -2283,10 +2417,7 @@ public List search(Query query, int nb, int start, XWikiContext context) throws
             } catch (Exception e) {
             }
 
-            // End monitoring timer
-            if (monitor != null) {
-                monitor.endTimer("hibernate");
-            }
+            span.end();
         }
     }
 
@@ -2345,13 +2476,8 @@ private List<Object[]> searchGenericInternal(String sql, int nb, int start, List
         XWikiContext context) throws XWikiException
     {
         boolean bTransaction = false;
-        MonitorPlugin monitor = Util.getMonitorPlugin(context);
+        Span span = getInstrumentation().startSpan(Phase.QUERY, sql);
         try {
-            // Start monitoring timer
-            if (monitor != null) {
-                monitor.startTimer("hibernate", sql);
-            }
-
             checkHibernate(context);
             bTransaction = beginTransaction(false, context);
             Session session = getSession(context);
@@ -2383,10 +2509,7 @@ private List<Object[]> searchGenericInternal(String sql, int nb, int start, List
             } catch (Exception e) {
             }
 
-            // End monitoring timer
-            if (monitor != null) {
-                monitor.endTimer("hibernate");
-            }
+            span.end();
         }
     }
 
@@ -2404,7 +2527,7 @@ public List<XWikiDocument> searchDocuments(String wheresql, boolean distinctbyla
         // Search documents
         List<Object[]> documentDatas = new ArrayList<Object[]>();
         boolean bTransaction = true;
-        MonitorPlugin monitor = Util.getMonitorPlugin(context);
+        Span span = getInstrumentation().startSpan(Phase.QUERY, wheresql);
         try {
             String sql;
             if (distinctbylanguage) {
@@ -2413,11 +2536,6 @@ public List<XWikiDocument> searchDocuments(String wheresql, boolean distinctbyla
                 sql = createSQLQuery("select distinct doc.space, doc.name", wheresql);
             }
 
-            // Start monitoring timer
-            if (monitor != null) {
-                monitor.startTimer("hibernate", sql);
-            }
-
             checkHibernate(context);
             if (bTransaction) {
                 // Inject everything until we know what's needed
@@ -2453,10 +2571,7 @@ public List<XWikiDocument> searchDocuments(String wheresql, boolean distinctbyla
             } catch (Exception e) {
             }
 
-            // End monitoring timer
-            if (monitor != null) {
-                monitor.endTimer("hibernate");
-            }
+            span.end();
         }
 
         // Resolve documents. We use two separated sessions because rights service could need to switch database to
@@ -19,6 +19,7 @@
  */
 package com.xpn.xwiki.store;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Iterator;
@@ -34,7 +35,12 @@
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.suigeneris.jrcs.rcs.Version;
+import org.xwiki.cache.CacheException;
+import org.xwiki.cache.config.CacheConfiguration;
+import org.xwiki.cache.eviction.LRUEvictionConfiguration;
 import org.xwiki.component.annotation.Component;
+import org.xwiki.component.phase.InitializationException;
+import org.xwiki.model.reference.DocumentReference;
 import org.xwiki.model.reference.EntityReferenceSerializer;
 
 import com.xpn.xwiki.XWiki;
@@ -45,6 +51,7 @@
 import com.xpn.xwiki.doc.rcs.XWikiRCSNodeContent;
 import com.xpn.xwiki.doc.rcs.XWikiRCSNodeId;
 import com.xpn.xwiki.doc.rcs.XWikiRCSNodeInfo;
+import com.xpn.xwiki.internal.cache.DocumentCache;
 
 /**
  * Realization of {@link XWikiVersioningStoreInterface} for Hibernate-based storage.
@@ -63,6 +70,16 @@ public class XWikiHibernateVersioningStore extends XWikiHibernateBaseStore imple
     @Inject
     private EntityReferenceSerializer<String> referenceSerializer;
 
+    /**
+     * The XML of the versions recently loaded, since rebuilding it requires loading and applying the patches from the
+     * nearest full version. The entries are removed when the document is modified or deleted.
+     */
+    @Inject
+    private DocumentCache<String> versionXmlCache;
+
+    /** Indicate if the version XML cache has been created, which is not the case when not created as a component. */
+    private boolean versionXmlCacheCreated;
+
     /**
      * This allows to initialize our storage engine. The hibernate config file path is taken from xwiki.cfg or directly
      * in the WEB-INF directory.
@@ -107,6 +124,25 @@ public XWikiHibernateVersioningStore()
     {
     }
 
+    @Override
+    public void initialize() throws InitializationException
+    {
+        super.initialize();
+
+        XWikiContext context = (XWikiContext) getExecution().getContext().getProperty("xwikicontext");
+        CacheConfiguration cacheConfiguration = new CacheConfiguration();
+        cacheConfiguration.setConfigurationId("core.rcsversions");
+        LRUEvictionConfiguration lru = new LRUEvictionConfiguration();
+        lru.setMaxEntries(Integer.parseInt(context.getWiki().Param("xwiki.store.rcs.cache.capacity", "100")));
+        cacheConfiguration.put(LRUEvictionConfiguration.CONFIGURATIONID, lru);
+        try {
+            this.versionXmlCache.create(cacheConfiguration);
+            this.versionXmlCacheCreated = true;
+        } catch (CacheException e) {
+            throw new InitializationException("Failed to initialize the document version cache", e);
+        }
+    }
+
     @Override
     public Version[] getXWikiDocVersions(XWikiDocument doc, XWikiContext context) throws XWikiException
     {
@@ -201,7 +237,24 @@ public XWikiDocument loadXWikiDoc(XWikiDocument basedoc, String sversion, XWikiC
         XWikiDocumentArchive archive = getXWikiDocumentArchive(basedoc, context);
         Version version = new Version(sversion);
 
-        XWikiDocument doc = archive.loadDocument(version, context);
+        XWikiDocument doc = null;
+        XWikiRCSNodeInfo nodeInfo = archive.getNode(version);
+        if (nodeInfo != null) {
+            if (this.versionXmlCacheCreated) {
+                // The date of the version identifies it in case the history has been reset.
+                DocumentReference reference = basedoc.getDocumentReference();
+                String language = basedoc.getLanguage();
+                Long date = nodeInfo.getDate() != null ? nodeInfo.getDate().getTime() : null;
+                String xml = this.versionXmlCache.get(reference, language, sversion, date);
+                if (xml == null) {
+                    xml = archive.getVersionXml(version, context);
+                    this.versionXmlCache.set(xml, reference, language, sversion, date);
+                }
+                doc = archive.loadDocument(version, xml);
+            } else {
+                doc = archive.loadDocument(version, context);
+            }
+        }
         if (doc == null) {
             Object[] args = {basedoc.getFullName(), version.toString()};
             throw new XWikiException(XWikiException.MODULE_XWIKI_STORE,
@@ -244,10 +297,13 @@ public void updateXWikiDocArchive(XWikiDocument doc, boolean bTransaction, XWiki
     {
         try {
             XWikiDocumentArchive archiveDoc = getXWikiDocumentArchive(doc, context);
-            archiveDoc.updateArchive(doc, doc.getAuthor(), doc.getDate(), doc.getComment(), doc.getRCSVersion(),
-                context);
-            doc.setRCSVersion(archiveDoc.getLatestVersion());
-            saveXWikiDocArchive(archiveDoc, bTransaction, context);
+            // The archive may be compacted at the same time, see #compactXWikiDocArchive().
+            synchronized (archiveDoc) {
+                archiveDoc.updateArchive(doc, doc.getAuthor(), doc.getDate(), doc.getComment(), doc.getRCSVersion(),
+                    context);
+                doc.setRCSVersion(archiveDoc.getLatestVersion());
+                saveXWikiDocArchive(archiveDoc, bTransaction, context);
+            }
         } catch (Exception e) {
             Object[] args = {doc.getFullName()};
             throw new XWikiException(XWikiException.MODULE_XWIKI_STORE,
@@ -300,6 +356,74 @@ public XWikiRCSNodeContent doInHibernate(Session session) throws HibernateExcept
         });
     }
 
+    @Override
+    public List<XWikiRCSNodeContent> loadRCSNodeContents(final long docId, Version version1, Version version2,
+        boolean bTransaction, XWikiContext context) throws XWikiException
+    {
+        final Version from = version1.compareVersions(version2) <= 0 ? version1 : version2;
+        final Version to = from == version1 ? version2 : version1;
+        return executeRead(context, bTransaction, new HibernateCallback<List<XWikiRCSNodeContent>>()
+        {
+            @SuppressWarnings("unchecked")
+            @Override
+            public List<XWikiRCSNodeContent> doInHibernate(Session session) throws HibernateException
+            {
+                return session.createQuery("from " + XWikiRCSNodeContent.class.getName() + " as content"
+                    + " where content.id.docId = :docId"
+                    + " and (content.id.version1 > :from1"
+                    + " or content.id.version1 = :from1 and content.id.version2 >= :from2)"
+                    + " and (content.id.version1 < :to1"
+                    + " or content.id.version1 = :to1 and content.id.version2 <= :to2)")
+                    .setLong("docId", docId).setInteger("from1", from.at(0)).setInteger("from2", from.at(1))
+                    .setInteger("to1", to.at(0)).setInteger("to2", to.at(1)).list();
+            }
+        });
+    }
+
+    /**
+     * Rewrite the history of a document so that it follows the configured storage policy, see
+     * {@link XWikiDocumentArchive#compact(int, XWikiContext)}. The history is rewritten in place so that the
+     * document cache stays consistent.
+     * 
+     * @param doc the document whose history to compact
+     * @param context the XWiki context
+     * @return true if the history has been modified
+     * @throws XWikiException if the history can't be loaded or saved
+     * @since 4.4M1
+     */
+    public boolean compactXWikiDocArchive(XWikiDocument doc, XWikiContext context) throws XWikiException
+    {
+        XWikiDocumentArchive archive = getXWikiDocumentArchive(doc, context);
+        synchronized (archive) {
+            if (archive.compact(XWikiDocumentArchive.getNodesPerFull(context), context)) {
+                saveXWikiDocArchive(archive, true, context);
+                return true;
+            }
+            return false;
+        }
+    }
+
+    /**
+     * @param context the XWiki context, targeting the wiki whose documents to list
+     * @return the full names and languages of the documents of the current wiki which have a history
+     * @throws XWikiException if the documents can't be listed
+     * @since 4.4M1
+     */
+    public List<Object[]> getArchivedDocuments(XWikiContext context) throws XWikiException
+    {
+        return executeRead(context, true, new HibernateCallback<List<Object[]>>()
+        {
+            @SuppressWarnings("unchecked")
+            @Override
+            public List<Object[]> doInHibernate(Session session) throws HibernateException
+            {
+                return new ArrayList<Object[]>(session.createQuery("select doc.fullName, doc.language from "
+                    + XWikiDocument.class.getName() + " as doc where doc.id in (select distinct node.id.docId from "
+                    + XWikiRCSNodeInfo.class.getName() + " as node)").list());
+            }
+        });
+    }
+
     @Override
     public void deleteArchive(final XWikiDocument doc, boolean bTransaction, XWikiContext context)
         throws XWikiException
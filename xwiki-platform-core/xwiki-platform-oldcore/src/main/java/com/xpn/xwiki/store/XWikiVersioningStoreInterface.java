@@ -19,6 +19,8 @@
  */
 package com.xpn.xwiki.store;
 
+import java.util.List;
+
 import org.suigeneris.jrcs.rcs.Version;
 import org.xwiki.component.annotation.Role;
 
@@ -69,4 +71,20 @@ void saveXWikiDocArchive(XWikiDocumentArchive archivedoc, boolean bTransaction,
      */
     XWikiRCSNodeContent loadRCSNodeContent(XWikiRCSNodeId id, boolean bTransaction, XWikiContext context)
         throws XWikiException;
+
+    /**
+     * Load at once the {@link XWikiRCSNodeContent} of all the versions of a document history between two versions.
+     * Used in {@link XWikiDocumentArchive#getVersionXml(Version, XWikiContext)} to avoid loading the patches to apply
+     * one by one.
+     * 
+     * @param docId = {@link XWikiDocument#getId()}
+     * @param version1 the first bound of the range of versions to load, inclusive
+     * @param version2 the second bound of the range of versions to load, inclusive
+     * @param bTransaction whether a new transaction should be started to load the contents
+     * @param context the XWiki context
+     * @return loaded rcs node contents, in no particular order
+     * @since 4.4M1
+     */
+    List<XWikiRCSNodeContent> loadRCSNodeContents(long docId, Version version1, Version version2,
+        boolean bTransaction, XWikiContext context) throws XWikiException;
 }
@@ -19,6 +19,7 @@
  */
 package com.xpn.xwiki.store.hibernate.query;
 
+import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map.Entry;
@@ -33,6 +34,9 @@
 import org.xwiki.component.phase.Initializable;
 import org.xwiki.component.phase.InitializationException;
 import org.xwiki.context.Execution;
+import org.xwiki.instrumentation.Instrumentation;
+import org.xwiki.instrumentation.Phase;
+import org.xwiki.instrumentation.Span;
 import org.xwiki.query.Query;
 import org.xwiki.query.QueryException;
 import org.xwiki.query.QueryExecutor;
@@ -79,6 +83,12 @@ public class HqlQueryExecutor implements QueryExecutor, Initializable
     @Inject
     private DocumentAccessBridge documentAccessBridge;
 
+    /**
+     * Used to measure the time spent executing the queries.
+     */
+    @Inject
+    private Instrumentation instrumentation;
+
     @Override
     public void initialize() throws InitializationException
     {
@@ -89,6 +99,7 @@ public void initialize() throws InitializationException
     public <T> List<T> execute(final Query query) throws QueryException
     {
         String oldDatabase = getContext().getDatabase();
+        Span span = this.instrumentation.startSpan(Phase.QUERY, query.getStatement());
         try {
             if (query.getWiki() != null) {
                 getContext().setDatabase(query.getWiki());
@@ -115,6 +126,7 @@ public List<T> doInHibernate(Session session)
             throw new QueryException("Exception while execute query", query, e);
         } finally {
             getContext().setDatabase(oldDatabase);
+            span.end();
         }
     }
 
@@ -191,7 +203,12 @@ protected void populateParameters(org.hibernate.Query hquery, Query query)
             hquery.setMaxResults(query.getLimit());
         }
         for (Entry<String, Object> e : query.getNamedParameters().entrySet()) {
-            hquery.setParameter(e.getKey(), e.getValue());
+            if (e.getValue() instanceof Collection) {
+                // Collections are bound to the "in (:name)" expressions of the statement.
+                hquery.setParameterList(e.getKey(), (Collection< ? >) e.getValue());
+            } else {
+                hquery.setParameter(e.getKey(), e.getValue());
+            }
         }
         if (query.getPositionalParameters().size() > 0) {
             int start = Collections.min(query.getPositionalParameters().keySet());
@@ -31,6 +31,7 @@
 import java.util.Set;
 import java.util.SortedMap;
 import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.inject.Inject;
 
@@ -170,6 +171,13 @@ public boolean tryLock()
      */
     private final Map<String, XWikiDBVersion> versionCache = new HashMap<String, XWikiDBVersion>();
 
+    /**
+     * The wiki databases which have already been checked and are up to date, so that they are checked only once and
+     * not each time a connection is switched to them.
+     */
+    private final Set<String> checkedDatabases =
+        Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
     /**
      * The final database version when the migration process finishes.
      * This is use to compute the DBVersion of an empty store and quickly check the outdated status of existing DB
@@ -197,6 +205,7 @@ public List<Event> getEvents()
         public void onEvent(Event event, Object source, Object data)
         {
             versionCache.remove(((WikiDeletedEvent) event).getWikiId());
+            checkedDatabases.remove(((WikiDeletedEvent) event).getWikiId());
         }
     }
 
@@ -378,6 +387,10 @@ protected final synchronized void setDBVersion(XWikiDBVersion version) throws Da
     @Override
     public void checkDatabase() throws MigrationRequiredException, DataMigrationException
     {
+        String database = getXWikiContext().getDatabase();
+        if (database != null && this.checkedDatabases.contains(database)) {
+            return;
+        }
         if (!lock.tryLock()) {
             return;
         }
@@ -441,6 +454,10 @@ public void checkDatabase() throws MigrationRequiredException, DataMigrationExce
                 logger.error(message);
                 throw new MigrationRequiredException(message);
             }
+
+            if (database != null) {
+                this.checkedDatabases.add(database);
+            }
         } finally {
             lock.unlock();
         }
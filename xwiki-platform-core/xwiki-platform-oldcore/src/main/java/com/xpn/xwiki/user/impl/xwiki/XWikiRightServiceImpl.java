@@ -34,6 +34,9 @@
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.xwiki.instrumentation.Instrumentation;
+import org.xwiki.instrumentation.Phase;
+import org.xwiki.instrumentation.Span;
 import org.xwiki.model.EntityType;
 import org.xwiki.model.reference.DocumentReference;
 import org.xwiki.model.reference.DocumentReferenceResolver;
@@ -80,6 +83,11 @@ public class XWikiRightServiceImpl implements XWikiRightService
     private EntityReferenceSerializer<String> entityReferenceSerializer = Utils
         .getComponent(EntityReferenceSerializer.TYPE_STRING);
 
+    /**
+     * Used to measure the time spent checking rights.
+     */
+    private Instrumentation instrumentation = Utils.getComponent(Instrumentation.class);
+
     protected void logAllow(String username, String page, String action, String info)
     {
         LOGGER.debug("Access has been granted for ([{}], [{}], [{}]): [{}]", username, page, action, info);
@@ -301,10 +309,13 @@ private boolean needsAuth(String right, XWikiContext context)
     public boolean hasAccessLevel(String right, String username, String docname, XWikiContext context)
         throws XWikiException
     {
+        Span span = this.instrumentation.startSpan(Phase.SECURITY, docname);
         try {
             return hasAccessLevel(right, username, docname, true, context);
         } catch (XWikiException e) {
             return false;
+        } finally {
+            span.end();
         }
     }
 
@@ -606,6 +606,12 @@ public static String getHTMLExceptionMessage(XWikiException xe, XWikiContext con
             + "\" style=\"display: none;\"><pre class=\"xwikierror\">\n" + text + "</pre></div>";
     }
 
+    /**
+     * @param context the XWiki context
+     * @return the monitor plugin, {@code null} if it is not available
+     * @deprecated since 4.4M1 use {@link org.xwiki.instrumentation.Instrumentation} instead
+     */
+    @Deprecated
     public static MonitorPlugin getMonitorPlugin(XWikiContext context)
     {
         try {
@@ -68,6 +68,14 @@ public class SkinAction extends XWikiAction
     /** The encoding to use when reading text resources from the filesystem and when sending css/javascript responses. */
     private static final String ENCODING = "UTF-8";
 
+    /**
+     * The request parameter holding the version of the file content, added by {@link XWiki#getSkinFile}.
+     */
+    private static final String CACHE_VERSION_PARAMETER = "cache-version";
+
+    /** How long the browsers can keep the files requested with their version, in seconds (one year). */
+    private static final long VERSIONED_CACHE_DURATION = 365 * 24 * 3600L;
+
     @Override
     public String render(XWikiContext context) throws XWikiException
     {
@@ -241,6 +249,7 @@ private boolean renderFileFromFilesystem(String path, XWikiContext context) thro
                 String filename = path.substring(path.lastIndexOf("/") + 1, path.length());
                 String mimetype = context.getEngineContext().getMimeType(filename.toLowerCase());
                 Date modified = null;
+                boolean dynamic = false;
                 if (isCssMimeType(mimetype) || isJavascriptMimeType(mimetype)) {
                     // Always force UTF-8, as this is the assumed encoding for text files.
                     String rawContent = new String(data, ENCODING);
@@ -251,12 +260,16 @@ private boolean renderFileFromFilesystem(String path, XWikiContext context) thro
                     } else {
                         modified = new Date();
                         data = newdata;
+                        dynamic = true;
                     }
                     response.setCharacterEncoding(ENCODING);
                 } else {
                     modified = context.getWiki().getResourceLastModificationDate(path);
                 }
                 setupHeaders(response, mimetype, modified, data.length);
+                if (!dynamic) {
+                    setupVersionedHeaders(context);
+                }
                 try {
                     response.getOutputStream().write(data);
                 } catch (IOException e) {
@@ -339,6 +352,7 @@ public boolean renderFileFromAttachment(String filename, XWikiDocument doc, XWik
                 response.getOutputStream().write(data);
             } else {
                 setupHeaders(response, mimetype, attachment.getDate(), attachment.getContentSize(context));
+                setupVersionedHeaders(context);
                 IOUtils.copy(attachment.getContentInputStream(context), response.getOutputStream());
             }
             return true;
@@ -395,4 +409,20 @@ protected void setupHeaders(XWikiResponse response, String mimetype, Date lastCh
         response.setDateHeader("Expires", (new Date()).getTime() + 30 * 24 * 3600 * 1000L);
         response.setContentLength(length);
     }
+
+    /**
+     * Lets the browsers keep a static file for a long time when it is requested with the version of its content,
+     * since its URL changes when its content is modified. Files generated by Velocity depend on the request and are
+     * not concerned.
+     * 
+     * @param context the current request context
+     */
+    private void setupVersionedHeaders(XWikiContext context)
+    {
+        if (StringUtils.isNotEmpty(context.getRequest().getParameter(CACHE_VERSION_PARAMETER))) {
+            XWikiResponse response = context.getResponse();
+            response.setHeader("Cache-Control", "public, max-age=" + VERSIONED_CACHE_DURATION);
+            response.setDateHeader("Expires", new Date().getTime() + VERSIONED_CACHE_DURATION * 1000L);
+        }
+    }
 }
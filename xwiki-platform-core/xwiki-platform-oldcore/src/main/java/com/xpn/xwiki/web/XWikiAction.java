@@ -41,6 +41,7 @@
 import org.xwiki.container.servlet.ServletContainerInitializer;
 import org.xwiki.context.Execution;
 import org.xwiki.csrf.CSRFToken;
+import org.xwiki.instrumentation.Instrumentation;
 import org.xwiki.observation.ObservationManager;
 import org.xwiki.velocity.VelocityManager;
 
@@ -48,7 +49,6 @@
 import com.xpn.xwiki.XWikiContext;
 import com.xpn.xwiki.XWikiException;
 import com.xpn.xwiki.doc.XWikiDocument;
-import com.xpn.xwiki.monitor.api.MonitorPlugin;
 import com.xpn.xwiki.objects.BaseObject;
 import com.xpn.xwiki.plugin.fileupload.FileUploadPlugin;
 
@@ -125,10 +125,13 @@ public ActionForward execute(ActionMapping mapping, ActionForm form, HttpServlet
 
     public ActionForward execute(XWikiContext context) throws Exception
     {
-        MonitorPlugin monitor = null;
         FileUploadPlugin fileupload = null;
         String docName = "";
 
+        // Measure the time spent in the different phases of the request
+        Instrumentation instrumentation = Utils.getComponent(Instrumentation.class);
+        instrumentation.startRequest(context.getAction() + ' ' + context.getURL());
+
         try {
             // Verify that the requested wiki exists
             XWiki xwiki;
@@ -166,10 +169,6 @@ public ActionForward execute(XWikiContext context) throws Exception
 
             // Any error before this will be treated using a redirection to an error page
 
-            if (monitor != null) {
-                monitor.startTimer("request");
-            }
-
             VelocityManager velocityManager = Utils.getComponent(VelocityManager.class);
             VelocityContext vcontext = velocityManager.getVelocityContext();
 
@@ -180,28 +179,10 @@ public ActionForward execute(XWikiContext context) throws Exception
                     return null;
                 }
 
-                // Start monitoring timer
-                monitor = (MonitorPlugin) xwiki.getPlugin("monitor", context);
-                if (monitor != null) {
-                    monitor.startRequest("", context.getAction(), context.getURL());
-                    monitor.startTimer("multipart");
-                }
-
                 // Parses multipart so that params in multipart are available for all actions
                 fileupload = Utils.handleMultipart(context.getRequest().getHttpServletRequest(), context);
-                if (monitor != null) {
-                    monitor.endTimer("multipart");
-                }
-
-                if (monitor != null) {
-                    monitor.setWikiPage(context.getDoc().getFullName());
-                }
 
                 // Let's handle the notification and make sure it never fails
-                if (monitor != null) {
-                    monitor.startTimer("prenotify");
-                }
-
                 // For the moment we're sending the XWiki context as the data, but this will be
                 // changed in the future, when the whole platform will be written using components
                 // and there won't be a need for the context.
@@ -220,10 +201,6 @@ public ActionForward execute(XWikiContext context) throws Exception
                         + " using action [" + context.getAction() + "]", ex);
                 }
 
-                if (monitor != null) {
-                    monitor.endTimer("prenotify");
-                }
-
                 String renderResult = null;
                 XWikiDocument doc = context.getDoc();
                 docName = doc.getFullName();
@@ -311,11 +288,6 @@ public ActionForward execute(XWikiContext context) throws Exception
                     // If we can't flush, then there's nothing more we can send to the client.
                 }
 
-                if (monitor != null) {
-                    monitor.endTimer("request");
-                    monitor.startTimer("notify");
-                }
-
                 if (eventSent) {
                     // For the moment we're sending the XWiki context as the data, but this will be
                     // changed in the future, when the whole platform will be written using components
@@ -329,10 +301,6 @@ public ActionForward execute(XWikiContext context) throws Exception
                     }
                 }
 
-                if (monitor != null) {
-                    monitor.endTimer("notify");
-                }
-
                 // Make sure we cleanup database connections
                 // There could be cases where we have some
                 if ((context != null) && (xwiki != null)) {
@@ -341,9 +309,7 @@ public ActionForward execute(XWikiContext context) throws Exception
             }
         } finally {
             // End request
-            if (monitor != null) {
-                monitor.endRequest();
-            }
+            instrumentation.endRequest();
 
             if (context != null) {
 
@@ -19,6 +19,8 @@
  */
 package com.xpn.xwiki.api;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import junit.framework.Assert;
@@ -110,6 +112,51 @@ public void testRemoveObjectDoesntCauseDataLoss() throws XWikiException
         }
     }
 
+    public void testReadingObjectsDoesntCloneDocument() throws XWikiException
+    {
+        Mock mockXWiki = mock(XWiki.class);
+        BaseClass c = new BaseClass();
+        c.setDocumentReference(new DocumentReference("xwiki", "XWiki", "XWikiComments"));
+        c.addTextAreaField("comment", "comment", 60, 20);
+        mockXWiki.stubs().method("getXClass").will(returnValue(c));
+        getContext().setWiki((XWiki) mockXWiki.proxy());
+
+        XWikiDocument doc = new XWikiDocument(new DocumentReference("Wiki", "Space", "Page"));
+        doc.newObject("XWiki.XWikiComments", getContext());
+        doc.newObject("XWiki.XWikiComments", getContext());
+
+        Document adoc = new Document(doc, getContext());
+        List<Object> objects = adoc.getObjects("XWiki.XWikiComments");
+        Assert.assertSame(doc.getObject("XWiki.XWikiComments", 0), objects.get(0).getBaseObject());
+        Assert.assertNull(objects.get(0).getProperty("comment"));
+        Assert.assertSame(doc, adoc.doc);
+
+        // The first modification clones the document and the objects already read are redirected to the clone.
+        objects.get(1).set("comment", "Comment");
+        Assert.assertNotSame(doc, adoc.doc);
+        Assert.assertNull(doc.getObject("XWiki.XWikiComments", 1).get("comment"));
+        Assert.assertSame(adoc.doc.getObject("XWiki.XWikiComments", 0), objects.get(0).getBaseObject());
+        Assert.assertEquals("Comment", objects.get(1).getProperty("comment").getValue());
+    }
+
+    public void testModifyingListValueDoesntModifyDocument() throws XWikiException
+    {
+        Mock mockXWiki = mock(XWiki.class);
+        mockXWiki.stubs().method("getXClass").will(returnValue(new BaseClass()));
+        getContext().setWiki((XWiki) mockXWiki.proxy());
+
+        XWikiDocument doc = new XWikiDocument(new DocumentReference("Wiki", "Space", "Page"));
+        BaseObject obj = new BaseObject();
+        obj.setStringListValue("tags", new ArrayList<String>(Arrays.asList("a", "b")));
+        doc.addXObject(new DocumentReference("Wiki", "XWiki", "TagClass"), obj);
+
+        Document adoc = new Document(doc, getContext());
+        ((List<String>) adoc.getValue("tags")).add("c");
+        ((List<String>) adoc.getFirstObject("tags").getProperty("tags").getValue()).add("c");
+
+        Assert.assertEquals(Arrays.asList("a", "b"), ((BaseProperty) obj.get("tags")).getValue());
+    }
+
     public void testSaveAsAuthorUsesGuestIfDroppedPermissions() throws XWikiException
     {
         final XWikiDocument xdoc = new XWikiDocument("Space", "Page");
@@ -326,6 +326,31 @@ public void testVerifyDiffAndFullRevisionAlgorithm() throws Exception
         assertFalse(archive.getNode(new Version(6, 1)).isDiff());
     }
 
+    public void testCompact() throws Exception
+    {
+        XWikiDocument doc = new XWikiDocument(new DocumentReference("Test", "Test", "Test"));
+        XWikiDocumentArchive archive = new XWikiDocumentArchive(doc.getId());
+        doc.setDocumentArchive(archive);
+        String[] versionXml = new String[6];
+        for (int i = 0; i < versionXml.length; i++) {
+            addRevisionToHistory(archive, doc, "content " + (i + 1) + ".1", "XWiki.Admin", "comment");
+            versionXml[i] = archive.getVersionXml(new Version(i + 1, 1), this.context);
+        }
+        archive.getUpdatedNodeContents().clear();
+
+        // Store a full version every 2 versions instead of 5.
+        assertTrue(archive.compact(2, this.context));
+        for (int i = 0; i < versionXml.length; i++) {
+            Version version = new Version(i + 1, 1);
+            assertEquals((i + 1) % 2 != 0, archive.getNode(version).isDiff());
+            assertEquals(versionXml[i], archive.getVersionXml(version, this.context));
+        }
+        // Versions 2.1 and 4.1 are now full and 5.1 is now a diff.
+        assertEquals(3, archive.getUpdatedNodeContents().size());
+
+        assertFalse(archive.compact(2, this.context));
+    }
+
     private void addRevisionToHistory(XWikiDocumentArchive archive, XWikiDocument document, String content,
         String author, String comment) throws XWikiException
     {
@@ -71,6 +71,22 @@ public void setUp() throws Exception
         getContext().setDatabase("wiki");
     }
 
+    @Test
+    public void testGetMappingSize() throws Exception
+    {
+        MockConfigurationSource source = getXWikiPropertiesConfigurationSource();
+
+        Assert.assertEquals(1000, this.configuration.getMappingSize());
+
+        source.setProperty("core.renderingcache.size", 50);
+
+        Assert.assertEquals(500, this.configuration.getMappingSize());
+
+        source.setProperty("core.renderingcache.mappingSize", 2000);
+
+        Assert.assertEquals(2000, this.configuration.getMappingSize());
+    }
+
     @Test
     public void testIsCachedWithNoConfiguration() throws Exception
     {
@@ -26,6 +26,7 @@
 import org.jmock.Expectations;
 import org.junit.Assert;
 import org.junit.Test;
+import org.xwiki.bridge.RenderingDependencyRecorder;
 import org.xwiki.bridge.event.DocumentUpdatedEvent;
 import org.xwiki.model.reference.DocumentReference;
 import org.xwiki.observation.ObservationManager;
@@ -120,4 +121,35 @@ public void testGetSetRenderedContent() throws Exception
         Assert.assertNull(this.renderingCache.getRenderedContent(this.document.getDocumentReference(), "source",
             getContext()));
     }
+
+    @Test
+    public void testDependencies() throws Exception
+    {
+        MockConfigurationSource source = getConfigurationSource();
+
+        source.setProperty("core.renderingcache.documents",
+            Collections.singletonList(this.document.getPrefixedFullName()));
+
+        DocumentReference includedReference = new DocumentReference("wiki", "space", "included");
+
+        Assert.assertNull(this.renderingCache.getRenderedContent(this.document.getDocumentReference(), "source",
+            getContext()));
+        RenderingDependencyRecorder.record(includedReference, getContext());
+        this.renderingCache.setRenderedContent(this.document.getDocumentReference(), "source", "renderedContent",
+            getContext());
+
+        Assert.assertEquals("renderedContent",
+            this.renderingCache.getRenderedContent(this.document.getDocumentReference(), "source", getContext()));
+
+        // The source is part of the key
+        Assert.assertNull(this.renderingCache.getRenderedContent(this.document.getDocumentReference(), "source2",
+            getContext()));
+
+        ObservationManager observationManager = getComponentManager().getInstance(ObservationManager.class);
+        observationManager.notify(new DocumentUpdatedEvent(includedReference), new XWikiDocument(includedReference),
+            getContext());
+
+        Assert.assertNull(this.renderingCache.getRenderedContent(this.document.getDocumentReference(), "source",
+            getContext()));
+    }
 }
@@ -0,0 +1,137 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.xpn.xwiki.internal.skin;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.jmock.Expectations;
+import org.junit.Assert;
+import org.junit.Test;
+import org.xwiki.model.reference.DocumentReference;
+
+import com.xpn.xwiki.XWiki;
+import com.xpn.xwiki.XWikiContext;
+import com.xpn.xwiki.XWikiException;
+import com.xpn.xwiki.doc.XWikiDocument;
+import com.xpn.xwiki.internal.skin.SkinFileLocation.Kind;
+import com.xpn.xwiki.test.AbstractBridgedComponentTestCase;
+
+/**
+ * Unit tests for {@link DefaultSkinFileCache}.
+ * 
+ * @version $Id$
+ */
+public class DefaultSkinFileCacheTest extends AbstractBridgedComponentTestCase
+{
+    private static final List<String> SKINS = Arrays.asList("XWiki.MySkin", "colibri");
+
+    private XWiki mockXWiki;
+
+    private SkinFileCache cache;
+
+    @Override
+    public void setUp() throws Exception
+    {
+        super.setUp();
+
+        this.mockXWiki = getMockery().mock(XWiki.class);
+        getContext().setWiki(this.mockXWiki);
+
+        this.cache = getComponentManager().getInstance(SkinFileCache.class);
+
+        getMockery().checking(new Expectations()
+        {
+            {
+                allowing(mockXWiki).Param("xwiki.skin.developmentmode", "0");
+                will(returnValue("0"));
+                allowing(mockXWiki).getEngineContext();
+                will(returnValue(null));
+                allowing(mockXWiki).getVersion();
+                will(returnValue("4.4"));
+            }
+        });
+    }
+
+    @Test
+    public void getSkinFileFromSkinDirectoryIsCached() throws Exception
+    {
+        getMockery().checking(new Expectations()
+        {
+            {
+                // The skin documents don't exist.
+                oneOf(mockXWiki).getDocument(with(any(DocumentReference.class)), with(any(XWikiContext.class)));
+                will(returnValue(new XWikiDocument(new DocumentReference("xwiki", "XWiki", "MySkin"))));
+                oneOf(mockXWiki).getDocument(with(any(DocumentReference.class)), with(any(XWikiContext.class)));
+                will(returnValue(new XWikiDocument(new DocumentReference("xwiki", "Main", "colibri"))));
+                oneOf(mockXWiki).resourceExists("/skins/XWiki.MySkin/style.css");
+                will(returnValue(false));
+                oneOf(mockXWiki).resourceExists("/resources/style.css");
+                will(returnValue(false));
+                oneOf(mockXWiki).resourceExists("/skins/colibri/style.css");
+                will(returnValue(true));
+            }
+        });
+
+        SkinFileLocation location = this.cache.getSkinFile("style.css", SKINS, getContext());
+        Assert.assertEquals(Kind.SKIN_DIRECTORY, location.getKind());
+        Assert.assertEquals("colibri", location.getSkin());
+        Assert.assertEquals("4.4", location.getVersion());
+
+        Assert.assertSame(location, this.cache.getSkinFile("style.css", SKINS, getContext()));
+    }
+
+    @Test
+    public void getMissingSkinFileIsCached() throws Exception
+    {
+        getMockery().checking(new Expectations()
+        {
+            {
+                exactly(2).of(mockXWiki).getDocument(with(any(DocumentReference.class)),
+                    with(any(XWikiContext.class)));
+                will(returnValue(new XWikiDocument(new DocumentReference("xwiki", "XWiki", "MySkin"))));
+                exactly(4).of(mockXWiki).resourceExists(with(any(String.class)));
+                will(returnValue(false));
+            }
+        });
+
+        Assert.assertNull(this.cache.getSkinFile("missing.css", SKINS, getContext()));
+        Assert.assertNull(this.cache.getSkinFile("missing.css", SKINS, getContext()));
+    }
+
+    @Test
+    public void getSkinFileIsNotCachedWhenSkinDocumentFails() throws Exception
+    {
+        getMockery().checking(new Expectations()
+        {
+            {
+                exactly(2).of(mockXWiki).getDocument(with(any(DocumentReference.class)),
+                    with(any(XWikiContext.class)));
+                will(throwException(new XWikiException()));
+                exactly(2).of(mockXWiki).resourceExists("/skins/XWiki.MySkin/style.css");
+                will(returnValue(true));
+            }
+        });
+
+        // The skin document may provide the file once it can be loaded, so the lookup is done again.
+        Assert.assertEquals(Kind.SKIN_DIRECTORY, this.cache.getSkinFile("style.css", SKINS, getContext()).getKind());
+        Assert.assertEquals(Kind.SKIN_DIRECTORY, this.cache.getSkinFile("style.css", SKINS, getContext()).getKind());
+    }
+}
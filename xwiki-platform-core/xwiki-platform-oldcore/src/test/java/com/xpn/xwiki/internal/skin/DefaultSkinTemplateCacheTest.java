@@ -0,0 +1,184 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.xpn.xwiki.internal.skin;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.jmock.Expectations;
+import org.junit.Assert;
+import org.junit.Test;
+import org.xwiki.bridge.event.DocumentUpdatedEvent;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.model.reference.DocumentReferenceResolver;
+import org.xwiki.observation.ObservationManager;
+
+import com.xpn.xwiki.XWiki;
+import com.xpn.xwiki.XWikiContext;
+import com.xpn.xwiki.doc.XWikiDocument;
+import com.xpn.xwiki.test.AbstractBridgedComponentTestCase;
+import com.xpn.xwiki.web.XWikiEngineContext;
+
+/**
+ * Unit tests for {@link DefaultSkinTemplateCache}.
+ * 
+ * @version $Id$
+ */
+public class DefaultSkinTemplateCacheTest extends AbstractBridgedComponentTestCase
+{
+    private static final List<String> SKINS = Arrays.asList("XWiki.MySkin", "colibri");
+
+    private XWiki mockXWiki;
+
+    private SkinTemplateCache cache;
+
+    private DocumentReference skinReference;
+
+    @Override
+    public void setUp() throws Exception
+    {
+        super.setUp();
+
+        this.mockXWiki = getMockery().mock(XWiki.class);
+        getContext().setWiki(this.mockXWiki);
+
+        this.cache = getComponentManager().getInstance(SkinTemplateCache.class);
+
+        DocumentReferenceResolver<String> resolver =
+            getComponentManager().getInstance(DocumentReferenceResolver.TYPE_STRING, "currentmixed");
+        this.skinReference = resolver.resolve("XWiki.MySkin");
+
+        // The skin documents don't exist.
+        getMockery().checking(new Expectations()
+        {
+            {
+                allowing(mockXWiki).getDocument(with(any(DocumentReference.class)), with(any(XWikiContext.class)));
+                will(returnValue(new XWikiDocument(skinReference)));
+            }
+        });
+    }
+
+    @Test
+    public void getTemplateSourceFromSkinDirectoryIsCached() throws Exception
+    {
+        getMockery().checking(new Expectations()
+        {
+            {
+                allowing(mockXWiki).getEngineContext();
+                will(returnValue(null));
+                oneOf(mockXWiki).getResourceContent("/skins/XWiki.MySkin/view.vm");
+                will(throwException(new IOException()));
+                oneOf(mockXWiki).getResourceContent("/skins/colibri/view.vm");
+                will(returnValue("content"));
+            }
+        });
+
+        TemplateSource source = this.cache.getTemplateSource("view.vm", SKINS, true, getContext());
+        Assert.assertEquals("content", source.getContent());
+        Assert.assertEquals("", source.getName());
+
+        Assert.assertSame(source, this.cache.getTemplateSource("view.vm", SKINS, true, getContext()));
+    }
+
+    @Test
+    public void getTemplateSourceAfterSkinDocumentModification() throws Exception
+    {
+        getMockery().checking(new Expectations()
+        {
+            {
+                allowing(mockXWiki).getEngineContext();
+                will(returnValue(null));
+                exactly(2).of(mockXWiki).getResourceContent("/skins/XWiki.MySkin/view.vm");
+                will(returnValue("content"));
+            }
+        });
+
+        this.cache.getTemplateSource("view.vm", SKINS, true, getContext());
+
+        ObservationManager observationManager = getComponentManager().getInstance(ObservationManager.class);
+        observationManager.notify(new DocumentUpdatedEvent(this.skinReference), new XWikiDocument(this.skinReference),
+            getContext());
+
+        Assert.assertEquals("content", this.cache.getTemplateSource("view.vm", SKINS, true, getContext())
+            .getContent());
+    }
+
+    @Test
+    public void getTemplateSourceAfterFileModification() throws Exception
+    {
+        final File file = File.createTempFile("view", ".vm");
+        file.deleteOnExit();
+        FileUtils.writeStringToFile(file, "content");
+        file.setLastModified(System.currentTimeMillis() - 60000);
+
+        final XWikiEngineContext engineContext = getMockery().mock(XWikiEngineContext.class);
+        getMockery().checking(new Expectations()
+        {
+            {
+                allowing(mockXWiki).getEngineContext();
+                will(returnValue(engineContext));
+                allowing(engineContext).getRealPath(with(any(String.class)));
+                will(returnValue(file.getAbsolutePath()));
+                exactly(2).of(mockXWiki).getResourceContent("/skins/XWiki.MySkin/view.vm");
+                will(onConsecutiveCalls(returnValue("content"), returnValue("modified content")));
+            }
+        });
+
+        TemplateSource source = this.cache.getTemplateSource("view.vm", SKINS, true, getContext());
+        Assert.assertFalse(source.isModified());
+
+        file.setLastModified(System.currentTimeMillis());
+
+        Assert.assertTrue(source.isModified());
+        Assert.assertEquals("modified content", this.cache.getTemplateSource("view.vm", SKINS, true, getContext())
+            .getContent());
+    }
+
+    @Test
+    public void getTemplateSourceFromTemplatesDirectory() throws Exception
+    {
+        getMockery().checking(new Expectations()
+        {
+            {
+                allowing(mockXWiki).getEngineContext();
+                will(returnValue(null));
+                oneOf(mockXWiki).getResourceContent("/templates/view.vm");
+                will(returnValue("content"));
+            }
+        });
+
+        TemplateSource source =
+            this.cache.getTemplateSource("view.vm", Collections.<String> emptyList(), true, getContext());
+
+        Assert.assertEquals("content", source.getContent());
+        Assert.assertEquals("/templates/view.vm", source.getName());
+    }
+
+    @Test
+    public void getTemplateSourceOutsideOfTemplatesDirectory() throws Exception
+    {
+        Assert.assertNull(this.cache.getTemplateSource("../../WEB-INF/xwiki.cfg", Collections.<String> emptyList(),
+            true, getContext()));
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.xpn.xwiki.internal.store;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.xwiki.model.reference.DocumentReference;
+
+import com.xpn.xwiki.doc.XWikiDocument;
+import com.xpn.xwiki.objects.BaseObject;
+import com.xpn.xwiki.test.AbstractBridgedComponentTestCase;
+
+/**
+ * Unit tests for {@link XWikiDocumentWeigher}.
+ * 
+ * @version $Id$
+ */
+public class XWikiDocumentWeigherTest extends AbstractBridgedComponentTestCase
+{
+    private XWikiDocumentWeigher weigher = new XWikiDocumentWeigher();
+
+    @Test
+    public void weightGrowsWithContent()
+    {
+        XWikiDocument document = new XWikiDocument(new DocumentReference("wiki", "Space", "Page"));
+        int emptyWeight = this.weigher.weigh("key", document);
+
+        document.setContent(new String(new char[1000]));
+
+        Assert.assertTrue(emptyWeight > 0);
+        Assert.assertTrue(this.weigher.weigh("key", document) >= emptyWeight + 2000);
+    }
+
+    @Test
+    public void weightGrowsWithObjects()
+    {
+        XWikiDocument document = new XWikiDocument(new DocumentReference("wiki", "Space", "Page"));
+        int emptyWeight = this.weigher.weigh("key", document);
+
+        BaseObject object = new BaseObject();
+        object.setXClassReference(new DocumentReference("wiki", "Space", "Class"));
+        object.setStringValue("property", new String(new char[1000]));
+        document.addXObject(object);
+
+        Assert.assertTrue(this.weigher.weigh("key", document) >= emptyWeight + 2000);
+    }
+}
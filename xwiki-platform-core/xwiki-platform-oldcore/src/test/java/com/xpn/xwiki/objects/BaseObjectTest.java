@@ -155,4 +155,49 @@ public void testMerge()
         Assert.assertEquals("Panels.Applications,Panels.QuickLinks,Panels.RecentModifications",
             currentObject.getStringValue("str"));
     }
+
+    @Test
+    public void testDirtyTracking() throws Exception
+    {
+        BaseObject object = new BaseObject();
+        object.setDocumentReference(new DocumentReference("wiki", "space", "page"));
+        object.setXClassReference(new EntityReference("Class", EntityType.DOCUMENT));
+        object.setStringValue("str", "value");
+        Assert.assertFalse(object.isStored());
+        Assert.assertTrue(object.isDirty());
+
+        object.setStored(true);
+        ((BaseProperty) object.getField("str")).setValueDirty(false);
+        Assert.assertTrue(object.isStored());
+        Assert.assertFalse(object.isDirty());
+
+        // Cloning keeps the state, changing the GUID makes the object dirty
+        BaseObject clone = object.clone();
+        Assert.assertFalse(clone.isDirty());
+        Assert.assertFalse(((BaseProperty) clone.getField("str")).isValueDirty());
+        Assert.assertTrue(object.duplicate().isDirty());
+
+        // Moving the object changes its identifier
+        clone.setNumber(1);
+        Assert.assertFalse(clone.isStored());
+        Assert.assertTrue(clone.isDirty());
+
+        // Object identifiers don't depend on the wiki, an identity clone in another wiki is not stored there
+        BaseObject otherWikiClone = object.clone();
+        otherWikiClone.setDocumentReference(new DocumentReference("otherwiki", "space", "page"));
+        Assert.assertEquals(object.getId(), otherWikiClone.getId());
+        Assert.assertFalse(otherWikiClone.isStored());
+        Assert.assertTrue(otherWikiClone.isDirty());
+
+        // A property coming from another object has to be saved for this one
+        BaseObject other = new BaseObject();
+        other.setDocumentReference(new DocumentReference("wiki", "space", "other"));
+        other.setXClassReference(new EntityReference("Class", EntityType.DOCUMENT));
+        other.safeput("str2", ((BaseProperty) object.getField("str")).clone());
+        Assert.assertTrue(((BaseProperty) other.getField("str2")).isValueDirty());
+
+        object.setStored(false);
+        Assert.assertFalse(object.isStored());
+        Assert.assertTrue(object.isDirty());
+    }
 }
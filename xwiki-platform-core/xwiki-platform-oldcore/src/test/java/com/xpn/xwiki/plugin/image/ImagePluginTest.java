@@ -20,8 +20,7 @@
 package com.xpn.xwiki.plugin.image;
 
 import java.io.ByteArrayInputStream;
-import java.util.HashMap;
-import java.util.Map;
+import java.io.File;
 
 import com.xpn.xwiki.XWiki;
 import com.xpn.xwiki.XWikiContext;
@@ -31,10 +30,6 @@
 import com.xpn.xwiki.web.XWikiServletRequest;
 import org.apache.commons.codec.binary.Base64;
 import org.jmock.Mock;
-import org.xwiki.cache.Cache;
-import org.xwiki.cache.CacheFactory;
-import org.xwiki.cache.CacheManager;
-import org.xwiki.cache.event.CacheEntryListener;
 
 /**
  * Unit tests for the {@link com.xpn.xwiki.plugin.image.ImagePlugin} class.
@@ -90,23 +85,19 @@ protected void setUp() throws Exception
 
         Mock mockXWiki = mock(XWiki.class);
         mockXWiki.stubs().method("Param").will(returnValue("10"));
-        Mock mockCacheFactory = mock(CacheFactory.class);
-        Cache<XWikiAttachment> cache = (new Cache<XWikiAttachment>() {
-            private final Map<String, XWikiAttachment> map = new HashMap<String, XWikiAttachment>();
-            public void set(String key, XWikiAttachment value) { map.put(key, value); }
-            public XWikiAttachment get(String key) { return map.get(key); }
-            public void remove(String key) { }
-            public void removeAll() { }
-            public void addCacheEntryListener(CacheEntryListener<XWikiAttachment> listener) { }
-            public void removeCacheEntryListener(CacheEntryListener<XWikiAttachment> listener) { }
-            public void dispose() { }
-        });
-        mockCacheFactory.expects(once()).method("newCache").will(returnValue(cache));
-        mockXWiki.stubs().method("getLocalCacheFactory").will(returnValue(mockCacheFactory.proxy()));
         getContext().setWiki((XWiki) mockXWiki.proxy());
         this.plugin = new ImagePlugin("image", ImagePlugin.class.getName(), getContext());
     }
 
+    @Override
+    protected void tearDown() throws Exception
+    {
+        // Remove the stored thumbnails.
+        this.plugin.flushCache();
+
+        super.tearDown();
+    }
+
     public void testDownloadAttachmentWithUnsupportedFileType()
     {
         Mock attachmentMock = mock(XWikiAttachment.class);
@@ -115,7 +106,7 @@ public void testDownloadAttachmentWithUnsupportedFileType()
         assertSame(attachment, plugin.downloadAttachment(attachment, new XWikiContext()));
     }
 
-    public void testCacheOfScaledAttachment() throws Exception
+    public void testStoreOfScaledAttachment() throws Exception
     {
         XWikiAttachment attach = (new XWikiAttachment() {
             public XWikiAttachment clone() {
@@ -135,9 +126,15 @@ public XWikiAttachment clone() {
         // Make sure the attachment is scaled down and uses less space.
         assertTrue(scaled.getFilesize() < attach.getFilesize());
 
-        // Load the scaled attachment again and make sure it's the same object in memory.
-        final XWikiAttachment cached = plugin.downloadAttachment(attach, this.getContext());
-        assertTrue(scaled == cached);
-        assertTrue(scaled.getAttachment_content() == cached.getAttachment_content());
+        // The scaled attachment is streamed from the thumbnail store.
+        assertTrue(scaled.getAttachment_content() instanceof ThumbnailAttachmentContent);
+        File thumbnailFile = ((ThumbnailAttachmentContent) scaled.getAttachment_content()).getThumbnailFile();
+        assertTrue(thumbnailFile.exists());
+        assertEquals(thumbnailFile.length(), scaled.getAttachment_content().getSize());
+
+        // Load the scaled attachment again and make sure the stored thumbnail is reused.
+        final XWikiAttachment stored = plugin.downloadAttachment(attach, this.getContext());
+        assertEquals(thumbnailFile, ((ThumbnailAttachmentContent) stored.getAttachment_content()).getThumbnailFile());
+        assertEquals(scaled.getFilesize(), stored.getFilesize());
     }
 }
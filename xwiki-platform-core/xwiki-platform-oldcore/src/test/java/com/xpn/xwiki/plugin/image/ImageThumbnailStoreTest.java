@@ -0,0 +1,319 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.xpn.xwiki.plugin.image;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link ImageThumbnailStore}.
+ * 
+ * @version $Id$
+ */
+public class ImageThumbnailStoreTest
+{
+    /**
+     * Writes a fixed content and counts the calls.
+     */
+    private static class CountingWriter implements ImageThumbnailStore.ThumbnailWriter
+    {
+        final AtomicInteger prepareCount = new AtomicInteger();
+
+        final AtomicInteger writeCount = new AtomicInteger();
+
+        private final String content;
+
+        CountingWriter(String content)
+        {
+            this.content = content;
+        }
+
+        @Override
+        public void prepare() throws Exception
+        {
+            this.prepareCount.incrementAndGet();
+        }
+
+        @Override
+        public boolean write(OutputStream out) throws Exception
+        {
+            this.writeCount.incrementAndGet();
+            if (this.content == null) {
+                return false;
+            }
+            out.write(this.content.getBytes("UTF-8"));
+            return true;
+        }
+    }
+
+    private File directory;
+
+    private ImageThumbnailStore store;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        this.directory = new File(System.getProperty("java.io.tmpdir"), "xwikitests/thumbnails");
+        FileUtils.deleteDirectory(this.directory);
+    }
+
+    @After
+    public void tearDown() throws Exception
+    {
+        if (this.store != null) {
+            this.store.dispose();
+        }
+        FileUtils.deleteDirectory(this.directory);
+    }
+
+    @Test
+    public void getStoresThumbnail() throws Exception
+    {
+        this.store = new ImageThumbnailStore(this.directory, 1, 0, 0);
+        CountingWriter writer = new CountingWriter("thumbnail");
+
+        File file = this.store.get("wiki/1/1.1-10x10", writer);
+        Assert.assertEquals("thumbnail", FileUtils.readFileToString(file, "UTF-8"));
+        Assert.assertEquals(file, this.store.get("wiki/1/1.1-10x10", writer));
+        Assert.assertEquals(1, writer.prepareCount.get());
+        Assert.assertEquals(1, writer.writeCount.get());
+
+        // The stored thumbnails are reused after a restart.
+        this.store.dispose();
+        this.store = new ImageThumbnailStore(this.directory, 1, 0, 0);
+        Assert.assertEquals(file, this.store.get("wiki/1/1.1-10x10", writer));
+        Assert.assertEquals(1, writer.writeCount.get());
+    }
+
+    @Test
+    public void getReturnsNullWhenOriginalShouldBeServed() throws Exception
+    {
+        this.store = new ImageThumbnailStore(this.directory, 1, 0, 0);
+        CountingWriter writer = new CountingWriter(null);
+
+        Assert.assertNull(this.store.get("wiki/1/1.1-10x10", writer));
+        Assert.assertNull(this.store.get("wiki/1/1.1-10x10", writer));
+        Assert.assertEquals(1, writer.writeCount.get());
+
+        this.store.dispose();
+        this.store = new ImageThumbnailStore(this.directory, 1, 0, 0);
+        Assert.assertNull(this.store.get("wiki/1/1.1-10x10", writer));
+        Assert.assertEquals(1, writer.writeCount.get());
+    }
+
+    @Test
+    public void concurrentGetsShareTheSameGeneration() throws Exception
+    {
+        this.store = new ImageThumbnailStore(this.directory, 2, 0, 0);
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountingWriter writer = new CountingWriter("thumbnail")
+        {
+            @Override
+            public boolean write(OutputStream out) throws Exception
+            {
+                started.countDown();
+                release.await();
+                return super.write(out);
+            }
+        };
+        Callable<File> get = new Callable<File>()
+        {
+            @Override
+            public File call() throws Exception
+            {
+                return store.get("wiki/1/1.1-10x10", writer);
+            }
+        };
+
+        ExecutorService requests = Executors.newFixedThreadPool(2);
+        try {
+            Future<File> first = requests.submit(get);
+            Assert.assertTrue(started.await(10, TimeUnit.SECONDS));
+            Future<File> second = requests.submit(get);
+            // Give the second request the time to join the running generation.
+            Thread.sleep(100);
+            Assert.assertFalse(second.isDone());
+
+            release.countDown();
+            File file = first.get(10, TimeUnit.SECONDS);
+            Assert.assertEquals(file, second.get(10, TimeUnit.SECONDS));
+            Assert.assertEquals(1, writer.prepareCount.get());
+            Assert.assertEquals(1, writer.writeCount.get());
+        } finally {
+            requests.shutdownNow();
+        }
+    }
+
+    @Test
+    public void onlyTheRequestStartingTheGenerationPreparesIt() throws Exception
+    {
+        this.store = new ImageThumbnailStore(this.directory, 2, 0, 0);
+        final CountDownLatch preparing = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountingWriter writer = new CountingWriter("thumbnail")
+        {
+            @Override
+            public void prepare() throws Exception
+            {
+                super.prepare();
+                preparing.countDown();
+                release.await();
+            }
+        };
+        Callable<File> get = new Callable<File>()
+        {
+            @Override
+            public File call() throws Exception
+            {
+                return store.get("wiki/1/1.1-10x10", writer);
+            }
+        };
+
+        ExecutorService requests = Executors.newFixedThreadPool(2);
+        try {
+            Future<File> first = requests.submit(get);
+            Assert.assertTrue(preparing.await(10, TimeUnit.SECONDS));
+            Future<File> second = requests.submit(get);
+            // Give the second request the time to join the generation being prepared.
+            Thread.sleep(100);
+            Assert.assertFalse(second.isDone());
+
+            release.countDown();
+            File file = first.get(10, TimeUnit.SECONDS);
+            Assert.assertEquals(file, second.get(10, TimeUnit.SECONDS));
+            Assert.assertEquals(1, writer.prepareCount.get());
+            Assert.assertEquals(1, writer.writeCount.get());
+        } finally {
+            requests.shutdownNow();
+        }
+    }
+
+    @Test
+    public void failedPreparationFailsTheWaitingRequests() throws Exception
+    {
+        this.store = new ImageThumbnailStore(this.directory, 2, 0, 0);
+        final CountDownLatch preparing = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountingWriter writer = new CountingWriter("thumbnail")
+        {
+            @Override
+            public void prepare() throws Exception
+            {
+                super.prepare();
+                preparing.countDown();
+                release.await();
+                throw new IOException("prepare");
+            }
+        };
+        Callable<File> get = new Callable<File>()
+        {
+            @Override
+            public File call() throws Exception
+            {
+                return store.get("wiki/1/1.1-10x10", writer);
+            }
+        };
+
+        ExecutorService requests = Executors.newFixedThreadPool(2);
+        try {
+            Future<File> first = requests.submit(get);
+            Assert.assertTrue(preparing.await(10, TimeUnit.SECONDS));
+            Future<File> second = requests.submit(get);
+            Thread.sleep(100);
+
+            release.countDown();
+            assertPreparationFailure(first);
+            assertPreparationFailure(second);
+            Assert.assertEquals(1, writer.prepareCount.get());
+            Assert.assertEquals(0, writer.writeCount.get());
+        } finally {
+            requests.shutdownNow();
+        }
+
+        // The failed generation is not kept.
+        Assert.assertNotNull(this.store.get("wiki/1/1.1-10x10", new CountingWriter("thumbnail")));
+    }
+
+    private void assertPreparationFailure(Future<File> request) throws Exception
+    {
+        try {
+            request.get(10, TimeUnit.SECONDS);
+            Assert.fail("The preparation failure was not reported");
+        } catch (ExecutionException e) {
+            Assert.assertEquals("prepare", e.getCause().getMessage());
+        }
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsedThumbnailsAboveCapacity() throws Exception
+    {
+        this.store = new ImageThumbnailStore(this.directory, 1, 2, 0);
+
+        File a = this.store.get("wiki/1/a", new CountingWriter("a"));
+        File b = this.store.get("wiki/1/b", new CountingWriter("b"));
+        // Use a again so that b is the least recently used.
+        this.store.get("wiki/1/a", new CountingWriter("a"));
+        File c = this.store.get("wiki/1/c", new CountingWriter("c"));
+
+        Assert.assertEquals(2, this.store.size());
+        Assert.assertTrue(a.exists());
+        Assert.assertFalse(b.exists());
+        Assert.assertTrue(c.exists());
+
+        CountingWriter writer = new CountingWriter("b");
+        this.store.get("wiki/1/b", writer);
+        Assert.assertEquals(1, writer.writeCount.get());
+        Assert.assertFalse(a.exists());
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsedThumbnailsAboveMaxSize() throws Exception
+    {
+        this.store = new ImageThumbnailStore(this.directory, 1, 0, 10);
+
+        File a = this.store.get("wiki/1/a", new CountingWriter("aaaaaa"));
+        File b = this.store.get("wiki/1/b", new CountingWriter("bbbbbb"));
+
+        Assert.assertEquals(1, this.store.size());
+        Assert.assertFalse(a.exists());
+        Assert.assertTrue(b.exists());
+
+        // The most recently used thumbnail is kept even if it exceeds the maximum size alone.
+        File c = this.store.get("wiki/1/c", new CountingWriter("ccccccccccccccc"));
+        Assert.assertTrue(c.exists());
+        Assert.assertFalse(b.exists());
+    }
+}
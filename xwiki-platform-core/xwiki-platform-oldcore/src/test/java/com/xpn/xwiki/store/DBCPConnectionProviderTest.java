@@ -0,0 +1,202 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.xpn.xwiki.store;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.Driver;
+import java.sql.DriverManager;
+import java.sql.DriverPropertyInfo;
+import java.sql.SQLException;
+import java.util.Properties;
+import java.util.logging.Logger;
+
+import org.hibernate.cfg.Environment;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link DBCPConnectionProvider}.
+ * 
+ * @version $Id$
+ */
+public class DBCPConnectionProviderTest
+{
+    /**
+     * JDBC driver creating connections which don't do anything.
+     */
+    public static class TestDriver implements Driver
+    {
+        static {
+            try {
+                DriverManager.registerDriver(new TestDriver());
+            } catch (SQLException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        @Override
+        public Connection connect(String url, Properties info)
+        {
+            if (!acceptsURL(url)) {
+                return null;
+            }
+
+            return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class< ? >[] {Connection.class},
+                new InvocationHandler()
+                {
+                    private boolean closed;
+
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args)
+                    {
+                        String name = method.getName();
+                        if (name.equals("close")) {
+                            this.closed = true;
+                        } else if (name.equals("isClosed")) {
+                            return this.closed;
+                        } else if (name.equals("isValid")) {
+                            return true;
+                        } else if (name.equals("equals")) {
+                            return proxy == args[0];
+                        } else if (name.equals("hashCode")) {
+                            return System.identityHashCode(proxy);
+                        } else if (method.getReturnType() == boolean.class) {
+                            return false;
+                        } else if (method.getReturnType() == int.class) {
+                            return 0;
+                        }
+
+                        return null;
+                    }
+                });
+        }
+
+        @Override
+        public boolean acceptsURL(String url)
+        {
+            return url.startsWith("jdbc:xwikitest:");
+        }
+
+        @Override
+        public DriverPropertyInfo[] getPropertyInfo(String url, Properties info)
+        {
+            return new DriverPropertyInfo[0];
+        }
+
+        @Override
+        public int getMajorVersion()
+        {
+            return 1;
+        }
+
+        @Override
+        public int getMinorVersion()
+        {
+            return 0;
+        }
+
+        @Override
+        public boolean jdbcCompliant()
+        {
+            return false;
+        }
+
+        public Logger getParentLogger()
+        {
+            return Logger.getLogger(TestDriver.class.getName());
+        }
+    }
+
+    private DBCPConnectionProvider provider;
+
+    @After
+    public void tearDown()
+    {
+        if (this.provider != null) {
+            this.provider.close();
+        }
+    }
+
+    private DBCPConnectionProvider createProvider(Properties properties)
+    {
+        properties.setProperty(Environment.DRIVER, TestDriver.class.getName());
+        properties.setProperty(Environment.URL, "jdbc:xwikitest:db");
+        // A single connection so that the same physical connection is always taken from the pool
+        properties.setProperty(Environment.POOL_SIZE, "1");
+
+        DBCPConnectionProvider connectionProvider = new DBCPConnectionProvider();
+        connectionProvider.configure(properties);
+
+        return connectionProvider;
+    }
+
+    @Test
+    public void schemaIsRememberedWhenConnectionIsPooled() throws SQLException
+    {
+        this.provider = createProvider(new Properties());
+
+        Connection connection = this.provider.getConnection();
+        Assert.assertNull(this.provider.getSchema(connection));
+        this.provider.setSchema(connection, "wiki");
+        Assert.assertEquals("wiki", this.provider.getSchema(connection));
+        this.provider.closeConnection(connection);
+
+        // DBCP wraps the connection in a new object but it's the same physical connection
+        connection = this.provider.getConnection();
+        Assert.assertEquals("wiki", this.provider.getSchema(connection));
+
+        this.provider.setSchema(connection, "otherwiki");
+        Assert.assertEquals("otherwiki", this.provider.getSchema(connection));
+        this.provider.closeConnection(connection);
+    }
+
+    @Test
+    public void schemaIsForgottenWhenDBCPResetsTheCatalog() throws SQLException
+    {
+        Properties properties = new Properties();
+        properties.setProperty("hibernate.dbcp.defaultCatalog", "xwiki");
+        this.provider = createProvider(properties);
+
+        Connection connection = this.provider.getConnection();
+        this.provider.setSchema(connection, "wiki");
+        this.provider.closeConnection(connection);
+
+        connection = this.provider.getConnection();
+        Assert.assertNull(this.provider.getSchema(connection));
+        this.provider.closeConnection(connection);
+    }
+
+    @Test
+    public void schemaIsNotRememberedWithoutAccessToUnderlyingConnections() throws SQLException
+    {
+        Properties properties = new Properties();
+        properties.setProperty("hibernate.dbcp.accessToUnderlyingConnectionAllowed", "false");
+        this.provider = createProvider(properties);
+
+        Connection connection = this.provider.getConnection();
+        this.provider.setSchema(connection, "wiki");
+        Assert.assertNull(this.provider.getSchema(connection));
+        this.provider.closeConnection(connection);
+    }
+}
@@ -19,13 +19,18 @@
  */
 package com.xpn.xwiki.store.hibernate.query;
 
+import java.util.Arrays;
+import java.util.List;
+
 import com.xpn.xwiki.store.hibernate.HibernateSessionFactory;
 import org.hibernate.cfg.Configuration;
 import org.jmock.Expectations;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
+import org.xwiki.query.Query;
 import org.xwiki.query.QueryExecutor;
+import org.xwiki.query.internal.DefaultQuery;
 import org.xwiki.test.AbstractMockingComponentTestCase;
 import org.xwiki.test.annotation.MockingRequirement;
 
@@ -90,4 +95,21 @@ public void completeShortStatementPassingAQueryOnSomethingElseThanADocument()
         Assert.assertEquals("select lock.docId from XWikiLock as lock ",
             executor.completeShortFormStatement("select lock.docId from XWikiLock as lock "));
     }
+
+    @Test
+    public void populateParametersBindsCollectionsAsParameterLists()
+    {
+        final org.hibernate.Query hquery = getMockery().mock(org.hibernate.Query.class);
+        final List<String> names = Arrays.asList("Main.WebHome", "Sandbox.WebHome");
+
+        Query query = new DefaultQuery("where doc.fullName in (:names) and doc.author = :author", Query.HQL, executor);
+        query.bindValue("names", names).bindValue("author", "XWiki.Admin");
+
+        getMockery().checking(new Expectations() {{
+            oneOf(hquery).setParameterList("names", names);
+            oneOf(hquery).setParameter("author", "XWiki.Admin");
+        }});
+
+        executor.populateParameters(hquery, query);
+    }
 }
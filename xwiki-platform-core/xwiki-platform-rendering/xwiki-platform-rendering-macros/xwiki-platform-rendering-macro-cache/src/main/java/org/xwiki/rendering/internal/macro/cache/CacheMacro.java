@@ -19,20 +19,42 @@
  */
 package org.xwiki.rendering.internal.macro.cache;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.inject.Inject;
 import javax.inject.Named;
 import javax.inject.Singleton;
 
+import org.xwiki.bridge.RenderingDependencyRecorder;
+import org.xwiki.bridge.event.AbstractDocumentEvent;
+import org.xwiki.bridge.event.DocumentCreatedEvent;
+import org.xwiki.bridge.event.DocumentDeletedEvent;
+import org.xwiki.bridge.event.DocumentUpdatedEvent;
 import org.xwiki.cache.Cache;
 import org.xwiki.cache.CacheException;
 import org.xwiki.cache.CacheManager;
 import org.xwiki.cache.config.CacheConfiguration;
+import org.xwiki.cache.event.CacheEntryEvent;
+import org.xwiki.cache.event.CacheEntryListener;
 import org.xwiki.cache.eviction.LRUEvictionConfiguration;
 import org.xwiki.component.annotation.Component;
+import org.xwiki.component.phase.Initializable;
+import org.xwiki.component.phase.InitializationException;
+import org.xwiki.context.Execution;
+import org.xwiki.context.ExecutionContext;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.model.reference.EntityReferenceSerializer;
+import org.xwiki.observation.EventListener;
+import org.xwiki.observation.ObservationManager;
+import org.xwiki.observation.event.Event;
 import org.xwiki.rendering.block.Block;
 import org.xwiki.rendering.macro.AbstractMacro;
 import org.xwiki.rendering.macro.MacroContentParser;
@@ -46,6 +68,10 @@
 
 /**
  * Provides Caching for the content of the macro.
+ * <p>
+ * The documents read while executing the content are recorded and the cached result is considered stale as soon as
+ * one of them is modified, or when it expires. A stale result is refreshed by the first request needing it, while the
+ * concurrent requests keep getting the stale result instead of executing the content too.
  * 
  * @version $Id$
  * @since 3.0M1
@@ -53,7 +79,7 @@
 @Component
 @Named("cache")
 @Singleton
-public class CacheMacro extends AbstractMacro<CacheMacroParameters>
+public class CacheMacro extends AbstractMacro<CacheMacroParameters> implements Initializable
 {
     /**
      * The description of the macro.
@@ -65,6 +91,75 @@ public class CacheMacro extends AbstractMacro<CacheMacroParameters>
      */
     private static final String CONTENT_DESCRIPTION = "the content to cache.";
 
+    /**
+     * The key of the XWiki context in the execution context.
+     */
+    private static final String XWIKICONTEXT = "xwikicontext";
+
+    /**
+     * The events invalidating the cached results.
+     */
+    private static final List<Event> EVENTS = Arrays.<Event> asList(new DocumentCreatedEvent(),
+        new DocumentUpdatedEvent(), new DocumentDeletedEvent());
+
+    /**
+     * Invalidates the cached results depending on modified documents.
+     */
+    private class Listener implements EventListener
+    {
+        @Override
+        public String getName()
+        {
+            return "cachemacro";
+        }
+
+        @Override
+        public List<Event> getEvents()
+        {
+            return EVENTS;
+        }
+
+        @Override
+        public void onEvent(Event event, Object source, Object data)
+        {
+            String documentReference = ((AbstractDocumentEvent) event).getEventFilter().getFilter();
+
+            Set<CachedContent> contents = dependents.remove(documentReference);
+            if (contents != null) {
+                for (CachedContent cachedContent : contents) {
+                    cachedContent.invalidate();
+                }
+            }
+        }
+    }
+
+    /**
+     * Forgets the dependencies of the results removed from the caches.
+     */
+    private final CacheEntryListener<CachedContent> evictionListener = new CacheEntryListener<CachedContent>()
+    {
+        @Override
+        public void cacheEntryAdded(CacheEntryEvent<CachedContent> event)
+        {
+            // Nothing to do
+        }
+
+        @Override
+        public void cacheEntryRemoved(CacheEntryEvent<CachedContent> event)
+        {
+            CachedContent cachedContent = event.getEntry().getValue();
+            if (cachedContent != null) {
+                removeDependencies(cachedContent, cachedContent.getDependencies());
+            }
+        }
+
+        @Override
+        public void cacheEntryModified(CacheEntryEvent<CachedContent> event)
+        {
+            // Nothing to do
+        }
+    };
+
     /**
      * Used to create the macro content cache.
      */
@@ -84,11 +179,41 @@ public class CacheMacro extends AbstractMacro<CacheMacroParameters>
     @Named("plain/1.0")
     private BlockRenderer plainTextBlockRenderer;
 
+    /**
+     * Used to register the listener invalidating the cached results.
+     */
+    @Inject
+    private ObservationManager observationManager;
+
+    /**
+     * Used to get the XWiki context, where the documents read are recorded.
+     */
+    @Inject
+    private Execution execution;
+
+    /**
+     * Used to match the documents read with the document events.
+     */
+    @Inject
+    private EntityReferenceSerializer<String> serializer;
+
     /**
      * Map of all caches. There's one cache per timeToLive/maxEntry combination since currently we cannot set these
      * configuration values at the cache entry level but only for the whole cache.
      */
-    private Map<CacheKey, Cache<List<Block>>> contentCacheMap = new ConcurrentHashMap<CacheKey, Cache<List<Block>>>();
+    private Map<CacheKey, Cache<CachedContent>> contentCacheMap =
+        new ConcurrentHashMap<CacheKey, Cache<CachedContent>>();
+
+    /**
+     * The cached results depending on each document, indexed by serialized document reference.
+     */
+    private final ConcurrentMap<String, Set<CachedContent>> dependents =
+        new ConcurrentHashMap<String, Set<CachedContent>>();
+
+    /**
+     * Used to generate unique identifiers for the recording of the documents read.
+     */
+    private final AtomicLong renderingCounter = new AtomicLong();
 
     /**
      * Create and initialize the descriptor of the macro.
@@ -99,6 +224,12 @@ public CacheMacro()
         setDefaultCategory(DEFAULT_CATEGORY_DEVELOPMENT);
     }
 
+    @Override
+    public void initialize() throws InitializationException
+    {
+        this.observationManager.addListener(new Listener());
+    }
+
     @Override
     public boolean supportsInlineMode()
     {
@@ -109,8 +240,6 @@ public boolean supportsInlineMode()
     public List<Block> execute(CacheMacroParameters parameters, String content, MacroTransformationContext context)
         throws MacroExecutionException
     {
-        // Idea for improvement: use context.getId() (which contains the document name) as part of the cache key to
-        // make it even more unique (when the cache macro parameter id is not specified).
         String cacheKey;
         if (parameters.getId() != null) {
             // Consider that the id contains wiki syntax and parse it with the same wiki parser than the current
@@ -119,30 +248,138 @@ public List<Block> execute(CacheMacroParameters parameters, String content, Macr
             this.plainTextBlockRenderer.render(
                 this.contentParser.parse(parameters.getId(), context, true, false), printer);
             cacheKey = printer.toString();
+        } else if (context.getId() != null) {
+            // The same content can produce different results on different documents, so it is only shared when an
+            // explicit id is given.
+            cacheKey = context.getId() + '\n' + content;
         } else {
             cacheKey = content;
         }
 
-        Cache<List<Block>> contentCache = getContentCache(parameters.getTimeToLive(), parameters.getMaxEntries());
-        List<Block> result = contentCache.get(cacheKey);
-        if (result == null) {
-            // Run the parser for the syntax on the content
-            // We run the current transformation on the cache macro content. We need to do this since we want to cache
-            // the XDOM resulting from the execution of Macros because that's where lengthy processing happens.
-            result = this.contentParser.parse(content, context, true, context.isInline()).getChildren();
-            contentCache.set(cacheKey, result);
+        Map<Object, Object> xcontext = getXWikiContext();
+
+        Cache<CachedContent> contentCache = getContentCache(parameters.getTimeToLive(), parameters.getMaxEntries());
+        CachedContent cachedContent = contentCache.get(cacheKey);
+        if (cachedContent == null) {
+            cachedContent = new CachedContent();
+            cachedContent.startRefresh();
+            refresh(cachedContent, content, parameters.getTimeToLive(), context, xcontext);
+            contentCache.set(cacheKey, cachedContent);
+        } else if (cachedContent.isStale() && cachedContent.startRefresh()) {
+            refresh(cachedContent, content, parameters.getTimeToLive(), context, xcontext);
+        } else if (xcontext != null) {
+            // The rendering in progress, if any, depends on the same documents as the cached result
+            RenderingDependencyRecorder.getRecorder(xcontext).addAll(cachedContent.getDependencies());
+        }
+
+        return cachedContent.getResult();
+    }
+
+    /**
+     * Execute the content and update the cached result. The caller must have successfully called
+     * {@link CachedContent#startRefresh()} before.
+     *
+     * @param cachedContent the cached result to update
+     * @param content the content to execute
+     * @param timeToLive the number of seconds the result stays fresh
+     * @param context the macro transformation context
+     * @param xcontext the XWiki context, {@code null} if there's none
+     * @throws MacroExecutionException if executing the content fails
+     */
+    private void refresh(CachedContent cachedContent, String content, int timeToLive,
+        MacroTransformationContext context, Map<Object, Object> xcontext) throws MacroExecutionException
+    {
+        try {
+            long version = cachedContent.getVersion();
+
+            RenderingDependencyRecorder recorder = null;
+            String renderingId = null;
+            if (xcontext != null) {
+                recorder = RenderingDependencyRecorder.getRecorder(xcontext);
+                renderingId = "cachemacro:" + this.renderingCounter.incrementAndGet();
+                recorder.start(renderingId);
+            }
+
+            List<Block> result;
+            Set<DocumentReference> dependencies = null;
+            try {
+                // Run the parser for the syntax on the content
+                // We run the current transformation on the cache macro content. We need to do this since we want to
+                // cache the XDOM resulting from the execution of Macros because that's where lengthy processing
+                // happens.
+                result = this.contentParser.parse(content, context, true, context.isInline()).getChildren();
+            } finally {
+                if (recorder != null) {
+                    dependencies = recorder.stop(renderingId);
+                }
+            }
+            if (dependencies == null) {
+                dependencies = Collections.emptySet();
+            }
+
+            // Index the new dependencies before setting the result so that a modification happening in between
+            // makes the result stale.
+            Set<DocumentReference> obsoleteDependencies =
+                new HashSet<DocumentReference>(cachedContent.getDependencies());
+            addDependencies(cachedContent, dependencies);
+            cachedContent.setResult(result, dependencies, timeToLive, version);
+            obsoleteDependencies.removeAll(dependencies);
+            removeDependencies(cachedContent, obsoleteDependencies);
+        } finally {
+            cachedContent.endRefresh();
+        }
+    }
+
+    /**
+     * @param cachedContent a cached result
+     * @param dependencies the documents the result depends on
+     */
+    private void addDependencies(CachedContent cachedContent, Set<DocumentReference> dependencies)
+    {
+        for (DocumentReference dependency : dependencies) {
+            String key = this.serializer.serialize(dependency);
+            Set<CachedContent> contents = this.dependents.get(key);
+            if (contents == null) {
+                contents = Collections.newSetFromMap(new ConcurrentHashMap<CachedContent, Boolean>());
+                Set<CachedContent> existingContents = this.dependents.putIfAbsent(key, contents);
+                if (existingContents != null) {
+                    contents = existingContents;
+                }
+            }
+            contents.add(cachedContent);
         }
+    }
+
+    /**
+     * @param cachedContent a cached result
+     * @param dependencies the documents the result doesn't depend on anymore
+     */
+    private void removeDependencies(CachedContent cachedContent, Set<DocumentReference> dependencies)
+    {
+        for (DocumentReference dependency : dependencies) {
+            Set<CachedContent> contents = this.dependents.get(this.serializer.serialize(dependency));
+            if (contents != null) {
+                contents.remove(cachedContent);
+            }
+        }
+    }
+
+    /**
+     * @return the XWiki context as a map, {@code null} if there's none
+     */
+    @SuppressWarnings("unchecked")
+    private Map<Object, Object> getXWikiContext()
+    {
+        ExecutionContext executionContext = this.execution.getContext();
 
-        return result;
+        return executionContext != null ? (Map<Object, Object>) executionContext.getProperty(XWIKICONTEXT) : null;
     }
 
     /**
      * Get a cache matching the passed time to live and max entries.
      * <p>
-     * Note that whenever a new cache is created it currently means a new thread is used too (since the JBoss cache
-     * used underneath uses a thread for evicting entries from the cache).
-     * We need to modify our xwiki-cache module to allow setting time to live on cache items, see
-     * http://jira.xwiki.org/jira/browse/XWIKI-5907
+     * The entries are not evicted when they expire, since stale results are served while they are being refreshed:
+     * the time to live is checked by {@link CachedContent#isStale()}.
      * </p>
      *
      * @param timeToLive the number of seconds to cache the content
@@ -150,17 +387,16 @@ public List<Block> execute(CacheMacroParameters parameters, String content, Macr
      * @return the matching cache (a new cache is created if no existing one is found)
      * @throws MacroExecutionException in case we fail to create the new cache
      */
-    private Cache<List<Block>> getContentCache(int timeToLive, int maxEntries) throws MacroExecutionException
+    private Cache<CachedContent> getContentCache(int timeToLive, int maxEntries) throws MacroExecutionException
     {
         CacheKey cacheKey = new CacheKey(timeToLive, maxEntries);
-        Cache<List<Block>> contentCache = this.contentCacheMap.get(cacheKey);
+        Cache<CachedContent> contentCache = this.contentCacheMap.get(cacheKey);
         if (contentCache == null) {
             // Create Cache
             CacheConfiguration configuration = new CacheConfiguration();
 
             LRUEvictionConfiguration lru = new LRUEvictionConfiguration();
             lru.setMaxEntries(maxEntries);
-            lru.setTimeToLive(timeToLive);
             configuration.put(LRUEvictionConfiguration.CONFIGURATIONID, lru);
 
             try {
@@ -168,6 +404,7 @@ private Cache<List<Block>> getContentCache(int timeToLive, int maxEntries) throw
             } catch (CacheException e) {
                 throw new MacroExecutionException("Failed to create content cache", e);
             }
+            contentCache.addCacheEntryListener(this.evictionListener);
 
             this.contentCacheMap.put(cacheKey, contentCache);
         }
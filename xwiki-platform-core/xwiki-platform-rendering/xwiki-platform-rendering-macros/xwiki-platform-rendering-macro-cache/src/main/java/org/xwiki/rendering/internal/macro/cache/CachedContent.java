@@ -0,0 +1,177 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.rendering.internal.macro.cache;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.rendering.block.Block;
+
+/**
+ * The cached result of a cache macro, with the documents read while producing it.
+ * <p>
+ * The result becomes stale when it expires or when one of the documents it depends on is modified, but it is still
+ * served until it is refreshed. Only one thread at a time is allowed to refresh it, so that the expiration of a result
+ * which is long to produce doesn't make all the concurrent requests produce it again.
+ *
+ * @version $Id$
+ * @since 4.4M1
+ */
+public class CachedContent
+{
+    /**
+     * A result and what it has been produced from.
+     */
+    private static class Rendering
+    {
+        /**
+         * The result of the macro.
+         */
+        private final List<Block> result;
+
+        /**
+         * The documents read while producing the result.
+         */
+        private final Set<DocumentReference> dependencies;
+
+        /**
+         * The date after which the result is stale, in milliseconds.
+         */
+        private final long expirationDate;
+
+        /**
+         * The version of the content the result has been produced from.
+         */
+        private final long version;
+
+        /**
+         * @param result the result of the macro
+         * @param dependencies the documents read while producing the result
+         * @param expirationDate the date after which the result is stale, in milliseconds
+         * @param version the version of the content the result has been produced from
+         */
+        Rendering(List<Block> result, Set<DocumentReference> dependencies, long expirationDate, long version)
+        {
+            this.result = result;
+            this.dependencies = dependencies;
+            this.expirationDate = expirationDate;
+            this.version = version;
+        }
+    }
+
+    /**
+     * Incremented each time one of the documents the result depends on is modified.
+     */
+    private final AtomicLong version = new AtomicLong();
+
+    /**
+     * Indicate if a thread is refreshing the result.
+     */
+    private final AtomicBoolean refreshing = new AtomicBoolean();
+
+    /**
+     * The current result, {@code null} until it has been produced for the first time.
+     */
+    private volatile Rendering rendering;
+
+    /**
+     * @return the result of the macro, {@code null} if it has not been produced yet
+     */
+    public List<Block> getResult()
+    {
+        Rendering current = this.rendering;
+
+        return current != null ? current.result : null;
+    }
+
+    /**
+     * @return the documents read while producing the result
+     */
+    public Set<DocumentReference> getDependencies()
+    {
+        Rendering current = this.rendering;
+
+        return current != null ? current.dependencies : Collections.<DocumentReference> emptySet();
+    }
+
+    /**
+     * @return {@code true} if the result has expired or one of the documents it depends on has been modified since it
+     *         has been produced
+     */
+    public boolean isStale()
+    {
+        Rendering current = this.rendering;
+
+        return current == null || current.version != this.version.get()
+            || System.currentTimeMillis() > current.expirationDate;
+    }
+
+    /**
+     * @return the version to pass to {@link #setResult(List, Set, long, long)} once the result has been produced
+     */
+    public long getVersion()
+    {
+        return this.version.get();
+    }
+
+    /**
+     * Indicate that one of the documents the result depends on has been modified.
+     */
+    public void invalidate()
+    {
+        this.version.incrementAndGet();
+    }
+
+    /**
+     * Try to become the thread refreshing the result.
+     *
+     * @return {@code true} if the calling thread should refresh the result, {@code false} if another thread is already
+     *         refreshing it
+     */
+    public boolean startRefresh()
+    {
+        return this.refreshing.compareAndSet(false, true);
+    }
+
+    /**
+     * Allow another thread to refresh the result.
+     */
+    public void endRefresh()
+    {
+        this.refreshing.set(false);
+    }
+
+    /**
+     * @param result the new result of the macro
+     * @param dependencies the documents read while producing the result
+     * @param timeToLive the number of seconds the result stays fresh
+     * @param version the value returned by {@link #getVersion()} before producing the result; if a document the result
+     *            depends on has been modified since, the result is stale as soon as it is set
+     */
+    public void setResult(List<Block> result, Set<DocumentReference> dependencies, long timeToLive, long version)
+    {
+        this.rendering =
+            new Rendering(result, dependencies, System.currentTimeMillis() + timeToLive * 1000L, version);
+    }
+}
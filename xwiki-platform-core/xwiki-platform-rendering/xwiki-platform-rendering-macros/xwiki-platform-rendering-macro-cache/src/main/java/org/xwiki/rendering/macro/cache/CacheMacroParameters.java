@@ -45,10 +45,10 @@
     private int maxEntries = 1000;
 
     /**
-     * @return the optional unique id to use to cache the content. If not defined then use the content itself as the id
-     *         but this doesn't guarantee unicity since the same content could be located on several pages with
-     *         different results. Also note that the id is considered containing wiki syntax; this is done so that the
-     *         user can use script macros to generate the id
+     * @return the optional unique id to use to cache the content. If not defined then use the content itself and the
+     *         document where it is located as the id, so that the same content located on several pages is cached for
+     *         each page. Pages using the same id share the same cached content. Also note that the id is considered
+     *         containing wiki syntax; this is done so that the user can use script macros to generate the id
      */
     public String getId()
     {
@@ -58,7 +58,7 @@ public String getId()
     /**
      * @param id refer to {@link #getId()}
      */
-    @PropertyDescription("a unique id under which the content is cached")
+    @PropertyDescription("a unique id under which the content is cached, shared by all the pages using it")
     public void setId(String id)
     {
         this.id = id;
@@ -20,10 +20,17 @@
 package org.xwiki.rendering.internal.macro.cache;
 
 import java.io.StringWriter;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.junit.Assert;
 import org.junit.Test;
+import org.xwiki.bridge.RenderingDependencyRecorder;
+import org.xwiki.bridge.event.DocumentUpdatedEvent;
+import org.xwiki.context.Execution;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.observation.ObservationManager;
 import org.xwiki.rendering.block.Block;
 import org.xwiki.rendering.internal.transformation.macro.MacroTransformation;
 import org.xwiki.rendering.macro.Macro;
@@ -46,6 +53,35 @@
  */
 public class CacheMacroTest extends AbstractComponentTestCase
 {
+    /**
+     * Reads a document, from the point of view of the cache macro.
+     */
+    public static class DocumentReader
+    {
+        private final DocumentReference reference;
+
+        private final Map<Object, Object> xcontext;
+
+        private String content;
+
+        public DocumentReader(DocumentReference reference, Map<Object, Object> xcontext)
+        {
+            this.reference = reference;
+            this.xcontext = xcontext;
+        }
+
+        public void setContent(String content)
+        {
+            this.content = content;
+        }
+
+        public String read()
+        {
+            RenderingDependencyRecorder.record(this.reference, this.xcontext);
+            return this.content;
+        }
+    }
+
     private ScriptMockSetup mockSetup;
 
     private CacheMacro cacheMacro;
@@ -215,6 +251,67 @@ public void testExecuteWithDifferentMaxEntries() throws Exception
         Assert.assertFalse(result2.equals(result1));
     }
 
+    @Test
+    public void testExecuteWhenDependencyIsModified() throws Exception
+    {
+        String expected = "beginDocument\n"
+            + "beginMacroMarkerStandalone [velocity] [] [$reader.read()]\n"
+            + "beginParagraph\n"
+            + "onWord [%s]\n"
+            + "endParagraph\n"
+            + "endMacroMarkerStandalone [velocity] [] [$reader.read()]\n"
+            + "endDocument";
+
+        Map<Object, Object> xcontext = new HashMap<Object, Object>();
+        getComponentManager().<Execution> getInstance(Execution.class).getContext().setProperty("xwikicontext",
+            xcontext);
+
+        DocumentReference documentReference = new DocumentReference("wiki", "Space", "Page");
+        DocumentReader reader = new DocumentReader(documentReference, xcontext);
+        reader.setContent("content");
+        VelocityManager velocityManager = getComponentManager().getInstance(VelocityManager.class);
+        velocityManager.getVelocityContext().put("reader", reader);
+
+        CacheMacroParameters params = new CacheMacroParameters();
+        MacroTransformationContext context = createMacroTransformationContext();
+
+        List<Block> result = this.cacheMacro.execute(params, "{{velocity}}$reader.read(){{/velocity}}", context);
+        assertBlocks(String.format(expected, "content"), result, this.rendererFactory);
+
+        // The modification of another document doesn't invalidate the cached content.
+        reader.setContent("newcontent");
+        ObservationManager observationManager = getComponentManager().getInstance(ObservationManager.class);
+        observationManager.notify(new DocumentUpdatedEvent(new DocumentReference("wiki", "Space", "Other")), null,
+            null);
+        result = this.cacheMacro.execute(params, "{{velocity}}$reader.read(){{/velocity}}", context);
+        assertBlocks(String.format(expected, "content"), result, this.rendererFactory);
+
+        // The modification of the document read does.
+        observationManager.notify(new DocumentUpdatedEvent(documentReference), null, null);
+        result = this.cacheMacro.execute(params, "{{velocity}}$reader.read(){{/velocity}}", context);
+        assertBlocks(String.format(expected, "newcontent"), result, this.rendererFactory);
+    }
+
+    @Test
+    public void testExecuteWhenSameContentOnDifferentDocuments() throws Exception
+    {
+        CacheMacroParameters params = new CacheMacroParameters();
+        MacroTransformationContext context = createMacroTransformationContext();
+
+        context.setId("wiki:Space.Page1");
+        List<Block> result1 = this.cacheMacro.execute(params, "content", context);
+
+        // Without id the cached content isn't shared between documents.
+        context.setId("wiki:Space.Page2");
+        Assert.assertNotSame(result1, this.cacheMacro.execute(params, "content", context));
+
+        // With an id it is.
+        params.setId("sharedid");
+        List<Block> result2 = this.cacheMacro.execute(params, "content", context);
+        context.setId("wiki:Space.Page1");
+        Assert.assertSame(result2, this.cacheMacro.execute(params, "other content", context));
+    }
+
     private MacroTransformationContext createMacroTransformationContext() throws Exception
     {
         MacroTransformation macroTransformation =
@@ -30,6 +30,9 @@
 import org.slf4j.Logger;
 import org.xwiki.component.annotation.Component;
 import org.xwiki.component.manager.ComponentLookupException;
+import org.xwiki.instrumentation.Instrumentation;
+import org.xwiki.instrumentation.Phase;
+import org.xwiki.instrumentation.Span;
 import org.xwiki.rendering.macro.MacroExecutionException;
 import org.xwiki.rendering.macro.descriptor.DefaultContentDescriptor;
 import org.xwiki.rendering.macro.script.AbstractScriptMacro;
@@ -121,7 +124,14 @@ protected String evaluateString(VelocityMacroParameters parameters, String conte
                 key = "unknown namespace";
             }
 
-            this.velocityManager.getVelocityEngine().evaluate(velocityContext, writer, key, cleanedContent);
+            Span span = startSpan(key);
+            try {
+                this.velocityManager.getVelocityEngine().evaluate(velocityContext, writer, key, cleanedContent);
+            } finally {
+                if (span != null) {
+                    span.end();
+                }
+            }
             result = writer.toString();
 
             if (filter != null) {
@@ -134,6 +144,21 @@ protected String evaluateString(VelocityMacroParameters parameters, String conte
         return result;
     }
 
+    /**
+     * @param key the name under which the script is evaluated
+     * @return the span measuring the evaluation of the script, {@code null} if the instrumentation is not available
+     */
+    private Span startSpan(String key)
+    {
+        try {
+            Instrumentation instrumentation = getComponentManager().getInstance(Instrumentation.class);
+
+            return instrumentation.startSpan(Phase.VELOCITY, key);
+        } catch (ComponentLookupException e) {
+            return null;
+        }
+    }
+
     /**
      * @param parameters the velocity macros parameters
      * @return the velocity content filter
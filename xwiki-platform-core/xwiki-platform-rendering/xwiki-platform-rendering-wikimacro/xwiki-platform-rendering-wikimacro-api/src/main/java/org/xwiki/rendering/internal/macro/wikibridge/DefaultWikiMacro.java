@@ -19,22 +19,30 @@
  */
 package org.xwiki.rendering.internal.macro.wikibridge;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.xwiki.component.manager.ComponentLookupException;
 import org.xwiki.component.manager.ComponentManager;
 import org.xwiki.context.Execution;
+import org.xwiki.instrumentation.Instrumentation;
+import org.xwiki.instrumentation.Phase;
+import org.xwiki.instrumentation.Span;
 import org.xwiki.model.reference.DocumentReference;
 import org.xwiki.observation.ObservationManager;
 import org.xwiki.rendering.block.Block;
+import org.xwiki.rendering.block.Block.Axes;
+import org.xwiki.rendering.block.CompositeBlock;
 import org.xwiki.rendering.block.MacroBlock;
 import org.xwiki.rendering.block.MacroMarkerBlock;
 import org.xwiki.rendering.block.MetaDataBlock;
 import org.xwiki.rendering.block.ParagraphBlock;
 import org.xwiki.rendering.block.XDOM;
+import org.xwiki.rendering.block.match.ClassBlockMatcher;
 import org.xwiki.rendering.internal.macro.script.NestedScriptMacroEnabled;
 import org.xwiki.rendering.macro.Macro;
 import org.xwiki.rendering.macro.MacroExecutionException;
@@ -98,6 +106,12 @@ public class DefaultWikiMacro implements WikiMacro, NestedScriptMacroEnabled
      */
     private static final WikiMacroExecutionFinishedEvent ENDEXECUTION_EVENT = new WikiMacroExecutionFinishedEvent();
 
+    /**
+     * Used to give a different version to each instance, a new instance being created each time the macro document is
+     * modified.
+     */
+    private static final AtomicLong VERSIONS = new AtomicLong();
+
     /**
      * The {@link MacroDescriptor} for this macro.
      */
@@ -123,6 +137,26 @@ public class DefaultWikiMacro implements WikiMacro, NestedScriptMacroEnabled
      */
     private XDOM content;
 
+    /**
+     * Macro content prepared for the inline mode, the same as {@link #content} if it doesn't start with a macro.
+     */
+    private XDOM inlineContent;
+
+    /**
+     * Whether the macro content contains macros, which need to be executed.
+     */
+    private boolean containsMacros;
+
+    /**
+     * Whether the result of the macro depends only on its parameters and content and can be cached.
+     */
+    private boolean cached;
+
+    /**
+     * The version of the macro, used to make sure that cached results of a previous version are not used.
+     */
+    private long version = VERSIONS.incrementAndGet();
+
     /**
      * Syntax id.
      */
@@ -147,14 +181,41 @@ public class DefaultWikiMacro implements WikiMacro, NestedScriptMacroEnabled
     public DefaultWikiMacro(DocumentReference macroDocumentReference, DocumentReference macroAuthor,
         boolean supportsInlineMode, MacroDescriptor descriptor, XDOM macroContent, Syntax syntax,
         ComponentManager componentManager)
+    {
+        this(macroDocumentReference, macroAuthor, supportsInlineMode, false, descriptor, macroContent, syntax,
+            componentManager);
+    }
+
+    /**
+     * Constructs a new {@link DefaultWikiMacro}.
+     * 
+     * @param macroDocumentReference the name of the document which contains the definition of this macro
+     * @param macroAuthor the user to be used to check rights for the macro
+     * @param supportsInlineMode says if macro support inline mode or not
+     * @param cached says if the result of the macro depends only on its parameters and content, and can be cached
+     * @param descriptor the {@link MacroDescriptor} describing this macro.
+     * @param macroContent macro content to be evaluated.
+     * @param syntax syntax of the macroContent source.
+     * @param componentManager {@link ComponentManager} component used to look up for other components.
+     * @since 4.4M1
+     */
+    public DefaultWikiMacro(DocumentReference macroDocumentReference, DocumentReference macroAuthor,
+        boolean supportsInlineMode, boolean cached, MacroDescriptor descriptor, XDOM macroContent, Syntax syntax,
+        ComponentManager componentManager)
     {
         this.macroDocumentReference = macroDocumentReference;
         this.macroAuthor = macroAuthor;
         this.supportsInlineMode = supportsInlineMode;
+        this.cached = cached;
         this.descriptor = descriptor;
         this.content = macroContent;
         this.syntax = syntax;
         this.componentManager = componentManager;
+
+        // The content is the same for all the executions, so it's prepared only once.
+        this.inlineContent = prepareInlineContent(macroContent);
+        this.containsMacros =
+            !macroContent.getBlocks(new ClassBlockMatcher(MacroBlock.class), Axes.DESCENDANT).isEmpty();
     }
 
     @Override
@@ -163,9 +224,68 @@ public List<Block> execute(WikiMacroParameters parameters, String macroContent,
     {
         validate(parameters, macroContent);
 
-        // Parse the wiki macro content.
-        XDOM xdom = prepareWikiMacroContent(context);
+        Span span = startSpan();
+        try {
+            WikiMacroResultCache resultCache = this.cached ? getResultCache() : null;
+            String cacheKey = null;
+            if (resultCache != null) {
+                cacheKey = getCacheKey(parameters, macroContent, context.isInline());
+                List<Block> cachedResult = resultCache.get(cacheKey);
+                if (cachedResult != null) {
+                    return cloneBlocks(cachedResult);
+                }
+            }
+
+            // Clone the prepared wiki macro content.
+            XDOM xdom = (context.isInline() ? this.inlineContent : this.content).clone();
+
+            List<Block> result;
+            if (this.containsMacros) {
+                result = executeMacros(xdom, parameters, macroContent, context);
+            } else {
+                // Nothing to execute: the result is the content itself.
+                result = extractResult(xdom.getChildren(), Collections.<String, Object> emptyMap(), context);
+            }
+
+            if (resultCache != null) {
+                resultCache.set(cacheKey, cloneDetachedBlocks(result));
+            }
+
+            return result;
+        } finally {
+            if (span != null) {
+                span.end();
+            }
+        }
+    }
+
+    /**
+     * @return the span measuring the execution of this macro, {@code null} if the instrumentation is not available
+     */
+    private Span startSpan()
+    {
+        try {
+            Instrumentation instrumentation = this.componentManager.getInstance(Instrumentation.class);
+
+            return instrumentation.startSpan(Phase.MACRO, getId());
+        } catch (ComponentLookupException e) {
+            return null;
+        }
+    }
 
+    /**
+     * Execute the macros contained in the wiki macro content.
+     * 
+     * @param xdom the wiki macro content, which is modified
+     * @param parameters the parameters of the wiki macro
+     * @param macroContent the content of the wiki macro
+     * @param context the macro execution context
+     * @return the result of the wiki macro
+     * @throws MacroExecutionException if the execution of the macros fails
+     */
+    private List<Block> executeMacros(XDOM xdom, WikiMacroParameters parameters, String macroContent,
+        MacroTransformationContext context) throws MacroExecutionException
+    {
         // Prepare macro context.
         Map<String, Object> macroBinding = new HashMap<String, Object>();
         macroBinding.put(MACRO_PARAMS_KEY, parameters);
@@ -277,30 +397,106 @@ private void removeTopLevelParagraph(List<Block> blocks)
     }
 
     /**
-     * Clone and filter wiki macro content depending of the context.
+     * Prepare the wiki macro content for the inline mode.
      * 
-     * @param context the macro execution context
-     * @return the cleaned wiki macro content
+     * @param macroContent the wiki macro content
+     * @return the wiki macro content to use in inline mode
      */
-    private XDOM prepareWikiMacroContent(MacroTransformationContext context)
+    private XDOM prepareInlineContent(XDOM macroContent)
     {
-        XDOM xdom = this.content.clone();
-
         // Macro code segment is always parsed into a separate xdom document. Now if this code segment starts with
         // another macro block, it will always be interpreted as a block macro regardless of the current wiki macro's
         // context (because as far as the nested macro is concerned, it starts on a new line). This will introduce
         // unnecessary paragraph elements when the wiki macro is used inline, so we need to force such opening macro
         // blocks to behave as inline macros if the wiki macro is used inline.
-        if (context.isInline()) {
-            List<Block> children = xdom.getChildren();
-            if (children.size() > 0 && children.get(0) instanceof MacroBlock) {
-                MacroBlock old = (MacroBlock) children.get(0);
-                MacroBlock replacement = new MacroBlock(old.getId(), old.getParameters(), old.getContent(), true);
-                xdom.replaceChild(replacement, old);
-            }
+        List<Block> children = macroContent.getChildren();
+        if (children.size() > 0 && children.get(0) instanceof MacroBlock) {
+            XDOM xdom = macroContent.clone();
+            MacroBlock old = (MacroBlock) xdom.getChildren().get(0);
+            MacroBlock replacement = new MacroBlock(old.getId(), old.getParameters(), old.getContent(), true);
+            xdom.replaceChild(replacement, old);
+
+            return xdom;
         }
 
-        return xdom;
+        return macroContent;
+    }
+
+    /**
+     * @return the cache of the results of the wiki macros, {@code null} if it's not available
+     */
+    private WikiMacroResultCache getResultCache()
+    {
+        try {
+            return this.componentManager.getInstance(WikiMacroResultCache.class);
+        } catch (ComponentLookupException e) {
+            // The result is not cached, the macro is executed each time.
+            return null;
+        }
+    }
+
+    /**
+     * @param parameters the parameters of the wiki macro, including the default values
+     * @param macroContent the content of the wiki macro
+     * @param inline whether the wiki macro is used in inline mode
+     * @return the key of the result in the wiki macro result cache
+     */
+    private String getCacheKey(WikiMacroParameters parameters, String macroContent, boolean inline)
+    {
+        StringBuilder key = new StringBuilder();
+
+        key.append(this.version);
+        key.append(inline ? 'i' : 'b');
+
+        List<String> parameterNames = new ArrayList<String>(parameters.getParameterNames());
+        Collections.sort(parameterNames);
+        for (String parameterName : parameterNames) {
+            appendCacheKeyElement(key, parameterName);
+            Object parameterValue = parameters.get(parameterName);
+            appendCacheKeyElement(key, parameterValue != null ? parameterValue.toString() : null);
+        }
+        appendCacheKeyElement(key, macroContent);
+
+        return key.toString();
+    }
+
+    /**
+     * Append an element to a cache key, prefixed with its length so that the elements can't be confused.
+     * 
+     * @param key the cache key
+     * @param element the element to append
+     */
+    private void appendCacheKeyElement(StringBuilder key, String element)
+    {
+        if (element == null) {
+            key.append('-');
+        } else {
+            key.append(element.length()).append(':').append(element);
+        }
+    }
+
+    /**
+     * @param blocks the blocks to clone
+     * @return a deep copy of the blocks
+     */
+    private List<Block> cloneBlocks(List<Block> blocks)
+    {
+        List<Block> clones = new ArrayList<Block>(blocks.size());
+        for (Block block : blocks) {
+            clones.add(block.clone());
+        }
+
+        return clones;
+    }
+
+    /**
+     * @param blocks the blocks to clone
+     * @return a deep copy of the blocks, detached from the document the blocks are part of
+     */
+    private List<Block> cloneDetachedBlocks(List<Block> blocks)
+    {
+        // The clones keep the parent of the original blocks, which would retain the calling document in the cache.
+        return new CompositeBlock(cloneBlocks(blocks)).getChildren();
     }
 
     /**
@@ -0,0 +1,95 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.rendering.internal.macro.wikibridge;
+
+import java.util.List;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.xwiki.cache.Cache;
+import org.xwiki.cache.CacheException;
+import org.xwiki.cache.CacheManager;
+import org.xwiki.cache.config.CacheConfiguration;
+import org.xwiki.cache.eviction.LRUEvictionConfiguration;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.component.phase.Initializable;
+import org.xwiki.component.phase.InitializationException;
+import org.xwiki.rendering.block.Block;
+
+/**
+ * Default implementation of {@link WikiMacroResultCache}, keeping the results in a LRU cache.
+ * 
+ * @version $Id$
+ * @since 4.4M1
+ */
+@Component
+@Singleton
+public class DefaultWikiMacroResultCache implements WikiMacroResultCache, Initializable
+{
+    /**
+     * The identifier of the cache configuration.
+     */
+    private static final String CACHE_ID = "rendering.wikimacro.results";
+
+    /**
+     * The maximum number of cached results.
+     */
+    private static final int CACHE_CAPACITY = 1000;
+
+    /**
+     * Used to create the cache.
+     */
+    @Inject
+    private CacheManager cacheManager;
+
+    /**
+     * The cached results.
+     */
+    private Cache<List<Block>> cache;
+
+    @Override
+    public void initialize() throws InitializationException
+    {
+        CacheConfiguration configuration = new CacheConfiguration();
+        configuration.setConfigurationId(CACHE_ID);
+        LRUEvictionConfiguration lru = new LRUEvictionConfiguration();
+        lru.setMaxEntries(CACHE_CAPACITY);
+        configuration.put(LRUEvictionConfiguration.CONFIGURATIONID, lru);
+
+        try {
+            this.cache = this.cacheManager.createNewLocalCache(configuration);
+        } catch (CacheException e) {
+            throw new InitializationException("Failed to create the wiki macro result cache", e);
+        }
+    }
+
+    @Override
+    public List<Block> get(String key)
+    {
+        return this.cache.get(key);
+    }
+
+    @Override
+    public void set(String key, List<Block> result)
+    {
+        this.cache.set(key, result);
+    }
+}
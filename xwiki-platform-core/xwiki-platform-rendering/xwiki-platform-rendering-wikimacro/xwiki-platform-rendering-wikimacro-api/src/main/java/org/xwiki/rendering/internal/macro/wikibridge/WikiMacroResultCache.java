@@ -0,0 +1,49 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.rendering.internal.macro.wikibridge;
+
+import java.util.List;
+
+import org.xwiki.component.annotation.Role;
+import org.xwiki.rendering.block.Block;
+
+/**
+ * Keep the result of the executions of the wiki macros declared as cached, whose result depends only on their
+ * parameters and content.
+ * 
+ * @version $Id$
+ * @since 4.4M1
+ */
+@Role
+public interface WikiMacroResultCache
+{
+    /**
+     * @param key the key identifying the macro version, parameters and content
+     * @return the cached result, {@code null} if the macro has not been executed with these parameters and content;
+     *         the returned blocks are shared and must be cloned before being used
+     */
+    List<Block> get(String key);
+
+    /**
+     * @param key the key identifying the macro version, parameters and content
+     * @param result the result of the macro execution, which must not be modified anymore by the caller
+     */
+    void set(String key, List<Block> result);
+}
@@ -37,6 +37,8 @@
 import org.xwiki.component.descriptor.DefaultComponentDescriptor;
 import org.xwiki.context.Execution;
 import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.rendering.block.Block;
+import org.xwiki.rendering.block.XDOM;
 import org.xwiki.rendering.converter.Converter;
 import org.xwiki.rendering.listener.reference.DocumentResourceReference;
 import org.xwiki.rendering.macro.MacroId;
@@ -293,6 +295,64 @@ public void testDefaultParameterValues() throws Exception
         Assert.assertEquals("<p>default_value</p>", printer.toString());
     }
 
+    /**
+     * The result of a cached wiki macro is computed only once for the same parameters.
+     */
+    @Test
+    public void testExecuteWhenCached() throws Exception
+    {
+        final Map<String, List<Block>> results = new HashMap<String, List<Block>>();
+        DefaultComponentDescriptor<WikiMacroResultCache> descriptor =
+            new DefaultComponentDescriptor<WikiMacroResultCache>();
+        descriptor.setRole(WikiMacroResultCache.class);
+        getComponentManager().registerComponent(descriptor, new WikiMacroResultCache()
+        {
+            @Override
+            public List<Block> get(String key)
+            {
+                return results.get(key);
+            }
+
+            @Override
+            public void set(String key, List<Block> result)
+            {
+                results.put(key, result);
+            }
+        });
+
+        List<WikiMacroParameterDescriptor> parameterDescriptors =
+            Arrays.asList(new WikiMacroParameterDescriptor("param1", "This is param1", true));
+        registerWikiMacro("cachedmacro", "{{groovy}}xcontext.count = (xcontext.count ?: 0) + 1; "
+            + "print xcontext.macro.params.param1{{/groovy}}", Syntax.XWIKI_2_0, parameterDescriptors, true);
+
+        Assert.assertEquals("<p>value1</p>", convert("{{cachedmacro param1=\"value1\"/}}"));
+        Assert.assertEquals("<p>value1</p>", convert("{{cachedmacro param1=\"value1\"/}}"));
+        Assert.assertEquals("<p>value2</p>", convert("{{cachedmacro param1=\"value2\"/}}"));
+
+        Execution execution = getComponentManager().getInstance(Execution.class);
+        Map< ? , ? > xwikiContext = (Map< ? , ? >) execution.getContext().getProperty("xwikicontext");
+        Assert.assertEquals(2, xwikiContext.get("count"));
+        Assert.assertEquals(2, results.size());
+
+        // The cached blocks must not retain the document they have been rendered in.
+        for (List<Block> result : results.values()) {
+            for (Block block : result) {
+                Assert.assertFalse(block.getParent() instanceof XDOM);
+                Assert.assertNull(block.getParent().getParent());
+            }
+        }
+    }
+
+    private String convert(String content) throws Exception
+    {
+        Converter converter = getComponentManager().getInstance(Converter.class);
+
+        DefaultWikiPrinter printer = new DefaultWikiPrinter();
+        converter.convert(new StringReader(content), Syntax.XWIKI_2_0, Syntax.XHTML_1_0, printer);
+
+        return printer.toString();
+    }
+
     private void registerWikiMacro(String macroId, String macroContent, Syntax syntax) throws Exception
     {
         List<WikiMacroParameterDescriptor> parameterDescriptors =
@@ -303,6 +363,12 @@ private void registerWikiMacro(String macroId, String macroContent, Syntax synta
 
     private void registerWikiMacro(String macroId, String macroContent, Syntax syntax,
         List<WikiMacroParameterDescriptor> parameterDescriptors) throws Exception
+    {
+        registerWikiMacro(macroId, macroContent, syntax, parameterDescriptors, false);
+    }
+
+    private void registerWikiMacro(String macroId, String macroContent, Syntax syntax,
+        List<WikiMacroParameterDescriptor> parameterDescriptors, boolean cached) throws Exception
     {
         WikiMacroDescriptor descriptor =
             new WikiMacroDescriptor(new MacroId(macroId), "Wiki Macro", "Description", "Test",
@@ -311,8 +377,8 @@ private void registerWikiMacro(String macroId, String macroContent, Syntax synta
         Parser parser = getComponentManager().getInstance(Parser.class, syntax.toIdString());
 
         DefaultWikiMacro wikiMacro =
-            new DefaultWikiMacro(wikiMacroDocumentReference, null, true, descriptor, parser.parse(new StringReader(
-                macroContent)), syntax, getComponentManager());
+            new DefaultWikiMacro(wikiMacroDocumentReference, null, true, cached, descriptor,
+                parser.parse(new StringReader(macroContent)), syntax, getComponentManager());
 
         this.wikiMacroManager.registerWikiMacro(wikiMacroDocumentReference, wikiMacro);
     }
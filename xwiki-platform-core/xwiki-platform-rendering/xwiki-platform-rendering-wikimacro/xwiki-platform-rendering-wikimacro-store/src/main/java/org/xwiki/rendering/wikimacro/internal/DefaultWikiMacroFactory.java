@@ -138,6 +138,7 @@ private WikiMacro buildMacro(XWikiDocument doc) throws WikiMacroException
         WikiMacroVisibility macroVisibility =
             WikiMacroVisibility.fromString(macroDefinition.getStringValue(MACRO_VISIBILITY_PROPERTY));
         boolean macroSupportsInlineMode = (macroDefinition.getIntValue(MACRO_INLINE_PROPERTY) == 0) ? false : true;
+        boolean macroCached = macroDefinition.getIntValue(MACRO_CACHED_PROPERTY) != 0;
         String macroContentType = macroDefinition.getStringValue(MACRO_CONTENT_TYPE_PROPERTY);
         String macroContentDescription = macroDefinition.getStringValue(MACRO_CONTENT_DESCRIPTION_PROPERTY);
         String macroCode = macroDefinition.getStringValue(MACRO_CODE_PROPERTY);
@@ -251,7 +252,7 @@ private WikiMacro buildMacro(XWikiDocument doc) throws WikiMacroException
 
         // Create & return the macro.
         return new DefaultWikiMacro(documentReference, doc.getAuthorReference(), macroSupportsInlineMode,
-            macroDescriptor, xdom, doc.getSyntax(), this.componentManager);
+            macroCached, macroDescriptor, xdom, doc.getSyntax(), this.componentManager);
     }
 
     @Override
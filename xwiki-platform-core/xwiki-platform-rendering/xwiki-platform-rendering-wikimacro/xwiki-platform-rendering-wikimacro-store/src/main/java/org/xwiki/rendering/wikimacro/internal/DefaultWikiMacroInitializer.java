@@ -275,6 +275,9 @@ public void installOrUpgradeWikiMacroClasses() throws Exception
         needsUpdate |= bclass.addTextAreaField(MACRO_DESCRIPTION_PROPERTY, "Macro description", 40, 5);
         needsUpdate |= bclass.addTextField(MACRO_DEFAULT_CATEGORY_PROPERTY, "Default category", 30);
         needsUpdate |= bclass.addBooleanField(MACRO_INLINE_PROPERTY, "Supports inline mode", "yesno");
+        needsUpdate |=
+            bclass.addBooleanField(MACRO_CACHED_PROPERTY,
+                "Cache the result (only if it depends on nothing but the parameters and content)", "yesno");
         needsUpdate |=
             bclass.addStaticListField(MACRO_VISIBILITY_PROPERTY, "Macro visibility", 1, false,
                 "Current User|Current Wiki|Global", "select", "|");
@@ -62,6 +62,13 @@
      */
     String MACRO_INLINE_PROPERTY = "supportsInlineMode";
 
+    /**
+     * Constant for representing macro result caching property.
+     * 
+     * @since 4.4M1
+     */
+    String MACRO_CACHED_PROPERTY = "cached";
+
     /**
      * Constant for representing macro content type property.
      */
@@ -24,22 +24,27 @@
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.QueryParam;
+import javax.ws.rs.core.Response;
 
 import org.xwiki.rest.XWikiRestException;
-import org.xwiki.rest.model.jaxb.Objects;
 
 /**
+ * Returns the objects of a class. The objects are written to the response while they are loaded, and when
+ * {@code number} is positive the response links with the {@code next} relation to the following objects: the link
+ * carries a {@code cursor} continuation token which should be preferred to {@code start} for large collections.
+ *
  * @version $Id$
  */
 @Path("/wikis/{wikiName}/classes/{className}/objects")
 public interface AllObjectsForClassNameResource
 {
-    @GET Objects getObjects(
+    @GET Response getObjects(
             @PathParam("wikiName") String wikiName,
             @PathParam("className") String className,
             @QueryParam("start") @DefaultValue("0") Integer start,
             @QueryParam("number") @DefaultValue("-1") Integer number,
             @QueryParam("order") String order,
+            @QueryParam("cursor") String cursor,
             @QueryParam("prettyNames") @DefaultValue("false") Boolean withPrettyNames
     ) throws XWikiRestException;
 }
@@ -0,0 +1,63 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.rest.resources.pages;
+
+import java.util.List;
+
+import javax.ws.rs.Consumes;
+import javax.ws.rs.DefaultValue;
+import javax.ws.rs.GET;
+import javax.ws.rs.POST;
+import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+
+import org.xwiki.rest.XWikiRestException;
+
+/**
+ * Retrieve many pages with a single request. Pages are referenced by their full name, optionally prefixed by the name
+ * of another wiki, and the response is a {@code bulkPages} collection holding one {@code bulkPage} entry per
+ * reference, in the order of the request. The {@code fields} parameter is a comma separated list of the parts of the
+ * pages to return, among {@code metadata}, {@code content} and {@code objects}. The references can be passed as
+ * {@code page} query parameters or, when they don't fit in an URL, as the plain text body of a POST request, one
+ * reference per line.
+ *
+ * @version $Id$
+ * @since 4.4M1
+ */
+@Path("/wikis/{wikiName}/bulk/pages")
+public interface BulkPagesResource
+{
+    @GET Response getPages(
+            @PathParam("wikiName") String wikiName,
+            @QueryParam("page") List<String> pageReferences,
+            @QueryParam("fields") @DefaultValue("metadata") String fields,
+            @QueryParam("prettyNames") @DefaultValue("false") Boolean withPrettyNames
+    ) throws XWikiRestException;
+
+    @POST @Consumes(MediaType.TEXT_PLAIN) Response postPages(
+            @PathParam("wikiName") String wikiName,
+            @QueryParam("fields") @DefaultValue("metadata") String fields,
+            @QueryParam("prettyNames") @DefaultValue("false") Boolean withPrettyNames,
+            String pageReferences
+    ) throws XWikiRestException;
+}
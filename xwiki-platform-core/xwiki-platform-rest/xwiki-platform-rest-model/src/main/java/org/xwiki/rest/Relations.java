@@ -162,6 +162,13 @@
      */
     public static final String SYNTAXES = "http://www.xwiki.org/rel/syntaxes";
 
+    /**
+     * Relation for links pointing to the next part of a collection, which is returned in several responses.
+     *
+     * @since 4.4M1
+     */
+    public static final String NEXT = "next";
+
     /**
      * Avoid instantiation.
      */
@@ -19,6 +19,10 @@
  */
 package org.xwiki.rest;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -28,16 +32,24 @@
 import javax.ws.rs.Produces;
 import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.core.Context;
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.Request;
+import javax.ws.rs.core.Response.ResponseBuilder;
 import javax.ws.rs.core.Response.Status;
 import javax.ws.rs.core.UriInfo;
 
+import org.apache.commons.codec.digest.DigestUtils;
 import org.xwiki.component.annotation.InstantiationStrategy;
 import org.xwiki.component.descriptor.ComponentInstantiationStrategy;
 import org.xwiki.component.manager.ComponentManager;
 import org.xwiki.component.phase.Initializable;
 import org.xwiki.component.phase.InitializationException;
+import org.xwiki.context.Execution;
+import org.xwiki.context.ExecutionContext;
 import org.xwiki.model.reference.DocumentReference;
 import org.xwiki.query.QueryManager;
+import org.xwiki.rest.internal.Constants;
 import org.xwiki.rest.internal.Utils;
 import org.xwiki.rest.model.jaxb.ObjectFactory;
 
@@ -62,6 +74,18 @@ public class XWikiResource implements XWikiRestComponent, Initializable
     @Context
     protected UriInfo uriInfo;
 
+    /**
+     * <p> The current request, used to evaluate the conditional request headers. </p>
+     */
+    @Context
+    protected Request request;
+
+    /**
+     * <p> The headers of the current request. </p>
+     */
+    @Context
+    protected HttpHeaders httpHeaders;
+
     /**
      * <p> The logger to be used to output log messages. </p>
      */
@@ -214,6 +238,135 @@ public DocumentInfo getDocumentInfo(String wikiName, String spaceName, String pa
         return new DocumentInfo(doc, !existed);
     }
 
+    /**
+     * <p> Answer with 304 (Not Modified) if the client already has the current representation of a document, before
+     * the representation is built. Otherwise, the validators of the representation are sent with it so that the client
+     * can make conditional requests later. </p>
+     *
+     * @param document the document from which the representation is built
+     * @param elements the elements identifying the part of the document the representation is built from, if any
+     * @throws WebApplicationException NOT_MODIFIED if the client representation is still valid, PRECONDITION_FAILED if
+     * the request has an If-Match header not matching the current representation
+     */
+    protected void checkNotModified(Document document, Object... elements)
+    {
+        checkNotModified(document.getDate(), getDocumentState(document, elements));
+    }
+
+    /**
+     * <p> Same as {@link #checkNotModified(Document, Object...)} for the representations of a page, which also list
+     * the translations of the page. Adding or removing a translation doesn't change the version of the document so
+     * the translation list is part of the entity tag, and since removing a translation doesn't change any date the
+     * last modification date is not used. </p>
+     *
+     * @param document the document from which the page representation is built
+     * @throws XWikiException if the translations of the document cannot be listed
+     * @throws WebApplicationException NOT_MODIFIED if the client representation is still valid, PRECONDITION_FAILED if
+     * the request has an If-Match header not matching the current representation
+     */
+    protected void checkPageNotModified(Document document) throws XWikiException
+    {
+        checkNotModified((Date) null, getDocumentState(document, document.getTranslationList()));
+    }
+
+    /**
+     * <p> Same as {@link #checkNotModified(Document, Object...)} for the representations of objects, which also
+     * describe the properties of the classes of the objects. The versions of the class documents are part of the
+     * entity tag and the last modification date is the most recent date of the document and of the class documents.
+     * </p>
+     *
+     * @param document the document from which the object representations are built
+     * @param classReferences the classes of the objects
+     * @throws XWikiException if a class document cannot be loaded
+     * @throws WebApplicationException NOT_MODIFIED if the client representation is still valid, PRECONDITION_FAILED if
+     * the request has an If-Match header not matching the current representation
+     */
+    protected void checkObjectsNotModified(Document document, Collection<DocumentReference> classReferences)
+        throws XWikiException
+    {
+        XWikiContext xwikiContext = Utils.getXWikiContext(this.componentManager);
+
+        Date lastModified = document.getDate();
+        List<Object> classElements = new ArrayList<Object>();
+        for (DocumentReference classReference : classReferences) {
+            XWikiDocument classDocument = xwikiContext.getWiki().getDocument(classReference, xwikiContext);
+            classElements.add(classReference);
+            classElements.add(classDocument.getVersion());
+            if (lastModified != null && classDocument.getDate() != null
+                && classDocument.getDate().after(lastModified))
+            {
+                lastModified = classDocument.getDate();
+            }
+        }
+
+        checkNotModified(lastModified, getDocumentState(document, classElements.toArray()));
+    }
+
+    /**
+     * @param document a document
+     * @param elements the elements identifying the part of the document a representation is built from, if any
+     * @return the elements identifying the state of the document and of the given elements
+     */
+    private Object[] getDocumentState(Document document, Object... elements)
+    {
+        Object[] documentElements = new Object[elements.length + 3];
+        documentElements[0] = document.getPrefixedFullName();
+        documentElements[1] = document.getLanguage();
+        documentElements[2] = document.getVersion();
+        System.arraycopy(elements, 0, documentElements, 3, elements.length);
+
+        return documentElements;
+    }
+
+    /**
+     * <p> Answer with 304 (Not Modified) if the client already has the current representation of a resource, before
+     * the representation is built. Otherwise, the validators of the representation are sent with it so that the client
+     * can make conditional requests later. </p>
+     * <p> The entity tag is computed from the given elements, which must change each time the representation changes,
+     * and from the request URI and the accepted media types, which select the representation. </p>
+     *
+     * @param lastModified the date of the last modification of the resource
+     * @param elements the elements identifying the state of the resource, like its version
+     * @throws WebApplicationException NOT_MODIFIED if the client representation is still valid, PRECONDITION_FAILED if
+     * the request has an If-Match header not matching the current representation
+     */
+    protected void checkNotModified(Date lastModified, Object... elements)
+    {
+        StringBuilder source = new StringBuilder();
+        for (Object element : elements) {
+            source.append(element).append('\n');
+        }
+        source.append(this.uriInfo.getRequestUri()).append('\n');
+        source.append(this.httpHeaders.getAcceptableMediaTypes());
+
+        EntityTag entityTag = new EntityTag(DigestUtils.md5Hex(source.toString()));
+        // HTTP dates don't have milliseconds.
+        Date lastModifiedSeconds = lastModified != null ? new Date(lastModified.getTime() / 1000 * 1000) : null;
+
+        ResponseBuilder notModified = lastModifiedSeconds != null
+                ? this.request.evaluatePreconditions(lastModifiedSeconds, entityTag)
+                : this.request.evaluatePreconditions(entityTag);
+        if (notModified != null) {
+            notModified.tag(entityTag);
+            if (lastModifiedSeconds != null) {
+                notModified.lastModified(lastModifiedSeconds);
+            }
+            throw new WebApplicationException(notModified.build());
+        }
+
+        // Remember the validators, they are added to the representation once it has been built.
+        try {
+            ExecutionContext executionContext =
+                    this.componentManager.<Execution> getInstance(Execution.class).getContext();
+            executionContext.setProperty(Constants.ENTITY_TAG, entityTag.getValue());
+            if (lastModifiedSeconds != null) {
+                executionContext.setProperty(Constants.LAST_MODIFIED, lastModifiedSeconds);
+            }
+        } catch (Exception e) {
+            this.logger.log(Level.WARNING, "Failed to store the validators of the representation.", e);
+        }
+    }
+
     /**
      * <p> A special GET method that produces the ad-hoc "uritemplate" media type used for retrieving the URI template
      * associated to a resource. This is an auxiliary method that is used for documenting the REST API. </p>
@@ -48,4 +48,19 @@
      * The key used to store the current HTTP request object in the current Restlet context.
      */
     public static final String HTTP_REQUEST = "httpRequest";
+
+    /**
+     * The key used to store the entity tag of the representation sent in the response in the execution context.
+     *
+     * @since 4.4M1
+     */
+    public static final String ENTITY_TAG = "rest.entityTag";
+
+    /**
+     * The key used to store the last modification date of the representation sent in the response in the execution
+     * context.
+     *
+     * @since 4.4M1
+     */
+    public static final String LAST_MODIFIED = "rest.lastModified";
 }
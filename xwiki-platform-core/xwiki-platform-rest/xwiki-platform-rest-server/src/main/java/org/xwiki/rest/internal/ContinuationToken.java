@@ -0,0 +1,126 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.rest.internal;
+
+import java.io.UnsupportedEncodingException;
+
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.Response.Status;
+
+import org.apache.commons.codec.binary.Base64;
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * Encodes the position reached in a collection as an opaque token that the client passes back to get the next page.
+ * The position is the sort key of the last element returned, so that the next page is retrieved with a query starting
+ * right after it instead of skipping the elements of the previous pages, which is both faster on large collections and
+ * stable when elements are added or removed in between.
+ *
+ * @version $Id$
+ * @since 4.4M1
+ */
+public final class ContinuationToken
+{
+    /**
+     * The separator of the values in a token.
+     */
+    private static final String SEPARATOR = ":";
+
+    /**
+     * The encoding of the token values.
+     */
+    private static final String ENCODING = "UTF-8";
+
+    /**
+     * Utility class.
+     */
+    private ContinuationToken()
+    {
+    }
+
+    /**
+     * @param values the sort key of the last element returned; the string representation of the values can't contain
+     *            colons
+     * @return the token
+     */
+    public static String encode(Object... values)
+    {
+        try {
+            return Base64.encodeBase64URLSafeString(StringUtils.join(values, SEPARATOR).getBytes(ENCODING));
+        } catch (UnsupportedEncodingException e) {
+            // Should never happen since UTF-8 is always supported.
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * @param token a token passed by the client
+     * @param length the expected number of values in the token
+     * @return the values of the token
+     * @throws WebApplicationException BAD_REQUEST if the token is not valid
+     */
+    public static String[] decode(String token, int length)
+    {
+        String[] values;
+        try {
+            values = StringUtils.splitPreserveAllTokens(new String(Base64.decodeBase64(token), ENCODING), SEPARATOR);
+        } catch (UnsupportedEncodingException e) {
+            throw new RuntimeException(e);
+        }
+
+        if (values == null || values.length != length) {
+            throw invalidToken(token);
+        }
+
+        return values;
+    }
+
+    /**
+     * @param token a token passed by the client, holding numbers
+     * @param length the expected number of values in the token
+     * @return the values of the token
+     * @throws WebApplicationException BAD_REQUEST if the token is not valid
+     */
+    public static long[] decodeLongs(String token, int length)
+    {
+        String[] values = decode(token, length);
+        long[] longValues = new long[length];
+        try {
+            for (int i = 0; i < length; i++) {
+                longValues[i] = Long.parseLong(values[i]);
+            }
+        } catch (NumberFormatException e) {
+            throw invalidToken(token);
+        }
+
+        return longValues;
+    }
+
+    /**
+     * @param token a token passed by the client
+     * @return the exception to throw when the token is not valid
+     */
+    private static WebApplicationException invalidToken(String token)
+    {
+        return new WebApplicationException(Response.status(Status.BAD_REQUEST)
+            .entity(String.format("Invalid continuation token [%s].", token)).build());
+    }
+}
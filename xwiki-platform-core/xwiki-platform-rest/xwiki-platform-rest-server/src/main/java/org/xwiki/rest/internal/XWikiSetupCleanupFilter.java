@@ -20,6 +20,7 @@
 package org.xwiki.rest.internal;
 
 import java.util.Collections;
+import java.util.Date;
 import java.util.List;
 import java.util.logging.Level;
 
@@ -27,6 +28,7 @@
 
 import org.restlet.Request;
 import org.restlet.Response;
+import org.restlet.data.Tag;
 import org.restlet.ext.servlet.ServletUtils;
 import org.restlet.routing.Filter;
 import org.xwiki.component.manager.ComponentLifecycleException;
@@ -39,7 +41,7 @@
  * <p>
  * The Setup cleanup filter is used to populate the Restlet context with relevant variables that are used by JAX-RS
  * resources. It is also used to release the JAX-RS resources that are instantiated by using the component manager, in
- * order to avoid memory leaks.
+ * order to avoid memory leaks, and to add the validators computed by the resources to the representations.
  * </p>
  * 
  * @version $Id$
@@ -65,11 +67,25 @@ protected int beforeHandle(Request request, Response response)
     @Override
     protected void afterHandle(Request request, Response response)
     {
-        // Release all the JAX-RS resources that are implemented as components with per-lookup policy and that have been
-        // instantiated during this request.
         ComponentManager componentManager =
             (ComponentManager) getContext().getAttributes().get(Constants.XWIKI_COMPONENT_MANAGER);
-        for (XWikiRestComponent component : getReleasableComponents(componentManager)) {
+        ExecutionContext executionContext = getExecutionContext(componentManager);
+
+        // Add the validators of the representation, so that the client can make conditional requests.
+        if (executionContext != null && response.getEntity() != null && response.getStatus().isSuccess()) {
+            String entityTag = (String) executionContext.getProperty(Constants.ENTITY_TAG);
+            if (entityTag != null) {
+                response.getEntity().setTag(new Tag(entityTag, false));
+            }
+            Date lastModified = (Date) executionContext.getProperty(Constants.LAST_MODIFIED);
+            if (lastModified != null) {
+                response.getEntity().setModificationDate(lastModified);
+            }
+        }
+
+        // Release all the JAX-RS resources that are implemented as components with per-lookup policy and that have been
+        // instantiated during this request.
+        for (XWikiRestComponent component : getReleasableComponents(executionContext)) {
             try {
                 componentManager.release(component);
             } catch (ComponentLifecycleException e) {
@@ -88,21 +104,33 @@ protected void afterHandle(Request request, Response response)
 
     /**
      * @param componentManager the component manager
-     * @return the list of JAX-RS resources that are implemented as components with per-lookup policy and that have been
-     *         instantiated during this request
+     * @return the execution context of the current request, {@code null} if it can't be retrieved
      */
-    private List<XWikiRestComponent> getReleasableComponents(ComponentManager componentManager)
+    private ExecutionContext getExecutionContext(ComponentManager componentManager)
     {
         try {
-            ExecutionContext executionContext = componentManager.<Execution> getInstance(Execution.class).getContext();
-            @SuppressWarnings("unchecked")
-            List<XWikiRestComponent> releasableComponents =
-                (List<XWikiRestComponent>) executionContext.getProperty(Constants.RELEASABLE_COMPONENT_REFERENCES);
-            return releasableComponents != null ? releasableComponents : Collections.<XWikiRestComponent> emptyList();
+            return componentManager.<Execution> getInstance(Execution.class).getContext();
         } catch (Exception e) {
-            getLogger().log(Level.WARNING, "Failed to retrieve the list of releasable components.", e);
+            getLogger().log(Level.WARNING, "Failed to retrieve the execution context.", e);
+            return null;
+        }
+    }
+
+    /**
+     * @param executionContext the execution context of the current request
+     * @return the list of JAX-RS resources that are implemented as components with per-lookup policy and that have been
+     *         instantiated during this request
+     */
+    private List<XWikiRestComponent> getReleasableComponents(ExecutionContext executionContext)
+    {
+        if (executionContext == null) {
             return Collections.emptyList();
         }
+
+        @SuppressWarnings("unchecked")
+        List<XWikiRestComponent> releasableComponents =
+            (List<XWikiRestComponent>) executionContext.getProperty(Constants.RELEASABLE_COMPONENT_REFERENCES);
+        return releasableComponents != null ? releasableComponents : Collections.<XWikiRestComponent> emptyList();
     }
 
     /**
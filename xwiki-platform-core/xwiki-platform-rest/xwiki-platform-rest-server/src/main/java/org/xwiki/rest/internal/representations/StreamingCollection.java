@@ -0,0 +1,111 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.rest.internal.representations;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import org.xwiki.rest.model.jaxb.Link;
+
+/**
+ * A collection of model objects which is written to the response while its elements are produced, instead of being
+ * built in memory first. It is serialized by {@link StreamingCollectionWriter} as an XML element, or a JSON object,
+ * holding the links of the collection followed by the representation of each element. Since the links are written
+ * first, they must be known before the elements are produced: a collection split in pages links to its next page
+ * with a continuation token computed beforehand.
+ * <p>
+ * The response is already being sent when the elements are produced, so an element which can't be produced can't be
+ * reported with an error status anymore: the iterator should throw an exception instead, which aborts the response
+ * and leaves it incomplete rather than silently truncated. Errors which can be detected before the response is sent
+ * (for example a failing query) should be checked beforehand by calling {@link Iterator#hasNext()}.
+ *
+ * @param <E> the type of the elements, a JAXB model class annotated with {@code XmlRootElement}
+ * @version $Id$
+ * @since 4.4M1
+ */
+public class StreamingCollection<E>
+{
+    /**
+     * The name of the collection element.
+     */
+    private final String name;
+
+    /**
+     * The name of the JSON property holding the elements.
+     */
+    private final String property;
+
+    /**
+     * Produces the elements of the collection.
+     */
+    private final Iterator<E> elements;
+
+    /**
+     * The links of the collection.
+     */
+    private final List<Link> links = new ArrayList<Link>();
+
+    /**
+     * @param name the name of the collection element, as declared in the model schema
+     * @param property the name of the JSON property holding the elements, which is the name of the property of the
+     *            JAXB collection class holding them (for example {@code objectSummaries} for {@code objects})
+     * @param elements produces the elements of the collection; it is consumed while the response is written, when
+     *            the XWiki context of the request is still available
+     */
+    public StreamingCollection(String name, String property, Iterator<E> elements)
+    {
+        this.name = name;
+        this.property = property;
+        this.elements = elements;
+    }
+
+    /**
+     * @return the name of the collection element
+     */
+    public String getName()
+    {
+        return this.name;
+    }
+
+    /**
+     * @return the name of the JSON property holding the elements
+     */
+    public String getProperty()
+    {
+        return this.property;
+    }
+
+    /**
+     * @return the iterator producing the elements of the collection
+     */
+    public Iterator<E> getElements()
+    {
+        return this.elements;
+    }
+
+    /**
+     * @return the links of the collection, written before the elements
+     */
+    public List<Link> getLinks()
+    {
+        return this.links;
+    }
+}
@@ -0,0 +1,260 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.rest.internal.representations;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+import java.util.Iterator;
+import java.util.List;
+
+import javax.ws.rs.Produces;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.core.Response.Status;
+import javax.ws.rs.ext.MessageBodyWriter;
+import javax.ws.rs.ext.Provider;
+import javax.ws.rs.ext.Providers;
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBElement;
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Marshaller;
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+import org.apache.commons.io.output.CloseShieldOutputStream;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.rest.XWikiRestComponent;
+import org.xwiki.rest.model.jaxb.Link;
+import org.xwiki.rest.model.jaxb.ObjectFactory;
+
+/**
+ * Writes a {@link StreamingCollection} element by element, so that the memory used to serve a large collection doesn't
+ * depend on its size.
+ * <p>
+ * In XML the links and the elements are marshalled as fragments of the collection element, which gives the same
+ * document as marshalling the corresponding JAXB collection. In JSON each element is written by the provider handling
+ * the JAXB model objects in JSON, the collection being a JSON object holding the array of the links and the array of
+ * the elements, named like the properties of the corresponding JAXB collection.
+ *
+ * @version $Id$
+ * @since 4.4M1
+ */
+@Component("org.xwiki.rest.internal.representations.StreamingCollectionWriter")
+@Provider
+@Produces({MediaType.APPLICATION_XML, MediaType.APPLICATION_JSON})
+public class StreamingCollectionWriter implements MessageBodyWriter<StreamingCollection< ? >>, XWikiRestComponent
+{
+    /**
+     * The namespace of the model elements.
+     */
+    private static final String NAMESPACE = "http://www.xwiki.org";
+
+    /**
+     * The encoding of the representations.
+     */
+    private static final String ENCODING = "UTF-8";
+
+    /**
+     * The name of the link elements.
+     */
+    private static final QName LINK_NAME = new QName(NAMESPACE, "link");
+
+    /**
+     * The JAXB context of the model, created on first use since it is costly.
+     */
+    private static JAXBContext jaxbContext;
+
+    /**
+     * Used to find the writer of the elements in JSON.
+     */
+    @Context
+    private Providers providers;
+
+    @Override
+    public boolean isWriteable(Class< ? > type, Type genericType, Annotation[] annotations, MediaType mediaType)
+    {
+        return StreamingCollection.class.isAssignableFrom(type);
+    }
+
+    @Override
+    public long getSize(StreamingCollection< ? > collection, Class< ? > type, Type genericType,
+        Annotation[] annotations, MediaType mediaType)
+    {
+        // The size is not known before the collection is written.
+        return -1;
+    }
+
+    @Override
+    public void writeTo(StreamingCollection< ? > collection, Class< ? > type, Type genericType,
+        Annotation[] annotations, MediaType mediaType, MultivaluedMap<String, Object> httpHeaders,
+        OutputStream entityStream) throws IOException, WebApplicationException
+    {
+        if (mediaType.getSubtype().endsWith("json")) {
+            writeJSON(collection, annotations, mediaType, httpHeaders, entityStream);
+        } else {
+            try {
+                writeXML(collection, entityStream);
+            } catch (JAXBException e) {
+                throw new WebApplicationException(e, Status.INTERNAL_SERVER_ERROR);
+            } catch (XMLStreamException e) {
+                throw new WebApplicationException(e, Status.INTERNAL_SERVER_ERROR);
+            }
+        }
+    }
+
+    /**
+     * @param collection the collection to write
+     * @param entityStream where to write the collection
+     * @throws JAXBException if marshalling an element fails
+     * @throws XMLStreamException if writing the collection element fails
+     */
+    private void writeXML(StreamingCollection< ? > collection, OutputStream entityStream) throws JAXBException,
+        XMLStreamException
+    {
+        XMLStreamWriter writer = XMLOutputFactory.newInstance().createXMLStreamWriter(entityStream, ENCODING);
+        writer.writeStartDocument(ENCODING, "1.0");
+        writer.setDefaultNamespace(NAMESPACE);
+        writer.writeStartElement(NAMESPACE, collection.getName());
+        writer.writeDefaultNamespace(NAMESPACE);
+
+        Marshaller marshaller = getJAXBContext().createMarshaller();
+        marshaller.setProperty(Marshaller.JAXB_FRAGMENT, Boolean.TRUE);
+        for (Link link : collection.getLinks()) {
+            marshaller.marshal(new JAXBElement<Link>(LINK_NAME, Link.class, link), writer);
+        }
+        Iterator< ? > elements = collection.getElements();
+        while (elements.hasNext()) {
+            marshaller.marshal(elements.next(), writer);
+        }
+
+        writer.writeEndElement();
+        writer.writeEndDocument();
+        writer.flush();
+    }
+
+    /**
+     * @param collection the collection to write
+     * @param annotations the annotations of the resource method
+     * @param mediaType the JSON media type
+     * @param httpHeaders the headers of the response
+     * @param entityStream where to write the collection
+     * @throws IOException if writing the collection fails
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private void writeJSON(StreamingCollection< ? > collection, Annotation[] annotations, MediaType mediaType,
+        MultivaluedMap<String, Object> httpHeaders, OutputStream entityStream) throws IOException
+    {
+        // The element writers are not allowed to close the response stream.
+        OutputStream out = new CloseShieldOutputStream(entityStream);
+
+        StringBuilder header = new StringBuilder("{\"links\":[");
+        List<Link> links = collection.getLinks();
+        for (int i = 0; i < links.size(); i++) {
+            if (i > 0) {
+                header.append(',');
+            }
+            appendLink(links.get(i), header);
+        }
+        header.append("],").append(toJSONString(collection.getProperty())).append(":[");
+        out.write(header.toString().getBytes(ENCODING));
+
+        Class< ? > elementType = null;
+        MessageBodyWriter elementWriter = null;
+        Iterator< ? > elements = collection.getElements();
+        for (boolean first = true; elements.hasNext(); first = false) {
+            Object element = elements.next();
+            if (element.getClass() != elementType) {
+                elementType = element.getClass();
+                elementWriter = this.providers.getMessageBodyWriter(elementType, elementType, annotations, mediaType);
+                if (elementWriter == null) {
+                    throw new WebApplicationException(Status.NOT_ACCEPTABLE);
+                }
+            }
+            if (!first) {
+                out.write(',');
+            }
+            elementWriter.writeTo(element, elementType, elementType, annotations, mediaType, httpHeaders, out);
+        }
+        out.write("]}".getBytes(ENCODING));
+        out.flush();
+    }
+
+    /**
+     * Append the JSON representation of a link, omitting its empty attributes.
+     *
+     * @param link the link
+     * @param json where to append the link
+     */
+    private void appendLink(Link link, StringBuilder json)
+    {
+        json.append("{\"href\":").append(toJSONString(link.getHref()));
+        json.append(",\"rel\":").append(toJSONString(link.getRel()));
+        if (link.getType() != null) {
+            json.append(",\"type\":").append(toJSONString(link.getType()));
+        }
+        if (link.getHrefLang() != null) {
+            json.append(",\"hrefLang\":").append(toJSONString(link.getHrefLang()));
+        }
+        json.append('}');
+    }
+
+    /**
+     * @param value a string
+     * @return the JSON representation of the string
+     */
+    private String toJSONString(String value)
+    {
+        if (value == null) {
+            return "null";
+        }
+
+        StringBuilder json = new StringBuilder(value.length() + 2).append('"');
+        for (char c : value.toCharArray()) {
+            if (c == '"' || c == '\\') {
+                json.append('\\').append(c);
+            } else if (c < ' ') {
+                json.append(String.format("\\u%04x", (int) c));
+            } else {
+                json.append(c);
+            }
+        }
+
+        return json.append('"').toString();
+    }
+
+    /**
+     * @return the JAXB context of the model
+     * @throws JAXBException if the context can't be created
+     */
+    private static synchronized JAXBContext getJAXBContext() throws JAXBException
+    {
+        if (jaxbContext == null) {
+            jaxbContext = JAXBContext.newInstance(ObjectFactory.class);
+        }
+
+        return jaxbContext;
+    }
+}
@@ -53,6 +53,10 @@ public Response getAttachment(String wikiName, String spaceName, String pageName
                 throw new WebApplicationException(Status.NOT_FOUND);
             }
 
+            // The content of the attachment is loaded only if the client doesn't have the current version.
+            checkNotModified(xwikiAttachment.getDate(), doc.getPrefixedFullName(), attachmentName,
+                    xwikiAttachment.getVersion());
+
             return Response.ok().type(xwikiAttachment.getMimeType()).entity(xwikiAttachment.getContent()).build();
         } catch (XWikiException e) {
             throw new XWikiRestException(e);
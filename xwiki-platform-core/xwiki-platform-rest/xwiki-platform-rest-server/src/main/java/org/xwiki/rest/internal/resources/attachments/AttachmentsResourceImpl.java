@@ -58,6 +58,8 @@ public Attachments getAttachments(String wikiName, String spaceName, String page
             DocumentInfo documentInfo = getDocumentInfo(wikiName, spaceName, pageName, null, null, true, false);
             Document doc = documentInfo.getDocument();
 
+            checkNotModified(doc);
+
             return getAttachmentsForDocument(doc, start, number, withPrettyNames);
         } catch (XWikiException e) {
             throw new XWikiRestException(e);
@@ -54,6 +54,8 @@ public Comments getComments(String wikiName, String spaceName, String pageName,
 
             Document doc = documentInfo.getDocument();
 
+            checkNotModified(doc);
+
             Comments comments = objectFactory.createComments();
 
             Vector<com.xpn.xwiki.api.Object> xwikiComments = doc.getComments();
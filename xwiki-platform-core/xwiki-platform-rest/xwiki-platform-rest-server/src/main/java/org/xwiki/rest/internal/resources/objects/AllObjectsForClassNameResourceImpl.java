@@ -21,69 +21,94 @@
 
 import java.util.List;
 
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.ws.rs.core.Response;
+
+import org.apache.commons.lang3.StringUtils;
 import org.xwiki.component.annotation.Component;
-import org.xwiki.query.Query;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.model.reference.DocumentReferenceResolver;
+import org.xwiki.model.reference.EntityReferenceSerializer;
+import org.xwiki.model.reference.WikiReference;
+import org.xwiki.query.QueryException;
+import org.xwiki.rest.Relations;
 import org.xwiki.rest.XWikiResource;
 import org.xwiki.rest.XWikiRestException;
-import org.xwiki.rest.internal.DomainObjectFactory;
-import org.xwiki.rest.internal.Utils;
+import org.xwiki.rest.internal.representations.StreamingCollection;
+import org.xwiki.rest.model.jaxb.Link;
 import org.xwiki.rest.model.jaxb.ObjectSummary;
-import org.xwiki.rest.model.jaxb.Objects;
 import org.xwiki.rest.resources.objects.AllObjectsForClassNameResource;
 
-import com.xpn.xwiki.api.Document;
-import com.xpn.xwiki.doc.XWikiDocument;
-import com.xpn.xwiki.objects.BaseObject;
-
 /**
  * @version $Id$
  */
 @Component("org.xwiki.rest.internal.resources.objects.AllObjectsForClassNameResourceImpl")
 public class AllObjectsForClassNameResourceImpl extends XWikiResource implements AllObjectsForClassNameResource
 {
-    @Override
-    public Objects getObjects(String wikiName, String className, Integer start, Integer number, String order,
-            Boolean withPrettyNames) throws XWikiRestException
-    {
-        String database = Utils.getXWikiContext(componentManager).getDatabase();
-
-        try {
-            Objects objects = new Objects();
+    /**
+     * The name of the collection element, as declared in the model schema.
+     */
+    private static final String COLLECTION_NAME = "objects";
 
-            Utils.getXWikiContext(componentManager).setDatabase(wikiName);
+    /**
+     * The name of the JSON property holding the objects, as in the {@code Objects} model class.
+     */
+    private static final String COLLECTION_PROPERTY = "objectSummaries";
 
-            String query =
-                    "select doc, obj from BaseObject as obj, XWikiDocument as doc where obj.name=doc.fullName and obj.className=:className";
-            if ("date".equals(order)) {
-                query += " order by doc.date desc";
-            }
+    /**
+     * Used to resolve the class and the documents holding the objects.
+     */
+    @Inject
+    @Named("current")
+    private DocumentReferenceResolver<String> resolver;
 
-            List<Object> queryResult = null;
-            queryResult =
-                    queryManager.createQuery(query, Query.XWQL).bindValue("className", className).setLimit(number)
-                            .setOffset(start).execute();
+    /**
+     * Used to serialize the references passed to the right service.
+     */
+    @Inject
+    private EntityReferenceSerializer<String> serializer;
 
-            for (Object object : queryResult) {
-                Object[] fields = (Object[]) object;
+    @Override
+    public Response getObjects(String wikiName, String className, Integer start, Integer number, String order,
+            String cursor, Boolean withPrettyNames) throws XWikiRestException
+    {
+        ObjectKeysQuery query = new ObjectKeysQuery(this.queryManager, wikiName, className, "date".equals(order));
 
-                XWikiDocument xwikiDocument = (XWikiDocument) fields[0];
-                xwikiDocument.setDatabase(wikiName);
-                Document doc = new Document(xwikiDocument, Utils.getXWikiContext(componentManager));
-                BaseObject xwikiObject = (BaseObject) fields[1];
+        // The cursor replaces the offset: the objects are queried starting right after the object it points to.
+        Object[] after = null;
+        int offset = Math.max(0, start);
+        if (!StringUtils.isEmpty(cursor)) {
+            after = query.fromToken(cursor);
+            offset = 0;
+        }
 
-                ObjectSummary objectSummary = DomainObjectFactory
-                        .createObjectSummary(objectFactory, uriInfo.getBaseUri(), Utils.getXWikiContext(
-                                componentManager), doc, xwikiObject, false, Utils.getXWikiApi(componentManager),
-                                withPrettyNames);
+        DocumentReference classReference = this.resolver.resolve(className, new WikiReference(wikiName));
+        ObjectSummaryIterator summaries =
+            new ObjectSummaryIterator(query, after, offset, number, wikiName, classReference, withPrettyNames,
+                this.uriInfo.getBaseUri(), this.objectFactory, this.componentManager, this.resolver, this.serializer);
+        StreamingCollection<ObjectSummary> objects =
+            new StreamingCollection<ObjectSummary>(COLLECTION_NAME, COLLECTION_PROPERTY, summaries);
 
-                objects.getObjectSummaries().add(objectSummary);
+        // The links are written before the objects so the next part of the collection must be looked up first.
+        if (number > 0) {
+            try {
+                List<Object[]> rows = query.execute(after, offset + number - 1, 2);
+                if (rows.size() == 2) {
+                    Link next = this.objectFactory.createLink();
+                    next.setRel(Relations.NEXT);
+                    next.setHref(this.uriInfo.getRequestUriBuilder().replaceQueryParam("start")
+                        .replaceQueryParam("cursor", query.toToken(rows.get(0))).build().toString());
+                    objects.getLinks().add(next);
+                }
+            } catch (QueryException e) {
+                throw new XWikiRestException(e);
             }
-
-            return objects;
-        } catch (Exception e) {
-            throw new XWikiRestException(e);
-        } finally {
-            Utils.getXWikiContext(componentManager).setDatabase(database);
         }
+
+        // Query the first objects before the response is sent, so that a failing query fails the request.
+        summaries.hasNext();
+
+        return Response.ok(objects).build();
     }
 }
@@ -0,0 +1,178 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.rest.internal.resources.objects;
+
+import java.util.Date;
+import java.util.List;
+
+import org.xwiki.query.Query;
+import org.xwiki.query.QueryException;
+import org.xwiki.query.QueryManager;
+import org.xwiki.rest.internal.ContinuationToken;
+
+/**
+ * Queries the keys of the objects of a class, in the order of the collection and starting after a given object. Only
+ * the keys are selected, so that the rows are small and the objects are loaded through the document cache when they
+ * are written.
+ * <p>
+ * The rows are arrays holding the object identifier, the full name of its document, the object number and the date of
+ * the document, in this order.
+ *
+ * @version $Id$
+ * @since 4.4M1
+ */
+class ObjectKeysQuery
+{
+    /**
+     * The position of the object identifier in the rows.
+     */
+    static final int ID = 0;
+
+    /**
+     * The position of the document full name in the rows.
+     */
+    static final int DOCUMENT = 1;
+
+    /**
+     * The position of the object number in the rows.
+     */
+    static final int NUMBER = 2;
+
+    /**
+     * The position of the document date in the rows.
+     */
+    static final int DATE = 3;
+
+    /**
+     * The statement selecting the keys of the objects of a class. The translations are excluded since they share the
+     * objects of the default document.
+     */
+    private static final String STATEMENT = "select obj.id, obj.name, obj.number, doc.date "
+        + "from BaseObject as obj, XWikiDocument as doc "
+        + "where obj.name = doc.fullName and doc.language = '' and obj.className = :className";
+
+    /**
+     * The name of the query parameter holding the identifier of the last object returned.
+     */
+    private static final String ID_PARAMETER = "id";
+
+    /**
+     * The name of the query parameter holding the date of the document of the last object returned.
+     */
+    private static final String DATE_PARAMETER = "date";
+
+    /**
+     * Used to create the queries.
+     */
+    private final QueryManager queryManager;
+
+    /**
+     * The wiki to query.
+     */
+    private final String wiki;
+
+    /**
+     * The class of the objects.
+     */
+    private final String className;
+
+    /**
+     * Whether the objects are ordered by date of their document, most recent first, instead of by identifier.
+     */
+    private final boolean byDate;
+
+    /**
+     * @param queryManager used to create the queries
+     * @param wiki the wiki to query
+     * @param className the class of the objects
+     * @param byDate whether the objects are ordered by date of their document, most recent first, instead of by
+     *            identifier
+     */
+    ObjectKeysQuery(QueryManager queryManager, String wiki, String className, boolean byDate)
+    {
+        this.queryManager = queryManager;
+        this.wiki = wiki;
+        this.className = className;
+        this.byDate = byDate;
+    }
+
+    /**
+     * @param after the row of the last object returned, {@code null} to start with the first object
+     * @param offset the number of rows to skip
+     * @param limit the maximum number of rows to return
+     * @return the rows following the given one
+     * @throws QueryException if the query fails
+     */
+    List<Object[]> execute(Object[] after, int offset, int limit) throws QueryException
+    {
+        StringBuilder statement = new StringBuilder(STATEMENT);
+        if (after != null) {
+            if (this.byDate) {
+                statement.append(" and (doc.date < :date or (doc.date = :date and obj.id > :id))");
+            } else {
+                statement.append(" and obj.id > :id");
+            }
+        }
+        statement.append(this.byDate ? " order by doc.date desc, obj.id" : " order by obj.id");
+
+        Query query =
+            this.queryManager.createQuery(statement.toString(), Query.HQL).setWiki(this.wiki)
+                .bindValue("className", this.className).setOffset(offset).setLimit(limit);
+        if (after != null) {
+            query.bindValue(ID_PARAMETER, after[ID]);
+            if (this.byDate) {
+                query.bindValue(DATE_PARAMETER, after[DATE]);
+            }
+        }
+
+        return query.execute();
+    }
+
+    /**
+     * @param row the row of the last object returned
+     * @return the continuation token to pass to get the following objects
+     */
+    String toToken(Object[] row)
+    {
+        if (this.byDate) {
+            return ContinuationToken.encode(row[ID], ((Date) row[DATE]).getTime());
+        }
+
+        return ContinuationToken.encode(row[ID]);
+    }
+
+    /**
+     * @param token a continuation token passed by the client
+     * @return the partial row holding the key of the last object returned, to pass to {@link #execute}
+     */
+    Object[] fromToken(String token)
+    {
+        Object[] row = new Object[DATE + 1];
+        if (this.byDate) {
+            long[] values = ContinuationToken.decodeLongs(token, 2);
+            row[ID] = values[0];
+            row[DATE] = new Date(values[1]);
+        } else {
+            row[ID] = ContinuationToken.decodeLongs(token, 1)[0];
+        }
+
+        return row;
+    }
+}
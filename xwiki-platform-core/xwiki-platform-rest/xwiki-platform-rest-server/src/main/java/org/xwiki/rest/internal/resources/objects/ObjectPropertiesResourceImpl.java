@@ -19,6 +19,8 @@
  */
 package org.xwiki.rest.internal.resources.objects;
 
+import java.util.Collections;
+
 import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.core.Response.Status;
 import javax.ws.rs.core.UriBuilder;
@@ -58,6 +60,8 @@ public Properties getObjectProperties(String wikiName, String spaceName, String
                 throw new WebApplicationException(Status.NOT_FOUND);
             }
 
+            checkObjectsNotModified(doc, Collections.singleton(baseObject.getXClassReference()));
+
             Object object = DomainObjectFactory.createObject(objectFactory, uriInfo.getBaseUri(), Utils.getXWikiContext(
                     componentManager), doc, baseObject, false, Utils.getXWikiApi(componentManager), withPrettyNames);
 
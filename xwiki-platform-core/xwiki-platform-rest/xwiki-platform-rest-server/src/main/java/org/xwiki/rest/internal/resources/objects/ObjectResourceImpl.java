@@ -19,6 +19,8 @@
  */
 package org.xwiki.rest.internal.resources.objects;
 
+import java.util.Collections;
+
 import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.Response.Status;
@@ -54,6 +56,8 @@ public Object getObject(String wikiName, String spaceName, String pageName, Stri
                 throw new WebApplicationException(Status.NOT_FOUND);
             }
 
+            checkObjectsNotModified(doc, Collections.singleton(baseObject.getXClassReference()));
+
             return DomainObjectFactory.createObject(objectFactory, uriInfo.getBaseUri(), Utils
                     .getXWikiContext(componentManager), doc, baseObject, false, Utils.getXWikiApi(componentManager),
                     withPrettyNames);
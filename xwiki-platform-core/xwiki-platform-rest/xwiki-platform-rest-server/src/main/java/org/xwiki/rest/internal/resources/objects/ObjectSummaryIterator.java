@@ -0,0 +1,290 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.rest.internal.resources.objects;
+
+import java.net.URI;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.Response.Status;
+
+import org.xwiki.component.manager.ComponentManager;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.model.reference.DocumentReferenceResolver;
+import org.xwiki.model.reference.EntityReferenceSerializer;
+import org.xwiki.query.QueryException;
+import org.xwiki.rest.internal.DomainObjectFactory;
+import org.xwiki.rest.internal.Utils;
+import org.xwiki.rest.model.jaxb.ObjectFactory;
+import org.xwiki.rest.model.jaxb.ObjectSummary;
+
+import com.xpn.xwiki.XWikiContext;
+import com.xpn.xwiki.api.Document;
+import com.xpn.xwiki.api.XWiki;
+import com.xpn.xwiki.doc.XWikiDocument;
+import com.xpn.xwiki.objects.BaseObject;
+
+/**
+ * Produces the summaries of the objects of a class while they are written to the response. The keys of the objects
+ * are queried in batches, each batch starting right after the last object of the previous one, and the objects are
+ * loaded one at a time, so that the memory used doesn't depend on the number of objects returned. The objects of the
+ * pages the current user is not allowed to view are skipped.
+ * <p>
+ * When the objects can't be queried or an object can't be loaded, a {@link WebApplicationException} is thrown instead
+ * of returning a partial collection: thrown while the response is written, it aborts the response.
+ *
+ * @version $Id$
+ * @since 4.4M1
+ */
+class ObjectSummaryIterator implements Iterator<ObjectSummary>
+{
+    /**
+     * The number of object keys to query at once.
+     */
+    private static final int BATCH_SIZE = 100;
+
+    /**
+     * The right needed to get the objects of a page.
+     */
+    private static final String VIEW_RIGHT = "view";
+
+    /**
+     * The query of the object keys.
+     */
+    private final ObjectKeysQuery query;
+
+    /**
+     * The wiki of the objects.
+     */
+    private final String wiki;
+
+    /**
+     * The reference of the class of the objects.
+     */
+    private final DocumentReference classReference;
+
+    /**
+     * The maximum number of object keys to consume, -1 for no limit.
+     */
+    private final int number;
+
+    /**
+     * Whether to add the pretty names of the users to the representations.
+     */
+    private final Boolean withPrettyNames;
+
+    /**
+     * The base URI of the REST API, used to build the links.
+     */
+    private final URI baseUri;
+
+    /**
+     * The factory of the model objects.
+     */
+    private final ObjectFactory objectFactory;
+
+    /**
+     * Used to retrieve the XWiki context.
+     */
+    private final ComponentManager componentManager;
+
+    /**
+     * Used to resolve the full names of the documents holding the objects.
+     */
+    private final DocumentReferenceResolver<String> resolver;
+
+    /**
+     * Used to serialize the references passed to the right service.
+     */
+    private final EntityReferenceSerializer<String> serializer;
+
+    /**
+     * The number of rows to skip before the first batch, 0 once the first batch has been queried.
+     */
+    private int offset;
+
+    /**
+     * The key of the last object consumed, {@code null} before the first batch.
+     */
+    private Object[] lastRow;
+
+    /**
+     * The keys of the current batch which have not been consumed yet.
+     */
+    private Iterator<Object[]> batch = Collections.<Object[]> emptyList().iterator();
+
+    /**
+     * Whether the last query returned less rows than requested, meaning there are no more objects.
+     */
+    private boolean exhausted;
+
+    /**
+     * The number of object keys consumed so far.
+     */
+    private int consumed;
+
+    /**
+     * The next summary to return, {@code null} if it has not been produced yet.
+     */
+    private ObjectSummary next;
+
+    /**
+     * @param query the query of the object keys
+     * @param after the key of the object to start after, {@code null} to start with the first object
+     * @param offset the number of objects to skip
+     * @param number the maximum number of objects to return, -1 for no limit; objects the current user is not allowed
+     *            to view count in the limit, so that the continuation token of the response matches it
+     * @param wiki the wiki of the objects
+     * @param classReference the reference of the class of the objects
+     * @param withPrettyNames whether to add the pretty names of the users to the representations
+     * @param baseUri the base URI of the REST API
+     * @param objectFactory the factory of the model objects
+     * @param componentManager used to retrieve the XWiki context
+     * @param resolver used to resolve the full names of the documents holding the objects
+     * @param serializer used to serialize the references passed to the right service
+     */
+    ObjectSummaryIterator(ObjectKeysQuery query, Object[] after, int offset, int number, String wiki,
+        DocumentReference classReference, Boolean withPrettyNames, URI baseUri, ObjectFactory objectFactory,
+        ComponentManager componentManager, DocumentReferenceResolver<String> resolver,
+        EntityReferenceSerializer<String> serializer)
+    {
+        this.query = query;
+        this.lastRow = after;
+        this.offset = offset;
+        this.number = number;
+        this.wiki = wiki;
+        this.classReference = classReference;
+        this.withPrettyNames = withPrettyNames;
+        this.baseUri = baseUri;
+        this.objectFactory = objectFactory;
+        this.componentManager = componentManager;
+        this.resolver = resolver;
+        this.serializer = serializer;
+    }
+
+    @Override
+    public boolean hasNext()
+    {
+        while (this.next == null) {
+            Object[] row = nextRow();
+            if (row == null) {
+                return false;
+            }
+            this.next = createSummary(row);
+        }
+
+        return true;
+    }
+
+    @Override
+    public ObjectSummary next()
+    {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+
+        ObjectSummary summary = this.next;
+        this.next = null;
+
+        return summary;
+    }
+
+    @Override
+    public void remove()
+    {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * @return the key of the next object, {@code null} if there are no more objects to return
+     */
+    private Object[] nextRow()
+    {
+        if (this.number >= 0 && this.consumed >= this.number) {
+            return null;
+        }
+
+        if (!this.batch.hasNext()) {
+            if (this.exhausted) {
+                return null;
+            }
+
+            int limit = this.number >= 0 ? Math.min(BATCH_SIZE, this.number - this.consumed) : BATCH_SIZE;
+            List<Object[]> rows;
+            try {
+                rows = this.query.execute(this.lastRow, this.offset, limit);
+            } catch (QueryException e) {
+                throw new WebApplicationException(e, Status.INTERNAL_SERVER_ERROR);
+            }
+            this.offset = 0;
+            this.exhausted = rows.size() < limit;
+            this.batch = rows.iterator();
+            if (!this.batch.hasNext()) {
+                return null;
+            }
+        }
+
+        this.lastRow = this.batch.next();
+        this.consumed++;
+
+        return this.lastRow;
+    }
+
+    /**
+     * @param row the key of an object
+     * @return the summary of the object, {@code null} if the current user is not allowed to view it or it has been
+     *         removed
+     * @throws WebApplicationException if the object can't be retrieved
+     */
+    private ObjectSummary createSummary(Object[] row)
+    {
+        XWikiContext xcontext = Utils.getXWikiContext(this.componentManager);
+        String database = xcontext.getDatabase();
+        try {
+            xcontext.setDatabase(this.wiki);
+
+            DocumentReference documentReference = this.resolver.resolve((String) row[ObjectKeysQuery.DOCUMENT]);
+            if (!xcontext.getWiki().getRightService().hasAccessLevel(VIEW_RIGHT, xcontext.getUser(),
+                this.serializer.serialize(documentReference), xcontext)) {
+                return null;
+            }
+
+            XWikiDocument xwikiDocument = xcontext.getWiki().getDocument(documentReference, xcontext);
+            Integer objectNumber = (Integer) row[ObjectKeysQuery.NUMBER];
+            BaseObject xobject =
+                xwikiDocument.getXObject(this.classReference, objectNumber != null ? objectNumber : 0);
+            if (xobject == null) {
+                // The object has been removed since the keys have been queried.
+                return null;
+            }
+
+            Document doc = xwikiDocument.newDocument(xcontext);
+            return DomainObjectFactory.createObjectSummary(this.objectFactory, this.baseUri, xcontext, doc, xobject,
+                false, new XWiki(xcontext.getWiki(), xcontext), this.withPrettyNames);
+        } catch (Exception e) {
+            throw new WebApplicationException(e, Status.INTERNAL_SERVER_ERROR);
+        } finally {
+            xcontext.setDatabase(database);
+        }
+    }
+}
@@ -59,6 +59,8 @@ public Objects getObjects(String wikiName, String spaceName, String pageName, In
 
             Document doc = documentInfo.getDocument();
 
+            checkNotModified(doc);
+
             Objects objects = objectFactory.createObjects();
 
             List<BaseObject> objectList = getBaseObjects(doc);
@@ -0,0 +1,252 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.rest.internal.resources.pages;
+
+import java.net.URI;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.ws.rs.core.Response.Status;
+import javax.ws.rs.core.UriBuilder;
+
+import org.xwiki.component.manager.ComponentManager;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.model.reference.EntityReferenceSerializer;
+import org.xwiki.rest.internal.DomainObjectFactory;
+import org.xwiki.rest.internal.Utils;
+import org.xwiki.rest.model.jaxb.BulkPage;
+import org.xwiki.rest.model.jaxb.ObjectFactory;
+import org.xwiki.rest.model.jaxb.Page;
+import org.xwiki.rest.resources.pages.PageResource;
+
+import com.xpn.xwiki.XWikiContext;
+import com.xpn.xwiki.XWikiException;
+import com.xpn.xwiki.api.Document;
+import com.xpn.xwiki.api.XWiki;
+import com.xpn.xwiki.doc.XWikiDocument;
+import com.xpn.xwiki.objects.BaseObject;
+
+/**
+ * Produces the entries of a bulk page request while they are written to the response. The existence of the pages has
+ * already been checked when the iterator is created, so only the existing pages are loaded, and only after the view
+ * right of the current user has been checked.
+ * <p>
+ * The pages are loaded one at a time through {@link com.xpn.xwiki.XWiki#getDocument(DocumentReference, XWikiContext)}
+ * rather than with a single {@code doc.id in (:ids)} query: a document selected with HQL lacks its objects, attachments
+ * and translations, which the store loads with separate queries for each document anyway, and it would bypass the
+ * document cache, which serves the pages read often without any query and is kept up to date when they are modified.
+ * Loading them one at a time also keeps the memory used independent of the number of requested pages.
+ *
+ * @version $Id$
+ * @since 4.4M1
+ */
+class BulkPageIterator implements Iterator<BulkPage>
+{
+    /**
+     * The right needed to get a page.
+     */
+    private static final String VIEW_RIGHT = "view";
+
+    /**
+     * The logger to use to log the pages which can't be retrieved.
+     */
+    private static final Logger LOGGER = Logger.getLogger(BulkPageIterator.class.getName());
+
+    /**
+     * The requested pages, as passed by the client.
+     */
+    private final List<String> pageReferences;
+
+    /**
+     * The resolved references of the requested pages, {@code null} for the references which can't be resolved.
+     */
+    private final List<DocumentReference> documentReferences;
+
+    /**
+     * The existing pages among the requested ones.
+     */
+    private final Set<DocumentReference> existingDocuments;
+
+    /**
+     * The fields to return.
+     */
+    private final Set<String> fields;
+
+    /**
+     * Whether to add the pretty names of the users to the representations.
+     */
+    private final Boolean withPrettyNames;
+
+    /**
+     * The base URI of the REST API, used to build the links.
+     */
+    private final URI baseUri;
+
+    /**
+     * The factory of the model objects.
+     */
+    private final ObjectFactory objectFactory;
+
+    /**
+     * Used to retrieve the XWiki context.
+     */
+    private final ComponentManager componentManager;
+
+    /**
+     * Used to serialize the references passed to the right service.
+     */
+    private final EntityReferenceSerializer<String> serializer;
+
+    /**
+     * The position of the next entry.
+     */
+    private int position;
+
+    /**
+     * @param pageReferences the requested pages, as passed by the client
+     * @param documentReferences the resolved references of the requested pages, {@code null} for the references which
+     *            can't be resolved
+     * @param existingDocuments the existing pages among the requested ones
+     * @param fields the fields to return
+     * @param withPrettyNames whether to add the pretty names of the users to the representations
+     * @param baseUri the base URI of the REST API
+     * @param objectFactory the factory of the model objects
+     * @param componentManager used to retrieve the XWiki context
+     * @param serializer used to serialize the references passed to the right service
+     */
+    BulkPageIterator(List<String> pageReferences, List<DocumentReference> documentReferences,
+        Set<DocumentReference> existingDocuments, Set<String> fields, Boolean withPrettyNames, URI baseUri,
+        ObjectFactory objectFactory, ComponentManager componentManager, EntityReferenceSerializer<String> serializer)
+    {
+        this.pageReferences = pageReferences;
+        this.documentReferences = documentReferences;
+        this.existingDocuments = existingDocuments;
+        this.fields = fields;
+        this.withPrettyNames = withPrettyNames;
+        this.baseUri = baseUri;
+        this.objectFactory = objectFactory;
+        this.componentManager = componentManager;
+        this.serializer = serializer;
+    }
+
+    @Override
+    public boolean hasNext()
+    {
+        return this.position < this.pageReferences.size();
+    }
+
+    @Override
+    public BulkPage next()
+    {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+
+        BulkPage bulkPage = this.objectFactory.createBulkPage();
+        bulkPage.setReference(this.pageReferences.get(this.position));
+
+        DocumentReference documentReference = this.documentReferences.get(this.position);
+        if (documentReference == null) {
+            bulkPage.setStatus(Status.BAD_REQUEST.getStatusCode());
+        } else if (!this.existingDocuments.contains(documentReference)) {
+            bulkPage.setStatus(Status.NOT_FOUND.getStatusCode());
+        } else {
+            XWikiContext xcontext = Utils.getXWikiContext(this.componentManager);
+            String database = xcontext.getDatabase();
+            try {
+                xcontext.setDatabase(documentReference.getWikiReference().getName());
+                fill(bulkPage, documentReference, xcontext);
+            } catch (Exception e) {
+                LOGGER.log(Level.WARNING, String.format("Failed to retrieve page [%s]", documentReference), e);
+                bulkPage.setPage(null);
+                bulkPage.getObjects().clear();
+                bulkPage.setStatus(Status.INTERNAL_SERVER_ERROR.getStatusCode());
+            } finally {
+                xcontext.setDatabase(database);
+            }
+        }
+
+        this.position++;
+
+        return bulkPage;
+    }
+
+    @Override
+    public void remove()
+    {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Check the view right of the current user on an existing page and add the requested fields of the page to its
+     * entry.
+     *
+     * @param bulkPage the entry of the page
+     * @param documentReference the reference of the page
+     * @param xcontext the XWiki context, targeting the wiki of the page
+     * @throws XWikiException if checking the rights or loading the page fails
+     */
+    private void fill(BulkPage bulkPage, DocumentReference documentReference, XWikiContext xcontext)
+        throws XWikiException
+    {
+        if (!xcontext.getWiki().getRightService().hasAccessLevel(VIEW_RIGHT, xcontext.getUser(),
+            this.serializer.serialize(documentReference), xcontext)) {
+            bulkPage.setStatus(Status.UNAUTHORIZED.getStatusCode());
+            return;
+        }
+
+        XWikiDocument xwikiDocument = xcontext.getWiki().getDocument(documentReference, xcontext);
+        Document doc = xwikiDocument.newDocument(xcontext);
+        XWiki xwikiApi = new XWiki(xcontext.getWiki(), xcontext);
+
+        boolean withContent = this.fields.contains(BulkPagesResourceImpl.FIELD_CONTENT);
+        if (withContent || this.fields.contains(BulkPagesResourceImpl.FIELD_METADATA)) {
+            URI self =
+                UriBuilder.fromUri(this.baseUri).path(PageResource.class)
+                    .build(doc.getWiki(), doc.getSpace(), doc.getName());
+            Page page =
+                DomainObjectFactory.createPage(this.objectFactory, this.baseUri, self, doc, false, xwikiApi,
+                    this.withPrettyNames);
+            if (!withContent) {
+                page.setContent(null);
+            }
+            bulkPage.setPage(page);
+        }
+
+        if (this.fields.contains(BulkPagesResourceImpl.FIELD_OBJECTS)) {
+            for (List<BaseObject> xobjects : xwikiDocument.getXObjects().values()) {
+                for (BaseObject xobject : xobjects) {
+                    // Deleted objects leave null entries.
+                    if (xobject != null) {
+                        bulkPage.getObjects().add(
+                            DomainObjectFactory.createObject(this.objectFactory, this.baseUri, xcontext, doc, xobject,
+                                false, xwikiApi, this.withPrettyNames));
+                    }
+                }
+            }
+        }
+
+        bulkPage.setStatus(Status.OK.getStatusCode());
+    }
+}
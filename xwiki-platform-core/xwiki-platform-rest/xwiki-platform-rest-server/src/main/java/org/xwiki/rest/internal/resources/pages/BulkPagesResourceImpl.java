@@ -0,0 +1,254 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.rest.internal.resources.pages;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.Response.Status;
+
+import org.apache.commons.lang3.StringUtils;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.model.reference.DocumentReferenceResolver;
+import org.xwiki.model.reference.EntityReferenceSerializer;
+import org.xwiki.model.reference.WikiReference;
+import org.xwiki.query.Query;
+import org.xwiki.query.QueryException;
+import org.xwiki.rest.XWikiResource;
+import org.xwiki.rest.XWikiRestException;
+import org.xwiki.rest.internal.representations.StreamingCollection;
+import org.xwiki.rest.model.jaxb.BulkPage;
+import org.xwiki.rest.resources.pages.BulkPagesResource;
+
+/**
+ * Retrieves many pages with a single request. The existence of the requested pages is checked with one query per wiki
+ * and the entries are then built one after the other while the response is written, so that the memory used doesn't
+ * depend on the number of requested pages.
+ *
+ * @version $Id$
+ * @since 4.4M1
+ */
+@Component("org.xwiki.rest.internal.resources.pages.BulkPagesResourceImpl")
+public class BulkPagesResourceImpl extends XWikiResource implements BulkPagesResource
+{
+    /**
+     * The field holding the metadata of the pages.
+     */
+    static final String FIELD_METADATA = "metadata";
+
+    /**
+     * The field holding the content of the pages, returned with their metadata.
+     */
+    static final String FIELD_CONTENT = "content";
+
+    /**
+     * The field holding the objects of the pages.
+     */
+    static final String FIELD_OBJECTS = "objects";
+
+    /**
+     * The maximum number of pages which can be requested at once.
+     */
+    private static final int MAX_PAGES = 1000;
+
+    /**
+     * The maximum number of page names passed to a single existence query.
+     */
+    private static final int QUERY_BATCH_SIZE = 200;
+
+    /**
+     * The name of the collection element of the response.
+     */
+    private static final String COLLECTION_NAME = "bulkPages";
+
+    /**
+     * The fields which can be requested.
+     */
+    private static final Set<String> FIELDS =
+        new HashSet<String>(Arrays.asList(FIELD_METADATA, FIELD_CONTENT, FIELD_OBJECTS));
+
+    /**
+     * Used to resolve the requested pages relatively to the wiki of the request.
+     */
+    @Inject
+    @Named("current")
+    private DocumentReferenceResolver<String> resolver;
+
+    /**
+     * Used to get the full names of the pages, as stored in the database.
+     */
+    @Inject
+    @Named("local")
+    private EntityReferenceSerializer<String> localSerializer;
+
+    /**
+     * Used to serialize the references passed to the right service.
+     */
+    @Inject
+    private EntityReferenceSerializer<String> serializer;
+
+    @Override
+    public Response getPages(String wikiName, List<String> pageReferences, String fields, Boolean withPrettyNames)
+        throws XWikiRestException
+    {
+        return getBulkPages(wikiName, pageReferences, fields, withPrettyNames);
+    }
+
+    @Override
+    public Response postPages(String wikiName, String fields, Boolean withPrettyNames, String pageReferences)
+        throws XWikiRestException
+    {
+        List<String> references = new ArrayList<String>();
+        for (String line : StringUtils.split(StringUtils.defaultString(pageReferences), "\r\n")) {
+            if (StringUtils.isNotBlank(line)) {
+                references.add(line.trim());
+            }
+        }
+
+        return getBulkPages(wikiName, references, fields, withPrettyNames);
+    }
+
+    /**
+     * @param wikiName the wiki of the request, used for the references which don't specify their wiki
+     * @param pageReferences the requested pages
+     * @param fields the comma separated list of the fields to return
+     * @param withPrettyNames whether to add the pretty names of the users to the representations
+     * @return the response, streaming the entries of the requested pages
+     * @throws XWikiRestException if checking the existence of the pages fails
+     */
+    private Response getBulkPages(String wikiName, List<String> pageReferences, String fields,
+        Boolean withPrettyNames) throws XWikiRestException
+    {
+        if (pageReferences.size() > MAX_PAGES) {
+            throw new WebApplicationException(Response.status(Status.BAD_REQUEST)
+                .entity(String.format("At most %d pages can be requested at once.", MAX_PAGES)).build());
+        }
+
+        Set<String> requestedFields = getFields(fields);
+
+        WikiReference wikiReference = new WikiReference(wikiName);
+        List<DocumentReference> documentReferences = new ArrayList<DocumentReference>(pageReferences.size());
+        for (String pageReference : pageReferences) {
+            documentReferences.add(resolve(pageReference, wikiReference));
+        }
+
+        Set<DocumentReference> existingDocuments;
+        try {
+            existingDocuments = getExistingDocuments(documentReferences);
+        } catch (QueryException e) {
+            throw new XWikiRestException(e);
+        }
+
+        BulkPageIterator entries =
+            new BulkPageIterator(pageReferences, documentReferences, existingDocuments, requestedFields,
+                withPrettyNames, this.uriInfo.getBaseUri(), this.objectFactory, this.componentManager, this.serializer);
+
+        return Response.ok(new StreamingCollection<BulkPage>(COLLECTION_NAME, COLLECTION_NAME, entries)).build();
+    }
+
+    /**
+     * @param fields the comma separated list of the fields to return
+     * @return the set of fields to return
+     */
+    private Set<String> getFields(String fields)
+    {
+        Set<String> requestedFields = new HashSet<String>();
+        for (String field : StringUtils.split(StringUtils.defaultString(fields), ',')) {
+            String trimmedField = field.trim();
+            if (!FIELDS.contains(trimmedField)) {
+                throw new WebApplicationException(Response.status(Status.BAD_REQUEST)
+                    .entity(String.format("Unknown field [%s], expected one of %s.", trimmedField, FIELDS)).build());
+            }
+            requestedFields.add(trimmedField);
+        }
+
+        return requestedFields;
+    }
+
+    /**
+     * @param pageReference the requested page
+     * @param wikiReference the wiki of the request
+     * @return the reference of the page, {@code null} if it is not valid
+     */
+    private DocumentReference resolve(String pageReference, WikiReference wikiReference)
+    {
+        if (StringUtils.isBlank(pageReference)) {
+            return null;
+        }
+
+        try {
+            return this.resolver.resolve(pageReference, wikiReference);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Check the existence of many pages, with one query for each wiki and batch of pages.
+     *
+     * @param documentReferences the pages to check, {@code null} entries are ignored
+     * @return the existing pages
+     * @throws QueryException if querying the pages fails
+     */
+    private Set<DocumentReference> getExistingDocuments(List<DocumentReference> documentReferences)
+        throws QueryException
+    {
+        Map<String, Map<String, DocumentReference>> documentsByWiki =
+            new LinkedHashMap<String, Map<String, DocumentReference>>();
+        for (DocumentReference documentReference : documentReferences) {
+            if (documentReference != null) {
+                String wiki = documentReference.getWikiReference().getName();
+                Map<String, DocumentReference> documents = documentsByWiki.get(wiki);
+                if (documents == null) {
+                    documents = new LinkedHashMap<String, DocumentReference>();
+                    documentsByWiki.put(wiki, documents);
+                }
+                documents.put(this.localSerializer.serialize(documentReference), documentReference);
+            }
+        }
+
+        Set<DocumentReference> existingDocuments = new HashSet<DocumentReference>();
+        for (Map.Entry<String, Map<String, DocumentReference>> wikiDocuments : documentsByWiki.entrySet()) {
+            List<String> fullNames = new ArrayList<String>(wikiDocuments.getValue().keySet());
+            for (int i = 0; i < fullNames.size(); i += QUERY_BATCH_SIZE) {
+                List<String> batch = fullNames.subList(i, Math.min(i + QUERY_BATCH_SIZE, fullNames.size()));
+                List<String> existingFullNames =
+                    this.queryManager.createQuery("select doc.fullName from XWikiDocument doc "
+                        + "where doc.language = '' and doc.fullName in (:fullNames)", Query.HQL)
+                        .setWiki(wikiDocuments.getKey()).bindValue("fullNames", batch).execute();
+                for (String existingFullName : existingFullNames) {
+                    existingDocuments.add(wikiDocuments.getValue().get(existingFullName));
+                }
+            }
+        }
+
+        return existingDocuments;
+    }
+}
@@ -46,6 +46,8 @@ public Page getPageTranslation(String wikiName, String spaceName, String pageNam
 
             Document doc = documentInfo.getDocument();
 
+            checkPageNotModified(doc);
+
             return DomainObjectFactory.createPage(objectFactory, uriInfo.getBaseUri(), uriInfo.getAbsolutePath(), doc,
                     false, Utils.getXWikiApi(componentManager), withPrettyNames);
         } catch (XWikiException e) {
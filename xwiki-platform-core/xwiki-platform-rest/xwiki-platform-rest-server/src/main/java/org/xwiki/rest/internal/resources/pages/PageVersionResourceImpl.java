@@ -45,6 +45,8 @@ public Page getPageVersion(String wikiName, String spaceName, String pageName, S
 
             Document doc = documentInfo.getDocument();
 
+            checkPageNotModified(doc);
+
             return DomainObjectFactory.createPage(objectFactory, uriInfo.getBaseUri(), uriInfo.getAbsolutePath(), doc,
                     true, Utils.getXWikiApi(componentManager), withPrettyNames);
         } catch (XWikiException e) {
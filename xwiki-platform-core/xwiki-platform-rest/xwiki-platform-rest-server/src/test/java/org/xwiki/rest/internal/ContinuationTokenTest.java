@@ -0,0 +1,83 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.rest.internal;
+
+import javax.ws.rs.WebApplicationException;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link ContinuationToken}.
+ *
+ * @version $Id$
+ */
+public class ContinuationTokenTest
+{
+    @Test
+    public void encodeAndDecode()
+    {
+        String token = ContinuationToken.encode(-42L, "Main.WebHome");
+
+        Assert.assertArrayEquals(new String[] {"-42", "Main.WebHome"}, ContinuationToken.decode(token, 2));
+    }
+
+    @Test
+    public void encodeAndDecodeLongs()
+    {
+        String token = ContinuationToken.encode(Long.MIN_VALUE, 1356994800000L);
+
+        Assert.assertArrayEquals(new long[] {Long.MIN_VALUE, 1356994800000L}, ContinuationToken.decodeLongs(token, 2));
+    }
+
+    @Test
+    public void decodeWithWrongLength()
+    {
+        assertInvalid(ContinuationToken.encode(1L, 2L), 1);
+    }
+
+    @Test
+    public void decodeLongsWithText()
+    {
+        assertInvalid(ContinuationToken.encode("text"), 1);
+    }
+
+    @Test
+    public void decodeGarbage()
+    {
+        assertInvalid("not a token!", 2);
+    }
+
+    /**
+     * Assert that the given token is rejected with a bad request.
+     *
+     * @param token the token
+     * @param length the expected number of values in the token
+     */
+    private void assertInvalid(String token, int length)
+    {
+        try {
+            ContinuationToken.decodeLongs(token, length);
+            Assert.fail("The token should have been rejected");
+        } catch (WebApplicationException e) {
+            Assert.assertEquals(400, e.getResponse().getStatus());
+        }
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.rest.internal.representations;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.lang.annotation.Annotation;
+import java.util.Arrays;
+import java.util.Iterator;
+
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.MediaType;
+import javax.xml.bind.JAXBContext;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.xwiki.rest.model.jaxb.Link;
+import org.xwiki.rest.model.jaxb.ObjectFactory;
+import org.xwiki.rest.model.jaxb.ObjectSummary;
+import org.xwiki.rest.model.jaxb.Objects;
+
+/**
+ * Unit tests for {@link StreamingCollectionWriter}.
+ *
+ * @version $Id$
+ */
+public class StreamingCollectionWriterTest
+{
+    private StreamingCollectionWriter writer = new StreamingCollectionWriter();
+
+    @Test
+    public void writeXMLGivesTheJAXBCollection() throws Exception
+    {
+        StreamingCollection<ObjectSummary> collection =
+            new StreamingCollection<ObjectSummary>("objects", "objectSummaries", Arrays.asList(
+                createSummary("Main.A", 0), createSummary("Main.B", 1)).iterator());
+        Link next = new Link();
+        next.setHref("http://host/objects?cursor=abc");
+        next.setRel("next");
+        collection.getLinks().add(next);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        this.writer.writeTo(collection, StreamingCollection.class, StreamingCollection.class, new Annotation[0],
+            MediaType.APPLICATION_XML_TYPE, null, out);
+
+        Objects objects =
+            (Objects) JAXBContext.newInstance(ObjectFactory.class).createUnmarshaller()
+                .unmarshal(new ByteArrayInputStream(out.toByteArray()));
+        Assert.assertEquals(1, objects.getLinks().size());
+        Assert.assertEquals("http://host/objects?cursor=abc", objects.getLinks().get(0).getHref());
+        Assert.assertEquals("next", objects.getLinks().get(0).getRel());
+        Assert.assertEquals(2, objects.getObjectSummaries().size());
+        Assert.assertEquals("Main.A", objects.getObjectSummaries().get(0).getPageName());
+        Assert.assertEquals(1, objects.getObjectSummaries().get(1).getNumber());
+    }
+
+    @Test
+    public void writeXMLFailsWhenAnElementCantBeProduced() throws Exception
+    {
+        final WebApplicationException failure = new WebApplicationException(500);
+        Iterator<ObjectSummary> elements = new Iterator<ObjectSummary>()
+        {
+            private boolean first = true;
+
+            @Override
+            public boolean hasNext()
+            {
+                return true;
+            }
+
+            @Override
+            public ObjectSummary next()
+            {
+                if (this.first) {
+                    this.first = false;
+                    return createSummary("Main.A", 0);
+                }
+                throw failure;
+            }
+
+            @Override
+            public void remove()
+            {
+                throw new UnsupportedOperationException();
+            }
+        };
+
+        try {
+            this.writer.writeTo(new StreamingCollection<ObjectSummary>("objects", "objectSummaries", elements),
+                StreamingCollection.class, StreamingCollection.class, new Annotation[0],
+                MediaType.APPLICATION_XML_TYPE, null, new ByteArrayOutputStream());
+            Assert.fail("The failure should have been propagated");
+        } catch (WebApplicationException e) {
+            Assert.assertSame(failure, e);
+        }
+    }
+
+    @Test
+    public void writeEmptyXML() throws Exception
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        this.writer.writeTo(new StreamingCollection<ObjectSummary>("objects", "objectSummaries",
+            Arrays.<ObjectSummary> asList().iterator()), StreamingCollection.class, StreamingCollection.class,
+            new Annotation[0], MediaType.APPLICATION_XML_TYPE, null, out);
+
+        Objects objects =
+            (Objects) JAXBContext.newInstance(ObjectFactory.class).createUnmarshaller()
+                .unmarshal(new ByteArrayInputStream(out.toByteArray()));
+        Assert.assertTrue(objects.getObjectSummaries().isEmpty());
+    }
+
+    private ObjectSummary createSummary(String pageName, int number)
+    {
+        ObjectSummary summary = new ObjectSummary();
+        summary.setPageName(pageName);
+        summary.setNumber(number);
+        return summary;
+    }
+}
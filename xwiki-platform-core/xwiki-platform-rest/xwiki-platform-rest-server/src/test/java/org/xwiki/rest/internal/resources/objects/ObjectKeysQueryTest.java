@@ -0,0 +1,144 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.rest.internal.resources.objects;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import org.jmock.Expectations;
+import org.jmock.Mockery;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.xwiki.query.Query;
+import org.xwiki.query.QueryManager;
+
+/**
+ * Unit tests for {@link ObjectKeysQuery}.
+ *
+ * @version $Id$
+ */
+public class ObjectKeysQueryTest
+{
+    private static final String STATEMENT = "select obj.id, obj.name, obj.number, doc.date "
+        + "from BaseObject as obj, XWikiDocument as doc "
+        + "where obj.name = doc.fullName and doc.language = '' and obj.className = :className";
+
+    private Mockery mockery = new Mockery();
+
+    private QueryManager queryManager;
+
+    private Query query;
+
+    @Before
+    public void setUp()
+    {
+        this.queryManager = this.mockery.mock(QueryManager.class);
+        this.query = this.mockery.mock(Query.class);
+    }
+
+    @Test
+    public void executeFirstBatchById() throws Exception
+    {
+        final List<Object> rows = Collections.<Object> singletonList(new Object[] {1L, "Main.Page", 0, new Date()});
+        this.mockery.checking(new Expectations()
+        {
+            {
+                oneOf(queryManager).createQuery(STATEMENT + " order by obj.id", Query.HQL);
+                will(returnValue(query));
+                expectCommonCalls(this, 5, 10);
+                oneOf(query).execute();
+                will(returnValue(rows));
+            }
+        });
+
+        Assert.assertSame(rows, new ObjectKeysQuery(this.queryManager, "wiki", "Space.Class", false).execute(null, 5,
+            10));
+        this.mockery.assertIsSatisfied();
+    }
+
+    @Test
+    public void executeAfterById() throws Exception
+    {
+        this.mockery.checking(new Expectations()
+        {
+            {
+                oneOf(queryManager).createQuery(STATEMENT + " and obj.id > :id order by obj.id", Query.HQL);
+                will(returnValue(query));
+                expectCommonCalls(this, 0, 10);
+                oneOf(query).bindValue("id", 42L);
+                will(returnValue(query));
+                oneOf(query).execute();
+                will(returnValue(Collections.emptyList()));
+            }
+        });
+
+        ObjectKeysQuery keysQuery = new ObjectKeysQuery(this.queryManager, "wiki", "Space.Class", false);
+        keysQuery.execute(keysQuery.fromToken(keysQuery.toToken(new Object[] {42L, "Main.Page", 0, new Date()})), 0,
+            10);
+        this.mockery.assertIsSatisfied();
+    }
+
+    @Test
+    public void executeAfterByDate() throws Exception
+    {
+        final Date date = new Date(1356994800000L);
+        this.mockery.checking(new Expectations()
+        {
+            {
+                oneOf(queryManager).createQuery(STATEMENT
+                    + " and (doc.date < :date or (doc.date = :date and obj.id > :id)) order by doc.date desc, obj.id",
+                    Query.HQL);
+                will(returnValue(query));
+                expectCommonCalls(this, 0, 10);
+                oneOf(query).bindValue("id", 42L);
+                will(returnValue(query));
+                oneOf(query).bindValue("date", date);
+                will(returnValue(query));
+                oneOf(query).execute();
+                will(returnValue(Collections.emptyList()));
+            }
+        });
+
+        ObjectKeysQuery keysQuery = new ObjectKeysQuery(this.queryManager, "wiki", "Space.Class", true);
+        keysQuery.execute(keysQuery.fromToken(keysQuery.toToken(new Object[] {42L, "Main.Page", 0, date})), 0, 10);
+        this.mockery.assertIsSatisfied();
+    }
+
+    /**
+     * Expect the calls made on every query.
+     *
+     * @param expectations the expectations to complete
+     * @param offset the expected offset
+     * @param limit the expected limit
+     */
+    private void expectCommonCalls(Expectations expectations, int offset, int limit)
+    {
+        expectations.oneOf(this.query).setWiki("wiki");
+        expectations.will(Expectations.returnValue(this.query));
+        expectations.oneOf(this.query).bindValue("className", "Space.Class");
+        expectations.will(Expectations.returnValue(this.query));
+        expectations.oneOf(this.query).setOffset(offset);
+        expectations.will(Expectations.returnValue(this.query));
+        expectations.oneOf(this.query).setLimit(limit);
+        expectations.will(Expectations.returnValue(this.query));
+    }
+}
@@ -0,0 +1,204 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.rest.internal.resources.pages;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.UriInfo;
+
+import org.jmock.Expectations;
+import org.jmock.Mockery;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.xwiki.component.util.ReflectionUtils;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.model.reference.DocumentReferenceResolver;
+import org.xwiki.model.reference.EntityReferenceSerializer;
+import org.xwiki.model.reference.WikiReference;
+import org.xwiki.query.Query;
+import org.xwiki.query.QueryManager;
+import org.xwiki.rest.internal.representations.StreamingCollection;
+import org.xwiki.rest.model.jaxb.BulkPage;
+import org.xwiki.rest.model.jaxb.ObjectFactory;
+
+/**
+ * Unit tests for {@link BulkPagesResourceImpl}.
+ *
+ * @version $Id$
+ */
+public class BulkPagesResourceImplTest
+{
+    private static final WikiReference WIKI = new WikiReference("wiki");
+
+    private static final DocumentReference MISSING = new DocumentReference("wiki", "Main", "Missing");
+
+    private Mockery mockery = new Mockery();
+
+    private BulkPagesResourceImpl resource = new BulkPagesResourceImpl();
+
+    private DocumentReferenceResolver<String> resolver;
+
+    private EntityReferenceSerializer<String> localSerializer;
+
+    private QueryManager queryManager;
+
+    private Query query;
+
+    @Before
+    @SuppressWarnings("unchecked")
+    public void setUp() throws Exception
+    {
+        this.resolver = this.mockery.mock(DocumentReferenceResolver.class);
+        this.localSerializer = this.mockery.mock(EntityReferenceSerializer.class);
+        this.queryManager = this.mockery.mock(QueryManager.class);
+        this.query = this.mockery.mock(Query.class);
+        final UriInfo uriInfo = this.mockery.mock(UriInfo.class);
+
+        this.mockery.checking(new Expectations()
+        {
+            {
+                allowing(uriInfo).getBaseUri();
+                will(returnValue(new URI("http://localhost/xwiki/rest/")));
+            }
+        });
+
+        ReflectionUtils.setFieldValue(this.resource, "resolver", this.resolver);
+        ReflectionUtils.setFieldValue(this.resource, "localSerializer", this.localSerializer);
+        ReflectionUtils.setFieldValue(this.resource, "queryManager", this.queryManager);
+        ReflectionUtils.setFieldValue(this.resource, "uriInfo", uriInfo);
+        ReflectionUtils.setFieldValue(this.resource, "objectFactory", new ObjectFactory());
+    }
+
+    @Test
+    public void getTooManyPages() throws Exception
+    {
+        try {
+            this.resource.getPages("wiki", Collections.nCopies(1001, "Main.Page"), "metadata", false);
+            Assert.fail("The request should have been rejected");
+        } catch (WebApplicationException e) {
+            Assert.assertEquals(400, e.getResponse().getStatus());
+        }
+    }
+
+    @Test
+    public void getPagesWithUnknownField() throws Exception
+    {
+        try {
+            this.resource.getPages("wiki", Arrays.asList("Main.Page"), "metadata,history", false);
+            Assert.fail("The request should have been rejected");
+        } catch (WebApplicationException e) {
+            Assert.assertEquals(400, e.getResponse().getStatus());
+        }
+    }
+
+    @Test
+    public void getMissingAndInvalidPages() throws Exception
+    {
+        this.mockery.checking(new Expectations()
+        {
+            {
+                oneOf(resolver).resolve("Main.Missing", WIKI);
+                will(returnValue(MISSING));
+                oneOf(resolver).resolve("invalid", WIKI);
+                will(throwException(new IllegalArgumentException()));
+                oneOf(localSerializer).serialize(MISSING);
+                will(returnValue("Main.Missing"));
+
+                // The existence of the pages is checked with a single query.
+                oneOf(queryManager).createQuery(with(any(String.class)), with(equal(Query.HQL)));
+                will(returnValue(query));
+                oneOf(query).setWiki("wiki");
+                will(returnValue(query));
+                oneOf(query).bindValue("fullNames", Arrays.asList("Main.Missing"));
+                will(returnValue(query));
+                oneOf(query).execute();
+                will(returnValue(Collections.emptyList()));
+            }
+        });
+
+        Response response =
+            this.resource.getPages("wiki", Arrays.asList("Main.Missing", "invalid", " "), "metadata", false);
+
+        Assert.assertEquals(200, response.getStatus());
+        List<BulkPage> entries = getEntries(response);
+        Assert.assertEquals(3, entries.size());
+        assertEntry("Main.Missing", 404, entries.get(0));
+        assertEntry("invalid", 400, entries.get(1));
+        assertEntry(" ", 400, entries.get(2));
+        this.mockery.assertIsSatisfied();
+    }
+
+    @Test
+    public void postPagesIgnoresEmptyLines() throws Exception
+    {
+        this.mockery.checking(new Expectations()
+        {
+            {
+                oneOf(resolver).resolve("Main.Missing", WIKI);
+                will(returnValue(MISSING));
+                oneOf(localSerializer).serialize(MISSING);
+                will(returnValue("Main.Missing"));
+                oneOf(queryManager).createQuery(with(any(String.class)), with(equal(Query.HQL)));
+                will(returnValue(query));
+                oneOf(query).setWiki("wiki");
+                will(returnValue(query));
+                oneOf(query).bindValue("fullNames", Arrays.asList("Main.Missing"));
+                will(returnValue(query));
+                oneOf(query).execute();
+                will(returnValue(Collections.emptyList()));
+            }
+        });
+
+        List<BulkPage> entries = getEntries(this.resource.postPages("wiki", "", false, "\r\n  Main.Missing  \r\n\n"));
+
+        Assert.assertEquals(1, entries.size());
+        assertEntry("Main.Missing", 404, entries.get(0));
+        this.mockery.assertIsSatisfied();
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<BulkPage> getEntries(Response response)
+    {
+        StreamingCollection<BulkPage> collection = (StreamingCollection<BulkPage>) response.getEntity();
+        Assert.assertEquals("bulkPages", collection.getName());
+
+        List<BulkPage> entries = new ArrayList<BulkPage>();
+        for (Iterator<BulkPage> it = collection.getElements(); it.hasNext();) {
+            entries.add(it.next());
+        }
+
+        return entries;
+    }
+
+    private void assertEntry(String reference, int status, BulkPage entry)
+    {
+        Assert.assertEquals(reference, entry.getReference());
+        Assert.assertEquals(status, entry.getStatus());
+        Assert.assertNull(entry.getPage());
+    }
+}
@@ -0,0 +1,281 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.xpn.xwiki.plugin.scheduler;
+
+import java.util.Date;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.hibernate.HibernateException;
+import org.hibernate.Session;
+import org.quartz.CronTrigger;
+import org.quartz.JobExecutionContext;
+import org.quartz.Scheduler;
+import org.quartz.SchedulerException;
+import org.quartz.SimpleTrigger;
+import org.quartz.Trigger;
+import org.quartz.TriggerListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.xpn.xwiki.XWikiContext;
+import com.xpn.xwiki.XWikiException;
+import com.xpn.xwiki.store.XWikiHibernateBaseStore.HibernateCallback;
+import com.xpn.xwiki.store.XWikiHibernateStore;
+import com.xpn.xwiki.util.Util;
+
+/**
+ * Makes sure each scheduled execution of a job runs on a single node of a cluster. Every node schedules all the jobs,
+ * but before running a job a node has to claim a lease for the job and the time the execution was scheduled at. Leases
+ * are {@link SchedulerLease} rows of the main wiki database, which have a primary key on the lease identifier, so only
+ * the first node inserting the lease of an execution runs it and the other nodes veto it.
+ * <p>
+ * In order to distribute the jobs across the cluster, a node already running jobs does not claim the lease right away:
+ * it vetoes the execution and schedules a one-shot claim trigger, delayed in proportion to the number of jobs it is
+ * running, leaving the less busy nodes a chance to claim the lease first. This way the scheduler worker threads never
+ * wait.
+ * <p>
+ * Only the cron triggers are checked: jobs triggered manually run on the node where they have been triggered.
+ *
+ * @version $Id$
+ * @since 4.4M1
+ */
+public class ClusterTriggerListener implements TriggerListener
+{
+    /**
+     * The key of the job data holding the XWiki context.
+     */
+    private static final String CONTEXT = "context";
+
+    /**
+     * The key of the claim trigger data holding the time the execution was scheduled at by the cron trigger.
+     */
+    private static final String SCHEDULED_FIRE_TIME = "clusterScheduledFireTime";
+
+    /**
+     * Log object to log messages in this class.
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(ClusterTriggerListener.class);
+
+    /**
+     * The identifier of this node, stored in the leases it holds.
+     */
+    private final String nodeId;
+
+    /**
+     * Time to wait before claiming a lease for each job already running on this node, in milliseconds.
+     */
+    private final long claimDelay;
+
+    /**
+     * How long the leases are kept, in milliseconds.
+     */
+    private final long leaseRetention;
+
+    /**
+     * The number of jobs running on this node.
+     */
+    private final AtomicInteger runningJobs = new AtomicInteger();
+
+    /**
+     * The time at which expired leases have been removed for the last time.
+     */
+    private volatile long lastCleanup;
+
+    /**
+     * @param nodeId the identifier of this node
+     * @param claimDelay time to wait before claiming a lease for each job already running on this node, in
+     *            milliseconds
+     * @param leaseRetention how long the leases are kept, in milliseconds; must be longer than the maximum clock drift
+     *            and misfire delay between the nodes
+     */
+    public ClusterTriggerListener(String nodeId, long claimDelay, long leaseRetention)
+    {
+        this.nodeId = nodeId;
+        this.claimDelay = claimDelay;
+        this.leaseRetention = leaseRetention;
+    }
+
+    @Override
+    public String getName()
+    {
+        return "ClusterTriggerListener";
+    }
+
+    @Override
+    public void triggerFired(Trigger trigger, JobExecutionContext jobContext)
+    {
+    }
+
+    @Override
+    public boolean vetoJobExecution(Trigger trigger, JobExecutionContext jobContext)
+    {
+        Date scheduledFireTime = getScheduledFireTime(trigger, jobContext);
+        if (scheduledFireTime == null) {
+            return false;
+        }
+
+        int running = this.runningJobs.get();
+        if (running > 0 && this.claimDelay > 0 && trigger instanceof CronTrigger
+            && deferClaim(trigger, scheduledFireTime, running * this.claimDelay, jobContext.getScheduler())) {
+            return true;
+        }
+
+        XWikiContext xcontext = (XWikiContext) jobContext.getJobDetail().getJobDataMap().get(CONTEXT);
+        boolean claimed = claimLease(trigger.getJobName(), scheduledFireTime, xcontext);
+        if (claimed) {
+            this.runningJobs.incrementAndGet();
+        } else {
+            LOGGER.debug("Task [{}] scheduled at [{}] is run by another node", trigger.getJobName(),
+                scheduledFireTime);
+        }
+
+        return !claimed;
+    }
+
+    @Override
+    public void triggerMisfired(Trigger trigger)
+    {
+    }
+
+    @Override
+    public void triggerComplete(Trigger trigger, JobExecutionContext jobContext, int triggerInstructionCode)
+    {
+        // Vetoed executions are not completed, so this is only called for the executions this node claimed.
+        if (getScheduledFireTime(trigger, jobContext) != null) {
+            this.runningJobs.decrementAndGet();
+        }
+    }
+
+    /**
+     * @param trigger the trigger being fired
+     * @param jobContext the context of the job
+     * @return the time the execution was scheduled at by the cron trigger, or {@code null} if the execution does not
+     *         need a lease
+     */
+    private Date getScheduledFireTime(Trigger trigger, JobExecutionContext jobContext)
+    {
+        if (jobContext.getJobDetail().getJobDataMap().get(CONTEXT) == null) {
+            return null;
+        } else if (trigger instanceof CronTrigger) {
+            return jobContext.getScheduledFireTime();
+        } else if (trigger.getJobDataMap().containsKey(SCHEDULED_FIRE_TIME)) {
+            return new Date(trigger.getJobDataMap().getLong(SCHEDULED_FIRE_TIME));
+        }
+        return null;
+    }
+
+    /**
+     * Schedule a one-shot trigger claiming the lease of an execution later.
+     *
+     * @param trigger the cron trigger of the execution
+     * @param scheduledFireTime the time the execution was scheduled at
+     * @param delay how long to wait before claiming the lease, in milliseconds
+     * @param scheduler the scheduler running the job
+     * @return {@code true} if the claim has been scheduled, {@code false} if the lease should be claimed right away
+     */
+    private boolean deferClaim(Trigger trigger, Date scheduledFireTime, long delay, Scheduler scheduler)
+    {
+        SimpleTrigger claim =
+            new SimpleTrigger(trigger.getName() + ":claim:" + scheduledFireTime.getTime(), trigger.getGroup(),
+                trigger.getJobName(), trigger.getJobGroup(), new Date(System.currentTimeMillis() + delay), null, 0, 0);
+        claim.getJobDataMap().put(SCHEDULED_FIRE_TIME, scheduledFireTime.getTime());
+        try {
+            scheduler.scheduleJob(claim);
+            return true;
+        } catch (SchedulerException e) {
+            LOGGER.warn("Failed to delay the lease claim of task [{}], claiming it right away",
+                trigger.getJobName(), e);
+            return false;
+        }
+    }
+
+    /**
+     * Try to get the lease of a job execution.
+     *
+     * @param jobId the unique identifier of the job
+     * @param scheduledFireTime the time at which the execution has been scheduled, identical on all nodes
+     * @param jobContext the context of the job
+     * @return {@code true} if this node got the lease and should run the job, {@code false} if another node did
+     */
+    protected boolean claimLease(String jobId, Date scheduledFireTime, XWikiContext jobContext)
+    {
+        final long leaseId = Util.getHash(jobId + ':' + scheduledFireTime.getTime());
+
+        XWikiContext context = jobContext.clone();
+        context.setDatabase(context.getMainXWiki());
+        XWikiHibernateStore store = context.getWiki().getHibernateStore();
+        try {
+            cleanExpiredLeases(store, context);
+
+            return store.executeWrite(context, new HibernateCallback<Boolean>()
+            {
+                @Override
+                public Boolean doInHibernate(Session session) throws HibernateException
+                {
+                    if (session.get(SchedulerLease.class, leaseId) != null) {
+                        return false;
+                    }
+                    session.save(new SchedulerLease(leaseId, nodeId));
+                    // Flush now so that a concurrent claim fails here rather than when committing.
+                    session.flush();
+                    return true;
+                }
+            });
+        } catch (XWikiException e) {
+            // Most likely another node inserted the same lease first.
+            LOGGER.debug("Failed to claim the lease of task [{}] scheduled at [{}]", new Object[] {jobId,
+                scheduledFireTime, e});
+            return false;
+        } finally {
+            store.cleanUp(context);
+        }
+    }
+
+    /**
+     * Remove the leases older than the retention delay, at most once per retention delay.
+     *
+     * @param store the store holding the leases
+     * @param context the XWiki context, targeting the main wiki
+     */
+    private void cleanExpiredLeases(XWikiHibernateStore store, XWikiContext context)
+    {
+        long now = System.currentTimeMillis();
+        if (now - this.lastCleanup < this.leaseRetention) {
+            return;
+        }
+        this.lastCleanup = now;
+
+        final Date limit = new Date(now - this.leaseRetention);
+        try {
+            store.executeWrite(context, new HibernateCallback<Object>()
+            {
+                @Override
+                public Object doInHibernate(Session session) throws HibernateException
+                {
+                    session.createQuery("delete from SchedulerLease as lease where lease.date < :limit")
+                        .setTimestamp("limit", limit).executeUpdate();
+                    return null;
+                }
+            });
+        } catch (XWikiException e) {
+            LOGGER.warn("Failed to remove the expired scheduler leases", e);
+        }
+    }
+}
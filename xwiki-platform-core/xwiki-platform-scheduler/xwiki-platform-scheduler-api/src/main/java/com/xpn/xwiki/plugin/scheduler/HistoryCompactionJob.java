@@ -0,0 +1,97 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.xpn.xwiki.plugin.scheduler;
+
+import java.util.List;
+
+import org.apache.commons.lang3.StringUtils;
+import org.quartz.JobExecutionContext;
+import org.quartz.JobExecutionException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.xpn.xwiki.XWikiContext;
+import com.xpn.xwiki.XWikiException;
+import com.xpn.xwiki.doc.XWikiDocument;
+import com.xpn.xwiki.store.XWikiHibernateVersioningStore;
+import com.xpn.xwiki.store.XWikiVersioningStoreInterface;
+
+/**
+ * Rewrites the histories of the documents of the wiki the job has been scheduled in so that they follow the storage
+ * policy configured with {@code xwiki.store.rcs.nodesPerFull}: a full version is stored every {@code nodesPerFull}
+ * versions and patches are stored for the other versions. New versions already follow the policy, so this job only
+ * needs to run after the policy has been changed, preferably when the wiki is not busy. The histories which already
+ * follow the policy are skipped without loading their content.
+ * 
+ * @version $Id$
+ * @since 4.4M1
+ */
+public class HistoryCompactionJob extends AbstractJob
+{
+    /**
+     * Log object to log messages in this class.
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(HistoryCompactionJob.class);
+
+    @Override
+    protected void executeJob(JobExecutionContext jobContext) throws JobExecutionException
+    {
+        // Clone the context to make sure we have a new one per run.
+        XWikiContext context = ((XWikiContext) jobContext.getJobDetail().getJobDataMap().get("context")).clone();
+
+        XWikiVersioningStoreInterface versioningStore = context.getWiki().getVersioningStore();
+        if (!(versioningStore instanceof XWikiHibernateVersioningStore)) {
+            LOGGER.warn("The histories can't be compacted with the versioning store [{}]", versioningStore);
+            return;
+        }
+        XWikiHibernateVersioningStore store = (XWikiHibernateVersioningStore) versioningStore;
+
+        List<Object[]> documents;
+        try {
+            documents = store.getArchivedDocuments(context);
+        } catch (XWikiException e) {
+            throw new JobExecutionException("Failed to list the documents of wiki [" + context.getDatabase() + "]", e);
+        }
+
+        int compacted = 0;
+        for (Object[] document : documents) {
+            String fullName = (String) document[0];
+            String language = (String) document[1];
+            try {
+                // Use the cached document so that the cache holds the compacted history.
+                XWikiDocument doc = context.getWiki().getDocument(fullName, context);
+                if (StringUtils.isNotEmpty(language)) {
+                    doc = doc.getTranslatedDocument(language, context);
+                }
+                if (store.compactXWikiDocArchive(doc, context)) {
+                    compacted++;
+                }
+            } catch (Exception e) {
+                LOGGER.warn("Failed to compact the history of document [{}] in language [{}]", new Object[] {fullName,
+                    language, e});
+            } finally {
+                context.getWiki().getStore().cleanUp(context);
+            }
+        }
+
+        LOGGER.info("Compacted [{}] of the [{}] document histories of wiki [{}]", new Object[] {compacted,
+            documents.size(), context.getDatabase()});
+    }
+}
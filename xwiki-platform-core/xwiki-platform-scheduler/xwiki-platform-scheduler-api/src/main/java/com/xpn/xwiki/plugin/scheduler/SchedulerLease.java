@@ -0,0 +1,113 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.xpn.xwiki.plugin.scheduler;
+
+import java.util.Date;
+
+/**
+ * The right of a cluster node to run a scheduled execution of a job, stored in the {@code xwikischedulerlease} table of
+ * the main wiki database. See {@link ClusterTriggerListener}.
+ *
+ * @version $Id$
+ * @since 4.4M1
+ */
+public class SchedulerLease
+{
+    /**
+     * The identifier of the lease, computed from the job identifier and the time the execution was scheduled at.
+     */
+    private long id;
+
+    /**
+     * The identifier of the node holding the lease.
+     */
+    private String node;
+
+    /**
+     * The time the lease has been claimed at.
+     */
+    private Date date;
+
+    /**
+     * Default constructor, used by Hibernate.
+     */
+    public SchedulerLease()
+    {
+    }
+
+    /**
+     * @param id the identifier of the lease
+     * @param node the identifier of the node claiming the lease
+     */
+    public SchedulerLease(long id, String node)
+    {
+        this.id = id;
+        this.node = node;
+        this.date = new Date();
+    }
+
+    /**
+     * @return the identifier of the lease
+     */
+    public long getId()
+    {
+        return this.id;
+    }
+
+    /**
+     * @param id the identifier of the lease
+     */
+    public void setId(long id)
+    {
+        this.id = id;
+    }
+
+    /**
+     * @return the identifier of the node holding the lease
+     */
+    public String getNode()
+    {
+        return this.node;
+    }
+
+    /**
+     * @param node the identifier of the node holding the lease
+     */
+    public void setNode(String node)
+    {
+        this.node = node;
+    }
+
+    /**
+     * @return the time the lease has been claimed at
+     */
+    public Date getDate()
+    {
+        return this.date;
+    }
+
+    /**
+     * @param date the time the lease has been claimed at
+     */
+    public void setDate(Date date)
+    {
+        this.date = date;
+    }
+}
@@ -19,6 +19,7 @@
  */
 package com.xpn.xwiki.plugin.scheduler;
 
+import java.lang.management.ManagementFactory;
 import java.net.URL;
 import java.text.ParseException;
 import java.util.ArrayList;
@@ -144,6 +145,9 @@ public void init(XWikiContext context)
 
             setScheduler(getDefaultSchedulerInstance());
             setStatusListener();
+            if (context.getWiki().ParamAsLong("xwiki.plugin.scheduler.cluster", 0) == 1) {
+                setClusterListener(context);
+            }
             getScheduler().start();
 
             // Restore jobs
@@ -589,6 +593,39 @@ private void setStatusListener() throws SchedulerPluginException
         }
     }
 
+    /**
+     * Associates the scheduler with a {@link ClusterTriggerListener} so that each scheduled job execution runs on a
+     * single node of the cluster.
+     * 
+     * @param context the XWiki context
+     * @throws SchedulerPluginException if the cluster listener failed to be set properly
+     */
+    private void setClusterListener(XWikiContext context) throws SchedulerPluginException
+    {
+        XWiki xwiki = context.getWiki();
+        String nodeId =
+            xwiki.Param("xwiki.plugin.scheduler.cluster.nodeId", ManagementFactory.getRuntimeMXBean().getName());
+        long claimDelay = xwiki.ParamAsLong("xwiki.plugin.scheduler.cluster.claimDelay", 500);
+        long leaseRetention = xwiki.ParamAsLong("xwiki.plugin.scheduler.cluster.leaseRetention", 86400000);
+
+        if (xwiki.getHibernateStore() == null
+            || xwiki.getHibernateStore().getConfiguration().getClassMapping(SchedulerLease.class.getName()) == null) {
+            throw new SchedulerPluginException(
+                SchedulerPluginException.ERROR_SCHEDULERPLUGIN_INITIALIZE_CLUSTER_LISTENER,
+                "The scheduler cluster mode requires the scheduler.hbm.xml mapping in hibernate.cfg.xml");
+        }
+
+        ClusterTriggerListener listener = new ClusterTriggerListener(nodeId, claimDelay, leaseRetention);
+        try {
+            getScheduler().addGlobalTriggerListener(listener);
+        } catch (SchedulerException e) {
+            throw new SchedulerPluginException(
+                SchedulerPluginException.ERROR_SCHEDULERPLUGIN_INITIALIZE_CLUSTER_LISTENER,
+                "Error while initializing the cluster listener", e);
+        }
+        LOGGER.info("Scheduled jobs run on a single node of the cluster, this node is [{}]", nodeId);
+    }
+
     private void saveStatus(String status, BaseObject object, XWikiContext context) throws XWikiException
     {
         XWikiDocument jobHolder = context.getWiki().getDocument(object.getName(), context);
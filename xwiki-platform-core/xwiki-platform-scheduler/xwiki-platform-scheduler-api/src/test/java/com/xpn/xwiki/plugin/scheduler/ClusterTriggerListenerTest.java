@@ -0,0 +1,173 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.xpn.xwiki.plugin.scheduler;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import org.jmock.Expectations;
+import org.jmock.Mockery;
+import org.jmock.api.Invocation;
+import org.jmock.lib.action.CustomAction;
+import org.jmock.lib.legacy.ClassImposteriser;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.quartz.CronTrigger;
+import org.quartz.JobDetail;
+import org.quartz.JobExecutionContext;
+import org.quartz.Scheduler;
+import org.quartz.SimpleTrigger;
+import org.quartz.Trigger;
+
+import com.xpn.xwiki.XWikiContext;
+
+/**
+ * Unit tests for {@link ClusterTriggerListener}.
+ * 
+ * @version $Id$
+ */
+public class ClusterTriggerListenerTest
+{
+    private Mockery mockery = new Mockery();
+
+    private Scheduler scheduler;
+
+    private JobDetail jobDetail;
+
+    private CronTrigger cronTrigger;
+
+    /**
+     * The leases claimed by the listener, as job identifier and scheduled fire time.
+     */
+    private List<String> claims = new ArrayList<String>();
+
+    /**
+     * Whether the next leases are free.
+     */
+    private boolean leaseFree = true;
+
+    private int jobContextCount;
+
+    private ClusterTriggerListener listener = new ClusterTriggerListener("node1", 500, 86400000)
+    {
+        @Override
+        protected boolean claimLease(String jobId, Date scheduledFireTime, XWikiContext jobContext)
+        {
+            claims.add(jobId + '@' + scheduledFireTime.getTime());
+            return leaseFree;
+        }
+    };
+
+    @Before
+    public void setUp() throws Exception
+    {
+        this.mockery.setImposteriser(ClassImposteriser.INSTANCE);
+        this.scheduler = this.mockery.mock(Scheduler.class);
+        this.jobDetail = new JobDetail("job", Scheduler.DEFAULT_GROUP, AbstractJob.class);
+        this.jobDetail.getJobDataMap().put("context", new XWikiContext());
+        this.cronTrigger =
+            new CronTrigger("job", Scheduler.DEFAULT_GROUP, "job", Scheduler.DEFAULT_GROUP, "0 0 * * * ?");
+    }
+
+    private JobExecutionContext fire(final Trigger trigger, final Date scheduledFireTime)
+    {
+        final JobExecutionContext jobContext =
+            this.mockery.mock(JobExecutionContext.class, "jobContext" + this.jobContextCount++);
+        this.mockery.checking(new Expectations()
+        {{
+            allowing(jobContext).getJobDetail(); will(returnValue(jobDetail));
+            allowing(jobContext).getScheduledFireTime(); will(returnValue(scheduledFireTime));
+            allowing(jobContext).getScheduler(); will(returnValue(scheduler));
+        }});
+        return jobContext;
+    }
+
+    @Test
+    public void idleNodeRunsTheJobIfItGetsTheLease()
+    {
+        Assert.assertFalse(this.listener.vetoJobExecution(this.cronTrigger, fire(this.cronTrigger, new Date(1000))));
+        Assert.assertEquals("job@1000", this.claims.get(0));
+    }
+
+    @Test
+    public void nodeVetoesTheJobIfAnotherNodeGotTheLease()
+    {
+        this.leaseFree = false;
+
+        Assert.assertTrue(this.listener.vetoJobExecution(this.cronTrigger, fire(this.cronTrigger, new Date(1000))));
+        Assert.assertEquals(1, this.claims.size());
+    }
+
+    @Test
+    public void busyNodeDefersTheClaimWithoutWaiting() throws Exception
+    {
+        JobExecutionContext first = fire(this.cronTrigger, new Date(1000));
+        Assert.assertFalse(this.listener.vetoJobExecution(this.cronTrigger, first));
+
+        // The node is now running a job: the next execution is vetoed and a claim trigger is scheduled instead.
+        final List<Trigger> scheduled = new ArrayList<Trigger>();
+        this.mockery.checking(new Expectations()
+        {{
+            oneOf(scheduler).scheduleJob(with(any(Trigger.class)));
+            will(new CustomAction("record the scheduled trigger")
+            {
+                @Override
+                public Object invoke(Invocation invocation)
+                {
+                    scheduled.add((Trigger) invocation.getParameter(0));
+                    return new Date();
+                }
+            });
+        }});
+        long before = System.currentTimeMillis();
+        Assert.assertTrue(this.listener.vetoJobExecution(this.cronTrigger, fire(this.cronTrigger, new Date(2000))));
+        Assert.assertTrue(System.currentTimeMillis() - before < 500);
+        Assert.assertEquals(1, this.claims.size());
+
+        Trigger claim = scheduled.get(0);
+        Assert.assertTrue(claim instanceof SimpleTrigger);
+        Assert.assertEquals("job", claim.getJobName());
+        Assert.assertTrue(claim.getStartTime().getTime() >= before + 500);
+
+        // The claim trigger claims the lease of the execution scheduled by the cron trigger.
+        Assert.assertFalse(this.listener.vetoJobExecution(claim, fire(claim, claim.getStartTime())));
+        Assert.assertEquals("job@2000", this.claims.get(1));
+
+        // Once the jobs are complete the node is idle again and claims the leases right away.
+        this.listener.triggerComplete(this.cronTrigger, first, Trigger.INSTRUCTION_NOOP);
+        this.listener.triggerComplete(claim, fire(claim, claim.getStartTime()), Trigger.INSTRUCTION_NOOP);
+        Assert.assertFalse(this.listener.vetoJobExecution(this.cronTrigger, fire(this.cronTrigger, new Date(3000))));
+        Assert.assertEquals("job@3000", this.claims.get(2));
+
+        this.mockery.assertIsSatisfied();
+    }
+
+    @Test
+    public void manuallyTriggeredJobsRunLocally()
+    {
+        SimpleTrigger manual = new SimpleTrigger("MT_job", Scheduler.DEFAULT_GROUP, "job", Scheduler.DEFAULT_GROUP,
+            new Date(), null, 0, 0);
+
+        Assert.assertFalse(this.listener.vetoJobExecution(manual, fire(manual, new Date(1000))));
+        Assert.assertTrue(this.claims.isEmpty());
+    }
+}
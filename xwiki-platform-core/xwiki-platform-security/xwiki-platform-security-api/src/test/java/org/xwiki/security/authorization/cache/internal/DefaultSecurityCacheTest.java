@@ -36,6 +36,7 @@
 import org.xwiki.cache.config.CacheConfiguration;
 import org.xwiki.cache.event.CacheEntryEvent;
 import org.xwiki.cache.event.CacheEntryListener;
+import org.xwiki.cache.util.AbstractCache;
 import org.xwiki.model.reference.DocumentReference;
 import org.xwiki.model.reference.EntityReferenceSerializer;
 import org.xwiki.model.reference.SpaceReference;
@@ -88,7 +89,7 @@ public class DefaultSecurityCacheTest extends AbstractSecurityTestCase
     private UserSecurityReference aMissingUserRef;
     private GroupSecurityReference aMissingGroupRef;
 
-    class TestCache<T> implements Cache<T>
+    class TestCache<T> extends AbstractCache<T>
     {
         private Map<String,T> cache = new HashMap<String,T>();
         private CacheEntryListener<T> listener;
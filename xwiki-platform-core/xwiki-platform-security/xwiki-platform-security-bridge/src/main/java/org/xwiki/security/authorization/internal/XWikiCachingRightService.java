@@ -25,6 +25,9 @@
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.xwiki.instrumentation.Instrumentation;
+import org.xwiki.instrumentation.Phase;
+import org.xwiki.instrumentation.Span;
 import org.xwiki.model.reference.DocumentReference;
 import org.xwiki.model.reference.DocumentReferenceResolver;
 import org.xwiki.model.reference.EntityReference;
@@ -135,6 +138,9 @@ public class XWikiCachingRightService implements XWikiRightService
     private final AuthorizationManager authorizationManager
         = Utils.getComponent(AuthorizationManager.class);
 
+    /** Used to measure the time spent checking rights. */
+    private final Instrumentation instrumentation = Utils.getComponent(Instrumentation.class);
+
     /**
      * Specialized map with a chainable put action to avoid exceeding code complexity during initialization.
      */
@@ -318,7 +324,7 @@ public boolean checkAccess(String action, XWikiDocument doc, XWikiContext contex
             return false;
         }
 
-        if (authorizationManager.hasAccess(right, userReference, entityReference)) {
+        if (hasAccess(right, userReference, entityReference)) {
             return true;
         }
 
@@ -346,7 +352,25 @@ public boolean hasAccessLevel(String right, String username, String docname, XWi
         LOGGER.debug("Resolved '{}' into {}", docname, document);
         DocumentReference user = resolveUserName(username, wikiReference);
 
-        return authorizationManager.hasAccess(Right.toRight(right), user, document);
+        return hasAccess(Right.toRight(right), user, document);
+    }
+
+    /**
+     * Check a right with the authorization manager, measuring the time spent.
+     *
+     * @param right the right to check
+     * @param userReference the user
+     * @param entityReference the entity on which the right is checked
+     * @return {@code true} if the user has the right on the entity
+     */
+    private boolean hasAccess(Right right, DocumentReference userReference, EntityReference entityReference)
+    {
+        Span span = instrumentation.startSpan(Phase.SECURITY, entityReference);
+        try {
+            return authorizationManager.hasAccess(right, userReference, entityReference);
+        } finally {
+            span.end();
+        }
     }
 
     @Override
@@ -370,7 +394,7 @@ public boolean hasProgrammingRights(XWikiDocument doc, XWikiContext context)
             wiki = new WikiReference(context.getDatabase());
         }
 
-        return authorizationManager.hasAccess(Right.PROGRAM, user, wiki);
+        return hasAccess(Right.PROGRAM, user, wiki);
     }
 
     @Override
@@ -378,7 +402,7 @@ public boolean hasAdminRights(XWikiContext context)
     {
         DocumentReference user = context.getUserReference();
         DocumentReference document = context.getDoc().getDocumentReference();
-        return authorizationManager.hasAccess(Right.ADMIN, user, document);
+        return hasAccess(Right.ADMIN, user, document);
     }
 
     @Override
@@ -386,7 +410,7 @@ public boolean hasWikiAdminRights(XWikiContext context)
     {
         DocumentReference user = context.getUserReference();
         WikiReference wiki = new WikiReference(context.getDatabase());
-        return authorizationManager.hasAccess(Right.ADMIN, user, wiki);
+        return hasAccess(Right.ADMIN, user, wiki);
     }
 
     @Override
@@ -0,0 +1,155 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.store.filesystem.internal;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.io.IOUtils;
+import org.xwiki.store.StartableTransactionRunnable;
+import org.xwiki.store.StreamProvider;
+import org.xwiki.store.TransactionRunnable;
+
+/**
+ * A TransactionRunnable for storing content in a {@link BlobStore}.
+ * The content is hashed while it is written to a temporary file which is then renamed to the blob named
+ * after the hash, or deleted if an identical blob already exists. Since blobs are immutable and invisible
+ * until a reference file points to them, the blob is published as soon as it is written and is not removed
+ * on rollback, it will be removed by the garbage collector if nothing references it.
+ *
+ * @version $Id$
+ * @since 4.4M1
+ */
+public class BlobSaveTransactionRunnable extends StartableTransactionRunnable<TransactionRunnable>
+{
+    /**
+     * The store to save the content in.
+     */
+    private final BlobStore blobStore;
+
+    /**
+     * The source of the data to save.
+     */
+    private final StreamProvider provider;
+
+    /**
+     * The hash of the content, null until run() has complete unless it was known beforehand.
+     */
+    private String hash;
+
+    /**
+     * The Constructor.
+     *
+     * @param blobStore the store to save the content in.
+     * @param provider a StreamProvider to get the data to store.
+     * @param knownHash the hash of the content if it is already stored in a blob, for example because it is
+     * the content of another attachment, null otherwise. If the blob exists, the content is not read.
+     */
+    public BlobSaveTransactionRunnable(final BlobStore blobStore,
+        final StreamProvider provider,
+        final String knownHash)
+    {
+        this.blobStore = blobStore;
+        this.provider = provider;
+        this.hash = knownHash;
+    }
+
+    /**
+     * @return the hash of the stored content, available once run() has complete.
+     */
+    public String getHash()
+    {
+        return this.hash;
+    }
+
+    /**
+     * {@inheritDoc}
+     * Stream the content to a temporary file while hashing it, then publish it as a blob.
+     *
+     * @see TransactionRunnable#onRun()
+     */
+    protected void onRun() throws Exception
+    {
+        if (this.hash != null && this.blobStore.touch(this.hash)) {
+            // Nothing to copy, the caller only needs to reference the existing blob. Touching it makes sure it is
+            // not removed by the garbage collector, and if it has been removed in the mean time then touching it
+            // fails and the content is written again.
+            return;
+        }
+
+        final File blobDir = this.blobStore.getBlobDirectory();
+        if (!blobDir.exists() && !blobDir.mkdirs()) {
+            throw new IOException("Could not make directory to place blobs in. "
+                + "Do you have permission to write to [" + blobDir.getAbsolutePath() + "] ?");
+        }
+
+        final File tempFile = this.blobStore.getTempFile();
+        try {
+            final MessageDigest digest = this.blobStore.newDigest();
+            final InputStream in = this.provider.getStream();
+            try {
+                final OutputStream out = new DigestOutputStream(new FileOutputStream(tempFile), digest);
+                try {
+                    IOUtils.copy(in, out);
+                } finally {
+                    out.close();
+                }
+            } finally {
+                in.close();
+            }
+            this.hash = new String(Hex.encodeHex(digest.digest()));
+            this.publish(tempFile, this.blobStore.getBlobFile(this.hash));
+        } finally {
+            if (tempFile.exists()) {
+                tempFile.delete();
+            }
+        }
+    }
+
+    /**
+     * Move a fully written temporary file to the blob location, unless the same content is already there.
+     *
+     * @param tempFile the file holding the content.
+     * @param blobFile the location of the blob.
+     * @throws IOException if the blob cannot be published.
+     */
+    private void publish(final File tempFile, final File blobFile) throws IOException
+    {
+        if (this.blobStore.touch(this.hash)) {
+            // Same content, keep the existing blob and make sure it is not removed by the garbage collector.
+            return;
+        }
+        if (!blobFile.getParentFile().exists() && !blobFile.getParentFile().mkdirs()) {
+            throw new IOException("Could not make directory to place blob in. "
+                + "Do you have permission to write to [" + blobFile.getAbsolutePath() + "] ?");
+        }
+        // If another thread published the same content in the mean time the rename fails but the blob exists.
+        if (!tempFile.renameTo(blobFile) && !blobFile.exists()) {
+            throw new IOException("Could not move [" + tempFile.getAbsolutePath() + "] to ["
+                + blobFile.getAbsolutePath() + "]");
+        }
+    }
+}
@@ -0,0 +1,320 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.store.filesystem.internal;
+
+import java.io.File;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.locks.Lock;
+import java.util.regex.Pattern;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang3.RandomStringUtils;
+import org.xwiki.store.locks.LockProvider;
+
+/**
+ * A content addressed store for attachment content.
+ * Each distinct content is stored only once in a blob named after the SHA-256 hash of the content and
+ * the files where attachment content used to be stored are replaced by small reference files containing
+ * the hash of the blob. This way the versions of an attachment which share the same content, the same
+ * attachment in copied or renamed documents and deleted attachments all share a single blob.
+ * Blobs are immutable, they are published by renaming a fully written temporary file and are removed by
+ * {@link #collectGarbage(File, long)} once no reference file points to them anymore. A blob reused by a new
+ * reference is {@link #touch(String) touched} first so that it is not removed before the reference is written.
+ * Content stored before this store existed is still read from its original file, which is replaced by a
+ * reference the next time it is saved.
+ *
+ * @version $Id$
+ * @since 4.4M1
+ */
+public class BlobStore
+{
+    /**
+     * The reference to the blob holding the content of a file is stored in a file of the same name with
+     * this after it. Attachment file names are URL encoded so they cannot contain a '~'.
+     */
+    public static final String REFERENCE_FILE_SUFFIX = "~blob";
+
+    /**
+     * The algorithm used to hash the content.
+     */
+    private static final String HASH_ALGORITHM = "SHA-256";
+
+    /**
+     * The hashes are stored as lower case hexadecimal strings.
+     */
+    private static final Pattern HASH_PATTERN = Pattern.compile("[0-9a-f]{64}");
+
+    /**
+     * Blobs are spread in sub directories named after the first characters of the hash so that no
+     * directory holds too many files.
+     */
+    private static final int SUB_DIRECTORY_NAME_LENGTH = 2;
+
+    /**
+     * Prefix of the files where the content is written before it is hashed and published.
+     */
+    private static final String TEMP_FILE_PREFIX = "~tmp";
+
+    /**
+     * The charset of the reference files.
+     */
+    private static final String REFERENCE_CHARSET = "US-ASCII";
+
+    /**
+     * The directory where the blobs are stored.
+     */
+    private final File blobDir;
+
+    /**
+     * Provides the locks making sure that a blob is not removed while it is touched.
+     */
+    private final LockProvider lockProvider;
+
+    /**
+     * The Constructor.
+     *
+     * @param blobDir the directory where the blobs are stored.
+     * @param lockProvider provides the locks making sure that a blob is not removed while it is touched.
+     */
+    public BlobStore(final File blobDir, final LockProvider lockProvider)
+    {
+        this.blobDir = blobDir;
+        this.lockProvider = lockProvider;
+    }
+
+    /**
+     * @return the directory where the blobs are stored.
+     */
+    public File getBlobDirectory()
+    {
+        return this.blobDir;
+    }
+
+    /**
+     * @return a new MessageDigest computing the hash used to name the blobs.
+     */
+    public MessageDigest newDigest()
+    {
+        try {
+            return MessageDigest.getInstance(HASH_ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java implementation is required to support SHA-256.
+            throw new IllegalStateException("The " + HASH_ALGORITHM + " algorithm is not available", e);
+        }
+    }
+
+    /**
+     * Get a new file to write content in before it is hashed.
+     * It is in the blob directory so that it can be renamed into place.
+     *
+     * @return a new file which does not exist yet.
+     */
+    public File getTempFile()
+    {
+        return new File(this.blobDir, TEMP_FILE_PREFIX + RandomStringUtils.randomAlphanumeric(16));
+    }
+
+    /**
+     * @param hash the hash of the content.
+     * @return the blob holding the content with the given hash, the file may not exist.
+     */
+    public File getBlobFile(final String hash)
+    {
+        return new File(new File(this.blobDir, hash.substring(0, SUB_DIRECTORY_NAME_LENGTH)), hash);
+    }
+
+    /**
+     * Mark a blob as recently used so that the garbage collector does not remove it before the reference to it
+     * is written.
+     *
+     * @param hash the hash of the content.
+     * @return true if the blob has been touched, false if it does not exist, possibly because it has just been
+     *         removed by the garbage collector, in which case the content has to be written again.
+     */
+    public boolean touch(final String hash)
+    {
+        final File blobFile = this.getBlobFile(hash);
+        final Lock lock = this.lockProvider.getLock(blobFile).readLock();
+        lock.lock();
+        try {
+            return blobFile.setLastModified(System.currentTimeMillis());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @param file a file which may be a blob of this store.
+     * @return the hash of the content if the file is a blob of this store, null otherwise.
+     */
+    public String getHash(final File file)
+    {
+        if (file != null && HASH_PATTERN.matcher(file.getName()).matches()
+            && getBlobFile(file.getName()).equals(file))
+        {
+            return file.getName();
+        }
+        return null;
+    }
+
+    /**
+     * @param storageFile a file where content used to be stored.
+     * @return the file holding the hash of the blob which stores the content.
+     */
+    public File getReferenceFile(final File storageFile)
+    {
+        return new File(storageFile.getAbsolutePath() + REFERENCE_FILE_SUFFIX);
+    }
+
+    /**
+     * @param hash the hash of a blob.
+     * @return the content of the reference file for that blob.
+     */
+    public byte[] getReferenceContent(final String hash)
+    {
+        try {
+            return hash.getBytes(REFERENCE_CHARSET);
+        } catch (IOException e) {
+            throw new IllegalStateException(REFERENCE_CHARSET + " is not supported", e);
+        }
+    }
+
+    /**
+     * Get the file holding the content which was stored in a given file.
+     *
+     * @param storageFile the file where the content was stored.
+     * @return the blob referenced by the reference file if there is one, otherwise the given file which is
+     *         where the content was stored before the blob store existed.
+     * @throws IOException if the reference file cannot be read or is corrupt.
+     */
+    public File resolve(final File storageFile) throws IOException
+    {
+        final File referenceFile = this.getReferenceFile(storageFile);
+        if (referenceFile.exists()) {
+            return this.getBlobFile(readReference(referenceFile));
+        }
+        return storageFile;
+    }
+
+    /**
+     * @param storageFile the file where the content was stored.
+     * @return true if there is a reference file or, for content stored before the blob store existed,
+     *         a content file.
+     */
+    public boolean exists(final File storageFile)
+    {
+        return this.getReferenceFile(storageFile).exists() || storageFile.exists();
+    }
+
+    /**
+     * Remove the blobs which are not referenced by any reference file under the given directory.
+     * Only blobs older than the grace period are removed so that the blobs published by transactions which
+     * have not yet written their reference files are kept.
+     *
+     * @param root the directory containing all the reference files, typically the storage directory.
+     * @param gracePeriod the minimum age of the blobs to remove, in milliseconds.
+     * @return the number of blobs removed.
+     * @throws IOException if a reference file cannot be read, in which case nothing is removed.
+     */
+    public int collectGarbage(final File root, final long gracePeriod) throws IOException
+    {
+        final Set<String> referenced = new HashSet<String>();
+        this.mark(root, referenced);
+
+        final long limit = System.currentTimeMillis() - gracePeriod;
+        int removed = 0;
+        final File[] subDirs = this.blobDir.listFiles();
+        if (subDirs == null) {
+            return removed;
+        }
+        for (File subDir : subDirs) {
+            final File[] files = subDir.isDirectory() ? subDir.listFiles() : new File[] {subDir};
+            for (File file : files) {
+                if (!referenced.contains(file.getName()) && this.deleteIfOlder(file, limit)) {
+                    removed++;
+                }
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * Delete an unreferenced blob unless it has been touched since the given time. The age is checked while
+     * holding the lock taken by {@link #touch(String)} so a blob is either touched before the check, and kept,
+     * or after it has been deleted, in which case touching it fails and its content is written again.
+     *
+     * @param file the blob.
+     * @param limit the time before which the blob must have been modified for it to be deleted.
+     * @return true if the blob has been deleted.
+     */
+    private boolean deleteIfOlder(final File file, final long limit)
+    {
+        final Lock lock = this.lockProvider.getLock(file).writeLock();
+        lock.lock();
+        try {
+            return file.lastModified() < limit && file.delete();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Collect the hashes of the blobs referenced under a directory.
+     *
+     * @param dir the directory to search for reference files.
+     * @param referenced the set to add the referenced hashes to.
+     * @throws IOException if a reference file cannot be read.
+     */
+    private void mark(final File dir, final Set<String> referenced) throws IOException
+    {
+        final File[] files = dir.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            if (file.isDirectory()) {
+                if (!file.equals(this.blobDir)) {
+                    this.mark(file, referenced);
+                }
+            } else if (file.getName().endsWith(REFERENCE_FILE_SUFFIX)) {
+                referenced.add(readReference(file));
+            }
+        }
+    }
+
+    /**
+     * @param referenceFile a reference file.
+     * @return the hash of the referenced blob.
+     * @throws IOException if the file cannot be read or does not contain a hash.
+     */
+    private static String readReference(final File referenceFile) throws IOException
+    {
+        final String hash = FileUtils.readFileToString(referenceFile, REFERENCE_CHARSET).trim();
+        if (!HASH_PATTERN.matcher(hash).matches()) {
+            throw new IOException("The reference file [" + referenceFile.getAbsolutePath()
+                + "] does not contain a valid hash.");
+        }
+        return hash;
+    }
+}
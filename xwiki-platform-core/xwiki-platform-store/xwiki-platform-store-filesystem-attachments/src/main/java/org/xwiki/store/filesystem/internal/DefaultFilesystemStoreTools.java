@@ -20,6 +20,7 @@
 package org.xwiki.store.filesystem.internal;
 
 import java.io.File;
+import java.io.IOException;
 import java.util.Arrays;
 import java.util.Date;
 import java.util.HashMap;
@@ -31,6 +32,7 @@
 import javax.inject.Singleton;
 
 import org.apache.commons.lang3.RandomStringUtils;
+import org.slf4j.Logger;
 import org.xwiki.component.annotation.Component;
 import org.xwiki.component.phase.Initializable;
 import org.xwiki.context.Execution;
@@ -95,6 +97,18 @@ public class DefaultFilesystemStoreTools implements FilesystemStoreTools, Initia
      */
     private static final String TEMP_FILE_SUFFIX = "~tmp";
 
+    /**
+     * The name of the directory in the storage directory where the attachment content blobs are stored.
+     * Like the global files, it starts with a character which is URL encoded in wiki names.
+     */
+    private static final String BLOB_DIR_NAME = "~blobs";
+
+    /**
+     * Blobs which are not referenced are only removed if they are older than this, in milliseconds,
+     * in case the storage directory is shared with another instance which is saving them.
+     */
+    private static final long BLOB_GARBAGE_COLLECTION_GRACE_PERIOD = 24L * 60 * 60 * 1000;
+
     /**
      * Serializer used for obtaining a safe file path from a document reference.
      */
@@ -110,11 +124,10 @@ public class DefaultFilesystemStoreTools implements FilesystemStoreTools, Initia
 
     /**
      * A means of acquiring locks for attachments.
-     * Because the attachments temp files are randomly named and rename is atomic, locks are not needed.
-     * DummyLockProvider provides fake locks.
+     * The locks are only held while a transaction commits, so that the renames of the files of an attachment
+     * done by concurrent transactions do not interleave and readers do not see a half committed attachment.
      */
     @Inject
-    @Named("dummy")
     private LockProvider lockProvider;
 
     /**
@@ -123,11 +136,22 @@ public class DefaultFilesystemStoreTools implements FilesystemStoreTools, Initia
     @Inject
     private Environment environment;
 
+    /**
+     * The logger to log.
+     */
+    @Inject
+    private Logger logger;
+
     /**
      * This is the directory where all of the attachments will stored.
      */
     private File storageDir;
 
+    /**
+     * The store where the content of the attachments is kept.
+     */
+    private BlobStore blobStore;
+
     /**
      * Testing Constructor.
      *
@@ -143,6 +167,7 @@ public DefaultFilesystemStoreTools(final EntityReferenceSerializer<String> pathS
         this.pathSerializer = pathSerializer;
         this.storageDir = storageDir;
         this.lockProvider = lockProvider;
+        this.blobStore = new BlobStore(new File(storageDir, BLOB_DIR_NAME), lockProvider);
     }
 
     /**
@@ -156,7 +181,36 @@ public DefaultFilesystemStoreTools()
     public void initialize()
     {
         this.storageDir = new File(this.environment.getPermanentDirectory(), STORAGE_DIR_NAME);
+        this.blobStore = new BlobStore(new File(this.storageDir, BLOB_DIR_NAME), this.lockProvider);
         deleteEmptyDirs(this.storageDir);
+
+        // Walking the whole storage directory can take a while, don't delay the startup for it. Blobs saved or
+        // touched while the garbage is collected are newer than the grace period so they are kept.
+        final Thread garbageCollector = new Thread(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                collectBlobGarbage();
+            }
+        }, "Attachment Blob Garbage Collector");
+        garbageCollector.setDaemon(true);
+        garbageCollector.setPriority(Thread.MIN_PRIORITY);
+        garbageCollector.start();
+    }
+
+    /**
+     * Remove the attachment content blobs which are not referenced anymore.
+     */
+    private void collectBlobGarbage()
+    {
+        try {
+            final int removed =
+                this.blobStore.collectGarbage(this.storageDir, BLOB_GARBAGE_COLLECTION_GRACE_PERIOD);
+            this.logger.debug("Removed [{}] unreferenced attachment content blobs", removed);
+        } catch (IOException e) {
+            this.logger.warn("Failed to remove the unreferenced attachment content blobs", e);
+        }
     }
 
     /**
@@ -351,9 +405,17 @@ private static File getDocumentDir(final DocumentReference docRef,
         return new File(path, DOCUMENT_DIR_NAME);
     }
 
+    @Override
+    public BlobStore getBlobStore()
+    {
+        return this.blobStore;
+    }
+
     @Override
     public ReadWriteLock getLockForFile(final File toLock)
     {
-        return this.lockProvider.getLock(toLock);
+        // All of the files of an attachment (content, versions, metadata and the temporary and backup files)
+        // are in the same directory, locking the directory gives a single lock per attachment.
+        return this.lockProvider.getLock(toLock.getAbsoluteFile().getParentFile());
     }
 }
@@ -111,12 +111,22 @@ DeletedAttachmentFileProvider getDeletedAttachmentFileProvider(final XWikiAttach
     DeletedAttachmentFileProvider getDeletedAttachmentFileProvider(final String pathToDirectory);
 
     /**
-     * Get a {@link java.util.concurrent.locks.ReadWriteLock} which is unique to the given file.
+     * Get a {@link java.util.concurrent.locks.ReadWriteLock} for the given file.
      * This method will always return the same lock for the path on the filesystem even if the
-     * {@link java.io.File} object is different.
+     * {@link java.io.File} object is different. The lock may be shared with the other files of the same
+     * attachment.
      *
      * @param toLock the file to get a lock for.
      * @return a lock for the given file.
      */
     ReadWriteLock getLockForFile(final File toLock);
+
+    /**
+     * Get the content addressed store where the content of the attachments, of their versions and of the
+     * deleted attachments is kept.
+     *
+     * @return the store of attachment content blobs.
+     * @since 4.4M1
+     */
+    BlobStore getBlobStore();
 }
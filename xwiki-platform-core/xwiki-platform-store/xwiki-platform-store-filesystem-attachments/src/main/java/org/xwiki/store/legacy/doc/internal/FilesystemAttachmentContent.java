@@ -80,6 +80,15 @@ public FilesystemAttachmentContent clone()
         return new FilesystemAttachmentContent(this.storageFile, this.getAttachment());
     }
 
+    /**
+     * @return the file where the data is stored.
+     * @since 4.4M1
+     */
+    public File getStorageFile()
+    {
+        return this.storageFile;
+    }
+
     @Override
     @Deprecated
     public byte[] getContent()
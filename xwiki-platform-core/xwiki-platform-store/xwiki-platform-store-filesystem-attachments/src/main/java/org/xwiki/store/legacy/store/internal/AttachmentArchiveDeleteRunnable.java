@@ -54,7 +54,10 @@ public AttachmentArchiveDeleteRunnable(final XWikiAttachmentArchive archive,
 
         final Version[] versions = archive.getVersions();
         for (int i = 0; i < versions.length; i++) {
-            toDelete.add(provider.getAttachmentVersionContentFile(versions[i].toString()));
+            final File versionFile = provider.getAttachmentVersionContentFile(versions[i].toString());
+            toDelete.add(versionFile);
+            // The blobs are removed by the garbage collector once nothing references them anymore.
+            toDelete.add(fileTools.getBlobStore().getReferenceFile(versionFile));
         }
 
         for (File file : toDelete) {
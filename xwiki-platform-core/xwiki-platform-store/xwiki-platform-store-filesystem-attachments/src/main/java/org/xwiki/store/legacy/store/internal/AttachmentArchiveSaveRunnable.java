@@ -41,7 +41,8 @@
 /**
  * A TransactionRunnable for saving attachment archives.
  * It uses a chain of FileSaveTransactionRunnable so the attachment will either be saved or fail
- * safely, it should not hang in a halfway state.
+ * safely, it should not hang in a halfway state. The content of the versions is stored in the blob store so
+ * versions sharing the same content are only stored once.
  *
  * @version $Id$
  * @since 3.0M2
@@ -87,12 +88,9 @@ public AttachmentArchiveSaveRunnable(final XWikiAttachmentArchive archive,
             attachmentVersions.add(attachVer);
 
             // If the content is not dirty and the file was already saved then we will not update.
-            if (attachVer.isContentDirty()
-                || !provider.getAttachmentVersionContentFile(versionName).exists())
-            {
-                final StreamProvider contentProvider =
-                    new AttachmentContentStreamProvider(attachVer, context);
-                addSaver(contentProvider, fileTools, provider.getAttachmentVersionContentFile(versionName));
+            final File versionFile = provider.getAttachmentVersionContentFile(versionName);
+            if (attachVer.isContentDirty() || !fileTools.getBlobStore().exists(versionFile)) {
+                new AttachmentContentSaveRunnable(attachVer, versionFile, fileTools, context).runIn(this);
             }
         }
 
@@ -0,0 +1,104 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.store.legacy.store.internal;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.util.concurrent.locks.ReadWriteLock;
+
+import org.xwiki.store.FileDeleteTransactionRunnable;
+import org.xwiki.store.FileSaveTransactionRunnable;
+import org.xwiki.store.StartableTransactionRunnable;
+import org.xwiki.store.StreamProvider;
+import org.xwiki.store.filesystem.internal.BlobSaveTransactionRunnable;
+import org.xwiki.store.filesystem.internal.BlobStore;
+import org.xwiki.store.filesystem.internal.FilesystemStoreTools;
+import org.xwiki.store.legacy.doc.internal.FilesystemAttachmentContent;
+
+import com.xpn.xwiki.XWikiContext;
+import com.xpn.xwiki.doc.XWikiAttachment;
+import com.xpn.xwiki.doc.XWikiAttachmentContent;
+
+/**
+ * A TransactionRunnable for saving the content of an attachment, of a version of an attachment or of a
+ * deleted attachment.
+ * The content is stored in the {@link BlobStore} and the file where it would have been stored receives a
+ * reference to the blob. If the content was loaded from a blob, for example because the attachment is
+ * copied from another document or restored from the recycle bin, it is not copied again.
+ *
+ * @version $Id$
+ * @since 4.4M1
+ */
+class AttachmentContentSaveRunnable extends StartableTransactionRunnable
+{
+    /**
+     * The Constructor.
+     *
+     * @param attachment the attachment whose content should be saved.
+     * @param saveHere the file where the content would be stored without the blob store.
+     * @param fileTools the means to get the blob store, backup files, temporary files, and locks.
+     * @param context the XWikiContext needed to get the content from the attachment.
+     */
+    AttachmentContentSaveRunnable(final XWikiAttachment attachment,
+        final File saveHere,
+        final FilesystemStoreTools fileTools,
+        final XWikiContext context)
+    {
+        final BlobStore blobStore = fileTools.getBlobStore();
+        final ReadWriteLock lock = fileTools.getLockForFile(saveHere);
+
+        final BlobSaveTransactionRunnable blobSaver = new BlobSaveTransactionRunnable(blobStore,
+            new AttachmentContentStreamProvider(attachment, context),
+            getStoredHash(attachment, blobStore));
+        blobSaver.runIn(this);
+
+        // The blob is stored in onRun() so its hash is known when the reference is written.
+        final File referenceFile = blobStore.getReferenceFile(saveHere);
+        new FileSaveTransactionRunnable(referenceFile,
+            fileTools.getTempFile(referenceFile),
+            fileTools.getBackupFile(referenceFile),
+            lock,
+            new StreamProvider()
+            {
+                public InputStream getStream()
+                {
+                    return new ByteArrayInputStream(blobStore.getReferenceContent(blobSaver.getHash()));
+                }
+            }).runIn(this);
+
+        // Content saved before the blob store existed is replaced by the reference.
+        new FileDeleteTransactionRunnable(saveHere, fileTools.getBackupFile(saveHere), lock).runIn(this);
+    }
+
+    /**
+     * @param attachment the attachment whose content should be saved.
+     * @param blobStore the blob store.
+     * @return the hash of the content if it has been loaded from a blob and not modified since, null otherwise.
+     */
+    private static String getStoredHash(final XWikiAttachment attachment, final BlobStore blobStore)
+    {
+        final XWikiAttachmentContent content = attachment.getAttachment_content();
+        if (content instanceof FilesystemAttachmentContent) {
+            return blobStore.getHash(((FilesystemAttachmentContent) content).getStorageFile());
+        }
+        return null;
+    }
+}
@@ -447,15 +447,16 @@ private DeletedAttachment deletedAttachmentFromProvider(
         }
 
         final MutableDeletedFilesystemAttachment delAttach;
+        final File contentFile;
         ReadWriteLock lock = this.fileTools.getLockForFile(deletedMeta);
         lock.readLock().lock();
         try {
             delAttach = this.deletedAttachmentSerializer.parse(new FileInputStream(deletedMeta));
+            contentFile = this.fileTools.getBlobStore().resolve(provider.getAttachmentContentFile());
         } finally {
             lock.readLock().unlock();
         }
 
-        final File contentFile = provider.getAttachmentContentFile();
         final XWikiAttachment attachment = delAttach.getAttachment();
         attachment.setAttachment_content(new FilesystemAttachmentContent(contentFile, attachment));
 
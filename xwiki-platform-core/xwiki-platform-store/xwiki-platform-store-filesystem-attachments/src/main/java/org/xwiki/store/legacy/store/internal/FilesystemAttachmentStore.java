@@ -20,6 +20,7 @@
 package org.xwiki.store.legacy.store.internal;
 
 import java.io.File;
+import java.io.IOException;
 import java.util.List;
 import java.util.concurrent.locks.ReadWriteLock;
 
@@ -38,11 +39,9 @@
 import org.hibernate.Session;
 import org.xwiki.component.annotation.Component;
 import org.xwiki.store.FileDeleteTransactionRunnable;
-import org.xwiki.store.FileSaveTransactionRunnable;
 import org.xwiki.store.filesystem.internal.FilesystemStoreTools;
 import org.xwiki.store.legacy.doc.internal.FilesystemAttachmentContent;
 import org.xwiki.store.legacy.doc.internal.ListAttachmentArchive;
-import org.xwiki.store.StreamProvider;
 import org.xwiki.store.TransactionRunnable;
 
 /**
@@ -154,9 +153,7 @@ private TransactionRunnable<XWikiHibernateTransaction> getAttachmentContentSaveR
             updateDocument,
             context,
             attachFile,
-            this.fileTools.getTempFile(attachFile),
-            this.fileTools.getBackupFile(attachFile),
-            this.fileTools.getLockForFile(attachFile));
+            this.fileTools);
     }
 
     /**
@@ -215,8 +212,22 @@ public void loadAttachmentContent(final XWikiAttachment attachment,
         final File attachFile =
             this.fileTools.getAttachmentFileProvider(attachment).getAttachmentContentFile();
 
-        if (attachFile.exists()) {
-            FilesystemAttachmentContent content = new FilesystemAttachmentContent(attachFile);
+        // The blob itself is immutable, only the resolution of the reference needs to see a committed state.
+        final ReadWriteLock lock = this.fileTools.getLockForFile(attachFile);
+        final File contentFile;
+        lock.readLock().lock();
+        try {
+            contentFile = this.fileTools.getBlobStore().resolve(attachFile);
+        } catch (IOException e) {
+            throw new XWikiException(XWikiException.MODULE_XWIKI_STORE,
+                XWikiException.ERROR_XWIKI_STORE_FILENOTFOUND,
+                "Failed to read the reference to the content of attachment " + attachment.getFilename(), e);
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        if (contentFile.exists()) {
+            FilesystemAttachmentContent content = new FilesystemAttachmentContent(contentFile);
             content.setContentDirty(false);
             attachment.setAttachment_content(content);
             return;
@@ -283,8 +294,7 @@ private TransactionRunnable<XWikiHibernateTransaction> getAttachmentDeleteRunnab
             updateDocument,
             context,
             attachFile,
-            this.fileTools.getBackupFile(attachFile),
-            this.fileTools.getLockForFile(attachFile));
+            this.fileTools);
     }
 
     @Override
@@ -322,10 +332,9 @@ public void cleanUp(XWikiContext context)
          * @param attachment the XWikiAttachment whose content should be saved.
          * @param updateDocument whether or not to update the document at the same time.
          * @param context the XWikiContext for the request.
-         * @param attachFile the File to store the attachment in.
-         * @param tempFile the File to put the attachment content in until the transaction is complete.
-         * @param backupFile the File to backup the content of the existing attachment in.
-         * @param lock this Lock will be locked while the attachment file is being written to.
+         * @param attachFile the File to store the attachment in, which receives a reference to the
+         * blob holding the content.
+         * @param fileTools tools for getting the blob store, temporary and backup files, and locks.
          * @throws XWikiException if thrown by {@link XWikiAttachment#updateContentArchive(XWikiContext)}
          * or {@link FilesystemAttachmentVersioningStore#
          * getArchiveSaveRunnable(XWikiAttachmentArchive, XWikiContext)
@@ -334,13 +343,10 @@ public AttachmentSaveTransactionRunnable(final XWikiAttachment attachment,
             final boolean updateDocument,
             final XWikiContext context,
             final File attachFile,
-            final File tempFile,
-            final File backupFile,
-            final ReadWriteLock lock)
+            final FilesystemStoreTools fileTools)
             throws XWikiException
         {
-            final StreamProvider provider = new AttachmentContentStreamProvider(attachment, context);
-            new FileSaveTransactionRunnable(attachFile, tempFile, backupFile, lock, provider).runIn(this);
+            new AttachmentContentSaveRunnable(attachment, attachFile, fileTools, context).runIn(this);
 
             // If the versioning store supports TransactionRunnable then use it, otherwise don't.
             final AttachmentVersioningStore avs = context.getWiki().getAttachmentVersioningStore();
@@ -411,19 +417,23 @@ protected void onRun() throws XWikiException
          * @param updateDocument whether or not to update the document at the same time.
          * @param context the XWikiContext for the request.
          * @param attachFile the file to where the attachment content is stored.
-         * @param tempFile the file to to move the attachment content to temporarily.
-         * @param lock this Lock will be locked while the attachment file is being written to.
+         * @param fileTools tools for getting the blob store, backup files, and locks.
          * @throws XWikiException if unable to load the archive for the attachment to delete.
          */
         public AttachmentDeleteTransactionRunnable(final XWikiAttachment attachment,
             final boolean updateDocument,
             final XWikiContext context,
             final File attachFile,
-            final File tempFile,
-            final ReadWriteLock lock)
+            final FilesystemStoreTools fileTools)
             throws XWikiException
         {
-            new FileDeleteTransactionRunnable(attachFile, tempFile, lock).runIn(this);
+            // Remove the reference to the content, the blob is removed by the garbage collector if it is not
+            // used anymore, and the content saved before the blob store existed.
+            final ReadWriteLock lock = fileTools.getLockForFile(attachFile);
+            final File referenceFile = fileTools.getBlobStore().getReferenceFile(attachFile);
+            new FileDeleteTransactionRunnable(referenceFile, fileTools.getBackupFile(referenceFile), lock)
+                .runIn(this);
+            new FileDeleteTransactionRunnable(attachFile, fileTools.getBackupFile(attachFile), lock).runIn(this);
 
             // If the store supports deleting in the same transaction then do it.
             final AttachmentVersioningStore avs = context.getWiki().getAttachmentVersioningStore();
@@ -142,18 +142,19 @@ XWikiAttachmentArchive loadArchive(final XWikiAttachment attachment,
             final InputStream is = new FileInputStream(metaFile);
             attachList = this.metaSerializer.parse(is);
             is.close();
+
+            // Get the content file for each revision.
+            for (XWikiAttachment attach : attachList) {
+                final File contentFile = this.fileTools.getBlobStore().resolve(
+                    provider.getAttachmentVersionContentFile(attach.getVersion()));
+                attach.setAttachment_content(new FilesystemAttachmentContent(contentFile, attach));
+                // Pass the document since it will be lost in the serialize/deserialize.
+                attach.setDoc(attachment.getDoc());
+            }
         } finally {
             lock.readLock().unlock();
         }
 
-        // Get the content file and lock for each revision.
-        for (XWikiAttachment attach : attachList) {
-            final File contentFile = provider.getAttachmentVersionContentFile(attach.getVersion());
-            attach.setAttachment_content(new FilesystemAttachmentContent(contentFile, attach));
-            // Pass the document since it will be lost in the serialize/deserialize.
-            attach.setDoc(attachment.getDoc());
-        }
-
         final ListAttachmentArchive out = new ListAttachmentArchive(attachList);
         out.setAttachment(attachment);
         return out;
@@ -83,11 +83,12 @@ public SaveTrashAttachmentRunnable(final DeletedFilesystemAttachment deleted,
             versionSerializer,
             context).runIn(this);
 
-        // Save the attachment's content.
-        final StreamProvider contentProvider = new AttachmentContentStreamProvider(attachment, context);
-        this.addSaver(contentProvider,
-            fileTools,
-            provider.getAttachmentContentFile());
+        // Save the attachment's content, loading it first so that the blob holding it is shared rather than copied.
+        if (attachment.getAttachment_content() == null) {
+            attachment.loadContent(context);
+        }
+        new AttachmentContentSaveRunnable(attachment, provider.getAttachmentContentFile(), fileTools, context)
+            .runIn(this);
     }
 
     /**
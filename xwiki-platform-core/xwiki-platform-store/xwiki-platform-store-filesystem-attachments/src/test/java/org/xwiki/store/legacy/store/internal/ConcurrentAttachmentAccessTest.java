@@ -0,0 +1,282 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.store.legacy.store.internal;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReadWriteLock;
+
+import com.xpn.xwiki.doc.XWikiAttachment;
+import com.xpn.xwiki.doc.XWikiAttachmentContent;
+import com.xpn.xwiki.doc.XWikiDocument;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.xwiki.model.internal.reference.PathStringEntityReferenceSerializer;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.store.FileDeleteTransactionRunnable;
+import org.xwiki.store.StartableTransactionRunnable;
+import org.xwiki.store.filesystem.internal.DefaultFilesystemStoreTools;
+import org.xwiki.store.filesystem.internal.FilesystemStoreTools;
+import org.xwiki.store.locks.internal.DefaultLockProvider;
+
+/**
+ * Stress test saving, deleting and reading the same attachments from many threads with the real locks.
+ * Readers must always see a complete content, and an attachment which is never deleted must always be found.
+ *
+ * @version $Id$
+ * @since 4.4M1
+ */
+public class ConcurrentAttachmentAccessTest extends AbstractFilesystemAttachmentStoreTest
+{
+    private static final int THREADS_PER_KIND = 4;
+
+    private static final int ITERATIONS = 200;
+
+    private static final int CONTENT_COUNT = 8;
+
+    private final List<String> contents = new ArrayList<String>();
+
+    private final List<Throwable> errors = Collections.synchronizedList(new ArrayList<Throwable>());
+
+    private final AtomicInteger reads = new AtomicInteger();
+
+    private FilesystemStoreTools fileTools;
+
+    private XWikiDocument doc;
+
+    private File storageLocation;
+
+    private volatile boolean writing;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        super.setUp();
+
+        final File tmpDir = new File(System.getProperty("java.io.tmpdir"));
+        this.storageLocation = new File(tmpDir, "test-storage-location");
+        this.fileTools = new DefaultFilesystemStoreTools(new PathStringEntityReferenceSerializer(),
+            this.storageLocation,
+            new DefaultLockProvider());
+        this.doc = new XWikiDocument(new DocumentReference("xwiki", "Main", "WebHome"));
+
+        for (int i = 0; i < CONTENT_COUNT; i++) {
+            final StringBuilder content = new StringBuilder();
+            for (int j = 0; j < 4096; j++) {
+                content.append("content ").append(i).append('\n');
+            }
+            this.contents.add(content.toString());
+        }
+    }
+
+    @After
+    public void tearDown() throws IOException
+    {
+        FileUtils.deleteDirectory(this.storageLocation);
+    }
+
+    @Test(timeout = 120000)
+    public void concurrentSaveDeleteAndReadTest() throws Exception
+    {
+        // This attachment is saved by the writers and never deleted, it must always be readable.
+        final File stableFile = this.getContentFile("stable.txt");
+        this.save("stable.txt", 0);
+        // This one is also deleted.
+        final File churnedFile = this.getContentFile("churned.txt");
+
+        final List<Thread> writers = new ArrayList<Thread>();
+        final List<Thread> readers = new ArrayList<Thread>();
+        final CountDownLatch startSignal = new CountDownLatch(1);
+        this.writing = true;
+        for (int i = 0; i < THREADS_PER_KIND; i++) {
+            final int seed = i;
+            writers.add(new StressThread(startSignal)
+            {
+                protected void iterate(int iteration) throws Exception
+                {
+                    save("stable.txt", (seed + iteration) % CONTENT_COUNT);
+                    save("churned.txt", (seed * iteration) % CONTENT_COUNT);
+                }
+            });
+            writers.add(new StressThread(startSignal)
+            {
+                protected void iterate(int iteration) throws Exception
+                {
+                    delete(churnedFile);
+                }
+            });
+            readers.add(new StressThread(startSignal)
+            {
+                protected void iterate(int iteration) throws Exception
+                {
+                    while (writing) {
+                        Assert.assertTrue("The stable attachment could not be found.", read(stableFile));
+                        read(churnedFile);
+                    }
+                }
+            });
+        }
+
+        final long start = System.currentTimeMillis();
+        for (Thread thread : writers) {
+            thread.start();
+        }
+        for (Thread thread : readers) {
+            thread.start();
+        }
+        startSignal.countDown();
+        for (Thread thread : writers) {
+            thread.join();
+        }
+        this.writing = false;
+        for (Thread thread : readers) {
+            thread.join();
+        }
+        final long duration = System.currentTimeMillis() - start;
+
+        if (!this.errors.isEmpty()) {
+            throw new AssertionError(this.errors.size() + " failures, the first one is: " + this.errors.get(0));
+        }
+        Assert.assertTrue("No read could be done in " + duration + "ms", this.reads.get() > 0);
+        Assert.assertTrue(this.read(stableFile));
+
+        // All of the temporary and backup files must have been cleaned up.
+        for (File file : stableFile.getParentFile().listFiles()) {
+            Assert.assertFalse("Left over file " + file, file.getName().contains("~tmp")
+                || file.getName().contains("~bak"));
+        }
+    }
+
+    /* -------------------- Helpers -------------------- */
+
+    private File getContentFile(final String name)
+    {
+        final XWikiAttachment attachment = new XWikiAttachment(this.doc, name);
+        return this.fileTools.getAttachmentFileProvider(attachment).getAttachmentContentFile();
+    }
+
+    private void save(final String name, final int contentIndex) throws Exception
+    {
+        final XWikiAttachment attachment = new XWikiAttachment(this.doc, name);
+        attachment.setAttachment_content(new StringAttachmentContent(this.contents.get(contentIndex)));
+        final File contentFile = this.fileTools.getAttachmentFileProvider(attachment).getAttachmentContentFile();
+        new AttachmentContentSaveRunnable(attachment, contentFile, this.fileTools, null).start();
+    }
+
+    private void delete(final File contentFile) throws Exception
+    {
+        final StartableTransactionRunnable transaction = new StartableTransactionRunnable();
+        final ReadWriteLock lock = this.fileTools.getLockForFile(contentFile);
+        final File referenceFile = this.fileTools.getBlobStore().getReferenceFile(contentFile);
+        new FileDeleteTransactionRunnable(referenceFile, this.fileTools.getBackupFile(referenceFile), lock)
+            .runIn(transaction);
+        new FileDeleteTransactionRunnable(contentFile, this.fileTools.getBackupFile(contentFile), lock)
+            .runIn(transaction);
+        transaction.start();
+    }
+
+    /**
+     * Read an attachment the way the store does and check that the content is complete.
+     *
+     * @return false if the attachment does not exist
+     */
+    private boolean read(final File contentFile) throws IOException
+    {
+        final ReadWriteLock lock = this.fileTools.getLockForFile(contentFile);
+        final File blob;
+        lock.readLock().lock();
+        try {
+            blob = this.fileTools.getBlobStore().resolve(contentFile);
+        } finally {
+            lock.readLock().unlock();
+        }
+        if (!blob.exists()) {
+            return false;
+        }
+        Assert.assertTrue("Incomplete content in " + blob,
+            this.contents.contains(FileUtils.readFileToString(blob)));
+        this.reads.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * A thread waiting for the start signal and recording its failures.
+     */
+    private abstract class StressThread extends Thread
+    {
+        private final CountDownLatch startSignal;
+
+        StressThread(final CountDownLatch startSignal)
+        {
+            this.startSignal = startSignal;
+        }
+
+        @Override
+        public void run()
+        {
+            try {
+                this.startSignal.await();
+                for (int i = 0; i < ITERATIONS; i++) {
+                    this.iterate(i);
+                }
+            } catch (Throwable t) {
+                errors.add(t);
+                writing = false;
+            }
+        }
+
+        protected abstract void iterate(int iteration) throws Exception;
+    }
+
+    private static class StringAttachmentContent extends XWikiAttachmentContent
+    {
+        private final String content;
+
+        public StringAttachmentContent(final String content)
+        {
+            this.content = content;
+        }
+
+        public InputStream getContentInputStream()
+        {
+            return new ByteArrayInputStream(this.content.getBytes());
+        }
+
+        public boolean isContentDirty()
+        {
+            return true;
+        }
+
+        public StringAttachmentContent clone()
+        {
+            return this;
+        }
+    }
+}
@@ -30,6 +30,7 @@
 import java.io.UnsupportedEncodingException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.locks.Lock;
 
 import org.xwiki.store.legacy.doc.internal.FilesystemAttachmentContent;
 import com.xpn.xwiki.doc.XWikiAttachment;
@@ -41,6 +42,7 @@
 import com.xpn.xwiki.web.Utils;
 import com.xpn.xwiki.XWiki;
 import com.xpn.xwiki.XWikiContext;
+import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
 import org.hibernate.Session;
 import org.jmock.Expectations;
@@ -53,9 +55,14 @@
 import org.junit.Test;
 import org.xwiki.model.internal.reference.PathStringEntityReferenceSerializer;
 import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.store.StreamProvider;
+import org.xwiki.store.filesystem.internal.BlobSaveTransactionRunnable;
+import org.xwiki.store.filesystem.internal.BlobStore;
 import org.xwiki.store.filesystem.internal.DefaultFilesystemStoreTools;
 import org.xwiki.store.filesystem.internal.FilesystemStoreTools;
+import org.xwiki.store.locks.LockProvider;
 import org.xwiki.store.locks.dummy.internal.DummyLockProvider;
+import org.xwiki.store.locks.internal.DefaultLockProvider;
 
 /**
  * Tests for FilesystemAttachmentStore.
@@ -177,9 +184,10 @@ public void saveContentTest() throws Exception
             this.fileTools.getAttachmentFileProvider(this.mockAttach).getAttachmentContentFile();
         Assert.assertFalse(this.storeFile.exists());
         this.attachStore.saveAttachmentContent(this.mockAttach, false, this.mockContext, false);
-        Assert.assertTrue("The attachment file was not created.", this.storeFile.exists());
+        final File contentFile = this.fileTools.getBlobStore().resolve(storeFile);
+        Assert.assertTrue("The attachment file was not created.", contentFile.exists());
 
-        final InputStream is = new FileInputStream(storeFile);
+        final InputStream is = new FileInputStream(contentFile);
         final ByteArrayOutputStream os = new ByteArrayOutputStream();
         IOUtils.copy(is, os);
         is.close();
@@ -199,9 +207,10 @@ public void saveTwoOfSameAttachmentInOneTransactionTest() throws Exception
         attachments.add(this.mockAttach);
         attachments.add(this.mockAttach);
         this.attachStore.saveAttachmentsContent(attachments, this.doc, false, this.mockContext, false);
-        Assert.assertTrue("The attachment file was not created.", this.storeFile.exists());
+        final File contentFile = this.fileTools.getBlobStore().resolve(storeFile);
+        Assert.assertTrue("The attachment file was not created.", contentFile.exists());
 
-        final InputStream is = new FileInputStream(storeFile);
+        final InputStream is = new FileInputStream(contentFile);
         final ByteArrayOutputStream os = new ByteArrayOutputStream();
         IOUtils.copy(is, os);
         is.close();
@@ -260,6 +269,105 @@ public void deleteAttachmentTest() throws Exception
         Assert.assertFalse("The attachment file was not deleted.", this.storeFile.exists());
     }
 
+    @Test
+    public void saveReplacesLegacyContentFileTest() throws Exception
+    {
+        this.createFile();
+
+        this.attachStore.saveAttachmentContent(this.mockAttach, false, this.mockContext, false);
+
+        Assert.assertFalse("The legacy attachment file was not removed.", this.storeFile.exists());
+        Assert.assertTrue("The attachment content was not stored in a blob.",
+            this.fileTools.getBlobStore().getHash(this.fileTools.getBlobStore().resolve(this.storeFile)) != null);
+    }
+
+    @Test
+    public void garbageCollectionTest() throws Exception
+    {
+        getMockery().checking(new Expectations() {{
+            oneOf(mockAttachVersionStore).deleteArchive(mockAttach, mockContext, false);
+            exactly(2).of(mockHibernateSession).delete(with(anything()));
+        }});
+        this.attachStore.saveAttachmentContent(this.mockAttach, false, this.mockContext, false);
+        final File blobFile = this.fileTools.getBlobStore().resolve(this.storeFile);
+
+        Assert.assertEquals("A referenced blob was removed.",
+            0, this.fileTools.getBlobStore().collectGarbage(this.storageLocation, 0));
+        Assert.assertTrue(blobFile.exists());
+
+        this.attachStore.deleteXWikiAttachment(this.mockAttach, false, this.mockContext, false);
+        Assert.assertFalse("The reference to the blob was not deleted.",
+            this.fileTools.getBlobStore().getReferenceFile(this.storeFile).exists());
+
+        // Make sure the blob is older than the grace period.
+        blobFile.setLastModified(System.currentTimeMillis() - 1000);
+        Assert.assertEquals("The unreferenced blob was not removed.",
+            1, this.fileTools.getBlobStore().collectGarbage(this.storageLocation, 0));
+        Assert.assertFalse(blobFile.exists());
+    }
+
+    @Test
+    public void savingKnownBlobRefreshesItTest() throws Exception
+    {
+        this.attachStore.saveAttachmentContent(this.mockAttach, false, this.mockContext, false);
+        final BlobStore blobStore = this.fileTools.getBlobStore();
+        final File blobFile = blobStore.resolve(this.storeFile);
+        blobFile.setLastModified(System.currentTimeMillis() - 10000);
+        final long lastModified = blobFile.lastModified();
+
+        new BlobSaveTransactionRunnable(blobStore, new StreamProvider()
+        {
+            public InputStream getStream()
+            {
+                throw new AssertionError("The content of a known blob should not be read.");
+            }
+        }, blobStore.getHash(blobFile)).start();
+
+        Assert.assertTrue("The known blob was not refreshed, it could be removed by the garbage collector.",
+            blobFile.lastModified() > lastModified);
+    }
+
+    @Test
+    public void touchDuringGarbageCollectionTest() throws Exception
+    {
+        final LockProvider lockProvider = new DefaultLockProvider();
+        final BlobStore blobStore = new BlobStore(new File(this.storageLocation, "blobs"), lockProvider);
+        final File blobFile = blobStore.getBlobFile(
+            "b94d27b9934d3e08a52e52d7da7dabfac484efe37a5380ee9088f7ace2efcde9");
+        FileUtils.writeStringToFile(blobFile, HELLO);
+        blobFile.setLastModified(System.currentTimeMillis() - 10000);
+
+        // Hold the lock taken while touching the blob, as if a save reusing it was touching it right when the
+        // garbage collector finds out that nothing references it.
+        final Lock touchLock = lockProvider.getLock(blobFile).readLock();
+        touchLock.lock();
+        final int[] removed = new int[] {-1};
+        final Thread collector = new Thread(new Runnable()
+        {
+            public void run()
+            {
+                try {
+                    removed[0] = blobStore.collectGarbage(storageLocation, 0);
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        });
+        try {
+            collector.start();
+            collector.join(500);
+            Assert.assertTrue("The garbage collector did not wait for the blob to be touched.",
+                collector.isAlive());
+            blobFile.setLastModified(System.currentTimeMillis());
+        } finally {
+            touchLock.unlock();
+        }
+        collector.join();
+
+        Assert.assertEquals("A blob touched during the garbage collection was removed.", 0, removed[0]);
+        Assert.assertTrue(blobFile.exists());
+    }
+
     @Test
     public void documentUpdateOnDeleteTest() throws Exception
     {
@@ -21,6 +21,7 @@
 
 import java.io.ByteArrayInputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
@@ -122,9 +123,9 @@ public void saveArchiveTest() throws Exception
         final XWikiAttachment attach = this.archive.getAttachment();
 
         Assert.assertFalse(this.provider.getAttachmentVersioningMetaFile().exists());
-        Assert.assertFalse(this.provider.getAttachmentVersionContentFile("1.1").exists());
-        Assert.assertFalse(this.provider.getAttachmentVersionContentFile("1.2").exists());
-        Assert.assertFalse(this.provider.getAttachmentVersionContentFile("1.3").exists());
+        Assert.assertFalse(this.fileTools.getBlobStore().exists(this.provider.getAttachmentVersionContentFile("1.1")));
+        Assert.assertFalse(this.fileTools.getBlobStore().exists(this.provider.getAttachmentVersionContentFile("1.2")));
+        Assert.assertFalse(this.fileTools.getBlobStore().exists(this.provider.getAttachmentVersionContentFile("1.3")));
 
         // Because the context is only used by the legacy implementation, it is safe to pass null.
         this.versionStore.saveArchive(this.archive, null, false);
@@ -137,9 +138,9 @@ public void saveArchiveTest() throws Exception
         // </attachment-list>
         Assert.assertTrue(this.provider.getAttachmentVersioningMetaFile().length() > 120);
 
-        Assert.assertTrue(this.provider.getAttachmentVersionContentFile("1.1").exists());
-        Assert.assertTrue(this.provider.getAttachmentVersionContentFile("1.2").exists());
-        Assert.assertTrue(this.provider.getAttachmentVersionContentFile("1.3").exists());
+        Assert.assertTrue(this.fileTools.getBlobStore().exists(this.provider.getAttachmentVersionContentFile("1.1")));
+        Assert.assertTrue(this.fileTools.getBlobStore().exists(this.provider.getAttachmentVersionContentFile("1.2")));
+        Assert.assertTrue(this.fileTools.getBlobStore().exists(this.provider.getAttachmentVersionContentFile("1.3")));
 
         // Prove that the attachment and attachment content are the same after saving.
         Assert.assertSame(attach, this.archive.getAttachment());
@@ -179,16 +180,44 @@ public void deleteArchiveTest() throws Exception
         this.versionStore.saveArchive(this.archive, null, false);
 
         Assert.assertTrue(this.provider.getAttachmentVersioningMetaFile().exists());
-        Assert.assertTrue(this.provider.getAttachmentVersionContentFile("1.1").exists());
-        Assert.assertTrue(this.provider.getAttachmentVersionContentFile("1.2").exists());
-        Assert.assertTrue(this.provider.getAttachmentVersionContentFile("1.3").exists());
+        Assert.assertTrue(this.fileTools.getBlobStore().exists(this.provider.getAttachmentVersionContentFile("1.1")));
+        Assert.assertTrue(this.fileTools.getBlobStore().exists(this.provider.getAttachmentVersionContentFile("1.2")));
+        Assert.assertTrue(this.fileTools.getBlobStore().exists(this.provider.getAttachmentVersionContentFile("1.3")));
 
         this.versionStore.deleteArchive(this.archive.getAttachment(), null, false);
 
         Assert.assertFalse(this.provider.getAttachmentVersioningMetaFile().exists());
-        Assert.assertFalse(this.provider.getAttachmentVersionContentFile("1.1").exists());
-        Assert.assertFalse(this.provider.getAttachmentVersionContentFile("1.2").exists());
-        Assert.assertFalse(this.provider.getAttachmentVersionContentFile("1.3").exists());
+        Assert.assertFalse(this.fileTools.getBlobStore().exists(this.provider.getAttachmentVersionContentFile("1.1")));
+        Assert.assertFalse(this.fileTools.getBlobStore().exists(this.provider.getAttachmentVersionContentFile("1.2")));
+        Assert.assertFalse(this.fileTools.getBlobStore().exists(this.provider.getAttachmentVersionContentFile("1.3")));
+    }
+
+    @Test
+    public void saveArchiveStoresSameContentOnceTest() throws Exception
+    {
+        final XWikiDocument doc = this.archive.getAttachment().getDoc();
+        final XWikiAttachment version1 = new XWikiAttachment();
+        version1.setVersion("1.1");
+        version1.setFilename("attachment.txt");
+        version1.setDoc(doc);
+        version1.setAttachment_content(new StringAttachmentContent("Same content"));
+
+        final XWikiAttachment version2 = new XWikiAttachment();
+        version2.setVersion("1.2");
+        version2.setFilename("attachment.txt");
+        version2.setDoc(doc);
+        version2.setAttachment_content(new StringAttachmentContent("Same content"));
+
+        this.versionStore.saveArchive(new ListAttachmentArchive(new ArrayList<XWikiAttachment>() {{
+            add(version1);
+            add(version2);
+        }}), null, false);
+
+        final File blob1 = this.fileTools.getBlobStore().resolve(this.provider.getAttachmentVersionContentFile("1.1"));
+        final File blob2 = this.fileTools.getBlobStore().resolve(this.provider.getAttachmentVersionContentFile("1.2"));
+        Assert.assertNotNull(this.fileTools.getBlobStore().getHash(blob1));
+        Assert.assertEquals(blob1, blob2);
+        Assert.assertEquals("Same content", IOUtils.toString(new FileInputStream(blob1)));
     }
 
     /* -------------------- Helpers -------------------- */
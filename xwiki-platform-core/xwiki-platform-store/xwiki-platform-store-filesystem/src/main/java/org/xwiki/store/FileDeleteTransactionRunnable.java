@@ -44,7 +44,8 @@ public class FileDeleteTransactionRunnable extends StartableTransactionRunnable<
     private final File backupFile;
 
     /**
-     * A lock to hold while running this TransactionRunnable.
+     * The lock whose writeLock is held while committing, referenced until the transaction is over since
+     * a lock provider may forget about a lock which is not referenced anymore.
      */
     private final ReadWriteLock lock;
 
@@ -62,8 +63,8 @@ public class FileDeleteTransactionRunnable extends StartableTransactionRunnable<
      * @param backupFile a temporary file, this should not contain anything important as it will be deleted
      * and must not be altered while the operation is running. This will contain whatever
      * was in the toDelete file prior, just in case onRollback must be called.
-     * @param lock a ReadWriteLock whose writeLock will be locked as the beginning of the process and
-     * unlocked when complete.
+     * @param lock a ReadWriteLock whose writeLock will be held while the transaction is committed or
+     * rolled back.
      */
     public FileDeleteTransactionRunnable(final File toDelete,
         final File backupFile,
@@ -72,27 +73,28 @@ public FileDeleteTransactionRunnable(final File toDelete,
         this.toDelete = toDelete;
         this.backupFile = backupFile;
         this.lock = lock;
+        this.lockOnCommit(lock.writeLock());
     }
 
     /**
      * {@inheritDoc}
-     * Obtain the lock and make sure the temporary and backup files are deleted.
+     * Make sure the backup file is deleted.
      *
      * @see StartableTransactionRunnable#onPreRun()
      */
     protected void onPreRun() throws IOException
     {
-        this.lock.writeLock().lock();
         this.clearBackup();
         this.preRunComplete = true;
     }
 
     /**
      * {@inheritDoc}
+     * Move the file to the backup location, the file is only touched while the lock is held.
      *
-     * @see StartableTransactionRunnable#onRun()
+     * @see StartableTransactionRunnable#onCommit()
      */
-    protected void onRun() throws IOException
+    protected void onCommit()
     {
         if (this.toDelete.exists()) {
             this.toDelete.renameTo(this.backupFile);
@@ -151,7 +153,7 @@ protected void onRollback()
     /**
      * {@inheritDoc}
      * Once this is called, there is no going back.
-     * Remove backup file and unlock the lock.
+     * Remove backup file.
      *
      * @see StartableTransactionRunnable#onComplete()
      */
@@ -162,11 +164,7 @@ protected void onComplete() throws IOException
                 + " onPreRun has not been called, maybe the class was extended "
                 + "and it was overridden?");
         }
-        try {
-            this.clearBackup();
-        } finally {
-            this.lock.writeLock().unlock();
-        }
+        this.clearBackup();
     }
 
     /**
@@ -54,14 +54,15 @@ public class FileSaveTransactionRunnable extends StartableTransactionRunnable<Tr
     private final File backupFile;
 
     /**
-     * A lock to hold while running this TransactionRunnable.
+     * The source of the data to save.
      */
-    private final ReadWriteLock lock;
+    private final StreamProvider provider;
 
     /**
-     * The source of the data to save.
+     * The lock whose writeLock is held while committing, referenced until the transaction is over since
+     * a lock provider may forget about a lock which is not referenced anymore.
      */
-    private final StreamProvider provider;
+    private final ReadWriteLock lock;
 
     /**
      * False until run() has complete. If false then we know there is nothing to rollback and
@@ -70,6 +71,12 @@ public class FileSaveTransactionRunnable extends StartableTransactionRunnable<Tr
      */
     private boolean runComplete;
 
+    /**
+     * False until onCommit() has been called. If false then the main file has not been touched and
+     * there is nothing to rollback.
+     */
+    private boolean committed;
+
     /**
      * The Constructor.
      *
@@ -80,8 +87,8 @@ public class FileSaveTransactionRunnable extends StartableTransactionRunnable<Tr
      * @param backupFile a temporary file, this should not contain anything important as it will be deleted
      * and must not be altered while the operation is running. This will contain whatever
      * was in the toSave file prior, just in case onRollback must be called.
-     * @param lock a ReadWriteLock whose writeLock will be locked as the beginning of the process and
-     * unlocked when complete.
+     * @param lock a ReadWriteLock whose writeLock will be held while the transaction is committed or
+     * rolled back, the content is written to the temporary file without holding it.
      * @param provider a StreamProvider to get the data to put into the file.
      */
     public FileSaveTransactionRunnable(final File toSave,
@@ -93,19 +100,19 @@ public FileSaveTransactionRunnable(final File toSave,
         this.toSave = toSave;
         this.tempFile = tempFile;
         this.backupFile = backupFile;
-        this.lock = lock;
         this.provider = provider;
+        this.lock = lock;
+        this.lockOnCommit(lock.writeLock());
     }
 
     /**
      * {@inheritDoc}
-     * Obtain the lock and make sure the temporary and backup files are deleted.
+     * Make sure the temporary and backup files are deleted.
      *
      * @see TransactionRunnable#preRun()
      */
     protected void onPreRun() throws IOException
     {
-        this.lock.writeLock().lock();
         this.clearTempAndBackup();
     }
 
@@ -146,6 +153,7 @@ protected void onRun() throws Exception
      */
     protected void onCommit()
     {
+        this.committed = true;
         if (this.toSave.exists()) {
             this.toSave.renameTo(this.backupFile);
         }
@@ -159,8 +167,9 @@ protected void onCommit()
      */
     protected void onRollback()
     {
-        // If this is false then we know run() has not yet happened and we know there is nothing to do.
-        if (this.runComplete) {
+        // If this is false then we know onCommit() has not yet happened and the main file was not touched,
+        // the temporary file is removed by onComplete().
+        if (this.runComplete && this.committed) {
             if (this.tempFile.exists()) {
                 this.onRollbackWithTempFile();
             } else {
@@ -172,17 +181,13 @@ protected void onRollback()
     /**
      * {@inheritDoc}
      * Once this is called, there is no going back.
-     * Remove temporary and backup files and unlock the lock.
+     * Remove temporary and backup files.
      *
      * @see TransactionRunnable#onComplete()
      */
     protected void onComplete() throws IOException
     {
-        try {
-            this.clearTempAndBackup();
-        } finally {
-            this.lock.writeLock().unlock();
-        }
+        this.clearTempAndBackup();
     }
 
     /**
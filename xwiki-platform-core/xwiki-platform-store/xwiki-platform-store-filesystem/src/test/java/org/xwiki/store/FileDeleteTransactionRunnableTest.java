@@ -111,10 +111,31 @@ public void rollbackAfterRunTest() throws Exception
     {
         Assert.assertTrue(this.toDelete.exists());
 
-        // After run() before onCommit()
+        // After run() before onCommit(), the file is only moved while committing.
         final TransactionRunnable failRunnable = new TransactionRunnable()
         {
             public void onRun() throws Exception
+            {
+                Assert.assertFalse(temp.exists());
+                Assert.assertTrue(toDelete.exists());
+                throw new Exception("Simulate something going wrong.");
+            }
+        };
+        final StartableTransactionRunnable str = new StartableTransactionRunnable();
+        runnable.runIn(str);
+        failRunnable.runIn(str);
+        this.validateRollback(str);
+    }
+
+    @Test
+    public void rollbackAfterCommitTest() throws Exception
+    {
+        Assert.assertTrue(this.toDelete.exists());
+
+        // Committed in reverse order, so this fails after the file has been moved.
+        final TransactionRunnable failRunnable = new TransactionRunnable()
+        {
+            public void onCommit() throws Exception
             {
                 Assert.assertTrue(temp.exists());
                 Assert.assertFalse(toDelete.exists());
@@ -122,11 +143,35 @@ public void onRun() throws Exception
             }
         };
         final StartableTransactionRunnable str = new StartableTransactionRunnable();
-        runnable.runIn(str);
         failRunnable.runIn(str);
+        runnable.runIn(str);
         this.validateRollback(str);
     }
 
+    @Test
+    public void lockHeldOnlyWhileCommittingTest() throws Exception
+    {
+        final TransactionRunnable checkRunnable = new TransactionRunnable()
+        {
+            public void onRun() throws Exception
+            {
+                Assert.assertFalse(((ReentrantReadWriteLock) lock).isWriteLocked());
+            }
+
+            public void onCommit() throws Exception
+            {
+                Assert.assertTrue(((ReentrantReadWriteLock) lock).isWriteLockedByCurrentThread());
+            }
+        };
+        final StartableTransactionRunnable str = new StartableTransactionRunnable();
+        checkRunnable.runIn(str);
+        runnable.runIn(str);
+        str.start();
+
+        Assert.assertFalse(((ReentrantReadWriteLock) this.lock).isWriteLocked());
+        Assert.assertFalse(this.toDelete.exists());
+    }
+
     @Test
     public void deleteNonexistantTest() throws Exception
     {
@@ -0,0 +1,194 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.store.locks.internal;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import javax.inject.Singleton;
+
+import org.xwiki.component.annotation.Component;
+import org.xwiki.store.locks.LockProvider;
+
+/**
+ * A provider of real read/write locks.
+ * The locks are kept in weak maps so a lock only lives as long as it is referenced, and the maps are striped
+ * by the hash of the locked object so that threads getting locks for different objects rarely contend.
+ * Writers using the store transactions only hold the write lock while committing, which only renames files,
+ * so readers never wait for content to be written.
+ *
+ * @version $Id$
+ * @since 4.4M1
+ */
+@Component
+@Singleton
+public class DefaultLockProvider implements LockProvider
+{
+    /**
+     * The number of stripes, must be a power of 2.
+     */
+    private static final int STRIPE_COUNT = 32;
+
+    /**
+     * The locks, by locked object, in stripes selected by the hash of the locked object.
+     */
+    private final List<Map<Object, WeakReference<KeyedLock>>> stripes =
+        new ArrayList<Map<Object, WeakReference<KeyedLock>>>(STRIPE_COUNT);
+
+    /**
+     * The Constructor.
+     */
+    public DefaultLockProvider()
+    {
+        for (int i = 0; i < STRIPE_COUNT; i++) {
+            this.stripes.add(new WeakHashMap<Object, WeakReference<KeyedLock>>());
+        }
+    }
+
+    @Override
+    public ReadWriteLock getLock(final Object toLockOn)
+    {
+        final Map<Object, WeakReference<KeyedLock>> stripe = this.getStripe(toLockOn);
+        synchronized (stripe) {
+            final WeakReference<KeyedLock> reference = stripe.get(toLockOn);
+            KeyedLock lock = (reference != null) ? reference.get() : null;
+            if (lock == null) {
+                lock = new KeyedLock(toLockOn);
+                // Remove the stale entry first, otherwise the map would keep its key rather than the one
+                // referenced by the new lock and the entry could be collected while the lock is in use.
+                stripe.remove(toLockOn);
+                stripe.put(toLockOn, new WeakReference<KeyedLock>(lock));
+            }
+            return lock;
+        }
+    }
+
+    /**
+     * @param toLockOn the object to get a lock for.
+     * @return the stripe holding the lock for this object.
+     */
+    private Map<Object, WeakReference<KeyedLock>> getStripe(final Object toLockOn)
+    {
+        int hash = toLockOn.hashCode();
+        // Spread the high bits since only the low ones select the stripe.
+        hash ^= (hash >>> 20) ^ (hash >>> 12);
+        hash ^= (hash >>> 7) ^ (hash >>> 4);
+        return this.stripes.get(hash & (STRIPE_COUNT - 1));
+    }
+
+    /**
+     * A lock referencing the object it locks so that its entry is not removed from the weak map while it is
+     * in use. Its read and write locks reference it in turn, so that holding on to only one of them is enough
+     * to keep the lock in the map.
+     */
+    private static class KeyedLock extends ReentrantReadWriteLock
+    {
+        /**
+         * Serial version UID.
+         */
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * The locked object.
+         */
+        private final transient Object key;
+
+        /**
+         * The lock for reading, referencing this lock.
+         */
+        private final ReentrantReadWriteLock.ReadLock ownedReadLock = new OwnedReadLock();
+
+        /**
+         * The lock for writing, referencing this lock.
+         */
+        private final ReentrantReadWriteLock.WriteLock ownedWriteLock = new OwnedWriteLock();
+
+        /**
+         * The Constructor.
+         *
+         * @param key the locked object.
+         */
+        KeyedLock(final Object key)
+        {
+            this.key = key;
+        }
+
+        @Override
+        public ReentrantReadWriteLock.ReadLock readLock()
+        {
+            return this.ownedReadLock;
+        }
+
+        @Override
+        public ReentrantReadWriteLock.WriteLock writeLock()
+        {
+            return this.ownedWriteLock;
+        }
+
+        @Override
+        public String toString()
+        {
+            return super.toString() + " on " + this.key;
+        }
+
+        /**
+         * The JDK read lock only references the synchronizer of its owner, this one references the owner.
+         */
+        private final class OwnedReadLock extends ReentrantReadWriteLock.ReadLock
+        {
+            /**
+             * Serial version UID.
+             */
+            private static final long serialVersionUID = 1L;
+
+            /**
+             * The Constructor.
+             */
+            OwnedReadLock()
+            {
+                super(KeyedLock.this);
+            }
+        }
+
+        /**
+         * The JDK write lock only references the synchronizer of its owner, this one references the owner.
+         */
+        private final class OwnedWriteLock extends ReentrantReadWriteLock.WriteLock
+        {
+            /**
+             * Serial version UID.
+             */
+            private static final long serialVersionUID = 1L;
+
+            /**
+             * The Constructor.
+             */
+            OwnedWriteLock()
+            {
+                super(KeyedLock.this);
+            }
+        }
+    }
+}
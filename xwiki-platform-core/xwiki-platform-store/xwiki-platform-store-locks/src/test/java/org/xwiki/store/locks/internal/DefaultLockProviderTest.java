@@ -0,0 +1,97 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.store.locks.internal;
+
+import java.io.File;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests for DefaultLockProvider.
+ *
+ * @version $Id$
+ * @since 4.4M1
+ */
+public class DefaultLockProviderTest
+{
+    private final DefaultLockProvider provider = new DefaultLockProvider();
+
+    @Test
+    public void sameLockForEqualObjectsTest()
+    {
+        final ReadWriteLock lock = this.provider.getLock(new File("/some/attachment"));
+        Assert.assertSame(lock, this.provider.getLock(new File("/some/attachment")));
+        Assert.assertNotSame(lock, this.provider.getLock(new File("/another/attachment")));
+    }
+
+    @Test
+    public void writeLockKeepsLockAfterGarbageCollectionTest()
+    {
+        // Only the write lock is kept, like a transaction registering it to be held while committing.
+        final Lock writeLock = this.provider.getLock(new File("/some/attachment")).writeLock();
+        forceGarbageCollection();
+
+        writeLock.lock();
+        try {
+            final ReadWriteLock lock = this.provider.getLock(new File("/some/attachment"));
+            Assert.assertSame(writeLock, lock.writeLock());
+            Assert.assertTrue(((ReentrantReadWriteLock) lock).isWriteLocked());
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Test
+    public void readLockKeepsLockAfterGarbageCollectionTest()
+    {
+        final Lock readLock = this.provider.getLock(new File("/some/attachment")).readLock();
+        forceGarbageCollection();
+
+        Assert.assertSame(readLock, this.provider.getLock(new File("/some/attachment")).readLock());
+    }
+
+    @Test
+    public void unreferencedLockIsCollectedTest()
+    {
+        final WeakReference<ReadWriteLock> reference =
+            new WeakReference<ReadWriteLock>(this.provider.getLock(new File("/some/attachment")));
+        forceGarbageCollection();
+
+        Assert.assertNull(reference.get());
+    }
+
+    /**
+     * Run the garbage collector until an unreferenced object has been collected.
+     */
+    private static void forceGarbageCollection()
+    {
+        final WeakReference<Object> canary = new WeakReference<Object>(new Object());
+        for (int i = 0; i < 100 && canary.get() != null; i++) {
+            System.gc();
+            System.runFinalization();
+        }
+        Assert.assertNull("Could not force a garbage collection", canary.get());
+    }
+}
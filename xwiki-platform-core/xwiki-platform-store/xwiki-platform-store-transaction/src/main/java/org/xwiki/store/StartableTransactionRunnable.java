@@ -19,6 +19,12 @@
  */
 package org.xwiki.store;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.concurrent.locks.Lock;
+
 /**
  * A TransactionRunnable which is safe to start.
  * If your TransactionRunnable can safely be started on it's own, and does not need to be run inside of
@@ -37,6 +43,8 @@
 
     /**
      * Start this TransactionRunnable and all that are chained to it.
+     * The locks registered with {@link #lockOnCommit(Lock)} are only held while committing or rolling back
+     * after a failed commit.
      *
      * @throws TransactionException if something goes wrong while pre running, running, committing,
      * rolling back or completeing this or any of the chained runnables.
@@ -52,7 +60,48 @@ public void start() throws TransactionException
 
         this.preRun();
         this.run();
-        this.commit();
+        final List<Lock> locks = lockAll(this.getCommitLocks());
+        try {
+            this.commit();
+        } finally {
+            for (Lock lock : locks) {
+                lock.unlock();
+            }
+        }
         this.complete();
     }
+
+    /**
+     * Acquire all of the given locks without risking a deadlock with a thread acquiring some of them in a
+     * different order: if one of the locks is not available then the locks which are already held are released
+     * and the thread waits for that lock before trying again.
+     *
+     * @param locks the locks to acquire, a lock may be present more than once.
+     * @return the acquired locks, each of them only once.
+     */
+    private static List<Lock> lockAll(final Collection<Lock> locks)
+    {
+        final List<Lock> toLock = new ArrayList<Lock>(new LinkedHashSet<Lock>(locks));
+        int waitFor = 0;
+        while (!toLock.isEmpty()) {
+            toLock.get(waitFor).lock();
+            int unavailable = -1;
+            for (int i = 0; i < toLock.size() && unavailable < 0; i++) {
+                if (i != waitFor && !toLock.get(i).tryLock()) {
+                    unavailable = i;
+                }
+            }
+            if (unavailable < 0) {
+                break;
+            }
+            for (int i = 0; i < unavailable; i++) {
+                if (i != waitFor) {
+                    toLock.get(i).unlock();
+                }
+            }
+            toLock.get(waitFor).unlock();
+            waitFor = unavailable;
+        }
+        return toLock;
+    }
 }
@@ -22,6 +22,7 @@
 import java.util.ArrayList;
 import java.util.List;
 import java.util.ListIterator;
+import java.util.concurrent.locks.Lock;
 
 /**
  * A construct for altering storage in a safe way.
@@ -53,6 +54,11 @@
      */
     private TransactionRunnable<T> parent;
 
+    /**
+     * The locks to hold while this runnable is committed or rolled back.
+     */
+    private final List<Lock> commitLocks = new ArrayList<Lock>();
+
     /**
      * If true then this runnable has already started and nothing else may be runIn it.
      */
@@ -153,6 +159,33 @@ protected T getContext()
         return null;
     }
 
+    /**
+     * Hold a lock while the transaction which this runnable is part of is committed or rolled back.
+     * The locks of all of the runnables in a transaction are acquired together by
+     * {@link StartableTransactionRunnable#start()} once every runnable has been run and they are released as soon
+     * as the transaction is committed or rolled back, so onPreRun(), onRun() and onComplete() must not depend on
+     * them. Acquiring them all at once prevents deadlocks between transactions which need the same locks.
+     *
+     * @param lock a lock to hold while committing or rolling back.
+     * @since 4.4M1
+     */
+    protected final void lockOnCommit(final Lock lock)
+    {
+        this.commitLocks.add(lock);
+    }
+
+    /**
+     * @return the locks to hold while committing or rolling back this and all of the chained runnables.
+     */
+    final List<Lock> getCommitLocks()
+    {
+        final List<Lock> locks = new ArrayList<Lock>();
+        for (TransactionRunnable runnable : this.getRunPath()) {
+            locks.addAll(runnable.commitLocks);
+        }
+        return locks;
+    }
+
     /**
      * This will be run first.
      * This MUST NOT alter the state of storage engine.
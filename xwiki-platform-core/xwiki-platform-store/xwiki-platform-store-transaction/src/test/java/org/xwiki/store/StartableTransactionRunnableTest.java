@@ -19,6 +19,9 @@
  */
 package org.xwiki.store;
 
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
 import org.junit.Assert;
 import org.junit.Test;
 
@@ -119,6 +122,51 @@ protected void onComplete() throws Exception
         Assert.fail("exception was not thrown");
     }
 
+    @Test
+    public void commitLocksTest() throws Exception
+    {
+        final ReentrantLock lock = new ReentrantLock();
+        new TransactionRunnable()
+        {
+            {
+                this.lockOnCommit(lock);
+                this.lockOnCommit(lock);
+            }
+
+            protected void onRun()
+            {
+                Assert.assertFalse("The lock was taken before committing.", lock.isLocked());
+            }
+
+            protected void onCommit()
+            {
+                Assert.assertEquals("The lock was not taken exactly once.", 1, lock.getHoldCount());
+                itRan();
+            }
+        } .runIn(this.testRunnable);
+
+        this.testRunnable.start();
+
+        Assert.assertTrue("Commit did not run", hasRun());
+        Assert.assertFalse("The lock was not released.", lock.isLocked());
+    }
+
+    /**
+     * Transactions taking the same locks in a different order must not deadlock.
+     */
+    @Test(timeout = 30000)
+    public void commitLocksInDifferentOrderTest() throws Exception
+    {
+        final Lock lock1 = new ReentrantLock();
+        final Lock lock2 = new ReentrantLock();
+        final Thread thread1 = new Thread(new LockingTransactions(lock1, lock2));
+        final Thread thread2 = new Thread(new LockingTransactions(lock2, lock1));
+        thread1.start();
+        thread2.start();
+        thread1.join();
+        thread2.join();
+    }
+
     public boolean hasRun()
     {
         return this.hasRun;
@@ -128,4 +176,45 @@ public void itRan()
     {
         this.hasRun = true;
     }
+
+    /**
+     * Starts transactions registering two locks in a given order.
+     */
+    private static class LockingTransactions implements Runnable
+    {
+        private final Lock first;
+
+        private final Lock second;
+
+        LockingTransactions(Lock first, Lock second)
+        {
+            this.first = first;
+            this.second = second;
+        }
+
+        @Override
+        public void run()
+        {
+            for (int i = 0; i < 1000; i++) {
+                final StartableTransactionRunnable transaction = new StartableTransactionRunnable();
+                new TransactionRunnable()
+                {
+                    {
+                        this.lockOnCommit(first);
+                    }
+                } .runIn(transaction);
+                new TransactionRunnable()
+                {
+                    {
+                        this.lockOnCommit(second);
+                    }
+                } .runIn(transaction);
+                try {
+                    transaction.start();
+                } catch (TransactionException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        }
+    }
 }
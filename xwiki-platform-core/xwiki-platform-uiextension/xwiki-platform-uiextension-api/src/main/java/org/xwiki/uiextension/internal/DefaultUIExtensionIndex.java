@@ -0,0 +1,191 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.uiextension.internal;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Provider;
+import javax.inject.Singleton;
+
+import org.slf4j.Logger;
+import org.xwiki.bridge.DocumentAccessBridge;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.component.manager.ComponentLookupException;
+import org.xwiki.component.manager.ComponentManager;
+import org.xwiki.component.wiki.WikiComponent;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.uiextension.UIExtension;
+
+/**
+ * Default {@link UIExtensionIndex}. The extensions returned by the Context Component Manager depend on the current
+ * wiki and user, so an index is kept for each wiki and user combination, up to a maximum number of combinations.
+ *
+ * @version $Id$
+ * @since 4.4M1
+ */
+@Component
+@Singleton
+public class DefaultUIExtensionIndex implements UIExtensionIndex
+{
+    /**
+     * The maximum number of wiki and user combinations for which an index is kept.
+     */
+    private static final int MAX_SCOPES = 1000;
+
+    /**
+     * The logger to log.
+     */
+    @Inject
+    private Logger logger;
+
+    /**
+     * Used to lookup UI Extensions registered for the current user, the current wiki or the whole farm.
+     */
+    @Inject
+    @Named("context")
+    private Provider<ComponentManager> contextComponentManagerProvider;
+
+    /**
+     * Used to access the current wiki and user.
+     */
+    @Inject
+    private DocumentAccessBridge documentAccessBridge;
+
+    /**
+     * The extensions by extension point, indexed by wiki and user.
+     */
+    private final Map<String, Map<String, List<UIExtension>>> scopes =
+        new LinkedHashMap<String, Map<String, List<UIExtension>>>(16, 0.75f, true)
+        {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Map<String, List<UIExtension>>> eldest)
+            {
+                return size() > MAX_SCOPES;
+            }
+        };
+
+    /**
+     * The documents defining the indexed wiki extensions.
+     */
+    private final Set<DocumentReference> sourceDocuments = new HashSet<DocumentReference>();
+
+    /**
+     * Incremented each time the index is invalidated, to avoid storing an index built from outdated extensions.
+     */
+    private long version;
+
+    @Override
+    public List<UIExtension> get(String extensionPointId)
+    {
+        String scope = this.documentAccessBridge.getCurrentWiki() + ':' + this.documentAccessBridge.getCurrentUser();
+
+        Map<String, List<UIExtension>> extensionsByPoint;
+        long buildVersion;
+        synchronized (this) {
+            extensionsByPoint = this.scopes.get(scope);
+            buildVersion = this.version;
+        }
+
+        if (extensionsByPoint == null) {
+            extensionsByPoint = buildIndex(buildVersion);
+            if (extensionsByPoint == null) {
+                return new ArrayList<UIExtension>();
+            }
+            synchronized (this) {
+                if (this.version == buildVersion) {
+                    this.scopes.put(scope, extensionsByPoint);
+                }
+            }
+        }
+
+        List<UIExtension> extensions = extensionsByPoint.get(extensionPointId);
+
+        // Callers are allowed to modify the returned list.
+        return extensions != null ? new ArrayList<UIExtension>(extensions) : new ArrayList<UIExtension>();
+    }
+
+    /**
+     * @param buildVersion the version of the index being built
+     * @return the extensions available in the current context by extension point, {@code null} if they can't be
+     *         retrieved
+     */
+    private Map<String, List<UIExtension>> buildIndex(long buildVersion)
+    {
+        List<UIExtension> allExtensions;
+        try {
+            allExtensions = this.contextComponentManagerProvider.get().getInstanceList(UIExtension.class);
+        } catch (ComponentLookupException e) {
+            this.logger.error("Failed to lookup UIExtension instances, error: [{}]", e);
+            return null;
+        }
+
+        Map<String, List<UIExtension>> extensionsByPoint = new HashMap<String, List<UIExtension>>();
+        Set<DocumentReference> documents = new HashSet<DocumentReference>();
+        for (UIExtension extension : allExtensions) {
+            List<UIExtension> extensions = extensionsByPoint.get(extension.getExtensionPointId());
+            if (extensions == null) {
+                extensions = new ArrayList<UIExtension>();
+                extensionsByPoint.put(extension.getExtensionPointId(), extensions);
+            }
+            extensions.add(extension);
+
+            if (extension instanceof WikiComponent) {
+                documents.add(((WikiComponent) extension).getDocumentReference());
+            }
+        }
+
+        for (Map.Entry<String, List<UIExtension>> entry : extensionsByPoint.entrySet()) {
+            entry.setValue(Collections.unmodifiableList(entry.getValue()));
+        }
+
+        synchronized (this) {
+            if (this.version == buildVersion) {
+                this.sourceDocuments.addAll(documents);
+            }
+        }
+
+        return extensionsByPoint;
+    }
+
+    @Override
+    public synchronized void invalidate()
+    {
+        ++this.version;
+        this.scopes.clear();
+        this.sourceDocuments.clear();
+    }
+
+    @Override
+    public synchronized void invalidate(DocumentReference documentReference)
+    {
+        if (this.sourceDocuments.contains(documentReference)) {
+            invalidate();
+        }
+    }
+}
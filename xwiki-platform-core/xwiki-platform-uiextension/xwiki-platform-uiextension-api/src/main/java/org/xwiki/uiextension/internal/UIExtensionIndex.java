@@ -0,0 +1,56 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.uiextension.internal;
+
+import java.util.List;
+
+import org.xwiki.component.annotation.Role;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.uiextension.UIExtension;
+
+/**
+ * Indexes the {@link UIExtension}s available in the current context by extension point, so that retrieving the
+ * extensions of an extension point doesn't require to lookup and filter all the registered extensions.
+ *
+ * @version $Id$
+ * @since 4.4M1
+ */
+@Role
+public interface UIExtensionIndex
+{
+    /**
+     * @param extensionPointId the ID of the extension point
+     * @return the extensions available in the current context for the given extension point, in the order they are
+     *         returned by the component manager
+     */
+    List<UIExtension> get(String extensionPointId);
+
+    /**
+     * Drop the indexed extensions, to be called when extensions are registered or unregistered.
+     */
+    void invalidate();
+
+    /**
+     * Drop the indexed extensions if one of them is defined in the given document.
+     *
+     * @param documentReference the reference of a modified document
+     */
+    void invalidate(DocumentReference documentReference);
+}
@@ -0,0 +1,113 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.uiextension.internal;
+
+import java.util.Arrays;
+import java.util.List;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import org.xwiki.bridge.event.ApplicationReadyEvent;
+import org.xwiki.bridge.event.DocumentCreatedEvent;
+import org.xwiki.bridge.event.DocumentDeletedEvent;
+import org.xwiki.bridge.event.DocumentUpdatedEvent;
+import org.xwiki.bridge.event.WikiReadyEvent;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.component.event.ComponentDescriptorAddedEvent;
+import org.xwiki.component.event.ComponentDescriptorRemovedEvent;
+import org.xwiki.observation.EventListener;
+import org.xwiki.observation.event.Event;
+import org.xwiki.uiextension.UIExtension;
+
+import com.xpn.xwiki.doc.XWikiDocument;
+import com.xpn.xwiki.objects.BaseObject;
+
+/**
+ * Keeps the {@link UIExtensionIndex} up to date. UI extensions registered against the root Component Manager are
+ * notified through component events, while the wiki UI extensions are re-registered when the documents defining them
+ * are modified.
+ *
+ * @version $Id$
+ * @since 4.4M1
+ */
+@Component
+@Named("uiExtensionIndexListener")
+@Singleton
+public class UIExtensionIndexListener implements EventListener, WikiUIExtensionConstants
+{
+    /**
+     * The index to update.
+     */
+    @Inject
+    private UIExtensionIndex index;
+
+    @Override
+    public List<Event> getEvents()
+    {
+        return Arrays.<Event> asList(
+            new ComponentDescriptorAddedEvent(UIExtension.class),
+            new ComponentDescriptorRemovedEvent(UIExtension.class),
+            new DocumentCreatedEvent(),
+            new DocumentUpdatedEvent(),
+            new DocumentDeletedEvent(),
+            new ApplicationReadyEvent(),
+            new WikiReadyEvent());
+    }
+
+    @Override
+    public String getName()
+    {
+        return "uiExtensionIndexListener";
+    }
+
+    @Override
+    public void onEvent(Event event, Object source, Object data)
+    {
+        if (source instanceof XWikiDocument) {
+            XWikiDocument document = (XWikiDocument) source;
+
+            if (hasExtensions(document) || hasExtensions(document.getOriginalDocument())) {
+                this.index.invalidate();
+            } else {
+                // Other kinds of wiki extensions, like panels
+                this.index.invalidate(document.getDocumentReference());
+            }
+        } else {
+            this.index.invalidate();
+        }
+    }
+
+    /**
+     * @param document a document
+     * @return true if the document defines UI extensions
+     */
+    private boolean hasExtensions(XWikiDocument document)
+    {
+        if (document == null) {
+            return false;
+        }
+
+        List<BaseObject> extensions = document.getXObjects(UI_EXTENSION_CLASS);
+
+        return extensions != null && !extensions.isEmpty();
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.uiextension;
+
+import java.util.Arrays;
+
+import javax.inject.Provider;
+
+import junit.framework.Assert;
+
+import org.jmock.Expectations;
+import org.junit.Before;
+import org.junit.Test;
+import org.xwiki.bridge.DocumentAccessBridge;
+import org.xwiki.component.manager.ComponentManager;
+import org.xwiki.component.util.DefaultParameterizedType;
+import org.xwiki.test.AbstractMockingComponentTestCase;
+import org.xwiki.test.annotation.MockingRequirement;
+import org.xwiki.uiextension.internal.DefaultUIExtensionIndex;
+import org.xwiki.uiextension.internal.UIExtensionIndex;
+
+@MockingRequirement(value = DefaultUIExtensionIndex.class)
+public class UIExtensionIndexTest extends AbstractMockingComponentTestCase
+{
+    private ComponentManager contextComponentManager;
+
+    private DocumentAccessBridge documentAccessBridge;
+
+    private UIExtensionIndex index;
+
+    private UIExtension extension1;
+
+    private UIExtension extension2;
+
+    private UIExtension extension3;
+
+    @Before
+    public void configure() throws Exception
+    {
+        this.contextComponentManager =
+            getComponentManager().registerMockComponent(getMockery(), ComponentManager.class, "context", "context");
+        final Provider<ComponentManager> componentManagerProvider =
+            getComponentManager().getInstance(
+                new DefaultParameterizedType(null, Provider.class, ComponentManager.class), "context");
+        this.documentAccessBridge = getComponentManager().getInstance(DocumentAccessBridge.class);
+        this.index = getComponentManager().getInstance(UIExtensionIndex.class);
+
+        this.extension1 = getMockery().mock(UIExtension.class, "extension1");
+        this.extension2 = getMockery().mock(UIExtension.class, "extension2");
+        this.extension3 = getMockery().mock(UIExtension.class, "extension3");
+
+        getMockery().checking(new Expectations()
+        {
+            {
+                allowing(componentManagerProvider).get();
+                will(returnValue(contextComponentManager));
+                allowing(documentAccessBridge).getCurrentWiki();
+                will(returnValue("xwiki"));
+                allowing(extension1).getExtensionPointId();
+                will(returnValue("epId1"));
+                allowing(extension2).getExtensionPointId();
+                will(returnValue("epId2"));
+                allowing(extension3).getExtensionPointId();
+                will(returnValue("epId1"));
+            }
+        });
+    }
+
+    @Test
+    public void getIndexesExtensionsOnce() throws Exception
+    {
+        getMockery().checking(new Expectations()
+        {
+            {
+                allowing(documentAccessBridge).getCurrentUser();
+                will(returnValue("XWiki.Admin"));
+                oneOf(contextComponentManager).getInstanceList(UIExtension.class);
+                will(returnValue(Arrays.asList(extension1, extension2, extension3)));
+            }
+        });
+
+        Assert.assertEquals(Arrays.asList(this.extension1, this.extension3), this.index.get("epId1"));
+        Assert.assertEquals(Arrays.asList(this.extension2), this.index.get("epId2"));
+        Assert.assertTrue(this.index.get("epId3").isEmpty());
+    }
+
+    @Test
+    public void getAfterInvalidate() throws Exception
+    {
+        getMockery().checking(new Expectations()
+        {
+            {
+                allowing(documentAccessBridge).getCurrentUser();
+                will(returnValue("XWiki.Admin"));
+                oneOf(contextComponentManager).getInstanceList(UIExtension.class);
+                will(returnValue(Arrays.asList(extension1)));
+                oneOf(contextComponentManager).getInstanceList(UIExtension.class);
+                will(returnValue(Arrays.asList(extension1, extension3)));
+            }
+        });
+
+        Assert.assertEquals(Arrays.asList(this.extension1), this.index.get("epId1"));
+
+        this.index.invalidate();
+
+        Assert.assertEquals(Arrays.asList(this.extension1, this.extension3), this.index.get("epId1"));
+    }
+
+    @Test
+    public void getIndexesExtensionsPerUser() throws Exception
+    {
+        getMockery().checking(new Expectations()
+        {
+            {
+                oneOf(documentAccessBridge).getCurrentUser();
+                will(returnValue("XWiki.Admin"));
+                oneOf(contextComponentManager).getInstanceList(UIExtension.class);
+                will(returnValue(Arrays.asList(extension1)));
+                oneOf(documentAccessBridge).getCurrentUser();
+                will(returnValue("XWiki.User"));
+                oneOf(contextComponentManager).getInstanceList(UIExtension.class);
+                will(returnValue(Arrays.asList(extension1, extension3)));
+            }
+        });
+
+        Assert.assertEquals(Arrays.asList(this.extension1), this.index.get("epId1"));
+        Assert.assertEquals(Arrays.asList(this.extension1, this.extension3), this.index.get("epId1"));
+    }
+}
@@ -27,6 +27,8 @@
 import org.apache.ecs.html.Div;
 import org.apache.ecs.html.Span;
 import org.suigeneris.jrcs.rcs.Version;
+import org.xwiki.context.Execution;
+import org.xwiki.context.ExecutionContext;
 
 import com.xpn.xwiki.XWikiContext;
 import com.xpn.xwiki.XWikiException;
@@ -38,6 +40,7 @@
 import com.xpn.xwiki.plugin.activitystream.api.ActivityEventType;
 import com.xpn.xwiki.plugin.activitystream.api.ActivityEvent;
 import com.xpn.xwiki.plugin.diff.DiffPluginApi;
+import com.xpn.xwiki.web.Utils;
 
 /**
  * The class representing an event in the WatchList. The current implementation is a wrapper for one or more
@@ -232,15 +235,35 @@ public String getPrefixedFullName()
         return prefixedFullName;
     }
     
+    /**
+     * Events are shared by all the notifications sent by a job, which may be rendered from several threads. This method
+     * returns the XWiki context of the current thread, falling back on the context the event has been created with.
+     * 
+     * @return the XWiki context to use
+     */
+    private XWikiContext getContext()
+    {
+        ExecutionContext executionContext = Utils.getComponent(Execution.class).getContext();
+        if (executionContext != null) {
+            XWikiContext xcontext = (XWikiContext) executionContext.getProperty(XWikiContext.EXECUTIONCONTEXT_KEY);
+            if (xcontext != null) {
+                return xcontext;
+            }
+        }
+
+        return this.context;
+    }
+
     /**
      * @return The URL of the document which has fired the event
      */
     public String getUrl() 
     {
+        XWikiContext xcontext = getContext();
         String url = "";
         
         try {
-            url = context.getWiki().getDocument(getPrefixedFullName(), context).getExternalURL("view", context);
+            url = xcontext.getWiki().getDocument(getPrefixedFullName(), xcontext).getExternalURL("view", xcontext);
         } catch (Exception e) {
             // Do nothing, we don't want to throw exceptions in notification emails.
         }
@@ -361,9 +384,10 @@ public List<String> getVersions()
     /**
      * @return The version of the document which has generated the event, before the actual event.
      */
-    public String getPreviousVersion()
+    public synchronized String getPreviousVersion()
     {
         if (previousVersion == null) {
+            XWikiContext xcontext = getContext();
             String currentVersion = "";
             previousVersion = "";
 
@@ -382,9 +406,9 @@ public String getPreviousVersion()
                 }
 
                 if (!StringUtils.isBlank(currentVersion) && StringUtils.isBlank(previousVersion)) {
-                    XWikiDocument doc = context.getWiki().getDocument(prefixedFullName, context);
-                    XWikiDocument docRev = context.getWiki().getDocument(doc, currentVersion, context);
-                    doc.loadArchive(context);
+                    XWikiDocument doc = xcontext.getWiki().getDocument(prefixedFullName, xcontext);
+                    XWikiDocument docRev = xcontext.getWiki().getDocument(doc, currentVersion, xcontext);
+                    doc.loadArchive(xcontext);
                     Version version = doc.getDocumentArchive().getPrevVersion(docRev.getRCSVersion());
                     if (version != null) {
                         previousVersion = version.toString();
@@ -516,23 +540,24 @@ private String getObjectsHTMLDiff(List<List<ObjectDiff>> objectDiffs, boolean is
     /**
      * @return The diff, formated in HTML, to display to the user when a document has been updated
      */
-    public String getHTMLDiff()
+    public synchronized String getHTMLDiff()
     {
         if (htmlDiff == null) {
+            XWikiContext xcontext = getContext();
             try {
-                DiffPluginApi diff = (DiffPluginApi) context.getWiki().getPluginApi("diff", context);
+                DiffPluginApi diff = (DiffPluginApi) xcontext.getWiki().getPluginApi("diff", xcontext);
                 StringBuffer result = new StringBuffer();
-                XWikiDocument d2 = context.getWiki().getDocument(getPrefixedFullName(), context);
+                XWikiDocument d2 = xcontext.getWiki().getDocument(getPrefixedFullName(), xcontext);
                 
                 if (getType().equals(WatchListEventType.CREATE)) {
-                    d2 = context.getWiki().getDocument(d2, INITIAL_DOCUMENT_VERSION, context);                    
+                    d2 = xcontext.getWiki().getDocument(d2, INITIAL_DOCUMENT_VERSION, xcontext);                    
                 }
                 
-                XWikiDocument d1 = context.getWiki().getDocument(d2, getPreviousVersion(), context);
-                List<AttachmentDiff> attachDiffs = d2.getAttachmentDiff(d1, d2, context);
-                List<List<ObjectDiff>> objectDiffs = d2.getObjectDiff(d1, d2, context);
-                List<List<ObjectDiff>> classDiffs = d2.getClassDiff(d1, d2, context);
-                List<MetaDataDiff> metaDiffs = d2.getMetaDataDiff(d1, d2, context);
+                XWikiDocument d1 = xcontext.getWiki().getDocument(d2, getPreviousVersion(), xcontext);
+                List<AttachmentDiff> attachDiffs = d2.getAttachmentDiff(d1, d2, xcontext);
+                List<List<ObjectDiff>> objectDiffs = d2.getObjectDiff(d1, d2, xcontext);
+                List<List<ObjectDiff>> classDiffs = d2.getClassDiff(d1, d2, xcontext);
+                List<MetaDataDiff> metaDiffs = d2.getMetaDataDiff(d1, d2, xcontext);
 
                 if (!d1.getContent().equals(d2.getContent())) {                    
                     Div contentDiv = createDiffDiv("contentDiff");
@@ -22,7 +22,12 @@
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import org.apache.commons.collections.ListUtils;
 import org.apache.commons.lang3.StringUtils;
@@ -159,4 +164,86 @@ public List<WatchListEvent> getMatchingEvents(List<String> wikis, List<String> s
 
         return matchingEvents;
     }
+
+    /**
+     * Get the events matching the subscriptions of all the indexed subscribers, in a single pass over the events. For
+     * each event only the subscribers watching its wiki, space, document or authors are considered, and the view right
+     * of a subscriber on a given document is checked only once, even if several events occurred on that document.
+     * 
+     * @param index the subscriptions of the users to notify
+     * @param context the XWiki context
+     * @return the sorted list of matching events, indexed by subscriber; subscribers without any matching event are not
+     *         part of the result
+     * @since 4.4M1
+     */
+    public Map<String, List<WatchListEvent>> getMatchingEvents(WatchListSubscriptionIndex index,
+        XWikiContext context)
+    {
+        Map<String, List<WatchListEvent>> matchingEvents = new LinkedHashMap<String, List<WatchListEvent>>();
+        WatchListPlugin plugin = (WatchListPlugin) context.getWiki().getPlugin(WatchListPlugin.ID, context);
+        Set<String> jobDocumentNames = new HashSet<String>(plugin.getStore().getJobDocumentNames());
+        // View rights already checked, indexed by document and then by subscriber.
+        Map<String, Map<String, Boolean>> viewRights = new HashMap<String, Map<String, Boolean>>();
+
+        for (WatchListEvent event : events) {
+            // We exclude watchlist jobs from notifications since they are modified each time they are fired,
+            // producing useless noise.
+            if (jobDocumentNames.contains(event.getFullName())) {
+                continue;
+            }
+
+            Map<String, Boolean> documentRights = viewRights.get(event.getPrefixedFullName());
+            if (documentRights == null) {
+                documentRights = new HashMap<String, Boolean>();
+                viewRights.put(event.getPrefixedFullName(), documentRights);
+            }
+
+            for (String subscriber : index.getSubscribers(event)) {
+                if (hasViewRight(subscriber, event, documentRights, context)) {
+                    List<WatchListEvent> subscriberEvents = matchingEvents.get(subscriber);
+                    if (subscriberEvents == null) {
+                        subscriberEvents = new ArrayList<WatchListEvent>();
+                        matchingEvents.put(subscriber, subscriberEvents);
+                    }
+                    subscriberEvents.add(event);
+                }
+            }
+        }
+
+        for (List<WatchListEvent> subscriberEvents : matchingEvents.values()) {
+            Collections.sort(subscriberEvents);
+        }
+
+        return matchingEvents;
+    }
+
+    /**
+     * Ensure that the subscriber has the right to view the document we would send a notification for.
+     * 
+     * @param subscriber the notification recipient
+     * @param event the event to check
+     * @param documentRights the rights already checked on the document of the event, indexed by subscriber
+     * @param context the XWiki context
+     * @return true if the subscriber can view the document of the event
+     */
+    private boolean hasViewRight(String subscriber, WatchListEvent event, Map<String, Boolean> documentRights,
+        XWikiContext context)
+    {
+        Boolean hasRight = documentRights.get(subscriber);
+        if (hasRight == null) {
+            try {
+                hasRight =
+                    context.getWiki().getRightService()
+                        .hasAccessLevel("view", subscriber, event.getPrefixedFullName(), context);
+            } catch (XWikiException e) {
+                // We're in a job, we don't throw exceptions
+                LOGGER.error("Failed to check view right of user [{}] on [{}]", new Object[] {subscriber,
+                    event.getPrefixedFullName(), e});
+                hasRight = false;
+            }
+            documentRights.put(subscriber, hasRight);
+        }
+
+        return hasRight;
+    }
 }
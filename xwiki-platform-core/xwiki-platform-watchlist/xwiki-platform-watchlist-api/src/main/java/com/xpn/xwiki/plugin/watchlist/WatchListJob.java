@@ -21,6 +21,12 @@
 
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.servlet.ServletException;
 
@@ -41,7 +47,6 @@
 import com.xpn.xwiki.doc.XWikiDocument;
 import com.xpn.xwiki.objects.BaseObject;
 import com.xpn.xwiki.plugin.scheduler.AbstractJob;
-import com.xpn.xwiki.plugin.watchlist.WatchListStore.ElementType;
 import com.xpn.xwiki.web.Utils;
 
 /**
@@ -56,6 +61,11 @@ public class WatchListJob extends AbstractJob implements Job
      */
     public static final String DEFAULT_EMAIL_TEMPLATE = "XWiki.WatchListMessage";
 
+    /**
+     * Name of the xwiki.cfg property holding the number of threads used to send the notifications.
+     */
+    private static final String NOTIFICATION_THREADS_PROPERTY = "xwiki.plugin.watchlist.notificationThreads";
+
     /**
      * Logger.
      */
@@ -176,9 +186,10 @@ private void setPreviousFireTime() throws XWikiException
 
     /**
      * @param userWiki wiki from which the user comes from
+     * @param xcontext the XWiki context to use
      * @return the name of the page that should be used as email template for this job
      */
-    private String getEmailTemplate(String userWiki)
+    private String getEmailTemplate(String userWiki, XWikiContext xcontext)
     {
         String fullName = this.watchListJobObject.getStringValue(WatchListJobManager.WATCHLIST_JOB_EMAIL_PROP);
         String prefixedFullName;
@@ -188,7 +199,7 @@ private String getEmailTemplate(String userWiki)
             prefixedFullName = fullName;
         } else {
             prefixedFullName = userWiki + WatchListStore.WIKI_SPACE_SEP + fullName;
-            if (this.context.getWiki().exists(prefixedFullName, this.context)) {
+            if (xcontext.getWiki().exists(prefixedFullName, xcontext)) {
                 // If the configured template exists in the user wiki, use it.
                 return prefixedFullName;
             }
@@ -222,6 +233,114 @@ private boolean hasSubscribers()
         return true;
     }
 
+    /**
+     * @return the number of threads to use for sending the notifications, configured in xwiki.cfg
+     */
+    private int getNotificationThreadNumber()
+    {
+        return (int) this.context.getWiki().ParamAsLong(NOTIFICATION_THREADS_PROPERTY, 1);
+    }
+
+    /**
+     * Send the notification emails to the subscribers. Notifications are rendered and sent in the current thread unless
+     * several notification threads are configured, in which case they are dispatched to a bounded pool of threads
+     * working each with its own clone of the XWiki context. This method returns once all the notifications have been
+     * sent.
+     * 
+     * @param matchingEvents the events to notify, indexed by subscriber
+     * @param previousFireTime the previous job fire time
+     * @throws InterruptedException if the job is interrupted while waiting for the notifications to be sent
+     */
+    private void sendNotifications(Map<String, List<WatchListEvent>> matchingEvents, final Date previousFireTime)
+        throws InterruptedException
+    {
+        int threadNumber = Math.min(getNotificationThreadNumber(), matchingEvents.size());
+
+        if (threadNumber <= 1) {
+            for (Map.Entry<String, List<WatchListEvent>> entry : matchingEvents.entrySet()) {
+                sendNotification(entry.getKey(), entry.getValue(), previousFireTime, this.context);
+            }
+            return;
+        }
+
+        // Make sure the cloned contexts used by the notification threads don't share the database session of the job.
+        this.context.getWiki().getStore().cleanUp(this.context);
+
+        ExecutorService executor = Executors.newFixedThreadPool(threadNumber, new ThreadFactory()
+        {
+            private final AtomicInteger threadCount = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable runnable)
+            {
+                Thread thread = new Thread(runnable, "WatchList notifier " + this.threadCount.incrementAndGet());
+                // Client requests are more important than notifications
+                thread.setPriority(Thread.MIN_PRIORITY);
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+
+        try {
+            for (final Map.Entry<String, List<WatchListEvent>> entry : matchingEvents.entrySet()) {
+                executor.execute(new Runnable()
+                {
+                    @Override
+                    public void run()
+                    {
+                        sendNotificationInNewContext(entry.getKey(), entry.getValue(), previousFireTime);
+                    }
+                });
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Send a notification from a notification thread, using a new clone of the job context.
+     * 
+     * @param subscriber user to notify
+     * @param events the events to notify
+     * @param previousFireTime the previous job fire time
+     */
+    private void sendNotificationInNewContext(String subscriber, List<WatchListEvent> events, Date previousFireTime)
+    {
+        XWikiContext threadContext = this.context.clone();
+
+        try {
+            initializeComponents(threadContext);
+            sendNotification(subscriber, events, previousFireTime, threadContext);
+        } catch (Exception e) {
+            LOGGER.error("Failed to send watchlist notification to user [{}]", subscriber, e);
+        } finally {
+            threadContext.getWiki().getStore().cleanUp(threadContext);
+            cleanupComponents();
+        }
+    }
+
+    /**
+     * Send the notification email to a subscriber.
+     * 
+     * @param subscriber user to notify
+     * @param events the events to notify
+     * @param previousFireTime the previous job fire time
+     * @param xcontext the XWiki context to use
+     */
+    private void sendNotification(String subscriber, List<WatchListEvent> events, Date previousFireTime,
+        XWikiContext xcontext)
+    {
+        try {
+            String userWiki = StringUtils.substringBefore(subscriber, WatchListStore.WIKI_SPACE_SEP);
+            this.plugin.getNotifier().sendEmailNotification(subscriber, events, getEmailTemplate(userWiki, xcontext),
+                previousFireTime, xcontext);
+        } catch (Exception e) {
+            LOGGER.error("Failed to send watchlist notification to user [{}]", subscriber, e);
+        }
+    }
+
     /**
      * Method called from the scheduler.
      * 
@@ -251,28 +370,13 @@ public void executeJob(JobExecutionContext jobContext) throws JobExecutionExcept
                 return;
             }
 
-            for (String subscriber : subscribers) {
-                try {
-                    List<String> wikis =
-                        this.plugin.getStore().getWatchedElements(subscriber, ElementType.WIKI, this.context);
-                    List<String> spaces =
-                        this.plugin.getStore().getWatchedElements(subscriber, ElementType.SPACE, this.context);
-                    List<String> documents =
-                        this.plugin.getStore().getWatchedElements(subscriber, ElementType.DOCUMENT, this.context);
-                    List<String> users =
-                        this.plugin.getStore().getWatchedElements(subscriber, ElementType.USER, this.context);
-                    List<WatchListEvent> matchingEvents =
-                        eventMatcher.getMatchingEvents(wikis, spaces, documents, users, subscriber, this.context);
-                    String userWiki = StringUtils.substringBefore(subscriber, WatchListStore.WIKI_SPACE_SEP);
-
-                    // If events have occurred on at least one element watched by the user, send the email
-                    if (matchingEvents.size() > 0) {
-                        this.plugin.getNotifier().sendEmailNotification(subscriber, matchingEvents,
-                            getEmailTemplate(userWiki), previousFireTime, this.context);
-                    }
-                } catch (Exception e) {
-                    LOGGER.error("Failed to send watchlist notification to user [{}]", subscriber, e);
-                }
+            WatchListSubscriptionIndex index =
+                new WatchListSubscriptionIndex(subscribers, this.plugin.getStore(), this.context);
+            Map<String, List<WatchListEvent>> matchingEvents = eventMatcher.getMatchingEvents(index, this.context);
+
+            // If events have occurred on at least one element watched by a user, send an email to that user
+            if (!matchingEvents.isEmpty()) {
+                sendNotifications(matchingEvents, previousFireTime);
             }
         } catch (Exception e) {
             // We're in a job, we don't throw exceptions
@@ -22,6 +22,7 @@
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.EnumMap;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
@@ -415,8 +416,39 @@ public List<String> getJobDocumentNames()
      * @throws XWikiException if retrieval of elements fails
      */
     public List<String> getWatchedElements(String user, ElementType type, XWikiContext context) throws XWikiException
+    {
+        return getWatchedElements(getWatchListObject(user, context), type);
+    }
+
+    /**
+     * Get all the elements watched by the given user, for every element type. Contrary to calling
+     * {@link #getWatchedElements(String, ElementType, XWikiContext)} once per type, the user's WatchList object is only
+     * looked up once.
+     * 
+     * @param user user to match
+     * @param context the XWiki context
+     * @return watched elements, indexed by element type
+     * @throws XWikiException if retrieval of elements fails
+     */
+    public Map<ElementType, List<String>> getWatchedElements(String user, XWikiContext context) throws XWikiException
     {
         BaseObject watchListObject = getWatchListObject(user, context);
+        Map<ElementType, List<String>> elements = new EnumMap<ElementType, List<String>>(ElementType.class);
+        for (ElementType type : ElementType.values()) {
+            elements.put(type, getWatchedElements(watchListObject, type));
+        }
+        return elements;
+    }
+
+    /**
+     * Extract the watched elements of the given type from a WatchList object.
+     * 
+     * @param watchListObject the user's WatchList object
+     * @param type element type to match
+     * @return matching elements
+     */
+    private List<String> getWatchedElements(BaseObject watchListObject, ElementType type)
+    {
         String watchedItems = watchListObject.getLargeStringValue(getWatchListClassPropertyForType(type)).trim();
         List<String> elements = new ArrayList<String>();
         if (StringUtils.isBlank(watchedItems)) {
@@ -0,0 +1,151 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.xpn.xwiki.plugin.watchlist;
+
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.xpn.xwiki.XWikiContext;
+import com.xpn.xwiki.plugin.watchlist.WatchListStore.ElementType;
+
+/**
+ * Inverted index of watchlist subscriptions: for each watched wiki, space, document or user, the index knows which
+ * subscribers are watching it. It allows to find the recipients of an event with a few hash lookups instead of testing
+ * every event against every subscriber.
+ *
+ * @version $Id$
+ * @since 4.4M1
+ */
+public class WatchListSubscriptionIndex
+{
+    /**
+     * Logger.
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(WatchListSubscriptionIndex.class);
+
+    /**
+     * Subscribers indexed by element type and by watched element.
+     */
+    private final Map<ElementType, Map<String, Set<String>>> index =
+        new EnumMap<ElementType, Map<String, Set<String>>>(ElementType.class);
+
+    /**
+     * Number of subscribers which have been indexed.
+     */
+    private int subscriberNumber;
+
+    /**
+     * Constructor. Loads the watched elements of each subscriber once and indexes them.
+     *
+     * @param subscribers the subscribers to index
+     * @param store the store to load watched elements from
+     * @param context the XWiki context
+     */
+    public WatchListSubscriptionIndex(Collection<String> subscribers, WatchListStore store, XWikiContext context)
+    {
+        for (ElementType type : ElementType.values()) {
+            this.index.put(type, new HashMap<String, Set<String>>());
+        }
+
+        for (String subscriber : subscribers) {
+            try {
+                Map<ElementType, List<String>> watchedElements = store.getWatchedElements(subscriber, context);
+                for (Map.Entry<ElementType, List<String>> entry : watchedElements.entrySet()) {
+                    addSubscriber(subscriber, entry.getKey(), entry.getValue());
+                }
+                this.subscriberNumber++;
+            } catch (Exception e) {
+                LOGGER.error("Failed to load watched elements of user [{}]", subscriber, e);
+            }
+        }
+    }
+
+    /**
+     * Index the given watched elements for a subscriber.
+     *
+     * @param subscriber the subscriber watching the elements
+     * @param type the type of the watched elements
+     * @param elements the watched elements
+     */
+    private void addSubscriber(String subscriber, ElementType type, List<String> elements)
+    {
+        Map<String, Set<String>> typeIndex = this.index.get(type);
+        for (String element : elements) {
+            Set<String> elementSubscribers = typeIndex.get(element);
+            if (elementSubscribers == null) {
+                elementSubscribers = new LinkedHashSet<String>();
+                typeIndex.put(element, elementSubscribers);
+            }
+            elementSubscribers.add(subscriber);
+        }
+    }
+
+    /**
+     * @return the number of subscribers which have been successfully indexed
+     */
+    public int getSubscriberNumber()
+    {
+        return this.subscriberNumber;
+    }
+
+    /**
+     * Get the subscribers watching the wiki, space or document the event happened in, or one of the authors of the
+     * event. View rights are not checked here.
+     *
+     * @param event the event to match
+     * @return the subscribers potentially interested in the event
+     */
+    public Set<String> getSubscribers(WatchListEvent event)
+    {
+        Set<String> subscribers = new LinkedHashSet<String>();
+
+        addAll(subscribers, ElementType.WIKI, event.getWiki());
+        addAll(subscribers, ElementType.SPACE, event.getPrefixedSpace());
+        addAll(subscribers, ElementType.DOCUMENT, event.getPrefixedFullName());
+        for (String author : event.getAuthors()) {
+            addAll(subscribers, ElementType.USER, author);
+        }
+
+        return subscribers;
+    }
+
+    /**
+     * Add the subscribers of an element to the given set.
+     *
+     * @param subscribers the set to fill
+     * @param type the type of the element
+     * @param element the element
+     */
+    private void addAll(Set<String> subscribers, ElementType type, String element)
+    {
+        Set<String> elementSubscribers = this.index.get(type).get(element);
+        if (elementSubscribers != null) {
+            subscribers.addAll(elementSubscribers);
+        }
+    }
+}
@@ -0,0 +1,210 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.xpn.xwiki.plugin.watchlist;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+import org.jmock.Expectations;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.xpn.xwiki.XWiki;
+import com.xpn.xwiki.XWikiContext;
+import com.xpn.xwiki.plugin.activitystream.api.ActivityEvent;
+import com.xpn.xwiki.plugin.activitystream.api.ActivityEventType;
+import com.xpn.xwiki.plugin.activitystream.api.ActivityStream;
+import com.xpn.xwiki.plugin.activitystream.impl.ActivityEventImpl;
+import com.xpn.xwiki.plugin.activitystream.plugin.ActivityStreamPlugin;
+import com.xpn.xwiki.plugin.watchlist.WatchListStore.ElementType;
+import com.xpn.xwiki.test.AbstractBridgedComponentTestCase;
+import com.xpn.xwiki.user.api.XWikiRightService;
+
+/**
+ * Unit tests for {@link WatchListEventMatcher}.
+ * 
+ * @version $Id$
+ */
+public class WatchListEventMatcherTest extends AbstractBridgedComponentTestCase
+{
+    private static final String ALICE = "xwiki:XWiki.Alice";
+
+    private static final String BOB = "xwiki:XWiki.Bob";
+
+    private static final String CAROL = "xwiki:XWiki.Carol";
+
+    private static final String DAVE = "xwiki:XWiki.Dave";
+
+    private WatchListStore mockStore;
+
+    private XWikiRightService mockRightService;
+
+    private List<ActivityEvent> activityEvents = new ArrayList<ActivityEvent>();
+
+    @Override
+    public void setUp() throws Exception
+    {
+        super.setUp();
+
+        final XWiki mockXWiki = getMockery().mock(XWiki.class);
+        final ActivityStreamPlugin mockActivityStreamPlugin = getMockery().mock(ActivityStreamPlugin.class);
+        final ActivityStream mockActivityStream = getMockery().mock(ActivityStream.class);
+        final WatchListPlugin mockWatchListPlugin = getMockery().mock(WatchListPlugin.class);
+        this.mockStore = getMockery().mock(WatchListStore.class);
+        this.mockRightService = getMockery().mock(XWikiRightService.class);
+        getContext().setWiki(mockXWiki);
+
+        getMockery().checking(new Expectations()
+        {{
+            allowing(mockXWiki).getPlugin(ActivityStreamPlugin.PLUGIN_NAME, getContext());
+            will(returnValue(mockActivityStreamPlugin));
+            allowing(mockActivityStreamPlugin).getActivityStream();
+            will(returnValue(mockActivityStream));
+            allowing(mockActivityStream).searchEvents(with(any(String.class)), with(false), with(true), with(0),
+                with(0), with(any(List.class)), with(any(XWikiContext.class)));
+            will(returnValue(activityEvents));
+            allowing(mockXWiki).getPlugin(WatchListPlugin.ID, getContext());
+            will(returnValue(mockWatchListPlugin));
+            allowing(mockWatchListPlugin).getStore();
+            will(returnValue(mockStore));
+            allowing(mockStore).getJobDocumentNames();
+            will(returnValue(Arrays.asList("Scheduler.WatchListDailyNotifier")));
+            allowing(mockXWiki).getRightService();
+            will(returnValue(mockRightService));
+        }});
+    }
+
+    private void addActivityEvent(String type, String wiki, String page, String user)
+    {
+        ActivityEventImpl activityEvent = new ActivityEventImpl();
+        activityEvent.setType(type);
+        activityEvent.setWiki(wiki);
+        activityEvent.setSpace(page.substring(0, page.indexOf('.')));
+        activityEvent.setPage(page);
+        activityEvent.setUser(user);
+        activityEvent.setDate(new Date());
+        this.activityEvents.add(activityEvent);
+    }
+
+    private void allowView(final String user, final String document, final boolean allowed) throws Exception
+    {
+        getMockery().checking(new Expectations()
+        {{
+            oneOf(mockRightService).hasAccessLevel("view", user, document, getContext());
+            will(returnValue(allowed));
+        }});
+    }
+
+    private List<String> getDocuments(List<WatchListEvent> events)
+    {
+        List<String> documents = new ArrayList<String>();
+        if (events != null) {
+            for (WatchListEvent event : events) {
+                documents.add(event.getPrefixedFullName());
+            }
+        }
+        return documents;
+    }
+
+    @Test
+    public void matchesWatchedWikisSpacesDocumentsAndUsers() throws Exception
+    {
+        addActivityEvent(ActivityEventType.UPDATE, "xwiki", "Main.WebHome", "xwiki:XWiki.Eve");
+        addActivityEvent(ActivityEventType.CREATE, "xwiki", "Sandbox.Test", "xwiki:XWiki.Frank");
+        addActivityEvent(ActivityEventType.CREATE, "subwiki", "Main.Test", "subwiki:XWiki.Eve");
+
+        getMockery().checking(new Expectations()
+        {{
+            allowing(mockStore).getWatchedElements(ALICE, getContext());
+            will(returnValue(WatchListSubscriptionIndexTest.watched(ElementType.WIKI, "xwiki")));
+            allowing(mockStore).getWatchedElements(BOB, getContext());
+            will(returnValue(WatchListSubscriptionIndexTest.watched(ElementType.SPACE, "xwiki:Sandbox")));
+            allowing(mockStore).getWatchedElements(CAROL, getContext());
+            will(returnValue(WatchListSubscriptionIndexTest.watched(ElementType.DOCUMENT, "subwiki:Main.Test")));
+            allowing(mockStore).getWatchedElements(DAVE, getContext());
+            will(returnValue(WatchListSubscriptionIndexTest.watched(ElementType.USER, "xwiki:XWiki.Eve")));
+        }});
+        allowView(ALICE, "xwiki:Main.WebHome", true);
+        allowView(ALICE, "xwiki:Sandbox.Test", true);
+        allowView(BOB, "xwiki:Sandbox.Test", true);
+        allowView(CAROL, "subwiki:Main.Test", true);
+        allowView(DAVE, "xwiki:Main.WebHome", true);
+
+        WatchListEventMatcher matcher = new WatchListEventMatcher(new Date(), getContext());
+        Assert.assertEquals(3, matcher.getEventNumber());
+        Map<String, List<WatchListEvent>> matchingEvents = matcher.getMatchingEvents(
+            new WatchListSubscriptionIndex(Arrays.asList(ALICE, BOB, CAROL, DAVE), this.mockStore, getContext()),
+            getContext());
+
+        Assert.assertEquals(Arrays.asList("xwiki:Main.WebHome", "xwiki:Sandbox.Test"),
+            getDocuments(matchingEvents.get(ALICE)));
+        Assert.assertEquals(Arrays.asList("xwiki:Sandbox.Test"), getDocuments(matchingEvents.get(BOB)));
+        Assert.assertEquals(Arrays.asList("subwiki:Main.Test"), getDocuments(matchingEvents.get(CAROL)));
+        Assert.assertEquals(Arrays.asList("xwiki:Main.WebHome"), getDocuments(matchingEvents.get(DAVE)));
+    }
+
+    @Test
+    public void viewRightIsCheckedOncePerDocumentAndSubscriber() throws Exception
+    {
+        addActivityEvent(ActivityEventType.CREATE, "xwiki", "Main.WebHome", "xwiki:XWiki.Eve");
+        addActivityEvent(ActivityEventType.UPDATE, "xwiki", "Main.WebHome", "xwiki:XWiki.Eve");
+        addActivityEvent(ActivityEventType.UPDATE, "xwiki", "Main.Secret", "xwiki:XWiki.Eve");
+        addActivityEvent(ActivityEventType.UPDATE, "xwiki", "Scheduler.WatchListDailyNotifier", "xwiki:XWiki.Eve");
+
+        getMockery().checking(new Expectations()
+        {{
+            allowing(mockStore).getWatchedElements(ALICE, getContext());
+            will(returnValue(WatchListSubscriptionIndexTest.watched(ElementType.WIKI, "xwiki")));
+            allowing(mockStore).getWatchedElements(BOB, getContext());
+            will(returnValue(WatchListSubscriptionIndexTest.watched(ElementType.SPACE, "xwiki:Main")));
+        }});
+        // The watchlist job documents are never checked, the other documents only once per subscriber.
+        allowView(ALICE, "xwiki:Main.WebHome", true);
+        allowView(ALICE, "xwiki:Main.Secret", false);
+        allowView(BOB, "xwiki:Main.WebHome", false);
+        allowView(BOB, "xwiki:Main.Secret", false);
+
+        WatchListEventMatcher matcher = new WatchListEventMatcher(new Date(), getContext());
+        Map<String, List<WatchListEvent>> matchingEvents = matcher.getMatchingEvents(
+            new WatchListSubscriptionIndex(Arrays.asList(ALICE, BOB), this.mockStore, getContext()), getContext());
+
+        Assert.assertEquals(Arrays.asList("xwiki:Main.WebHome", "xwiki:Main.WebHome"),
+            getDocuments(matchingEvents.get(ALICE)));
+        Assert.assertFalse(matchingEvents.containsKey(BOB));
+    }
+
+    @Test
+    public void matchesWatchedElementsLists() throws Exception
+    {
+        addActivityEvent(ActivityEventType.UPDATE, "xwiki", "Main.WebHome", "xwiki:XWiki.Eve");
+        addActivityEvent(ActivityEventType.UPDATE, "xwiki", "Sandbox.Test", "xwiki:XWiki.Frank");
+        allowView(ALICE, "xwiki:Main.WebHome", true);
+
+        WatchListEventMatcher matcher = new WatchListEventMatcher(new Date(), getContext());
+        List<String> none = Collections.emptyList();
+
+        Assert.assertEquals(Arrays.asList("xwiki:Main.WebHome"), getDocuments(matcher.getMatchingEvents(none, none,
+            Arrays.asList("xwiki:Main.WebHome"), none, ALICE, getContext())));
+    }
+}
@@ -0,0 +1,156 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.xpn.xwiki.plugin.watchlist;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+import org.jmock.Expectations;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.xpn.xwiki.XWikiException;
+import com.xpn.xwiki.plugin.activitystream.api.ActivityEventType;
+import com.xpn.xwiki.plugin.activitystream.impl.ActivityEventImpl;
+import com.xpn.xwiki.plugin.watchlist.WatchListStore.ElementType;
+import com.xpn.xwiki.test.AbstractBridgedComponentTestCase;
+
+/**
+ * Unit tests for {@link WatchListSubscriptionIndex}.
+ * 
+ * @version $Id$
+ */
+public class WatchListSubscriptionIndexTest extends AbstractBridgedComponentTestCase
+{
+    private static final String ALICE = "xwiki:XWiki.Alice";
+
+    private static final String BOB = "xwiki:XWiki.Bob";
+
+    private static final String CAROL = "xwiki:XWiki.Carol";
+
+    private static final String DAVE = "xwiki:XWiki.Dave";
+
+    private WatchListStore mockStore;
+
+    @Override
+    public void setUp() throws Exception
+    {
+        super.setUp();
+
+        this.mockStore = getMockery().mock(WatchListStore.class);
+    }
+
+    static Map<ElementType, List<String>> watched(ElementType type, String... elements)
+    {
+        Map<ElementType, List<String>> watchedElements = new EnumMap<ElementType, List<String>>(ElementType.class);
+        for (ElementType elementType : ElementType.values()) {
+            watchedElements.put(elementType, Collections.<String> emptyList());
+        }
+        watchedElements.put(type, Arrays.asList(elements));
+        return watchedElements;
+    }
+
+    WatchListEvent event(String type, String wiki, String space, String page, String user)
+    {
+        ActivityEventImpl activityEvent = new ActivityEventImpl();
+        activityEvent.setType(type);
+        activityEvent.setWiki(wiki);
+        activityEvent.setSpace(space);
+        activityEvent.setPage(page);
+        activityEvent.setUser(user);
+        activityEvent.setDate(new Date());
+        return new WatchListEvent(activityEvent, getContext());
+    }
+
+    private WatchListSubscriptionIndex index(String... subscribers)
+    {
+        return new WatchListSubscriptionIndex(Arrays.asList(subscribers), this.mockStore, getContext());
+    }
+
+    @Test
+    public void matchesWikiSpaceDocumentAndUserWatches() throws Exception
+    {
+        getMockery().checking(new Expectations()
+        {{
+            allowing(mockStore).getWatchedElements(ALICE, getContext());
+            will(returnValue(watched(ElementType.WIKI, "xwiki")));
+            allowing(mockStore).getWatchedElements(BOB, getContext());
+            will(returnValue(watched(ElementType.SPACE, "xwiki:Main")));
+            allowing(mockStore).getWatchedElements(CAROL, getContext());
+            will(returnValue(watched(ElementType.DOCUMENT, "xwiki:Main.WebHome")));
+            allowing(mockStore).getWatchedElements(DAVE, getContext());
+            will(returnValue(watched(ElementType.USER, "xwiki:XWiki.Eve")));
+        }});
+
+        WatchListSubscriptionIndex index = index(ALICE, BOB, CAROL, DAVE);
+        Assert.assertEquals(4, index.getSubscriberNumber());
+
+        Assert.assertEquals(Arrays.asList(ALICE, BOB, CAROL, DAVE), Arrays.asList(index.getSubscribers(
+            event(ActivityEventType.UPDATE, "xwiki", "Main", "Main.WebHome", "xwiki:XWiki.Eve")).toArray()));
+        Assert.assertEquals(Arrays.asList(ALICE, BOB), Arrays.asList(index.getSubscribers(
+            event(ActivityEventType.CREATE, "xwiki", "Main", "Main.Other", "xwiki:XWiki.Frank")).toArray()));
+        Assert.assertEquals(Arrays.asList(ALICE, DAVE), Arrays.asList(index.getSubscribers(
+            event(ActivityEventType.DELETE, "xwiki", "Sandbox", "Sandbox.WebHome", "xwiki:XWiki.Eve")).toArray()));
+        Assert.assertTrue(index.getSubscribers(
+            event(ActivityEventType.UPDATE, "subwiki", "Main", "Main.WebHome", "subwiki:XWiki.Frank")).isEmpty());
+    }
+
+    @Test
+    public void subscriptionsAreAddedAndRemoved() throws Exception
+    {
+        getMockery().checking(new Expectations()
+        {{
+            exactly(2).of(mockStore).getWatchedElements(ALICE, getContext());
+            will(onConsecutiveCalls(returnValue(watched(ElementType.DOCUMENT)),
+                returnValue(watched(ElementType.DOCUMENT, "xwiki:Main.WebHome"))));
+            exactly(2).of(mockStore).getWatchedElements(BOB, getContext());
+            will(onConsecutiveCalls(returnValue(watched(ElementType.DOCUMENT, "xwiki:Main.WebHome")),
+                returnValue(watched(ElementType.DOCUMENT))));
+        }});
+        WatchListEvent event = event(ActivityEventType.UPDATE, "xwiki", "Main", "Main.WebHome", CAROL);
+
+        Assert.assertEquals(Collections.singleton(BOB), index(ALICE, BOB).getSubscribers(event));
+
+        // Alice has added the document to her watchlist and Bob has removed it from his.
+        Assert.assertEquals(Collections.singleton(ALICE), index(ALICE, BOB).getSubscribers(event));
+    }
+
+    @Test
+    public void subscribersFailingToLoadAreSkipped() throws Exception
+    {
+        getMockery().checking(new Expectations()
+        {{
+            oneOf(mockStore).getWatchedElements(ALICE, getContext());
+            will(throwException(new XWikiException()));
+            oneOf(mockStore).getWatchedElements(BOB, getContext());
+            will(returnValue(watched(ElementType.WIKI, "xwiki")));
+        }});
+
+        WatchListSubscriptionIndex index = index(ALICE, BOB);
+
+        Assert.assertEquals(1, index.getSubscriberNumber());
+        Assert.assertEquals(Collections.singleton(BOB),
+            index.getSubscribers(event(ActivityEventType.UPDATE, "xwiki", "Main", "Main.WebHome", CAROL)));
+    }
+}